@@ -0,0 +1,120 @@
+package com.danceclub.club_system.config;
+
+import com.danceclub.club_system.service.ResourceVersionService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * 活動與報名名單 GET 的條件式請求
+ * 在 controller 執行前由 ResourceVersionService 算出 ETag，與 If-None-Match 相同時直接回 304，
+ * 不載入實體、不序列化；不同時帶上 ETag 繼續交給 controller。
+ * Cache-Control: no-cache 讓瀏覽器每次都帶 If-None-Match 重新驗證，前端的定時刷新不需修改。
+ *
+ * 指標：http.conditional.not_modified{resource}
+ */
+@Component
+public class ConditionalGetInterceptor implements HandlerInterceptor {
+
+    private final ResourceVersionService versionService;
+    private final Counter activityHits;
+    private final Counter listingHits;
+    private final Counter registrationHits;
+
+    public ConditionalGetInterceptor(ResourceVersionService versionService, MeterRegistry meterRegistry) {
+        this.versionService = versionService;
+        this.activityHits = notModifiedCounter(meterRegistry, "activity");
+        this.listingHits = notModifiedCounter(meterRegistry, "activity-listing");
+        this.registrationHits = notModifiedCounter(meterRegistry, "registrations");
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!"GET".equals(request.getMethod())) {
+            return true;
+        }
+        String pattern = (String) request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        if (pattern == null) {
+            return true;
+        }
+        Optional<String> etag;
+        Counter hits;
+        try {
+            switch (pattern) {
+                case "/api/activities/{id}" -> {
+                    etag = versionService.activityTag(pathId(request, "id"));
+                    hits = activityHits;
+                }
+                case "/api/activities/{id}/registration-summary" -> {
+                    etag = versionService.registrationSummaryTag(pathId(request, "id"));
+                    hits = registrationHits;
+                }
+                case "/api/activities/registration-summaries" -> {
+                    etag = idsParameter(request).flatMap(versionService::registrationSummariesTag);
+                    hits = registrationHits;
+                }
+                case "/api/registrations/activity/{activityId}" -> {
+                    etag = Optional.of(versionService.registrationsTag(pathId(request, "activityId")));
+                    hits = registrationHits;
+                }
+                default -> {
+                    etag = Optional.of(versionService.listingTag());
+                    hits = listingHits;
+                }
+            }
+        } catch (NumberFormatException e) {
+            // 路徑參數格式錯誤交給 controller 回應 400
+            return true;
+        }
+        if (etag.isEmpty()) {
+            return true;
+        }
+
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+        if (new ServletWebRequest(request, response).checkNotModified(etag.get())) {
+            hits.increment();
+            return false;
+        }
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Long pathId(HttpServletRequest request, String name) {
+        Map<String, String> variables =
+                (Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        return Long.valueOf(variables.get(name));
+    }
+
+    // ?ids=1,2,3 或 ?ids=1&ids=2，沒有參數時為 empty（交給 controller 回應 400）
+    private static Optional<List<Long>> idsParameter(HttpServletRequest request) {
+        String[] values = request.getParameterValues("ids");
+        if (values == null) {
+            return Optional.empty();
+        }
+        List<Long> ids = new ArrayList<>();
+        for (String value : values) {
+            for (String id : value.split(",")) {
+                if (!id.isBlank()) {
+                    ids.add(Long.valueOf(id.trim()));
+                }
+            }
+        }
+        return ids.isEmpty() ? Optional.empty() : Optional.of(ids);
+    }
+
+    private static Counter notModifiedCounter(MeterRegistry meterRegistry, String resource) {
+        return Counter.builder("http.conditional.not_modified").tag("resource", resource)
+                .description("條件式 GET 回應 304 的次數").register(meterRegistry);
+    }
+}
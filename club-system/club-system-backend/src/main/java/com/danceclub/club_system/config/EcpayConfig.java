@@ -1,6 +1,8 @@
 package com.danceclub.club_system.config;
 
+import com.danceclub.club_system.service.EcpayCheckMacSigner;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 /**
@@ -30,6 +32,11 @@ public class EcpayConfig {
     @Value("${ecpay.notify-url}")
     private String notifyUrl;
 
+    @Bean
+    public EcpayCheckMacSigner ecpayCheckMacSigner() {
+        return new EcpayCheckMacSigner(hashKey, hashIv);
+    }
+
     public String getMerchantId() {
         return merchantId;
     }
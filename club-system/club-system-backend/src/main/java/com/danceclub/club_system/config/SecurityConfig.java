@@ -54,6 +54,9 @@ public class SecurityConfig {
                 // Public endpoints - Password reset (未登入使用者忘記密碼)
                 .requestMatchers("/api/auth/password/request-reset", "/api/auth/password/reset").permitAll()
 
+                // Lottery draw - admin only (must precede the public activities matcher)
+                .requestMatchers(HttpMethod.POST, "/api/activities/*/lottery/draw").hasRole("ADMIN")
+
                 // Public endpoints - Activities (viewable by all) (需求：3.12, 3.13)
                 .requestMatchers("/api/activities", "/api/activities/**").permitAll()
 
@@ -165,6 +168,7 @@ public class SecurityConfig {
         CorsConfiguration configuration = new CorsConfiguration();
         configuration.setAllowedOrigins(Arrays.asList("http://localhost:5173"));
         configuration.setAllowedHeaders(Arrays.asList("*"));
+        configuration.setExposedHeaders(Arrays.asList("Idempotent-Replayed"));
         configuration.setAllowedMethods(Arrays.asList("GET","POST","PUT","DELETE","OPTIONS"));
         configuration.setAllowCredentials(true);
 
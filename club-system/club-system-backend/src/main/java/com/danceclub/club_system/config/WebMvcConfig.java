@@ -0,0 +1,38 @@
+package com.danceclub.club_system.config;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.orm.jpa.support.OpenEntityManagerInViewInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Spring MVC 設定
+ */
+@Configuration
+public class WebMvcConfig implements WebMvcConfigurer {
+
+    private final ConditionalGetInterceptor conditionalGetInterceptor;
+    private final EntityManagerFactory entityManagerFactory;
+
+    public WebMvcConfig(ConditionalGetInterceptor conditionalGetInterceptor,
+                        EntityManagerFactory entityManagerFactory) {
+        this.conditionalGetInterceptor = conditionalGetInterceptor;
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        // Open EntityManager in View（取代 spring.jpa.open-in-view）：即時人數 SSE 會掛住請求長達 30 分鐘，
+        // 若沿用 OSIV，每條訂閱都會占住一條資料庫連線直到斷線，數條訂閱就能耗盡連線池
+        OpenEntityManagerInViewInterceptor openEntityManagerInView = new OpenEntityManagerInViewInterceptor();
+        openEntityManagerInView.setEntityManagerFactory(entityManagerFactory);
+        registry.addWebRequestInterceptor(openEntityManagerInView)
+                .excludePathPatterns("/api/activities/*/live");
+
+        // 活動查詢與報名名單的 ETag / 304（即時人數 SSE、封面縮圖不適用）
+        registry.addInterceptor(conditionalGetInterceptor)
+                .addPathPatterns("/api/activities", "/api/activities/**", "/api/registrations/activity/*")
+                .excludePathPatterns("/api/activities/*/live", "/api/activities/*/cover");
+    }
+}
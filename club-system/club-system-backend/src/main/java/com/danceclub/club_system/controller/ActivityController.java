@@ -1,19 +1,40 @@
 package com.danceclub.club_system.controller;
 
+import com.danceclub.club_system.dto.ActivityRegistrationSummaryDTO;
 import com.danceclub.club_system.dto.ActivityResponse;
-import com.danceclub.club_system.dto.ActivityWithStatsDTO;
+import com.danceclub.club_system.dto.ActivitySearchResultDTO;
+import com.danceclub.club_system.dto.ActivitySummary;
+import com.danceclub.club_system.dto.ActivityWithStatsPageDTO;
 import com.danceclub.club_system.dto.CancelActivityRequest;
+import com.danceclub.club_system.dto.LotteryResultDTO;
 import com.danceclub.club_system.dto.SchedulePublishRequest;
 import com.danceclub.club_system.model.Activity;
+import com.danceclub.club_system.model.enums.ActivityStatus;
 import com.danceclub.club_system.model.enums.ActivityType;
 import com.danceclub.club_system.repository.ActivityRepository;
+import com.danceclub.club_system.service.ActivityCounterBroadcaster;
 import com.danceclub.club_system.service.ActivityService;
+import com.danceclub.club_system.service.CoverImageService;
+import com.danceclub.club_system.service.LotteryService;
 import com.danceclub.club_system.service.RegistrationService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
-import org.springframework.http.HttpStatus;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -26,11 +47,19 @@ public class ActivityController {
 
     private final ActivityService activityService;
     private final RegistrationService registrationService;
+    private final ActivityCounterBroadcaster counterBroadcaster;
+    private final CoverImageService coverImageService;
+    private final LotteryService lotteryService;
 
     // TODO 1: 建構子
-    public ActivityController(ActivityService activityService, RegistrationService registrationService) {
+    public ActivityController(ActivityService activityService, RegistrationService registrationService,
+                              ActivityCounterBroadcaster counterBroadcaster, CoverImageService coverImageService,
+                              LotteryService lotteryService) {
         this.activityService = activityService;
         this.registrationService = registrationService;
+        this.counterBroadcaster = counterBroadcaster;
+        this.coverImageService = coverImageService;
+        this.lotteryService = lotteryService;
     }
     // GET /api/activities/{id}
     // TODO 2: 根據 ID 取得單一活動
@@ -41,7 +70,7 @@ public class ActivityController {
 
     // GET /api/activities 或 /api/activities?type=REGULAR
     @GetMapping
-    public List<Activity> getActivities(
+    public List<ActivitySummary> getActivities(
             @RequestParam(required = false) ActivityType type
     ) {
         // TODO 3: 判斷 type 是否有值
@@ -55,30 +84,38 @@ public class ActivityController {
     }
 
     // TODO 4: 關鍵字搜尋
-    // GET /api/activities/search?keyword=聖誕
+    // GET /api/activities/search?keyword=聖誕&type=SPECIAL&status=PUBLISHED&from=...&to=...&page=0&size=20
+    // 依相關度排序；status 預設 PUBLISHED，from / to 為活動開始時間區間
     @GetMapping("/search")
-    public List<Activity> searchActivities(@RequestParam String keyword) {
-        return activityService.searchActivities(keyword);
+    public ActivitySearchResultDTO searchActivities(
+            @RequestParam String keyword,
+            @RequestParam(required = false) ActivityType type,
+            @RequestParam(required = false) ActivityStatus status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+        return activityService.searchActivities(keyword, type, status, from, to, page, size);
     }
 
     // TODO 5: 取得可報名的活動
     // GET /api/activities/registrable
     @GetMapping("/registrable")
-    public List<Activity> getRegistrableActivities() {
+    public List<ActivitySummary> getRegistrableActivities() {
         return activityService.getRegistrableActivities();
     }
 
     // TODO 6: 取得未來 7 天內的活動
     // GET /api/activities/upcoming
     @GetMapping("/upcoming")
-    public List<Activity> getUpcomingActivities() {
+    public List<ActivitySummary> getUpcomingActivities() {
         return activityService.getUpcomingActivities();
     }
 
     // TODO 7: 查詢某個使用者建立的活動
     // GET /api/activities/creator/{createdBy}
     @GetMapping("/creator/{createdBy}")
-    public List<Activity> getActivitiesByCreator(@PathVariable String createdBy) {
+    public List<ActivitySummary> getActivitiesByCreator(@PathVariable String createdBy) {
         return activityService.getActivitiesByCreator(createdBy);
     }
     // TODO 8: 建立新活動
@@ -134,6 +171,13 @@ public class ActivityController {
         return ResponseEntity.ok(ActivityResponse.from(activity));
     }
 
+    //抽籤活動手動抽籤（報名截止後；截止時也會自動抽籤）
+    // POST /api/activities/{id}/lottery/draw
+    @PostMapping("/{id}/lottery/draw")
+    public ResponseEntity<LotteryResultDTO> drawLottery(@PathVariable Long id) {
+        return ResponseEntity.ok(lotteryService.draw(id));
+    }
+
     // TODO 12: 取消活動
     // PUT /api/activities/{id}/cancel
     @PutMapping("/{id}/cancel")
@@ -157,16 +201,76 @@ public class ActivityController {
     public List<Activity> getDraftActivities(){return activityService.getDraftActivities();}
 
     /**
-     * 取得所有活動及其報名統計
+     * 活動即時人數（Server-Sent Events）
+     * 連線後先收到目前人數，之後報名 / 取消 / 簽到時推送 event: counters
+     * 每個活動、每個來源位址的同時連線數有上限，超過時回應 429
      */
-    @GetMapping("with-stats")
-    public ResponseEntity<List<ActivityWithStatsDTO>> getActivitiesWithStats(){
-        try {
-            List<ActivityWithStatsDTO> activities = activityService.getAllActivitiesWithStats();
-            return ResponseEntity.ok(activities);
+    @GetMapping(value = "/{id}/live", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribeLiveCounters(@PathVariable Long id, HttpServletRequest request){
+        return counterBroadcaster.subscribe(id, request.getRemoteAddr());
+    }
 
-        }catch (Exception e){
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
+    /**
+     * 活動封面縮圖（列表用，由 ActivitySummary.coverImageUrl 指向）
+     * 網址的 v 與目前封面相同時長期快取（封面更換後列表網址會改變）；不同時表示列表資料較舊，不快取
+     * Tomcat 支援 sendfile 時交由 Tomcat 以 FileChannel.transferTo 直接送出檔案，否則自行 transferTo 到回應
+     */
+    @GetMapping("/{id}/cover")
+    public void getCoverThumbnail(@PathVariable Long id,
+                                  @RequestParam(defaultValue = "640") int w,
+                                  @RequestParam(required = false) String v,
+                                  HttpServletRequest request,
+                                  HttpServletResponse response) throws IOException {
+        CoverImageService.Thumbnail thumbnail = coverImageService.getThumbnail(id, w);
+        Path file = thumbnail.file();
+        long size = Files.size(file);
+
+        response.setContentType(MediaType.IMAGE_JPEG_VALUE);
+        response.setContentLengthLong(size);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, thumbnail.version().equals(v)
+                ? "public, max-age=31536000, immutable"
+                : "public, no-cache");
+
+        if (Boolean.TRUE.equals(request.getAttribute("org.apache.tomcat.sendfile.support"))) {
+            request.setAttribute("org.apache.tomcat.sendfile.filename", file.toAbsolutePath().toString());
+            request.setAttribute("org.apache.tomcat.sendfile.start", 0L);
+            request.setAttribute("org.apache.tomcat.sendfile.end", size);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = 0;
+            while (position < size) {
+                position += channel.transferTo(position, size - position, out);
+            }
         }
     }
+
+    /**
+     * 單一活動的報名統計摘要
+     */
+    @GetMapping("/{id}/registration-summary")
+    public ActivityRegistrationSummaryDTO getRegistrationSummary(@PathVariable Long id){
+        return activityService.getActivityRegistrationSummary(id);
+    }
+
+    /**
+     * 多個活動的報名統計摘要，一次回傳
+     * GET /api/activities/registration-summaries?ids=1,2,3
+     */
+    @GetMapping("/registration-summaries")
+    public List<ActivityRegistrationSummaryDTO> getRegistrationSummaries(@RequestParam List<Long> ids){
+        return activityService.getActivityRegistrationSummaries(ids);
+    }
+
+    /**
+     * 取得活動及其報名統計（分頁，可依狀態篩選）
+     */
+    @GetMapping("with-stats")
+    public ActivityWithStatsPageDTO getActivitiesWithStats(
+            @RequestParam(required = false) ActivityStatus status,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "50") int size){
+        return activityService.getActivitiesWithStats(status, page, size);
+    }
 }
\ No newline at end of file
@@ -1,15 +1,20 @@
 package com.danceclub.club_system.controller;
 
 import com.danceclub.club_system.dto.*;
+import com.danceclub.club_system.exception.EcpayUnavailableException;
 import com.danceclub.club_system.model.Payment;
-import com.danceclub.club_system.model.Registration;
 import com.danceclub.club_system.model.User;
 import com.danceclub.club_system.model.enums.PaymentStatus;
-import com.danceclub.club_system.repository.RegistrationRepository;
 import com.danceclub.club_system.repository.UserRepository;
+import com.danceclub.club_system.service.EcpayNotifyInbox;
+import com.danceclub.club_system.service.EcpayReconciliationService;
 import com.danceclub.club_system.service.EcpayService;
+import com.danceclub.club_system.service.IdempotencyService;
 import com.danceclub.club_system.service.PaymentService;
+import com.danceclub.club_system.service.UserService;
 import jakarta.validation.Valid;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
@@ -17,7 +22,6 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDateTime;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -31,15 +35,21 @@ import java.util.stream.Collectors;
 public class PaymentController {
 
     private final EcpayService ecpayService;
+    private final EcpayNotifyInbox ecpayNotifyInbox;
+    private final EcpayReconciliationService ecpayReconciliationService;
     private final PaymentService paymentService;
     private final UserRepository userRepository;
-    private final RegistrationRepository registrationRepository;
+    private final UserService userService;
+    private final IdempotencyService idempotencyService;
 
-    public PaymentController(EcpayService ecpayService, PaymentService paymentService, UserRepository userRepository , RegistrationRepository registrationRepository) {
+    public PaymentController(EcpayService ecpayService, EcpayNotifyInbox ecpayNotifyInbox, EcpayReconciliationService ecpayReconciliationService, PaymentService paymentService, UserRepository userRepository , UserService userService, IdempotencyService idempotencyService) {
         this.ecpayService = ecpayService;
+        this.ecpayNotifyInbox = ecpayNotifyInbox;
+        this.ecpayReconciliationService = ecpayReconciliationService;
         this.paymentService = paymentService;
         this.userRepository = userRepository;
-        this.registrationRepository = registrationRepository;
+        this.userService = userService;
+        this.idempotencyService = idempotencyService;
     }
 
     /**
@@ -58,9 +68,16 @@ public class PaymentController {
     /**
      * 創建繳費記錄
      * POST /api/payments
+     * 帶 Idempotency-Key 時，同一個 key 的重送會直接回放第一次的回應
      */
     @PostMapping
-    public ResponseEntity<?> createPayment(@Valid @RequestBody CreatePaymentRequest request) {
+    public ResponseEntity<?> createPayment(@Valid @RequestBody CreatePaymentRequest request,
+                                           @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        return idempotencyService.execute("POST /api/payments", idempotencyKey, request,
+                () -> doCreatePayment(request));
+    }
+
+    private ResponseEntity<?> doCreatePayment(CreatePaymentRequest request) {
         try {
             Payment payment = paymentService.createPayment(
                 request.getRegistrationId(),
@@ -112,9 +129,7 @@ public class PaymentController {
             String userId = getCurrentUserId();
             
             List<Payment> payments = paymentService.getUserPayments(userId);
-            List<PaymentResponse> responses = payments.stream()
-                    .map(this::convertToResponse)
-                    .collect(Collectors.toList());
+            List<PaymentResponse> responses = convertToResponses(payments);
             
             return ResponseEntity.ok(responses);
         } catch (Exception e) {
@@ -133,9 +148,7 @@ public class PaymentController {
             String userId = getCurrentUserId();
             
             List<Payment> payments = paymentService.getUserPendingPayments(userId);
-            List<PaymentResponse> responses = payments.stream()
-                    .map(this::convertToResponse)
-                    .collect(Collectors.toList());
+            List<PaymentResponse> responses = convertToResponses(payments);
             
             return ResponseEntity.ok(responses);
         } catch (Exception e) {
@@ -234,11 +247,12 @@ public class PaymentController {
     /**
      * 綠界付款通知（Notify）
      * POST /api/payments/ecpay/notify
+     * 驗證後寫入收件匣即回應 1|OK，繳費狀態由背景執行緒更新
      */
     @PostMapping("/ecpay/notify")
     public ResponseEntity<String> handleEcpayNotify(@RequestParam Map<String, String> params) {
         try {
-            String result = ecpayService.handlePaymentNotify(params);
+            String result = ecpayNotifyInbox.receive(params);
             return ResponseEntity.ok(result);
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body("0|" + e.getMessage());
@@ -253,131 +267,37 @@ public class PaymentController {
      * POST /api/payments/ecpay/return
      * 
      * 當用戶完成付款後，綠界會將用戶導向此頁面
-     * 我們在這裡處理付款成功的狀態更新
+     * 回傳內容與付款通知相同：驗證 CheckMacValue 後交給付款通知收件匣，
+     * 與 /ecpay/notify 走同一個去重、鎖定的套用流程（兩者不論先後到達都只套用一次），
+     * 這裡只負責顯示付款結果頁面
      */
     @PostMapping("/ecpay/return")
     public ResponseEntity<String> handleEcpayReturn(@RequestParam Map<String, String> params) {
+        String merchantTradeNo = params.get("MerchantTradeNo");
+        String rtnCode = params.get("RtnCode");
+        String rtnMsg = params.get("RtnMsg");
         try {
-            // 驗證 CheckMacValue
-            String receivedCheckMacValue = params.get("CheckMacValue");
-            Map<String, String> paramsForValidation = new HashMap<>(params);
-            paramsForValidation.remove("CheckMacValue");
-            
-            // 取得付款資訊
-            String merchantTradeNo = params.get("MerchantTradeNo");
-            String rtnCode = params.get("RtnCode");
-            String rtnMsg = params.get("RtnMsg");
-            String tradeNo = params.get("TradeNo");
-            String tradeAmt = params.get("TradeAmt");
-            String paymentDate = params.get("PaymentDate");
-            String paymentType = params.get("PaymentType");
-            String paymentTypeChargeFee = params.get("PaymentTypeChargeFee");
-            String tradeDate = params.get("TradeDate");
-            String simulatePaid = params.get("SimulatePaid");
-            
-            // 記錄日誌
-            System.out.println("=== 綠界付款返回 ===");
-            System.out.println("訂單編號: " + merchantTradeNo);
-            System.out.println("返回代碼: " + rtnCode);
-            System.out.println("返回訊息: " + rtnMsg);
-            System.out.println("綠界交易編號: " + tradeNo);
-            System.out.println("付款金額: " + tradeAmt);
-            System.out.println("付款時間: " + paymentDate);
-            System.out.println("付款方式: " + paymentType);
-            System.out.println("是否為模擬付款: " + simulatePaid);
-            
-            // 如果付款成功，更新資料庫狀態
-            if ("1".equals(rtnCode)) {
-                try {
-                    // 從訂單編號解析 Payment ID
-                    Long paymentId = extractPaymentIdFromMerchantTradeNo(merchantTradeNo);
-                    
-                    // 更新付款狀態
-                    Payment payment = paymentService.getPaymentById(paymentId);
-                    payment.setStatus(PaymentStatus.PAID);
-                    payment.setPaidAt(LocalDateTime.now());
-                    payment.setEcpayTradeNo(tradeNo);
-                    payment.setEcpayResponse(params.toString());
-
-                    // 更新報名資料付款狀況
-                    Registration registration = payment.getRegistration();
-                    registration.setPaymentStatus(PaymentStatus.PAID);
-                    
-                    // 處理不同付款方式的額外資訊
-                    if (paymentType != null) {
-                        if (paymentType.contains("ATM")) {
-                            payment.setAtmBankCode(params.get("BankCode"));
-                            payment.setAtmAccount(params.get("vAccount"));
-                        } else if (paymentType.contains("CVS") || paymentType.contains("BARCODE")) {
-                            payment.setCvsPaymentCode(params.get("PaymentNo"));
-                            payment.setCvsType(params.get("PaymentType"));
-                        }
-                    }
-                    
-                    // 添加備註
-                    String notePrefix = "1".equals(simulatePaid) ? "[模擬付款] " : "";
-                    payment.setNote(notePrefix + "付款成功 - 綠界交易編號: " + tradeNo + 
-                                   ", 付款時間: " + paymentDate + 
-                                   ", 付款方式: " + paymentType);
-                    
-                    paymentService.updatePayment(payment);
-                    registrationRepository.save(registration);
-
-                    
-                    System.out.println("✓ 付款狀態已更新: Payment ID=" + paymentId);
-                    
-                    // 返回成功頁面（HTML）
-                    return ResponseEntity.ok()
-                            .contentType(org.springframework.http.MediaType.TEXT_HTML)
-                            .body(generateSuccessHtml(merchantTradeNo, tradeAmt, paymentDate));
-                    
-                } catch (Exception e) {
-                    System.err.println("✗ 更新付款狀態失敗: " + e.getMessage());
-                    e.printStackTrace();
-                    // 即使更新失敗，也顯示付款成功訊息（因為綠界端已經成功）
-                    return ResponseEntity.ok()
-                            .contentType(org.springframework.http.MediaType.TEXT_HTML)
-                            .body(generateSuccessHtml(merchantTradeNo, tradeAmt, paymentDate));
-                }
-            } else {
-                // 付款失敗
-                System.out.println("✗ 付款失敗: " + rtnMsg);
-                
-                // 嘗試更新失敗原因
-                try {
-                    Long paymentId = extractPaymentIdFromMerchantTradeNo(merchantTradeNo);
-                    Payment payment = paymentService.getPaymentById(paymentId);
-                    payment.setFailureReason("付款失敗 - 代碼: " + rtnCode + ", 訊息: " + rtnMsg);
-                    payment.setEcpayResponse(params.toString());
-                    paymentService.updatePayment(payment);
-                } catch (Exception e) {
-                    System.err.println("✗ 更新失敗原因時發生錯誤: " + e.getMessage());
-                }
-                
-                return ResponseEntity.ok()
-                        .contentType(org.springframework.http.MediaType.TEXT_HTML)
-                        .body(generateFailureHtml(merchantTradeNo, rtnMsg));
-            }
-        } catch (Exception e) {
-            System.err.println("✗ 處理付款返回時發生錯誤: " + e.getMessage());
-            e.printStackTrace();
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+            ecpayNotifyInbox.receive(params);
+        } catch (IllegalArgumentException e) {
+            // CheckMacValue 驗證失敗：不更新任何資料，也不顯示付款結果
+            System.err.println("✗ 綠界付款返回驗證失敗: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                     .contentType(org.springframework.http.MediaType.TEXT_HTML)
-                    .body(generateErrorHtml(e.getMessage()));
+                    .body(generateErrorHtml("付款結果驗證失敗"));
+        } catch (Exception e) {
+            // 寫入收件匣失敗時由綠界付款通知（失敗會重送）更新狀態，仍顯示付款結果
+            System.err.println("✗ 綠界付款返回寫入失敗: " + e.getMessage());
         }
-    }
-    
-    /**
-     * 從訂單編號解析 Payment ID
-     */
-    private Long extractPaymentIdFromMerchantTradeNo(String merchantTradeNo) {
-        // 格式: P{paymentId}{timestamp}
-        if (merchantTradeNo != null && merchantTradeNo.startsWith("P") && merchantTradeNo.length() > 15) {
-            String withoutPrefix = merchantTradeNo.substring(1);
-            String paymentIdStr = withoutPrefix.substring(0, withoutPrefix.length() - 14);
-            return Long.parseLong(paymentIdStr);
+
+        if ("1".equals(rtnCode)) {
+            return ResponseEntity.ok()
+                    .contentType(org.springframework.http.MediaType.TEXT_HTML)
+                    .body(generateSuccessHtml(merchantTradeNo, params.get("TradeAmt"), params.get("PaymentDate")));
         }
-        throw new IllegalArgumentException("Invalid MerchantTradeNo format: " + merchantTradeNo);
+        System.out.println("✗ 付款失敗: " + rtnMsg);
+        return ResponseEntity.ok()
+                .contentType(org.springframework.http.MediaType.TEXT_HTML)
+                .body(generateFailureHtml(merchantTradeNo, rtnMsg));
     }
     
     /**
@@ -652,9 +572,7 @@ public class PaymentController {
     public ResponseEntity<?> getPendingCashPayments() {
         try {
             List<Payment> payments = paymentService.getPendingCashPayments();
-            List<PaymentResponse> responses = payments.stream()
-                    .map(this::convertToResponse)
-                    .collect(Collectors.toList());
+            List<PaymentResponse> responses = convertToResponses(payments);
             
             return ResponseEntity.ok(responses);
         } catch (Exception e) {
@@ -764,6 +682,10 @@ public class PaymentController {
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest()
                     .body(Map.of("error", "QUERY_FAILED", "message", e.getMessage()));
+        } catch (EcpayUnavailableException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .body(Map.of("error", "ECPAY_UNAVAILABLE", "message", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("error", "INTERNAL_ERROR", "message", "查詢綠界訂單失敗: " + e.getMessage()));
@@ -771,36 +693,51 @@ public class PaymentController {
     }
 
     /**
-     * 取得所有付款記錄（管理員）
-     * GET /api/payments/admin/all
+     * 立即執行綠界對帳（管理員）
+     * POST /api/payments/admin/ecpay/reconcile
+     */
+    @PostMapping("/admin/ecpay/reconcile")
+    public ResponseEntity<?> reconcileEcpay() {
+        try {
+            EcpayReconciliationReport report = ecpayReconciliationService.reconcile();
+            return ResponseEntity.ok(report);
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", "RECONCILE_RUNNING", "message", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "INTERNAL_ERROR", "message", "綠界對帳失敗: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * 取得付款記錄（管理員，分頁）
+     * GET /api/payments/admin/all?status=PAID&method=CASH&from=...&to=...&activityId=1&userId=...&keyword=...
+     *     &sort=createdAt&direction=desc&page=0&size=50
      */
     @GetMapping("/admin/all")
     public ResponseEntity<?> getAllPayments(
             @RequestParam(required = false) String status,
-            @RequestParam(required = false) String method) {
+            @RequestParam(required = false) String method,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) Long activityId,
+            @RequestParam(required = false) String userId,
+            @RequestParam(required = false) String keyword,
+            @RequestParam(defaultValue = "createdAt") String sort,
+            @RequestParam(defaultValue = "desc") String direction,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "50") int size) {
         try {
-            List<Payment> payments;
-
-            if (status != null && !status.isEmpty()) {
-                PaymentStatus ps = PaymentStatus.valueOf(status);
-                if (method != null && !method.isEmpty()) {
-                    payments = paymentService.getPaymentsByStatusAndMethod(ps, 
-                        com.danceclub.club_system.model.enums.PaymentMethod.valueOf(method));
-                } else {
-                    payments = paymentService.getPaymentsByStatus(ps);
-                }
-            } else if (method != null && !method.isEmpty()) {
-                payments = paymentService.getPaymentsByMethod(
-                    com.danceclub.club_system.model.enums.PaymentMethod.valueOf(method));
-            } else {
-                payments = paymentService.getAllPayments();
-            }
-
-            List<PaymentResponse> responses = payments.stream()
-                    .map(this::convertToResponse)
-                    .collect(Collectors.toList());
+            PaymentPageDTO result = paymentService.getAdminPaymentPage(
+                    status != null && !status.isEmpty() ? PaymentStatus.valueOf(status) : null,
+                    method != null && !method.isEmpty()
+                            ? com.danceclub.club_system.model.enums.PaymentMethod.valueOf(method) : null,
+                    from, to, activityId,
+                    userId != null && !userId.isEmpty() ? userId : null,
+                    keyword, sort, direction, page, size);
 
-            return ResponseEntity.ok(responses);
+            return ResponseEntity.ok(result);
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest()
                     .body(Map.of("error", "INVALID_PARAM", "message", e.getMessage()));
@@ -818,9 +755,7 @@ public class PaymentController {
     public ResponseEntity<?> getPendingReviewPayments() {
         try {
             List<Payment> payments = paymentService.getPendingReviewPayments();
-            List<PaymentResponse> responses = payments.stream()
-                    .map(this::convertToResponse)
-                    .collect(Collectors.toList());
+            List<PaymentResponse> responses = convertToResponses(payments);
             
             return ResponseEntity.ok(responses);
         } catch (Exception e) {
@@ -833,6 +768,25 @@ public class PaymentController {
      * 轉換 Payment 為 PaymentResponse
      */
     private PaymentResponse convertToResponse(Payment payment) {
+        String uid = payment.getRegistration() != null ? payment.getRegistration().getUserId() : null;
+        Map<String, User> users = uid != null ? userService.getUsersByIds(List.of(uid)) : Map.of();
+        return convertToResponse(payment, users);
+    }
+
+    /**
+     * 列表轉換：會員資訊一次批次查回，避免每筆繳費各查一次會員
+     */
+    private List<PaymentResponse> convertToResponses(List<Payment> payments) {
+        Map<String, User> users = userService.getUsersByIds(payments.stream()
+                .filter(p -> p.getRegistration() != null)
+                .map(p -> p.getRegistration().getUserId())
+                .toList());
+        return payments.stream()
+                .map(payment -> convertToResponse(payment, users))
+                .collect(Collectors.toList());
+    }
+
+    private PaymentResponse convertToResponse(Payment payment, Map<String, User> users) {
         PaymentResponse response = new PaymentResponse(
             payment.getId(),
             payment.getRegistration() != null ? payment.getRegistration().getId() : null,
@@ -865,10 +819,11 @@ public class PaymentController {
         if (payment.getRegistration() != null) {
             String uid = payment.getRegistration().getUserId();
             response.setUserId(uid);
-            userRepository.findById(uid).ifPresent(user -> {
+            User user = users.get(uid);
+            if (user != null) {
                 response.setUserName(user.getName());
                 response.setUserEmail(user.getEmail());
-            });
+            }
         }
 
         return response;
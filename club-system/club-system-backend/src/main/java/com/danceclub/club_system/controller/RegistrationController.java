@@ -4,20 +4,33 @@ import com.danceclub.club_system.dto.*;
 import com.danceclub.club_system.model.Activity;
 import com.danceclub.club_system.model.Payment;
 import com.danceclub.club_system.model.Registration;
+import com.danceclub.club_system.model.WaitlistEntry;
 import com.danceclub.club_system.model.enums.PaymentStatus;
+import com.danceclub.club_system.model.enums.RegistrationStatus;
 import com.danceclub.club_system.repository.PaymentRepository;
 import com.danceclub.club_system.repository.RegistrationRepository;
 import com.danceclub.club_system.service.ActivityService;
 import com.danceclub.club_system.service.EmailService;
+import com.danceclub.club_system.service.IdempotencyService;
+import com.danceclub.club_system.service.LotteryService;
+import com.danceclub.club_system.service.RegistrationAdmissionService;
 import com.danceclub.club_system.service.RegistrationService;
 import com.danceclub.club_system.service.UserService;
+import com.danceclub.club_system.service.WaitlistService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.context.config.ConfigDataResourceNotFoundException;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 
@@ -28,13 +41,23 @@ public class RegistrationController {
 
     private final RegistrationService registrationService;
     private final ActivityService activityService;
+    private final WaitlistService waitlistService;
+    private final LotteryService lotteryService;
+    private final IdempotencyService idempotencyService;
+    private final RegistrationAdmissionService admissionService;
+    private final ObjectMapper objectMapper;
 
 
 
 
-    public RegistrationController(RegistrationService registrationService, ActivityService activityService){
+    public RegistrationController(RegistrationService registrationService, ActivityService activityService, WaitlistService waitlistService, LotteryService lotteryService, IdempotencyService idempotencyService, RegistrationAdmissionService admissionService, ObjectMapper objectMapper){
         this.registrationService = registrationService;
         this.activityService = activityService;
+        this.waitlistService = waitlistService;
+        this.lotteryService = lotteryService;
+        this.idempotencyService = idempotencyService;
+        this.admissionService = admissionService;
+        this.objectMapper = objectMapper;
 
     }
     //====會員端API====//
@@ -42,24 +65,33 @@ public class RegistrationController {
     //POST /api/registrations
     /**
      * 建立報名
+     * 帶 Idempotency-Key 時，同一個 key 的重送會直接回放第一次的回應，不會重新報名
+     * 同一活動同時報名的人數過多時排隊進入，排隊已滿或逾時回應 503；已知額滿的活動直接回應 409
      *
      * @param request 建立報名請求
+     * @param idempotencyKey 客戶端產生的唯一值（選填）
      * @return 報名紀錄
      */
     @PostMapping
-    public ResponseEntity<Registration> createRegistration(
-            @Valid @RequestBody CreateRegistrationRequest request
+    public ResponseEntity<?> createRegistration(
+            @Valid @RequestBody CreateRegistrationRequest request,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey
             ){
 
-        Registration registration = registrationService.createRegistration(
-                request.getActivityId(),
-                request.getUserId(),
-                request.getRequestedDiscount(),
-                request.getLoyaltyCouponId(),
-                request.getPromoCode()
-        );
-
-        return ResponseEntity.status(HttpStatus.CREATED).body(registration);
+        // 先查 Idempotency-Key 回放：已報名成功的重送不經過流量控管，活動額滿後仍回放 201
+        // 流量控管在回放查詢之後、報名交易之前：排隊期間不存取資料庫、不佔用連線
+        return idempotencyService.execute("POST /api/registrations", idempotencyKey, request, () ->
+                admissionService.admit(request.getActivityId(), () -> {
+                    Registration registration = registrationService.createRegistration(
+                            request.getActivityId(),
+                            request.getUserId(),
+                            request.getRequestedDiscount(),
+                            request.getLoyaltyCouponId(),
+                            request.getPromoCode()
+                    );
+
+                    return ResponseEntity.status(HttpStatus.CREATED).body(registration);
+                }));
     }
 
     //====2.取消報名====//
@@ -77,6 +109,64 @@ public class RegistrationController {
         return ResponseEntity.ok(registration);
     }
 
+    //====候補====//
+    //POST /api/registrations/waitlist
+
+    /**
+     * 加入候補名單（活動額滿時）
+     * 有人取消報名時，候補第一位會自動遞補為正式報名
+     * @param request 活動ID + 會員ID
+     * @return 201 CREATED + 候補順位
+     */
+    @PostMapping("/waitlist")
+    public ResponseEntity<WaitlistPositionDTO> joinWaitlist(@Valid @RequestBody WaitlistRequest request){
+        waitlistService.join(request.getActivityId(), request.getUserId());
+        WaitlistPositionDTO position = waitlistService.getPosition(request.getActivityId(), request.getUserId());
+        return ResponseEntity.status(HttpStatus.CREATED).body(position);
+    }
+
+    //DELETE /api/registrations/waitlist?activityId=1&userId=M001
+    /**
+     * 離開候補名單
+     */
+    @DeleteMapping("/waitlist")
+    public ResponseEntity<Void> leaveWaitlist(@RequestParam Long activityId, @RequestParam String userId){
+        waitlistService.leave(activityId, userId);
+        return ResponseEntity.noContent().build();
+    }
+
+    //GET /api/registrations/waitlist/position?activityId=1&userId=M001
+    /**
+     * 查詢候補順位
+     * @return 200 OK + 順位（不在候補名單中時 position 為 null）
+     */
+    @GetMapping("/waitlist/position")
+    public ResponseEntity<WaitlistPositionDTO> getWaitlistPosition(@RequestParam Long activityId, @RequestParam String userId){
+        return ResponseEntity.ok(waitlistService.getPosition(activityId, userId));
+    }
+
+    //POST /api/registrations/lottery
+    /**
+     * 登記抽籤（抽籤制活動，報名期間內不限人數；截止後抽出中籤者，其餘進入候補）
+     * @param request 活動ID + 會員ID
+     * @return 201 CREATED + 登記狀態
+     */
+    @PostMapping("/lottery")
+    public ResponseEntity<LotteryStatusDTO> enterLottery(@Valid @RequestBody LotteryEntryRequest request){
+        LotteryStatusDTO status = lotteryService.enter(request.getActivityId(), request.getUserId());
+        return ResponseEntity.status(HttpStatus.CREATED).body(status);
+    }
+
+    //GET /api/registrations/lottery/status?activityId=1&userId=M001
+    /**
+     * 查詢抽籤登記狀態
+     * @return 200 OK + 是否已登記、登記人數、抽籤時間
+     */
+    @GetMapping("/lottery/status")
+    public ResponseEntity<LotteryStatusDTO> getLotteryStatus(@RequestParam Long activityId, @RequestParam String userId){
+        return ResponseEntity.ok(lotteryService.getStatus(activityId, userId));
+    }
+
     //====查詢報名紀錄====//
     //GET /api/registrations/my?userId=M001
 
@@ -154,6 +244,24 @@ public class RegistrationController {
         return ResponseEntity.ok(registration);
     }
 
+    /**
+     * 批次簽到（門口掃碼機離線暫存後分批上傳）
+     *
+     * POST /api/registrations/checkin-batch
+     * Body: { "activityId": 1, "scans": [ { "userId": "M001", "scannedAt": "2026-01-01T19:02:11" }, ... ] }
+     *
+     * @param request 活動ID + 掃碼清單（單次最多 500 筆）
+     * @return 200 OK + 每筆簽到結果（依請求順序）
+     */
+    @PostMapping("/checkin-batch")
+    public ResponseEntity<List<BatchCheckInResultDTO>> batchCheckIn(@Valid @RequestBody BatchCheckInRequest request) {
+        List<BatchCheckInResultDTO> results = registrationService.batchCheckIn(
+                request.getActivityId(),
+                request.getScans()
+        );
+        return ResponseEntity.ok(results);
+    }
+
     //====管理端API====//
     //====查詢活動的報名名單====//
     //GET /api/registrations/activity/{activityId}
@@ -169,6 +277,15 @@ public class RegistrationController {
         return ResponseEntity.ok(registrations);
     }
 
+    //GET /api/registrations/activity/{activityId}/waitlist
+    /**
+     * 查詢活動候補名單（依候補順序）
+     */
+    @GetMapping("/activity/{activityId}/waitlist")
+    public ResponseEntity<List<WaitlistEntry>> getActivityWaitlist(@PathVariable Long activityId){
+        return ResponseEntity.ok(waitlistService.getWaitlist(activityId));
+    }
+
     /**
      * 查詢會員報名紀錄（含活動與繳費詳情）
      * GET /api/registrations/my-detail?userId=M001
@@ -180,15 +297,51 @@ public class RegistrationController {
         return ResponseEntity.ok(result);
     }
 
+    //GET /api/registrations/all?activityId=1&status=REGISTERED&from=...&to=...&cursor=...&size=50
     /**
-     * 查詢所有活動的報名名單
-     * @return 200 OK+所有報名名單
+     * 查詢所有活動的報名名單（keyset 分頁，依報名時間由新到舊）
+     * 下一頁帶入上一頁回傳的 nextCursor；未指定 status 時不含已取消的報名
+     * @return 200 OK+一頁報名名單
      */
-
     @GetMapping("/all")
-    public ResponseEntity<List<Registration>> getAllRegistrations(){
-        List<Registration> registrations = registrationService.getAllRegistrations();
-        return ResponseEntity.ok(registrations);
+    public ResponseEntity<RegistrationPageDTO> getAllRegistrations(
+            @RequestParam(required = false) Long activityId,
+            @RequestParam(required = false) RegistrationStatus status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size){
+        RegistrationPageDTO page = registrationService.getRegistrationsPage(activityId, status, from, to, cursor, size);
+        return ResponseEntity.ok(page);
+    }
+
+    //GET /api/registrations/all  (Accept: application/x-ndjson)
+    /**
+     * 匯出符合條件的全部報名名單（NDJSON，一行一筆）
+     * 邊讀邊寫，不會把整張表載入記憶體，供管理工具一次取得全部資料
+     * @return 200 OK+NDJSON 串流
+     */
+    @GetMapping(value = "/all", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllRegistrations(
+            @RequestParam(required = false) Long activityId,
+            @RequestParam(required = false) RegistrationStatus status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to){
+        StreamingResponseBody body = out -> {
+            try {
+                registrationService.streamRegistrations(activityId, status, from, to, registration -> {
+                    try {
+                        out.write(objectMapper.writeValueAsBytes(registration));
+                        out.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
     }
 
     //====統計報名人數====//
@@ -4,6 +4,8 @@ import com.danceclub.club_system.dto.ChangePasswordRequest;
 import com.danceclub.club_system.dto.UpdateUserRequest;
 import com.danceclub.club_system.dto.UpdateUserRoleRequest;
 import com.danceclub.club_system.dto.UserResponse;
+import com.danceclub.club_system.model.MemberStats;
+import com.danceclub.club_system.service.MemberStatsService;
 import com.danceclub.club_system.service.UserService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -23,9 +25,11 @@ import java.util.Map;
 public class UserController {
     
     private final UserService userService;
+    private final MemberStatsService memberStatsService;
     
-    public UserController(UserService userService) {
+    public UserController(UserService userService, MemberStatsService memberStatsService) {
         this.userService = userService;
+        this.memberStatsService = memberStatsService;
     }
     
     /**
@@ -45,6 +49,15 @@ public class UserController {
         }
     }
     
+    /**
+     * Get member attendance statistics (attended / absent / late / cancelled / total paid)
+     * GET /api/users/:id/stats
+     */
+    @GetMapping("/users/{id}/stats")
+    public ResponseEntity<MemberStats> getUserStats(@PathVariable String id) {
+        return ResponseEntity.ok(memberStatsService.getStats(id));
+    }
+    
     /**
      * Update user profile information
      * PUT /api/users/:id
@@ -85,6 +98,19 @@ public class UserController {
         }
     }
     
+    /**
+     * Rebuild member statistics from registration records (admin only)
+     * POST /api/admin/member-stats/rebuild
+     */
+    @PostMapping("/admin/member-stats/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuildMemberStats() {
+        int members = memberStatsService.rebuild();
+        Map<String, Object> response = new HashMap<>();
+        response.put("message", "會員統計重建完成");
+        response.put("members", members);
+        return ResponseEntity.ok(response);
+    }
+    
     /**
      * Change user password
      * PUT /api/users/:id/password
@@ -0,0 +1,24 @@
+package com.danceclub.club_system.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 活動即時人數（SSE 推播內容）
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ActivityLiveCountersDTO {
+    private Long activityId;
+    private Integer maxParticipants;     // 人數上限；無上限為 null
+    private Integer remainingSeats;      // 剩餘名額；無上限為 null
+    private Long registeredCount;        // 有效報名數（不含已取消）
+    private Long checkedInCount;         // 已簽到
+    private LocalDateTime updatedAt;
+}
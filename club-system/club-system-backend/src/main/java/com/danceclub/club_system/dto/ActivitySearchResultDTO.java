@@ -0,0 +1,22 @@
+package com.danceclub.club_system.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 活動搜尋結果（依相關度排序的一頁）
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ActivitySearchResultDTO {
+    private List<ActivitySummary> items;
+    private Integer total;   // 符合條件的總筆數
+    private Integer page;    // 目前頁碼（從 0 開始）
+    private Integer size;    // 每頁筆數
+}
@@ -0,0 +1,65 @@
+package com.danceclub.club_system.dto;
+
+import com.danceclub.club_system.model.Activity;
+import com.danceclub.club_system.model.enums.ActivityStatus;
+import com.danceclub.club_system.model.enums.ActivityType;
+import com.danceclub.club_system.model.enums.RegistrationMode;
+import com.danceclub.club_system.service.CoverImageService;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 活動列表卡片用的精簡資料（不含說明等長文字欄位）
+ * 由 ActivityRepository 的 summary 查詢直接選取所需欄位組成，欄位順序需與查詢一致；
+ * 完整活動資料只由 GET /api/activities/{id} 回傳。
+ *
+ * @param coverImageUrl  封面縮圖網址（GET /api/activities/{id}/cover，相對路徑）；原圖網址只在完整活動資料中
+ * @param registrationMode 報名方式；舊資料為 null 時視為先搶先贏
+ * @param remainingSeats 剩餘名額；無人數上限時為 null
+ */
+public record ActivitySummary(
+        Long id,
+        String title,
+        String coverImageUrl,
+        LocalDateTime startTime,
+        LocalDateTime endTime,
+        LocalDateTime registrationDeadline,
+        String location,
+        BigDecimal feeAmount,
+        ActivityType activityType,
+        RegistrationMode registrationMode,
+        ActivityStatus status,
+        LocalDateTime publishedAt,
+        LocalDateTime createdAt,
+        LocalDateTime updatedAt,
+        Integer maxParticipants,
+        Integer remainingSeats) {
+
+    public ActivitySummary {
+        coverImageUrl = CoverImageService.thumbnailUrl(id, coverImageUrl);
+        if (registrationMode == null) {
+            registrationMode = RegistrationMode.FIRST_COME;
+        }
+    }
+
+    public static ActivitySummary from(Activity activity, Integer remainingSeats) {
+        return new ActivitySummary(
+                activity.getId(),
+                activity.getTitle(),
+                activity.getCoverImageUrl(),
+                activity.getStartTime(),
+                activity.getEndTime(),
+                activity.getRegistrationDeadline(),
+                activity.getLocation(),
+                activity.getFeeAmount(),
+                activity.getActivityType(),
+                activity.getRegistrationMode(),
+                activity.getStatus(),
+                activity.getPublishedAt(),
+                activity.getCreatedAt(),
+                activity.getUpdatedAt(),
+                activity.getMaxParticipants(),
+                remainingSeats);
+    }
+}
@@ -9,6 +9,10 @@ import lombok.NoArgsConstructor;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
+/**
+ * 活動列表 + 報名統計（管理後台 Dashboard）
+ * 由 ActivityRepository.findWithStats 以單一 GROUP BY 查詢直接組成，欄位順序需與查詢一致
+ */
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -23,7 +27,8 @@ public class ActivityWithStatsDTO {
     private ActivityStatus activityStatus;
     private BigDecimal feeAmount;
     private LocalDateTime registrationDeadline;
-    private Long registrationCount;
-
-
+    private Long registrationCount;      // 有效報名數（不含已取消）
+    private Long paidCount;              // 已繳費
+    private Long pendingPaymentCount;    // 尚未完成繳費（待繳費 / 付款中 / 審核中）
+    private Long checkedInCount;         // 已報到
 }
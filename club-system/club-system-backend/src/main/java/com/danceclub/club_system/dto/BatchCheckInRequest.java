@@ -0,0 +1,43 @@
+package com.danceclub.club_system.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 批次簽到請求（門口掃碼機離線暫存後分批上傳）
+ * POST /api/registrations/checkin-batch
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchCheckInRequest {
+
+    @NotNull(message = "活動ID不得為空")
+    private Long activityId;
+
+    @NotEmpty(message = "簽到清單不得為空")
+    @Size(max = 500, message = "單次最多上傳 500 筆簽到")
+    @Valid
+    private List<Scan> scans;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Scan {
+
+        @NotBlank(message = "userId 不可為空")
+        private String userId;
+
+        /** 實際掃碼時間（用於判斷遲到），未傳則以伺服器收到的時間為準 */
+        private LocalDateTime scannedAt;
+    }
+}
@@ -0,0 +1,24 @@
+package com.danceclub.club_system.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 批次簽到單筆結果（與請求順序相同）
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchCheckInResultDTO {
+    private String userId;
+    private Long registrationId;
+    private Boolean success;
+    private String message;        // 失敗原因，成功時為 null
+    private LocalDateTime checkInTime;
+    private Boolean isLate;
+}
@@ -0,0 +1,19 @@
+package com.danceclub.club_system.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class EcpayReconciliationReport {
+    private Integer scanned;        // 查詢的繳費筆數
+    private Integer synced;         // 綠界已付款、本地改為已繳費的筆數
+    private Integer expired;        // 綠界未付款且已過繳費期限，或綠界交易失敗，本地改為已取消的筆數
+    private Integer unchanged;      // 綠界未付款，或套用前已由通知 / 管理員更新的筆數
+    private Integer failed;         // 查詢或套用失敗的筆數（下次對帳再試）
+    private Long elapsedMillis;
+}
@@ -0,0 +1,22 @@
+package com.danceclub.club_system.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 登記抽籤的請求
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LotteryEntryRequest {
+
+    @NotNull(message = "活動ID不得為空")
+    private Long activityId;
+
+    @NotBlank(message = "會員ID不得為空")
+    private String userId;
+}
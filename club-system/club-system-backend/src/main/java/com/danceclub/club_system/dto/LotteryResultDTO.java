@@ -0,0 +1,21 @@
+package com.danceclub.club_system.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LotteryResultDTO {
+    private Long activityId;
+    private Long entryCount;        // 登記總人數
+    private Integer winnerCount;    // 中籤（寫入正式報名）人數
+    private Integer waitlistCount;  // 未中籤、依抽籤順序進入候補的人數
+    private Long seed;              // 抽籤種子，可重現結果
+    private LocalDateTime drawnAt;
+}
@@ -0,0 +1,20 @@
+package com.danceclub.club_system.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LotteryStatusDTO {
+    private Long activityId;
+    private String userId;
+    private Boolean entered;        // 是否已登記抽籤
+    private Long entryCount;        // 目前登記總人數
+    private LocalDateTime drawnAt;  // 抽籤時間；尚未抽籤為 null
+}
@@ -0,0 +1,22 @@
+package com.danceclub.club_system.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 付款記錄的一頁（GET /api/payments/admin/all）
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaymentPageDTO {
+    private List<PaymentResponse> items;
+    private Long total;      // 符合篩選條件的付款總數
+    private Integer page;    // 目前頁碼（從 0 開始）
+    private Integer size;    // 每頁筆數
+}
@@ -79,6 +79,27 @@ public class PaymentResponse {
         this.updatedAt = updatedAt;
     }
 
+    /**
+     * 含繳費人資訊，由 PaymentRepository.findAdminPage 以單一查詢直接組成，參數順序需與查詢一致
+     */
+    public PaymentResponse(Long id, Long registrationId, PaymentType paymentType,
+                          BigDecimal originalAmount, BigDecimal amount, BigDecimal discountAmount,
+                          String discountReason, PaymentStatus status, PaymentMethod method,
+                          LocalDateTime paidAt, String reviewedBy, LocalDateTime reviewedAt,
+                          String reviewNote, String note, Long bankAccountProof,
+                          String merchantTradeNo, String ecpayTradeNo, LocalDateTime paymentDeadline,
+                          String atmAccount, String atmBankCode, String cvsPaymentCode,
+                          String cvsType, String failureReason, LocalDateTime createdAt,
+                          LocalDateTime updatedAt, String userId, String userName, String userEmail) {
+        this(id, registrationId, paymentType, originalAmount, amount, discountAmount, discountReason,
+                status, method, paidAt, reviewedBy, reviewedAt, reviewNote, note, bankAccountProof,
+                merchantTradeNo, ecpayTradeNo, paymentDeadline, atmAccount, atmBankCode, cvsPaymentCode,
+                cvsType, failureReason, createdAt, updatedAt);
+        this.userId = userId;
+        this.userName = userName;
+        this.userEmail = userEmail;
+    }
+
     // Getters and Setters
     public Long getId() {
         return id;
@@ -64,16 +64,17 @@ public class RegistrationDetailDTO {
                 // 會員資訊
                 .userName(user.getName())
                 .userEmail(user.getEmail())
-                .userPhone(user.getPhone())
-
-                // 活動資訊
-                .activityTitle(activity.getTitle())
-                .activityStartTime(activity.getStartTime())
-                .activityEndTime(activity.getEndTime())
-                .activityLocation(activity.getLocation())
-                .activityFeeAmount(activity.getFeeAmount())
-                .activityStatus(activity.getStatus());
+                .userPhone(user.getPhone());
 
+        // 活動資訊（活動已刪除時為 null）
+        if (activity != null) {
+            builder.activityTitle(activity.getTitle())
+                    .activityStartTime(activity.getStartTime())
+                    .activityEndTime(activity.getEndTime())
+                    .activityLocation(activity.getLocation())
+                    .activityFeeAmount(activity.getFeeAmount())
+                    .activityStatus(activity.getStatus());
+        }
 
         // 繳費資訊（可能為 null）
         if (payment != null) {
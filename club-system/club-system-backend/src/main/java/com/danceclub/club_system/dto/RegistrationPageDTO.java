@@ -0,0 +1,23 @@
+package com.danceclub.club_system.dto;
+
+import com.danceclub.club_system.model.Registration;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 報名紀錄分頁結果（keyset 分頁）
+ * 下一頁以 nextCursor 帶入 cursor 參數查詢，hasMore = false 表示已是最後一頁
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RegistrationPageDTO {
+    private List<Registration> items;
+    private String nextCursor;
+    private Boolean hasMore;
+}
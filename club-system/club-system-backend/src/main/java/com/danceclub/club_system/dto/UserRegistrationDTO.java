@@ -49,26 +49,28 @@ public class UserRegistrationDTO {
                 .status(registration.getStatus())
                 .registrationTime(registration.getRegistrationTime())
                 .checkedIn(registration.getCheckedIn())
-
-                // 活動摘要
-                .activityId(activity.getId())
-                .activityTitle(activity.getTitle())
-                .activityType(activity.getActivityType())
-                .startTime(activity.getStartTime())
-                .endTime(activity.getEndTime())
-                .location(activity.getLocation())
+                .activityId(registration.getActivityId())
 
                 // 繳費資訊
                 .paymentStatus(registration.getPaymentStatus())
                 .paymentAmount(registration.getPaymentAmount());
 
+        // 活動摘要（活動已刪除時為 null）
+        if (activity != null) {
+            builder.activityTitle(activity.getTitle())
+                    .activityType(activity.getActivityType())
+                    .startTime(activity.getStartTime())
+                    .endTime(activity.getEndTime())
+                    .location(activity.getLocation());
+        }
+
         // 繳費期限（可能為 null）
         if (payment != null) {
             builder.paymentDeadline(payment.getPaymentDeadline());
         }
 
-        // 判斷是否可取消
-        boolean canCancel = registration.canCancel() &&
+        // 判斷是否可取消（活動已刪除時不可取消）
+        boolean canCancel = activity != null && registration.canCancel() &&
                 LocalDateTime.now().isBefore(activity.getStartTime());
         builder.canCancel(canCancel);
 
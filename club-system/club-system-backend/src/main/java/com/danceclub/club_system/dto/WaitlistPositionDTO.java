@@ -0,0 +1,17 @@
+package com.danceclub.club_system.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class WaitlistPositionDTO {
+    private Long activityId;
+    private String userId;
+    private Integer position;      // 第幾順位（從 1 開始），不在候補名單中為 null
+    private Integer waitlistSize;  // 目前候補總人數
+}
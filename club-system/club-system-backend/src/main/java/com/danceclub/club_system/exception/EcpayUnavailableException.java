@@ -0,0 +1,24 @@
+package com.danceclub.club_system.exception;
+
+/**
+ * 綠界服務暫時無法使用（連續失敗後斷路器開啟，或重試後仍逾時 / 回應 5xx）
+ * 回應 503 並帶 Retry-After，稍後再查詢即可
+ */
+public class EcpayUnavailableException extends RuntimeException {
+
+    private final int retryAfterSeconds;
+
+    public EcpayUnavailableException(String message, int retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public EcpayUnavailableException(String message, int retryAfterSeconds, Throwable cause) {
+        super(message, cause);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -1,5 +1,6 @@
 package com.danceclub.club_system.exception;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
@@ -75,6 +76,46 @@ public class GlobalExceptionHandler {
 
         return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
     }
+    // 報名排隊已滿或等待逾時
+    @ExceptionHandler(RegistrationBusyException.class)
+    public ResponseEntity<Map<String, Object>> handleRegistrationBusyException(
+            RegistrationBusyException ex) {
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("timestamp", LocalDateTime.now());
+        response.put("status", HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.put("error", "報名人數過多");
+        response.put("message", ex.getMessage());
+
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(response);
+    }
+    // 綠界服務暫時無法使用
+    @ExceptionHandler(EcpayUnavailableException.class)
+    public ResponseEntity<Map<String, Object>> handleEcpayUnavailableException(
+            EcpayUnavailableException ex) {
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("timestamp", LocalDateTime.now());
+        response.put("status", HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.put("error", "金流服務暫時無法使用");
+        response.put("message", ex.getMessage());
+
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(response);
+    }
+    // 即時人數訂閱數已達上限（EventSource 只接受 text/event-stream，因此不帶 JSON body，僅回狀態碼與 Retry-After）
+    @ExceptionHandler(LiveSubscriptionLimitException.class)
+    public ResponseEntity<Void> handleLiveSubscriptionLimitException(
+            LiveSubscriptionLimitException ex) {
+
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .build();
+    }
+
     @ExceptionHandler(HttpMessageNotReadableException.class)
     public ResponseEntity<Map<String, Object>> handleHttpMessageNotReadable(
             HttpMessageNotReadableException ex) {
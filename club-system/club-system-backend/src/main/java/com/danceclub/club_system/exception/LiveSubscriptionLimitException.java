@@ -0,0 +1,19 @@
+package com.danceclub.club_system.exception;
+
+/**
+ * 即時人數訂閱數已達上限（單一活動或單一來源位址）
+ * 回應 429 並帶 Retry-After，稍後再連線即可
+ */
+public class LiveSubscriptionLimitException extends RuntimeException {
+
+    private final int retryAfterSeconds;
+
+    public LiveSubscriptionLimitException(String message, int retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,19 @@
+package com.danceclub.club_system.exception;
+
+/**
+ * 報名排隊已滿或等待逾時（開放報名瞬間流量過大）
+ * 回應 503 並帶 Retry-After，客戶端可稍後重試
+ */
+public class RegistrationBusyException extends RuntimeException {
+
+    private final int retryAfterSeconds;
+
+    public RegistrationBusyException(String message, int retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
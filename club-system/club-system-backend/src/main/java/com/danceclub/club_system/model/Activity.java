@@ -2,6 +2,7 @@ package com.danceclub.club_system.model;
 
 import com.danceclub.club_system.model.enums.ActivityStatus;
 import com.danceclub.club_system.model.enums.ActivityType;
+import com.danceclub.club_system.model.enums.RegistrationMode;
 import com.danceclub.club_system.model.enums.TargetAudience;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.*;
@@ -65,6 +66,20 @@ public class Activity {
     @Column(name = "registration_deadline",nullable = false)
     private LocalDateTime registrationDeadline;
 
+    // ========== 報名方式（先搶先贏 / 抽籤；舊資料為 null 視為先搶先贏） ==========
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "registration_mode", length = 20)
+    private RegistrationMode registrationMode = RegistrationMode.FIRST_COME;
+
+    /** 抽籤完成時間（僅抽籤活動；null = 尚未抽籤） */
+    @Column(name = "lottery_drawn_at", nullable = true)
+    private LocalDateTime lotteryDrawnAt;
+
+    /** 抽籤種子，相同種子可重現抽籤結果 */
+    @Column(name = "lottery_seed", nullable = true)
+    private Long lotterySeed;
+
     // ========== 費用 ==========
 
     @NotNull(message = "費用金額不可為空")
@@ -143,6 +158,9 @@ public class Activity {
         if (targetAudience == null){
             targetAudience = TargetAudience.ALL;
         }
+        if (registrationMode == null){
+            registrationMode = RegistrationMode.FIRST_COME;
+        }
 
     }
     @PreUpdate
@@ -222,6 +240,13 @@ public class Activity {
         return  maxParticipants != null && maxParticipants > 0;
     }
 
+    /**
+     * 判斷是否為抽籤報名
+     */
+    public boolean isLottery(){
+        return RegistrationMode.LOTTERY.equals(registrationMode);
+    }
+
     /**
      * 取得時間是否有效
      */
@@ -0,0 +1,37 @@
+package com.danceclub.club_system.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 活動名額計數（每個有人數上限的活動一筆）
+ * 報名時以單一條件式 UPDATE（remaining > 0）原子性扣除名額，取消報名時歸還。
+ * 只透過 ActivitySeatRepository 的 UPDATE / INSERT 語句修改，不經由 entity save。
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "activity_seat")
+public class ActivitySeat {
+
+    /** 活動 ID（同時為主鍵） */
+    @Id
+    @Column(name = "activity_id")
+    private Long activityId;
+
+    /** 人數上限（與 activity.max_participants 同步） */
+    @Column(name = "capacity", nullable = false)
+    private Integer capacity;
+
+    /** 剩餘名額 */
+    @Column(name = "remaining", nullable = false)
+    private Integer remaining;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,59 @@
+package com.danceclub.club_system.model;
+
+import com.danceclub.club_system.model.enums.EcpayInboxStatus;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 綠界付款通知收件匣
+ * 通知驗證 CheckMacValue 後原樣寫入（MerchantTradeNo + TradeNo 唯一，重送的通知不會再寫入），
+ * 立即回應 1|OK，再由 EcpayNotifyInbox 的背景執行緒套用到繳費與報名紀錄。
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "ecpay_inbox",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"merchant_trade_no", "trade_no"}),
+        indexes = @Index(name = "idx_ecpay_inbox_status", columnList = "status, id"))
+public class EcpayInboxEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "merchant_trade_no", nullable = false, length = 50)
+    private String merchantTradeNo;
+
+    /** 綠界交易編號（通知未帶時為空字串） */
+    @Column(name = "trade_no", nullable = false, length = 50)
+    private String tradeNo;
+
+    @Column(name = "rtn_code", length = 10)
+    private String rtnCode;
+
+    /** 通知原始參數（JSON，含 CheckMacValue） */
+    @Column(name = "payload", nullable = false, columnDefinition = "TEXT")
+    private String payload;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    private EcpayInboxStatus status = EcpayInboxStatus.PENDING;
+
+    /** 套用失敗次數 */
+    @Column(name = "attempts", nullable = false)
+    private Integer attempts = 0;
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    @Column(name = "received_at", nullable = false, updatable = false)
+    private LocalDateTime receivedAt;
+
+    @Column(name = "processed_at")
+    private LocalDateTime processedAt;
+}
@@ -0,0 +1,43 @@
+package com.danceclub.club_system.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Idempotency-Key 對應的原始回應
+ * 客戶端重送相同 key 的請求時直接回放這裡的回應，不再重新執行報名／建立繳費。
+ * 記憶體快取失效（重啟、被擠出）時才會查這張表，過期資料由排程清除。
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "idempotency_record")
+public class IdempotencyRecord {
+
+    /** 作用範圍 + key，例如 "POST /api/registrations|3f2a..." */
+    @Id
+    @Column(name = "record_key", length = 300)
+    private String recordKey;
+
+    /** 請求內容的 SHA-256，用來拒絕同一個 key 搭配不同內容 */
+    @Column(name = "request_hash", nullable = false, length = 64)
+    private String requestHash;
+
+    @Column(name = "status_code", nullable = false)
+    private Integer statusCode;
+
+    /** 原始回應 JSON */
+    @Column(name = "response_body", columnDefinition = "TEXT")
+    private String responseBody;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+}
@@ -0,0 +1,36 @@
+package com.danceclub.club_system.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 抽籤活動的參加登記（每個會員每個活動最多一筆）
+ * 報名期間只新增、不檢查名額；截止後由 LotteryService 一次抽出中籤者，
+ * 中籤者寫入正式報名、其餘依抽籤順序進入候補名單，登記紀錄保留作為抽籤依據。
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "activity_lottery_entry",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"activity_id", "user_id"}))
+public class LotteryEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "activity_id", nullable = false)
+    private Long activityId;
+
+    @Column(name = "user_id", nullable = false)
+    private String userId;
+
+    /** 登記時間 */
+    @Column(name = "entered_at", nullable = false, updatable = false)
+    private LocalDateTime enteredAt;
+}
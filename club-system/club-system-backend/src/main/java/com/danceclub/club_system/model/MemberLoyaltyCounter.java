@@ -0,0 +1,37 @@
+package com.danceclub.club_system.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 會員忠誠獎勵計數（每位會員一筆）
+ * 只記錄已發放的忠誠券數量，出席場次以 member_stats.attended_count 為準；
+ * 同一會員的出席事件以這一列的列鎖依序處理。
+ * 第一次使用時由既有優惠券數量初始化（initialized = true 之後只做累加）。
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "member_loyalty_counter")
+public class MemberLoyaltyCounter {
+
+    @Id
+    @Column(name = "user_id")
+    private String userId;
+
+    /** 已發放的忠誠券數量（初始化時取該會員既有的優惠券總數） */
+    @Column(name = "loyalty_coupons_issued", nullable = false)
+    private Integer loyaltyCouponsIssued;
+
+    /** 是否已由歷史資料初始化 */
+    @Column(name = "initialized", nullable = false)
+    private Boolean initialized;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,54 @@
+package com.danceclub.club_system.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 會員出席統計（每位會員一筆）
+ * 由簽到、取消報名、缺席標記、繳費完成在同一交易中以增量更新，查詢會員統計只需讀取單列。
+ * 只透過 MemberStatsRepository 的 UPSERT 語句修改；資料不一致時可由管理員重建。
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "member_stats")
+public class MemberStats {
+
+    @Id
+    @Column(name = "user_id")
+    private String userId;
+
+    /** 出席場次（ATTENDED，含遲到） */
+    @Column(name = "attended_count", nullable = false)
+    private Integer attendedCount;
+
+    /** 缺席場次（ABSENT） */
+    @Column(name = "absent_count", nullable = false)
+    private Integer absentCount;
+
+    /** 遲到場次（ATTENDED 且 is_late） */
+    @Column(name = "late_count", nullable = false)
+    private Integer lateCount;
+
+    /** 取消報名次數（CANCELLED） */
+    @Column(name = "cancelled_count", nullable = false)
+    private Integer cancelledCount;
+
+    /** 累計已繳金額（繳費狀態為 PAID 的報名金額合計，取消退款後扣回） */
+    @Column(name = "total_paid", nullable = false, precision = 12, scale = 2)
+    private BigDecimal totalPaid;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    /** 尚無統計列的會員（沒有任何報名紀錄） */
+    public static MemberStats empty(String userId) {
+        return new MemberStats(userId, 0, 0, 0, 0, BigDecimal.ZERO, null);
+    }
+}
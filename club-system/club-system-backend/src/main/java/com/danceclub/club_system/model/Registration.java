@@ -4,6 +4,7 @@ package com.danceclub.club_system.model;
 import com.danceclub.club_system.model.enums.DiscountType;
 import com.danceclub.club_system.model.enums.PaymentStatus;
 import com.danceclub.club_system.model.enums.RegistrationStatus;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.NotNull;
@@ -19,7 +20,8 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table(name = "activity_registration")
+@Table(name = "activity_registration",
+        indexes = @Index(name = "idx_registration_time_id", columnList = "registration_time, id"))
 public class Registration {
 
     //基本資料
@@ -94,6 +96,11 @@ public class Registration {
     @Column(name = "is_late",nullable = true)
     public Boolean isLate;
 
+    //是否已計入忠誠獎勵出席場次（只供 DiscountService.recordAttendance 使用）//
+    @JsonIgnore
+    @Column(name = "loyalty_counted", nullable = true)
+    private Boolean loyaltyCounted;
+
     //====創建時間====//
     @Column(name = "created_at",nullable = false)
     private LocalDateTime createdAt;
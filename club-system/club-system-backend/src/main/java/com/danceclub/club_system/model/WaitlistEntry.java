@@ -0,0 +1,41 @@
+package com.danceclub.club_system.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 活動候補名單（每個會員每個活動最多一筆）
+ * 以自增 id 作為排隊順序（FIFO），遞補或離開候補時直接刪除該筆。
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "activity_waitlist",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"activity_id", "user_id"}),
+        indexes = @Index(name = "idx_waitlist_activity", columnList = "activity_id, id"))
+public class WaitlistEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "activity_id", nullable = false)
+    private Long activityId;
+
+    @Column(name = "user_id", nullable = false)
+    private String userId;
+
+    /** 加入候補時間 */
+    @Column(name = "joined_at", nullable = false, updatable = false)
+    private LocalDateTime joinedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        joinedAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,23 @@
+package com.danceclub.club_system.model.enums;
+
+/**
+ * 綠界通知收件匣處理狀態
+ * PENDING - 已收到、待套用
+ * APPLIED - 已套用到繳費 / 報名
+ * FAILED  - 重試次數用盡，需人工處理
+ */
+public enum EcpayInboxStatus {
+    PENDING("待處理"),
+    APPLIED("已套用"),
+    FAILED("處理失敗");
+
+    private final String displayName;
+
+    EcpayInboxStatus(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+}
@@ -0,0 +1,20 @@
+package com.danceclub.club_system.model.enums;
+
+/**
+ * 活動報名方式列舉
+ */
+public enum RegistrationMode {
+
+    FIRST_COME("先搶先贏"),
+    LOTTERY("抽籤");
+
+    private final String displayName;
+
+    RegistrationMode(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+}
@@ -1,9 +1,14 @@
 package com.danceclub.club_system.repository;
 
+import com.danceclub.club_system.dto.ActivitySummary;
+import com.danceclub.club_system.dto.ActivityWithStatsDTO;
 import com.danceclub.club_system.model.Activity;
 import com.danceclub.club_system.model.enums.ActivityStatus;
 import com.danceclub.club_system.model.enums.ActivityType;
+import jakarta.transaction.Transactional;
 import org.springframework.cglib.core.Local;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -12,84 +17,150 @@ import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface ActivityRepository extends JpaRepository<Activity, Long> {
 
+    /**
+     * 列表用精簡欄位（ActivitySummary）
+     * 剩餘名額取自 activity_seat；尚未建立名額計數列時以有效報名數計算，無人數上限為 null
+     */
+    String SUMMARY_SELECT = "SELECT new com.danceclub.club_system.dto.ActivitySummary(" +
+            "a.id, a.title, a.coverImageUrl, a.startTime, a.endTime, a.registrationDeadline, " +
+            "a.location, a.feeAmount, a.activityType, a.registrationMode, a.status, a.publishedAt, a.createdAt, a.updatedAt, " +
+            "a.maxParticipants, " +
+            "CAST(CASE WHEN a.maxParticipants IS NULL THEN NULL " +
+            "ELSE COALESCE(s.remaining, a.maxParticipants - (SELECT COUNT(r) FROM Registration r " +
+            "WHERE r.activityId = a.id AND r.status <> com.danceclub.club_system.model.enums.RegistrationStatus.CANCELLED)) " +
+            "END AS Integer)) " +
+            "FROM Activity a LEFT JOIN ActivitySeat s ON s.activityId = a.id ";
+
     // TODO 1: 查詢所有已發布的活動，按開始時間升序排列
     List<Activity>findByStatusOrderByStartTimeAsc(ActivityStatus status);
 
 
-    // TODO 2: 根據活動類型和狀態查詢，按開始時間升序排列
-    List<Activity>findByActivityTypeAndStatusOrderByStartTimeAsc(
-            ActivityType activityType,
-            ActivityStatus status);
-
     // TODO 3: 查詢特定狀態的活動，按開始時間降序排列（最新的在前面）
     List<Activity>findByStatusOrderByStartTimeDesc(ActivityStatus status);
 
-    // TODO 4: 關鍵字搜尋（標題或描述）
-    @Query("SELECT a FROM Activity a WHERE (a.title LIKE CONCAT('%', :keyword, '%') OR a.description LIKE CONCAT('%', :keyword, '%')) AND a.status = :status ORDER BY a.startTime ASC")
-    List<Activity> searchByKeyword(
-            @Param("keyword") String keyword,
-            @Param("status") ActivityStatus status
+    //已結束但仍有未簽到（REGISTERED）報名的活動，分批補標記缺席用；標記後即不再符合條件
+    @Query("SELECT a.id FROM Activity a " +
+            "WHERE a.status = :status AND a.endTime < :now " +
+            "AND EXISTS (SELECT 1 FROM Registration r WHERE r.activityId = a.id " +
+            "AND r.status = com.danceclub.club_system.model.enums.RegistrationStatus.REGISTERED) " +
+            "ORDER BY a.id")
+    List<Long> findExpiredActivityIds(
+            @Param("status") ActivityStatus status,
+            @Param("now") LocalDateTime now,
+            Limit limit
     );
 
-    // TODO 5: 查詢可報名活動
-    @Query("SELECT a FROM Activity a " +
+    //活動最後更新時間（條件式 GET 的 ETag 來源，不載入整個活動）
+    @Query("SELECT a.updatedAt FROM Activity a WHERE a.id = :id")
+    Optional<LocalDateTime> findUpdatedAtById(@Param("id") Long id);
+
+    //多個活動中最晚的更新時間（多活動報名統計的 ETag 來源），沒有符合的活動時為 empty
+    @Query("SELECT MAX(a.updatedAt) FROM Activity a WHERE a.id IN :ids")
+    Optional<LocalDateTime> findMaxUpdatedAtByIds(@Param("ids") Collection<Long> ids);
+
+    //活動封面原圖網址（封面縮圖代理）
+    @Query("SELECT a.coverImageUrl FROM Activity a WHERE a.id = :id")
+    Optional<String> findCoverImageUrlById(@Param("id") Long id);
+
+    //====生命週期（ActivityLifecycleEngine）====//
+    //啟動時載入尚有時間轉換的活動（預約發布 / 已發布）
+    List<Activity> findByStatusIn(Collection<ActivityStatus> statuses);
+
+    //發布時間已到的預約活動改為已發布，回傳實際發布的活動 ID
+    @Transactional
+    @Query(value = "UPDATE activity SET status = 'PUBLISHED', updated_at = now() " +
+            "WHERE id IN (:ids) AND status = 'SCHEDULE' AND published_at <= :now " +
+            "RETURNING id", nativeQuery = true)
+    List<Long> publishDue(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+
+    //已結束的活動改為已完成，回傳實際完成的活動 ID
+    @Transactional
+    @Query(value = "UPDATE activity SET status = 'COMPLETED', updated_at = now() " +
+            "WHERE id IN (:ids) AND status = 'PUBLISHED' AND end_time <= :now " +
+            "RETURNING id", nativeQuery = true)
+    List<Long> completeDue(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+
+    //標記抽籤活動已抽籤（報名截止後、尚未抽籤才會成功；舊資料沒有截止時間時以開始時間為準），回傳 1 表示取得抽籤權
+    @Modifying
+    @Query(value = "UPDATE activity SET lottery_drawn_at = :now, lottery_seed = :seed, updated_at = :now " +
+            "WHERE id = :id AND registration_mode = 'LOTTERY' AND status = 'PUBLISHED' " +
+            "AND lottery_drawn_at IS NULL AND COALESCE(registration_deadline, start_time) <= :now", nativeQuery = true)
+    int claimLotteryDraw(@Param("id") Long id, @Param("seed") long seed, @Param("now") LocalDateTime now);
+
+    List<Activity> findByStatusOrderByCreatedAtDesc(ActivityStatus status);
+
+    //====列表精簡查詢（ActivitySummary）====//
+    @Query(SUMMARY_SELECT + "ORDER BY a.startTime ASC")
+    List<ActivitySummary> findAllSummaries();
+
+    // 根據活動類型和狀態查詢，按開始時間升序排列
+    @Query(SUMMARY_SELECT +
+            "WHERE a.activityType = :activityType AND a.status = :status " +
+            "ORDER BY a.startTime ASC")
+    List<ActivitySummary> findSummariesByTypeAndStatus(
+            @Param("activityType") ActivityType activityType,
+            @Param("status") ActivityStatus status);
+
+    // 查詢可報名活動
+    @Query(SUMMARY_SELECT +
             "WHERE a.status = :status " +
             "AND (a.registrationDeadline IS NULL OR a.registrationDeadline > :now) " +
             "AND a.startTime > :now " +
             "ORDER BY a.startTime ASC")
-    List<Activity> findRegistrableActivities(
+    List<ActivitySummary> findRegistrableSummaries(
             @Param("status") ActivityStatus status,
-            @Param("now") LocalDateTime now
-    );
-    // TODO 6: 查看近七天的活動
-    @Query("SELECT a FROM Activity a " +
+            @Param("now") LocalDateTime now);
+
+    // 查看近七天的活動
+    @Query(SUMMARY_SELECT +
             "WHERE a.startTime BETWEEN :now AND :sevenDaysLater " +
             "AND a.status = :status " +
             "ORDER BY a.startTime ASC")
-    List<Activity> findUpcomingActivities(
+    List<ActivitySummary> findUpcomingSummaries(
             @Param("status") ActivityStatus status,
             @Param("now") LocalDateTime now,
-            @Param("sevenDaysLater") LocalDateTime sevenDaysLater
-    );
-
-    @Modifying(clearAutomatically = true, flushAutomatically = true)
-    @Query("""
-            UPDATE Activity a
-            SET a.status = :newStatus
-            WHERE a.status = :currentStatus
-            AND a.endTime < :now
-            """)
-    int updateStatus(
-            @Param("currentStatus") ActivityStatus currentStatus,
-            @Param("newStatus") ActivityStatus newStatus,
-            @Param("now") LocalDateTime now
-
-    );
-
-    @Query("SELECT a.id FROM Activity a " +
-            "WHERE a.status = :status AND a.endTime < :now")
-    List<Long> findExpiredActivityIds(
-            @Param("status") ActivityStatus status,
-            @Param("now") LocalDateTime now
-    );
-
-    //查詢發布時間到的活動
-    List<Activity> findByStatusAndPublishedAtBefore(
-            ActivityStatus status,
-            LocalDateTime dateTime
-    );
+            @Param("sevenDaysLater") LocalDateTime sevenDaysLater);
 
     // 查詢某個使用者建立的所有活動，按建立時間降序排列
-    List<Activity> findByCreatedByOrderByCreatedAtDesc(String createdBy);
-
-    List<Activity> findByStatusOrderByCreatedAtDesc(ActivityStatus status);
+    @Query(SUMMARY_SELECT + "WHERE a.createdBy = :createdBy ORDER BY a.createdAt DESC")
+    List<ActivitySummary> findSummariesByCreatedBy(@Param("createdBy") String createdBy);
 
+    //依 ID 查詢（順序不保證，由呼叫端排序）
+    @Query(SUMMARY_SELECT + "WHERE a.id IN (:ids)")
+    List<ActivitySummary> findSummariesByIds(@Param("ids") Collection<Long> ids);
 
+    /**
+     * 活動列表 + 報名統計，一次 LEFT JOIN + GROUP BY 算完所有計數
+     * 已取消的報名不計入任何一項；status 為 null 時不篩選
+     */
+    @Query("""
+            SELECT new com.danceclub.club_system.dto.ActivityWithStatsDTO(
+                a.id, a.title, a.startTime, a.endTime, a.location, a.activityType,
+                a.maxParticipants, a.status, a.feeAmount, a.registrationDeadline,
+                COUNT(CASE WHEN r.status <> com.danceclub.club_system.model.enums.RegistrationStatus.CANCELLED THEN 1 END),
+                COUNT(CASE WHEN r.status <> com.danceclub.club_system.model.enums.RegistrationStatus.CANCELLED
+                           AND r.paymentStatus = com.danceclub.club_system.model.enums.PaymentStatus.PAID THEN 1 END),
+                COUNT(CASE WHEN r.status <> com.danceclub.club_system.model.enums.RegistrationStatus.CANCELLED
+                           AND r.paymentStatus IN (com.danceclub.club_system.model.enums.PaymentStatus.PENDING,
+                                                   com.danceclub.club_system.model.enums.PaymentStatus.PROCESSING,
+                                                   com.danceclub.club_system.model.enums.PaymentStatus.PENDING_REVIEW) THEN 1 END),
+                COUNT(CASE WHEN r.status <> com.danceclub.club_system.model.enums.RegistrationStatus.CANCELLED
+                           AND r.checkedIn = true THEN 1 END))
+            FROM Activity a
+            LEFT JOIN Registration r ON r.activityId = a.id
+            WHERE (:status IS NULL OR a.status = :status)
+            GROUP BY a.id
+            ORDER BY a.startTime DESC, a.id DESC
+            """)
+    List<ActivityWithStatsDTO> findWithStats(@Param("status") ActivityStatus status, Pageable pageable);
 
+    @Query("SELECT COUNT(a) FROM Activity a WHERE (:status IS NULL OR a.status = :status)")
+    long countByStatusFilter(@Param("status") ActivityStatus status);
 }
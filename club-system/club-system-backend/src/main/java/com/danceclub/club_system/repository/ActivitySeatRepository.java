@@ -0,0 +1,62 @@
+package com.danceclub.club_system.repository;
+
+import com.danceclub.club_system.model.ActivitySeat;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Repository
+public interface ActivitySeatRepository extends JpaRepository<ActivitySeat, Long> {
+
+    /**
+     * 建立名額計數列（若已存在則不動）
+     * 剩餘名額 = 上限 - 目前有效報名數，只在第一次使用時計算一次
+     */
+    @Modifying
+    @Query(value = "INSERT INTO activity_seat (activity_id, capacity, remaining, updated_at) " +
+            "SELECT :activityId, :capacity, :capacity - COUNT(*), now() " +
+            "FROM activity_registration r " +
+            "WHERE r.activity_id = :activityId AND r.status <> 'CANCELLED' " +
+            "ON CONFLICT (activity_id) DO NOTHING", nativeQuery = true)
+    int initIfAbsent(@Param("activityId") Long activityId, @Param("capacity") Integer capacity);
+
+    /**
+     * 原子性扣除一個名額
+     * @return 1 = 搶到名額；0 = 已額滿
+     */
+    @Modifying
+    @Query("UPDATE ActivitySeat s SET s.remaining = s.remaining - 1, s.updatedAt = CURRENT_TIMESTAMP " +
+            "WHERE s.activityId = :activityId AND s.remaining > 0")
+    int tryReserve(@Param("activityId") Long activityId);
+
+    /**
+     * 歸還一個名額（不會超過上限）
+     * 上限調降到低於報名數時剩餘名額可能為負數，歸還後仍可能沒有空位
+     * @return 歸還後的剩餘名額；已達上限未歸還時為空
+     */
+    @Transactional
+    @Query(value = "UPDATE activity_seat SET remaining = remaining + 1, updated_at = now() " +
+            "WHERE activity_id = :activityId AND remaining < capacity " +
+            "RETURNING remaining", nativeQuery = true)
+    List<Integer> release(@Param("activityId") Long activityId);
+
+    /** 調整人數上限，剩餘名額同步增減 */
+    @Modifying
+    @Query("UPDATE ActivitySeat s SET s.remaining = s.remaining + (:capacity - s.capacity), " +
+            "s.capacity = :capacity, s.updatedAt = CURRENT_TIMESTAMP " +
+            "WHERE s.activityId = :activityId")
+    int updateCapacity(@Param("activityId") Long activityId, @Param("capacity") Integer capacity);
+
+    /** 批次新增報名後依有效報名數重算剩餘名額 */
+    @Modifying
+    @Query(value = "UPDATE activity_seat SET remaining = GREATEST(capacity - (" +
+            "SELECT COUNT(*) FROM activity_registration r " +
+            "WHERE r.activity_id = :activityId AND r.status <> 'CANCELLED'), 0), updated_at = now() " +
+            "WHERE activity_id = :activityId", nativeQuery = true)
+    int recount(@Param("activityId") Long activityId);
+}
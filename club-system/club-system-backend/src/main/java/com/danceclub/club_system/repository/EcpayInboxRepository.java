@@ -0,0 +1,52 @@
+package com.danceclub.club_system.repository;
+
+import com.danceclub.club_system.model.EcpayInboxEntry;
+import jakarta.transaction.Transactional;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface EcpayInboxRepository extends JpaRepository<EcpayInboxEntry, Long> {
+
+    /**
+     * 寫入通知（相同 MerchantTradeNo + TradeNo 已存在則不動）
+     * @return 新增的 id；重送的通知回傳空清單
+     */
+    @Transactional
+    @Query(value = "INSERT INTO ecpay_inbox (merchant_trade_no, trade_no, rtn_code, payload, status, attempts, received_at) " +
+            "VALUES (:merchantTradeNo, :tradeNo, :rtnCode, :payload, 'PENDING', 0, :now) " +
+            "ON CONFLICT (merchant_trade_no, trade_no) DO NOTHING " +
+            "RETURNING id", nativeQuery = true)
+    List<Long> insertIfAbsent(@Param("merchantTradeNo") String merchantTradeNo,
+                              @Param("tradeNo") String tradeNo,
+                              @Param("rtnCode") String rtnCode,
+                              @Param("payload") String payload,
+                              @Param("now") LocalDateTime now);
+
+    /**
+     * 鎖定待處理的通知；已處理或正由其他執行緒處理時回傳 empty
+     */
+    @Query(value = "SELECT * FROM ecpay_inbox WHERE id = :id AND status = 'PENDING' " +
+            "FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    Optional<EcpayInboxEntry> lockPending(@Param("id") Long id);
+
+    //收到後一段時間仍未套用的通知（重啟遺失、套用失敗待重試）
+    @Query(value = "SELECT id FROM ecpay_inbox WHERE status = 'PENDING' AND received_at < :before " +
+            "ORDER BY id LIMIT :limit", nativeQuery = true)
+    List<Long> findStalePendingIds(@Param("before") LocalDateTime before, @Param("limit") int limit);
+
+    /** 記錄一次套用失敗，達到重試上限時標記為 FAILED */
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE ecpay_inbox SET attempts = attempts + 1, last_error = :error, " +
+            "status = CASE WHEN attempts + 1 >= :maxAttempts THEN 'FAILED' ELSE status END " +
+            "WHERE id = :id AND status = 'PENDING'", nativeQuery = true)
+    int recordFailure(@Param("id") Long id, @Param("error") String error, @Param("maxAttempts") int maxAttempts);
+}
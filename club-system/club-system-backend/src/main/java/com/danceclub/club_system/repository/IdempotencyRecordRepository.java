@@ -0,0 +1,41 @@
+package com.danceclub.club_system.repository;
+
+import com.danceclub.club_system.model.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+
+    /**
+     * 寫入回應紀錄；同一個 key 已有未過期的紀錄時不覆蓋（保留先寫入的版本）
+     * @return 1 = 寫入成功；0 = 已有其他請求先寫入
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO idempotency_record " +
+            "(record_key, request_hash, status_code, response_body, created_at, expires_at) " +
+            "VALUES (:recordKey, :requestHash, :statusCode, :responseBody, :createdAt, :expiresAt) " +
+            "ON CONFLICT (record_key) DO UPDATE SET request_hash = EXCLUDED.request_hash, " +
+            "status_code = EXCLUDED.status_code, response_body = EXCLUDED.response_body, " +
+            "created_at = EXCLUDED.created_at, expires_at = EXCLUDED.expires_at " +
+            "WHERE idempotency_record.expires_at < EXCLUDED.created_at", nativeQuery = true)
+    int insertIfAbsent(@Param("recordKey") String recordKey, @Param("requestHash") String requestHash,
+                       @Param("statusCode") int statusCode, @Param("responseBody") String responseBody,
+                       @Param("createdAt") LocalDateTime createdAt, @Param("expiresAt") LocalDateTime expiresAt);
+
+    /**
+     * 刪除已過期的紀錄
+     * @return 刪除筆數
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.expiresAt < :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
@@ -0,0 +1,90 @@
+package com.danceclub.club_system.repository;
+
+import com.danceclub.club_system.model.LotteryEntry;
+import jakarta.transaction.Transactional;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 抽籤登記
+ * 抽籤名次 = md5(種子 + ':' + 會員ID) 由小到大，中籤寫入與候補寫入使用同一排序，
+ * 因此同一份登記名單與種子一定得到相同結果。
+ */
+@Repository
+public interface LotteryEntryRepository extends JpaRepository<LotteryEntry, Long> {
+
+    long countByActivityId(Long activityId);
+
+    boolean existsByActivityIdAndUserId(Long activityId, String userId);
+
+    /**
+     * 登記抽籤（已登記則不動）
+     * @return 1 = 登記成功；0 = 已登記過
+     */
+    @Modifying
+    @Query(value = "INSERT INTO activity_lottery_entry (activity_id, user_id, entered_at) " +
+            "VALUES (:activityId, :userId, :now) " +
+            "ON CONFLICT (activity_id, user_id) DO NOTHING", nativeQuery = true)
+    int enter(@Param("activityId") Long activityId, @Param("userId") String userId,
+              @Param("now") LocalDateTime now);
+
+    /**
+     * 依抽籤名次取前 seats 位寫入正式報名（已有報名紀錄、帳號已刪除的登記略過）
+     * 金額依會員角色二選一：幹部 / 一般會員的折扣結果由呼叫端先算好
+     * @return 新增的報名 ID
+     */
+    @Transactional
+    @Query(value = "WITH winners AS (" +
+            "  SELECT e.user_id, lower(u.role) = 'officer' AS officer " +
+            "  FROM activity_lottery_entry e JOIN \"user\" u ON u.id = e.user_id " +
+            "  WHERE e.activity_id = :activityId " +
+            "    AND NOT EXISTS (SELECT 1 FROM activity_registration r " +
+            "                    WHERE r.activity_id = e.activity_id AND r.user_id = e.user_id) " +
+            "  ORDER BY md5(:seed || ':' || e.user_id) " +
+            "  LIMIT :seats) " +
+            "INSERT INTO activity_registration (activity_id, user_id, status, registration_time, " +
+            "  discount_type, original_amount, payment_status, payment_amount, checked_in, created_at, updated_at) " +
+            "SELECT :activityId, w.user_id, 'REGISTERED', :now, " +
+            "  CASE WHEN w.officer THEN :officerDiscount ELSE :memberDiscount END, " +
+            "  CASE WHEN w.officer THEN :officerOriginal ELSE :memberOriginal END, " +
+            "  CASE WHEN w.officer THEN :officerPaymentStatus ELSE :memberPaymentStatus END, " +
+            "  CASE WHEN w.officer THEN :officerAmount ELSE :memberAmount END, " +
+            "  false, :now, :now " +
+            "FROM winners w " +
+            "RETURNING id", nativeQuery = true)
+    List<Long> admitWinners(@Param("activityId") Long activityId,
+                            @Param("seed") String seed,
+                            @Param("seats") int seats,
+                            @Param("memberDiscount") String memberDiscount,
+                            @Param("memberOriginal") BigDecimal memberOriginal,
+                            @Param("memberPaymentStatus") String memberPaymentStatus,
+                            @Param("memberAmount") BigDecimal memberAmount,
+                            @Param("officerDiscount") String officerDiscount,
+                            @Param("officerOriginal") BigDecimal officerOriginal,
+                            @Param("officerPaymentStatus") String officerPaymentStatus,
+                            @Param("officerAmount") BigDecimal officerAmount,
+                            @Param("now") LocalDateTime now);
+
+    /**
+     * 未中籤的登記依抽籤名次寫入候補名單（候補 id 依插入順序遞增，即為遞補順序）
+     * @return 寫入候補的人數
+     */
+    @Modifying
+    @Query(value = "INSERT INTO activity_waitlist (activity_id, user_id, joined_at) " +
+            "SELECT e.activity_id, e.user_id, :now " +
+            "FROM activity_lottery_entry e JOIN \"user\" u ON u.id = e.user_id " +
+            "WHERE e.activity_id = :activityId " +
+            "  AND NOT EXISTS (SELECT 1 FROM activity_registration r " +
+            "                  WHERE r.activity_id = e.activity_id AND r.user_id = e.user_id) " +
+            "ORDER BY md5(:seed || ':' || e.user_id) " +
+            "ON CONFLICT (activity_id, user_id) DO NOTHING", nativeQuery = true)
+    int waitlistRest(@Param("activityId") Long activityId, @Param("seed") String seed,
+                     @Param("now") LocalDateTime now);
+}
@@ -0,0 +1,29 @@
+package com.danceclub.club_system.repository;
+
+import com.danceclub.club_system.model.MemberLoyaltyCounter;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface MemberLoyaltyCounterRepository extends JpaRepository<MemberLoyaltyCounter, String> {
+
+    /** 建立計數列（若已存在則不動），之後再以 lockByUserId 取得列鎖 */
+    @Modifying
+    @Query(value = "INSERT INTO member_loyalty_counter " +
+            "(user_id, loyalty_coupons_issued, initialized, updated_at) " +
+            "VALUES (:userId, 0, false, now()) " +
+            "ON CONFLICT (user_id) DO NOTHING", nativeQuery = true)
+    int insertIfAbsent(@Param("userId") String userId);
+
+    /** 鎖定會員計數列，同一會員的出席事件依序處理 */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM MemberLoyaltyCounter c WHERE c.userId = :userId")
+    Optional<MemberLoyaltyCounter> lockByUserId(@Param("userId") String userId);
+}
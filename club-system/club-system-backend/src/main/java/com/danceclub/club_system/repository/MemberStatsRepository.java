@@ -0,0 +1,60 @@
+package com.danceclub.club_system.repository;
+
+import com.danceclub.club_system.model.MemberStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+
+@Repository
+public interface MemberStatsRepository extends JpaRepository<MemberStats, String> {
+
+    /**
+     * 累加會員統計（統計列不存在時以增量值建立）
+     * 單一 UPSERT 語句，同一會員的併發更新由資料庫列鎖排序，不會遺失計數
+     */
+    @Modifying
+    @Query(value = "INSERT INTO member_stats " +
+            "(user_id, attended_count, absent_count, late_count, cancelled_count, total_paid, updated_at) " +
+            "VALUES (:userId, :attended, :absent, :late, :cancelled, :paid, now()) " +
+            "ON CONFLICT (user_id) DO UPDATE SET " +
+            "attended_count = member_stats.attended_count + EXCLUDED.attended_count, " +
+            "absent_count = member_stats.absent_count + EXCLUDED.absent_count, " +
+            "late_count = member_stats.late_count + EXCLUDED.late_count, " +
+            "cancelled_count = member_stats.cancelled_count + EXCLUDED.cancelled_count, " +
+            "total_paid = member_stats.total_paid + EXCLUDED.total_paid, " +
+            "updated_at = now()", nativeQuery = true)
+    int applyDelta(@Param("userId") String userId,
+                   @Param("attended") int attended,
+                   @Param("absent") int absent,
+                   @Param("late") int late,
+                   @Param("cancelled") int cancelled,
+                   @Param("paid") BigDecimal paid);
+
+    /** 重建期間鎖住統計表，暫停增量更新（讀取不受影響） */
+    @Modifying
+    @Query(value = "LOCK TABLE member_stats IN EXCLUSIVE MODE", nativeQuery = true)
+    void lockTable();
+
+    @Modifying
+    @Query(value = "DELETE FROM member_stats", nativeQuery = true)
+    int deleteAllRows();
+
+    /** 由報名紀錄一次重新計算所有會員的統計 */
+    @Modifying
+    @Query(value = "INSERT INTO member_stats " +
+            "(user_id, attended_count, absent_count, late_count, cancelled_count, total_paid, updated_at) " +
+            "SELECT r.user_id, " +
+            "COUNT(*) FILTER (WHERE r.status = 'ATTENDED'), " +
+            "COUNT(*) FILTER (WHERE r.status = 'ABSENT'), " +
+            "COUNT(*) FILTER (WHERE r.status = 'ATTENDED' AND r.is_late = true), " +
+            "COUNT(*) FILTER (WHERE r.status = 'CANCELLED'), " +
+            "COALESCE(SUM(r.payment_amount) FILTER (WHERE r.payment_status = 'PAID'), 0), " +
+            "now() " +
+            "FROM activity_registration r " +
+            "GROUP BY r.user_id", nativeQuery = true)
+    int insertFromRegistrations();
+}
@@ -1,16 +1,23 @@
 package com.danceclub.club_system.repository;
 
+import com.danceclub.club_system.dto.PaymentResponse;
 import com.danceclub.club_system.model.Payment;
 import com.danceclub.club_system.model.enums.PaymentMethod;
 import com.danceclub.club_system.model.enums.PaymentStatus;
 import com.danceclub.club_system.model.enums.PaymentType;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -155,7 +162,94 @@ public interface PaymentRepository extends JpaRepository<Payment, Long> {
      * @return Optional containing the payment if found
      */
     Optional<Payment> findByMerchantTradeNo(String merchantTradeNo);
+
+    /**
+     * Find payment by id and lock the row until the transaction ends
+     * Notifications for the same payment are applied one at a time
+     * @param id the payment id
+     * @return Optional containing the locked payment if found
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM Payment p WHERE p.id = :id")
+    Optional<Payment> lockById(@Param("id") Long id);
     
+    /**
+     * Admin payment listing: one query joining payment, registration and user, mapped straight to PaymentResponse
+     * Null filters are ignored; the time range [from, to) on createdAt must not be null (callers pass extremes)
+     * keyword matches user name, user id or email (lower-cased LIKE pattern built by the caller, escaped with \\)
+     * @param pageable page, size and sort (properties of Payment, alias p)
+     * @return one page of payments with payer info
+     */
+    @Query(ADMIN_PAGE_SELECT + ADMIN_PAGE_FILTER)
+    List<PaymentResponse> findAdminPage(@Param("status") PaymentStatus status,
+                                        @Param("method") PaymentMethod method,
+                                        @Param("from") LocalDateTime from,
+                                        @Param("to") LocalDateTime to,
+                                        @Param("activityId") Long activityId,
+                                        @Param("userId") String userId,
+                                        @Param("keyword") String keyword,
+                                        Pageable pageable);
+
+    /**
+     * Count payments matching the admin listing filters
+     */
+    @Query("SELECT COUNT(p) " + ADMIN_PAGE_FILTER)
+    long countAdminPage(@Param("status") PaymentStatus status,
+                        @Param("method") PaymentMethod method,
+                        @Param("from") LocalDateTime from,
+                        @Param("to") LocalDateTime to,
+                        @Param("activityId") Long activityId,
+                        @Param("userId") String userId,
+                        @Param("keyword") String keyword);
+
+    String ADMIN_PAGE_SELECT = """
+            SELECT new com.danceclub.club_system.dto.PaymentResponse(
+                p.id, r.id, p.paymentType, p.originalAmount, p.amount, p.discountAmount,
+                p.discountReason, p.status, p.method, p.paidAt, p.reviewedBy, p.reviewedAt,
+                p.reviewNote, p.note, p.bankAccountProof, p.merchantTradeNo, p.ecpayTradeNo,
+                p.paymentDeadline, p.atmAccount, p.atmBankCode, p.cvsPaymentCode, p.cvsType,
+                p.failureReason, p.createdAt, p.updatedAt, r.userId, u.name, u.email)
+            """;
+
+    String ADMIN_PAGE_FILTER = """
+            FROM Payment p
+            LEFT JOIN p.registration r
+            LEFT JOIN User u ON u.id = r.userId
+            WHERE (:status IS NULL OR p.status = :status)
+            AND (:method IS NULL OR p.method = :method)
+            AND p.createdAt >= :from AND p.createdAt < :to
+            AND (:activityId IS NULL OR r.activityId = :activityId)
+            AND (:userId IS NULL OR r.userId = :userId)
+            AND (:keyword IS NULL OR LOWER(u.name) LIKE :keyword ESCAPE '\\'
+                 OR LOWER(r.userId) LIKE :keyword ESCAPE '\\' OR LOWER(u.email) LIKE :keyword ESCAPE '\\')
+            """;
+
+    /**
+     * Page through unsettled ECPay payments for reconciliation, ordered by id (keyset paging)
+     * Status changes made while reconciling do not shift later pages
+     * @param statuses the statuses to reconcile (PENDING / PROCESSING)
+     * @param updatedBefore only payments not touched since this time (skip checkouts still in progress)
+     * @param afterId the last id of the previous page (0 for the first page)
+     * @param limit the page size
+     * @return id, merchant trade number and payment deadline of each payment
+     */
+    @Query("SELECT p.id AS id, p.merchantTradeNo AS merchantTradeNo, p.paymentDeadline AS paymentDeadline FROM Payment p " +
+            "WHERE p.status IN :statuses AND p.merchantTradeNo IS NOT NULL " +
+            "AND p.updatedAt < :updatedBefore AND p.id > :afterId ORDER BY p.id")
+    List<EcpayTradeRef> findEcpayTradesAfter(@Param("statuses") Collection<PaymentStatus> statuses,
+                                             @Param("updatedBefore") LocalDateTime updatedBefore,
+                                             @Param("afterId") Long afterId,
+                                             Limit limit);
+
+    /**
+     * Payment id, ECPay merchant trade number and payment deadline (null when none was set)
+     */
+    interface EcpayTradeRef {
+        Long getId();
+        String getMerchantTradeNo();
+        LocalDateTime getPaymentDeadline();
+    }
+
     /**
      * Find payment by ECPay trade number
      * @param ecpayTradeNo the ECPay trade number
@@ -176,4 +270,25 @@ public interface PaymentRepository extends JpaRepository<Payment, Long> {
      */
     @Query("SELECT p FROM Payment p WHERE p.status = 'PENDING' AND p.paymentDeadline IS NOT NULL AND p.paymentDeadline < CURRENT_TIMESTAMP")
     List<Payment> findExpiredPendingPayments();
+
+    /**
+     * Create activity fee payments for registrations inserted in bulk (lottery winners)
+     * Amounts and discount come from the registration rows; registrations that need no payment are skipped
+     * @param registrationIds the registrations to create payments for
+     * @param deadline the payment deadline
+     * @param now the creation time
+     * @return number of payments created
+     */
+    @Modifying
+    @Query(value = "INSERT INTO payment (registration_id, payment_type, original_amount, amount, " +
+            "discount_amount, discount_reason, status, payment_deadline, note, created_at, updated_at) " +
+            "SELECT r.id, 'ACTIVITY_FEE', r.original_amount, r.payment_amount, " +
+            "r.original_amount - r.payment_amount, " +
+            "CASE WHEN r.original_amount > r.payment_amount THEN r.discount_type END, " +
+            "'PENDING', :deadline, '系統自動建立', :now, :now " +
+            "FROM activity_registration r " +
+            "WHERE r.id IN (:registrationIds) AND r.payment_status = 'PENDING'", nativeQuery = true)
+    int createActivityFeePayments(@Param("registrationIds") Collection<Long> registrationIds,
+                                  @Param("deadline") LocalDateTime deadline,
+                                  @Param("now") LocalDateTime now);
 }
@@ -4,16 +4,22 @@ import com.danceclub.club_system.model.Registration;
 import com.danceclub.club_system.model.enums.ActivityStatus;
 import com.danceclub.club_system.model.enums.PaymentStatus;
 import com.danceclub.club_system.model.enums.RegistrationStatus;
+import jakarta.persistence.QueryHint;
 import jakarta.transaction.Transactional;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface RegistrationRepository extends JpaRepository<Registration, Long> {
@@ -29,14 +35,58 @@ public interface RegistrationRepository extends JpaRepository<Registration, Long
             String userId
     );
 
+    //2-1.一次查詢多位會員對某活動的報名紀錄(批次簽到)
+    List<Registration> findByActivityIdAndUserIdIn(
+            Long activityId,
+            Collection<String> userIds
+    );
+
     //(only管理員端)
     //3.查詢某個活動的報名紀錄，按照報名時間做生續排列
     List<Registration>findByActivityIdOrderByRegistrationTimeAsc(
             Long activityId
     );
 
-    //查詢所有有效報名紀錄
-    List<Registration> findByStatusNot(RegistrationStatus status);
+    //查詢報名紀錄（管理員清單，keyset 分頁）
+    //依 (registration_time, id) 由新到舊；cursorTime/cursorId 為上一頁最後一筆（第一頁傳極大值）
+    //時間區間 [from, to) 不可為 null（不限時由呼叫端帶入極值）；status 為 null 時排除已取消的報名
+    @Query("SELECT r FROM Registration r " +
+            "WHERE (:activityId IS NULL OR r.activityId = :activityId) " +
+            "AND ((:status IS NULL AND r.status <> 'CANCELLED') OR r.status = :status) " +
+            "AND r.registrationTime >= :from AND r.registrationTime < :to " +
+            "AND (r.registrationTime, r.id) < (:cursorTime, :cursorId) " +
+            "ORDER BY r.registrationTime DESC, r.id DESC")
+    List<Registration> findPageAfter(@Param("activityId") Long activityId,
+                                     @Param("status") RegistrationStatus status,
+                                     @Param("from") LocalDateTime from,
+                                     @Param("to") LocalDateTime to,
+                                     @Param("cursorTime") LocalDateTime cursorTime,
+                                     @Param("cursorId") Long cursorId,
+                                     Limit limit);
+
+    //串流查詢報名紀錄（NDJSON 匯出），以 fetch size 分批從資料庫讀取，必須在交易中使用並關閉 Stream
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT r FROM Registration r " +
+            "WHERE (:activityId IS NULL OR r.activityId = :activityId) " +
+            "AND ((:status IS NULL AND r.status <> 'CANCELLED') OR r.status = :status) " +
+            "AND r.registrationTime >= :from AND r.registrationTime < :to " +
+            "ORDER BY r.registrationTime DESC, r.id DESC")
+    Stream<Registration> streamFiltered(@Param("activityId") Long activityId,
+                                        @Param("status") RegistrationStatus status,
+                                        @Param("from") LocalDateTime from,
+                                        @Param("to") LocalDateTime to);
+
+    /**
+     * 查詢某會員的所有報名，連同活動與繳費紀錄一次取回（單一 SQL，避免逐筆查詢）
+     * 每列為 [Registration, Activity, Payment]，Activity（活動已刪除）與 Payment 可能為 null；
+     * 同一筆報名有多筆繳費紀錄時會出現多列，依 payment id 降序排列，呼叫端取第一列即可
+     */
+    @Query("SELECT r, a, p FROM Registration r " +
+            "LEFT JOIN Activity a ON a.id = r.activityId " +
+            "LEFT JOIN Payment p ON p.registration = r " +
+            "WHERE r.userId = :userId " +
+            "ORDER BY r.registrationTime DESC, p.id DESC")
+    List<Object[]> findUserRegistrationsWithActivityAndPayment(@Param("userId") String userId);
 
     //====狀態查詢====//
 
@@ -94,17 +144,60 @@ public interface RegistrationRepository extends JpaRepository<Registration, Long
 
 
 
+    //====忠誠獎勵出席計數====//
+
+    //將單筆出席標記為已計入（已計入或非出席狀態則回傳 0）
     @Modifying
-    @Transactional
-    @Query("UPDATE Registration r SET r.status = :absent " +
-            "WHERE r.activityId IN :activityIds " +
-            "AND r.status = :registered")
-    int markAbsentByActivityIds(
-            @Param("activityIds") List<Long> activityIds,
-            @Param("registered") RegistrationStatus registered,
-            @Param("absent") RegistrationStatus absent
-    );
+    @Query("UPDATE Registration r SET r.loyaltyCounted = true " +
+            "WHERE r.id = :id AND r.status = 'ATTENDED' " +
+            "AND (r.loyaltyCounted IS NULL OR r.loyaltyCounted = false)")
+    int markLoyaltyCounted(@Param("id") Long id);
+
+    //將會員所有尚未計入的出席標記為已計入（初始化計數用），回傳筆數
+    @Modifying
+    @Query("UPDATE Registration r SET r.loyaltyCounted = true " +
+            "WHERE r.userId = :userId AND r.status = 'ATTENDED' " +
+            "AND (r.loyaltyCounted IS NULL OR r.loyaltyCounted = false)")
+    int markAllLoyaltyCounted(@Param("userId") String userId);
 
-    /** 計算某會員指定狀態的報名筆數（用於忠誠優惠券門檻計算） */
-    long countByUserIdAndStatus(String userId, RegistrationStatus status);
+    //查詢某段期間簽到但尚未計入忠誠獎勵的出席（補處理遺漏的事件）
+    @Query("SELECT r FROM Registration r " +
+            "WHERE r.status = 'ATTENDED' " +
+            "AND (r.loyaltyCounted IS NULL OR r.loyaltyCounted = false) " +
+            "AND r.checkInTime BETWEEN :from AND :to")
+    List<Registration> findUncountedAttendance(@Param("from") LocalDateTime from,
+                                               @Param("to") LocalDateTime to);
+
+    //將已結束活動中未簽到的報名標記為缺席，回傳每位會員被標記的筆數（user_id, count），供會員統計累加
+    @Transactional
+    @Query(value = "WITH marked AS (" +
+            "UPDATE activity_registration SET status = 'ABSENT', updated_at = now() " +
+            "WHERE activity_id IN (:activityIds) AND status = 'REGISTERED' " +
+            "RETURNING user_id) " +
+            "SELECT user_id, COUNT(*) FROM marked GROUP BY user_id", nativeQuery = true)
+    List<Object[]> markAbsentByActivityIds(@Param("activityIds") List<Long> activityIds);
+
+    //活動報名統計摘要：每個活動一列（activity_id, 有效報名, 已繳費, 待繳費, 已簽到, 已取消），沒有報名的活動不會出現
+    @Query(value = "SELECT activity_id, " +
+            "COUNT(*) FILTER (WHERE status <> 'CANCELLED'), " +
+            "COUNT(*) FILTER (WHERE payment_status = 'PAID'), " +
+            "COUNT(*) FILTER (WHERE payment_status = 'PENDING'), " +
+            "COUNT(*) FILTER (WHERE checked_in), " +
+            "COUNT(*) FILTER (WHERE status = 'CANCELLED') " +
+            "FROM activity_registration " +
+            "WHERE activity_id IN (:activityIds) " +
+            "GROUP BY activity_id", nativeQuery = true)
+    List<Object[]> summarizeByActivityIds(@Param("activityIds") Collection<Long> activityIds);
+
+    //報名名單的版本（報名筆數, 報名最後更新時間, 報名會員最後更新時間），條件式 GET 的 ETag 來源，只回傳一列
+    @Query("SELECT COUNT(r), MAX(r.updatedAt), MAX(u.updatedAt) FROM Registration r " +
+            "LEFT JOIN User u ON u.id = r.userId " +
+            "WHERE r.activityId = :activityId")
+    List<Object[]> findVersionByActivityId(@Param("activityId") Long activityId);
+
+    //多個活動報名名單的合併版本（欄位同 findVersionByActivityId），只回傳一列
+    @Query("SELECT COUNT(r), MAX(r.updatedAt), MAX(u.updatedAt) FROM Registration r " +
+            "LEFT JOIN User u ON u.id = r.userId " +
+            "WHERE r.activityId IN :activityIds")
+    List<Object[]> findVersionByActivityIds(@Param("activityIds") Collection<Long> activityIds);
 }
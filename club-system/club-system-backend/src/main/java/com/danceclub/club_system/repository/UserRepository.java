@@ -3,8 +3,10 @@ package com.danceclub.club_system.repository;
 import com.danceclub.club_system.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -45,6 +47,14 @@ public interface UserRepository extends JpaRepository<User, String> {
      * @return list of users with the given role
      */
     List<User> findByRole(String role);
+
+    /**
+     * Find users by a batch of IDs in a single query
+     * @param ids the user IDs to look up
+     * @return list of users found (missing IDs are simply absent)
+     */
+    @Query("SELECT u FROM User u WHERE u.id IN :ids")
+    List<User> findByIdIn(@Param("ids") Collection<String> ids);
     
     /**
      * Find the maximum user ID for ID generation
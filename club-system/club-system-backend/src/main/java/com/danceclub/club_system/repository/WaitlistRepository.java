@@ -0,0 +1,38 @@
+package com.danceclub.club_system.repository;
+
+import com.danceclub.club_system.model.WaitlistEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface WaitlistRepository extends JpaRepository<WaitlistEntry, Long> {
+
+    //啟動時重建記憶體索引用，依活動、排隊順序排列
+    List<WaitlistEntry> findAllByOrderByActivityIdAscIdAsc();
+
+    //某活動的候補名單（排隊順序）
+    List<WaitlistEntry> findByActivityIdOrderByIdAsc(Long activityId);
+
+    //候補名單第一位
+    Optional<WaitlistEntry> findFirstByActivityIdOrderByIdAsc(Long activityId);
+
+    boolean existsByActivityIdAndUserId(Long activityId, String userId);
+
+    /**
+     * 刪除候補紀錄
+     * @return 1 = 刪除成功；0 = 已被其他交易移除
+     */
+    @Modifying
+    @Query("DELETE FROM WaitlistEntry w WHERE w.id = :id")
+    int deleteEntry(@Param("id") Long id);
+
+    @Modifying
+    @Query("DELETE FROM WaitlistEntry w WHERE w.activityId = :activityId AND w.userId = :userId")
+    int deleteByActivityIdAndUserId(@Param("activityId") Long activityId, @Param("userId") String userId);
+}
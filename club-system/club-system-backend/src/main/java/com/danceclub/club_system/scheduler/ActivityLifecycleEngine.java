@@ -0,0 +1,217 @@
+package com.danceclub.club_system.scheduler;
+
+import com.danceclub.club_system.model.Activity;
+import com.danceclub.club_system.model.enums.ActivityStatus;
+import com.danceclub.club_system.repository.ActivityRepository;
+import com.danceclub.club_system.service.ActivityChangedEvent;
+import com.danceclub.club_system.service.ActivityService;
+import com.danceclub.club_system.service.LotteryService;
+import com.danceclub.club_system.service.RegistrationService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 活動生命週期引擎
+ * 取代每分鐘掃描 activity 表的排程：把即將發生的時間轉換（預約發布、報名截止、活動開始、活動結束）
+ * 放在記憶體的階層式時間輪，每秒推進一次，只有到期時才執行對應的批次 UPDATE，平時不查詢資料庫。
+ *
+ * - 預約發布：SCHEDULE → PUBLISHED
+ * - 報名截止 / 活動開始：狀態不變，發布 ActivityChangedEvent 讓列表快取與 ETag 更新（可報名 / 近期列表隨時間變化）
+ * - 報名截止（抽籤活動）：由 LotteryService 抽籤並批次寫入報名 / 候補
+ * - 活動結束：PUBLISHED → COMPLETED，並將未簽到的報名標記為缺席
+ *
+ * 啟動時載入所有預約發布 / 已發布的活動（停機期間已到期的轉換會在第一個 tick 補執行），
+ * 之後由 ActivityChangedEvent 於交易提交後更新單一活動的排程。
+ * UPDATE 條件包含狀態與時間，排程內容過時（例如活動已改期或取消）也不會誤改。
+ *
+ * 指標：activity.lifecycle.pending、activity.lifecycle.fired{transition}
+ */
+@Slf4j
+@Component
+public class ActivityLifecycleEngine {
+
+    private static final long TICK_MILLIS = 1000;
+    // 1 秒 × 64^4 ≈ 194 天，更遠的轉換先放在時間輪的溢出區
+    private static final int LEVELS = 4;
+    private static final long RETRY_DELAY_MILLIS = 30_000;
+    // 啟動補標記缺席時每批處理的活動數（避免把所有已完成活動放進同一個 IN 清單）
+    private static final int ABSENT_SWEEP_BATCH = 200;
+
+    /** 活動的時間轉換 */
+    public enum Transition { PUBLISH, REGISTRATION_CLOSE, START, END }
+
+    /** 時間輪的排程項目：某活動的某個轉換 */
+    public record TransitionKey(Long activityId, Transition transition) {}
+
+    private final ActivityRepository activityRepository;
+    private final ActivityService activityService;
+    private final RegistrationService registrationService;
+    private final LotteryService lotteryService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TimingWheel<TransitionKey> wheel =
+            new TimingWheel<>(TICK_MILLIS, LEVELS, System.currentTimeMillis());
+    private final Map<Transition, Counter> fired = new EnumMap<>(Transition.class);
+
+    public ActivityLifecycleEngine(ActivityRepository activityRepository,
+                                   ActivityService activityService,
+                                   RegistrationService registrationService,
+                                   LotteryService lotteryService,
+                                   ApplicationEventPublisher eventPublisher,
+                                   MeterRegistry meterRegistry) {
+        this.activityRepository = activityRepository;
+        this.activityService = activityService;
+        this.registrationService = registrationService;
+        this.lotteryService = lotteryService;
+        this.eventPublisher = eventPublisher;
+        Gauge.builder("activity.lifecycle.pending", wheel, TimingWheel::size)
+                .description("等待中的活動時間轉換數").register(meterRegistry);
+        for (Transition transition : Transition.values()) {
+            fired.put(transition, Counter.builder("activity.lifecycle.fired")
+                    .tag("transition", transition.name())
+                    .description("已執行的活動時間轉換數").register(meterRegistry));
+        }
+    }
+
+    /**
+     * 啟動時補標記停機期間已完成活動的缺席，並載入所有活動的時間轉換
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        int absentCount = 0;
+        for (int marked; (marked = registrationService.markAbsentForExpiredActivities(ABSENT_SWEEP_BATCH)) > 0; ) {
+            absentCount += marked;
+        }
+        if (absentCount > 0) {
+            log.info("【Lifecycle】已補標記 {} 筆報名為未出席", absentCount);
+        }
+        scheduleAll();
+    }
+
+    /**
+     * 活動新增 / 修改 / 預約發布 / 取消等變更後重新排程（交易提交後執行；不在交易中則立即執行）
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onActivityChanged(ActivityChangedEvent event) {
+        if (event.activityId() == null) {
+            scheduleAll();
+            return;
+        }
+        for (Transition transition : Transition.values()) {
+            wheel.cancel(new TransitionKey(event.activityId(), transition));
+        }
+        activityRepository.findById(event.activityId()).ifPresent(this::schedule);
+    }
+
+    /**
+     * 每秒推進時間輪，執行到期的轉換；沒有到期項目時不做任何事
+     */
+    @Scheduled(fixedRate = TICK_MILLIS)
+    public void tick() {
+        List<TransitionKey> due = wheel.advanceTo(System.currentTimeMillis());
+        if (due.isEmpty()) {
+            return;
+        }
+        Map<Transition, List<Long>> byTransition = new EnumMap<>(Transition.class);
+        for (TransitionKey key : due) {
+            byTransition.computeIfAbsent(key.transition(), t -> new ArrayList<>()).add(key.activityId());
+        }
+        // 依時間先後的轉換順序執行（同一秒內先發布、最後結束）
+        byTransition.forEach(this::fire);
+    }
+
+    private void fire(Transition transition, List<Long> activityIds) {
+        try {
+            switch (transition) {
+                case PUBLISH -> {
+                    List<Long> published = activityService.publishDueActivities(activityIds);
+                    if (!published.isEmpty()) {
+                        log.info("【Lifecycle】自動發布 {} 個預約活動：{}", published.size(), published);
+                    }
+                }
+                case REGISTRATION_CLOSE -> {
+                    // 抽籤活動在此抽籤（抽籤交易會自行發布 ActivityChangedEvent），其餘只通知列表更新
+                    for (Long id : activityIds) {
+                        if (lotteryService.drawIfDue(id).isEmpty()) {
+                            eventPublisher.publishEvent(new ActivityChangedEvent(id));
+                        }
+                    }
+                }
+                case START -> activityIds.forEach(id -> eventPublisher.publishEvent(new ActivityChangedEvent(id)));
+                case END -> {
+                    // 完成活動與標記缺席在同一交易，失敗重試時兩者一起重做
+                    RegistrationService.Completion completion = registrationService.completeDueActivities(activityIds);
+                    if (!completion.activityIds().isEmpty()) {
+                        log.info("【Lifecycle】完成 {} 個活動，標記 {} 筆報名為未出席",
+                                completion.activityIds().size(), completion.absentCount());
+                    }
+                }
+            }
+            fired.get(transition).increment(activityIds.size());
+        } catch (Exception e) {
+            // 稍後重試；UPDATE 條件保證重試不會重複轉換
+            log.warn("【Lifecycle】{} 執行失敗，{} 秒後重試 activityIds={}：{}",
+                    transition, RETRY_DELAY_MILLIS / 1000, activityIds, e.getMessage());
+            long retryAt = System.currentTimeMillis() + RETRY_DELAY_MILLIS;
+            activityIds.forEach(id -> wheel.schedule(new TransitionKey(id, transition), retryAt));
+        }
+    }
+
+    private void scheduleAll() {
+        List<Activity> activities = activityRepository.findByStatusIn(
+                List.of(ActivityStatus.SCHEDULE, ActivityStatus.PUBLISHED));
+        activities.forEach(this::schedule);
+        log.info("【Lifecycle】已載入 {} 個活動的時間轉換，共 {} 項", activities.size(), wheel.size());
+    }
+
+    // 依活動狀態排程尚未發生的轉換；已過時的發布 / 結束 / 抽籤仍排入，於下一個 tick 補執行
+    private void schedule(Activity activity) {
+        ActivityStatus status = activity.getStatus();
+        if (status != ActivityStatus.SCHEDULE && status != ActivityStatus.PUBLISHED) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (status == ActivityStatus.SCHEDULE && activity.getPublishedAt() != null) {
+            wheel.schedule(new TransitionKey(activity.getId(), Transition.PUBLISH), toMillis(activity.getPublishedAt()));
+        }
+        if (activity.isLottery() && activity.getLotteryDrawnAt() == null) {
+            // 尚未抽籤的抽籤活動即使截止時間已過（停機期間）也要排入，下一個 tick 補抽；
+            // 舊資料沒有截止時間時與 claimLotteryDraw 一樣以開始時間為準
+            LocalDateTime drawAt = activity.getRegistrationDeadline() != null
+                    ? activity.getRegistrationDeadline() : activity.getStartTime();
+            if (drawAt != null) {
+                wheel.schedule(new TransitionKey(activity.getId(), Transition.REGISTRATION_CLOSE), toMillis(drawAt));
+            }
+        } else {
+            scheduleIfFuture(activity.getId(), Transition.REGISTRATION_CLOSE, activity.getRegistrationDeadline(), now);
+        }
+        scheduleIfFuture(activity.getId(), Transition.START, activity.getStartTime(), now);
+        if (activity.getEndTime() != null) {
+            wheel.schedule(new TransitionKey(activity.getId(), Transition.END), toMillis(activity.getEndTime()));
+        }
+    }
+
+    private void scheduleIfFuture(Long activityId, Transition transition, LocalDateTime time, long now) {
+        if (time != null && toMillis(time) > now) {
+            wheel.schedule(new TransitionKey(activityId, transition), toMillis(time));
+        }
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
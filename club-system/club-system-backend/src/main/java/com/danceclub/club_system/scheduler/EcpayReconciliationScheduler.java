@@ -0,0 +1,33 @@
+package com.danceclub.club_system.scheduler;
+
+import com.danceclub.club_system.dto.EcpayReconciliationReport;
+import com.danceclub.club_system.service.EcpayReconciliationService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class EcpayReconciliationScheduler {
+
+    private final EcpayReconciliationService reconciliationService;
+
+    /**
+     * 定期向綠界查詢未結清的繳費，補上遺失的付款通知（預設每 15 分鐘）
+     */
+    @Scheduled(cron = "${ecpay.reconcile.cron:0 */15 * * * ?}")
+    public void reconcile() {
+        try {
+            EcpayReconciliationReport report = reconciliationService.reconcile();
+            if (report.getScanned() > 0) {
+                log.info("【Scheduler】綠界對帳：查詢 {} 筆，同步 {} 筆，取消 {} 筆，未變更 {} 筆，失敗 {} 筆（{} ms）",
+                        report.getScanned(), report.getSynced(), report.getExpired(), report.getUnchanged(),
+                        report.getFailed(), report.getElapsedMillis());
+            }
+        } catch (IllegalStateException e) {
+            log.info("【Scheduler】略過綠界對帳：{}", e.getMessage());
+        }
+    }
+}
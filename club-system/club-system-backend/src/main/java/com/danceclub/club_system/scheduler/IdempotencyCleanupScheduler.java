@@ -0,0 +1,26 @@
+package com.danceclub.club_system.scheduler;
+
+import com.danceclub.club_system.service.IdempotencyService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class IdempotencyCleanupScheduler {
+
+    private final IdempotencyService idempotencyService;
+
+    /**
+     * 每小時整點清除過期的 Idempotency-Key 紀錄
+     */
+    @Scheduled(cron = "0 0 * * * ?")
+    public void purgeExpiredKeys() {
+        int deleted = idempotencyService.purgeExpired();
+        if (deleted > 0) {
+            log.info("【Scheduler】已清除 {} 筆過期 Idempotency 紀錄", deleted);
+        }
+    }
+}
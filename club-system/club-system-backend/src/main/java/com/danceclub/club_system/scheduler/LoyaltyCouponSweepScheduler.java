@@ -0,0 +1,30 @@
+package com.danceclub.club_system.scheduler;
+
+import com.danceclub.club_system.service.LoyaltyAwardWorker;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LoyaltyCouponSweepScheduler {
+
+    private final LoyaltyAwardWorker loyaltyAwardWorker;
+
+    /**
+     * 每 10 分鐘補處理近 7 天內、簽到超過 5 分鐘仍未計入忠誠獎勵的出席
+     * （正常情況由簽到事件即時處理，這裡只處理遺失的事件）
+     */
+    @Scheduled(cron = "0 */10 * * * ?")
+    public void sweepUncountedAttendance() {
+        LocalDateTime now = LocalDateTime.now();
+        int processed = loyaltyAwardWorker.sweepUncounted(now.minusDays(7), now.minusMinutes(5));
+        if (processed > 0) {
+            log.info("【Scheduler】補處理 {} 筆忠誠獎勵出席", processed);
+        }
+    }
+}
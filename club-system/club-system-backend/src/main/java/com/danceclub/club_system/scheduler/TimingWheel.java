@@ -0,0 +1,169 @@
+package com.danceclub.club_system.scheduler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 階層式時間輪（hierarchical timing wheel）
+ * 每層 64 格，第 0 層一格 = 1 個 tick，往上每層一格涵蓋下一層一整圈；到期時間超出最上層範圍的項目先放在溢出區。
+ * 時間推進到上層某一格的起點時，將該格的項目重新分配到下層（cascade），第 0 層的格子到了即為到期。
+ * 新增 / 取消為 O(1)，推進一個 tick 只處理當格的項目，與排程總數無關。
+ *
+ * 同一個 key 只會有一個到期時間，重新排程會取代舊的；取消的項目留在格子中，輪到時略過。
+ * 所有方法皆為 synchronized，可由事件執行緒新增 / 取消、由排程執行緒推進。
+ *
+ * @param <K> 排程項目的識別
+ */
+public class TimingWheel<K> {
+
+    private static final int BITS = 6;
+    private static final int WHEEL_SIZE = 1 << BITS;
+    private static final int MASK = WHEEL_SIZE - 1;
+
+    private final long tickMillis;
+    private final int levels;
+    private final List<List<Set<Entry<K>>>> slots = new ArrayList<>();
+
+    // key -> 目前有效的項目（格子裡不是這個物件的同 key 項目即為已取消 / 已重新排程）
+    private final Map<K, Entry<K>> index = new HashMap<>();
+
+    // 加入時已到期的項目，下次推進時回傳
+    private final List<Entry<K>> expired = new ArrayList<>();
+
+    // 到期時間超出最上層範圍的項目
+    private final List<Entry<K>> overflow = new ArrayList<>();
+
+    private long currentTick;
+
+    /**
+     * @param tickMillis  一個 tick 的毫秒數（到期精度）
+     * @param levels      層數；可排程範圍 = tickMillis × 64^levels
+     * @param startMillis 起始時間（epoch 毫秒）
+     */
+    public TimingWheel(long tickMillis, int levels, long startMillis) {
+        if (tickMillis <= 0 || levels < 1 || BITS * levels >= 62) {
+            throw new IllegalArgumentException("tickMillis 必須大於 0，levels 必須介於 1 ~ 10");
+        }
+        this.tickMillis = tickMillis;
+        this.levels = levels;
+        this.currentTick = startMillis / tickMillis;
+        for (int level = 0; level < levels; level++) {
+            List<Set<Entry<K>>> wheel = new ArrayList<>(WHEEL_SIZE);
+            for (int slot = 0; slot < WHEEL_SIZE; slot++) {
+                wheel.add(new LinkedHashSet<>());
+            }
+            slots.add(wheel);
+        }
+    }
+
+    /**
+     * 排程（已存在則取代）；到期時間已過的項目於下次推進時立即回傳
+     * @param deadlineMillis 到期時間（epoch 毫秒），以 tick 為單位無條件進位
+     */
+    public synchronized void schedule(K key, long deadlineMillis) {
+        long deadlineTick = Math.floorDiv(deadlineMillis + tickMillis - 1, tickMillis);
+        Entry<K> entry = new Entry<>(key, deadlineTick);
+        index.put(key, entry);
+        place(entry);
+    }
+
+    /**
+     * 取消排程
+     * @return true = 原本有排程
+     */
+    public synchronized boolean cancel(K key) {
+        return index.remove(key) != null;
+    }
+
+    /**
+     * 推進時間並取出到期項目（依到期先後）
+     * @param nowMillis 目前時間（epoch 毫秒）
+     */
+    public synchronized List<K> advanceTo(long nowMillis) {
+        List<Entry<K>> due = new ArrayList<>(expired);
+        expired.clear();
+
+        long nowTick = Math.floorDiv(nowMillis, tickMillis);
+        while (currentTick < nowTick) {
+            currentTick++;
+            if (currentTick % span(levels) == 0) {
+                List<Entry<K>> pending = new ArrayList<>(overflow);
+                overflow.clear();
+                pending.forEach(this::place);
+            }
+            for (int level = levels - 1; level >= 1; level--) {
+                if (currentTick % span(level) == 0) {
+                    cascade(level);
+                }
+            }
+            Set<Entry<K>> slot = slots.get(0).get((int) (currentTick & MASK));
+            due.addAll(slot);
+            slot.clear();
+            due.addAll(expired);
+            expired.clear();
+        }
+
+        List<K> keys = new ArrayList<>();
+        due.sort((a, b) -> Long.compare(a.deadlineTick(), b.deadlineTick()));
+        for (Entry<K> entry : due) {
+            if (index.remove(entry.key(), entry)) {
+                keys.add(entry.key());
+            }
+        }
+        return keys;
+    }
+
+    /** 目前有效的排程數 */
+    public synchronized int size() {
+        return index.size();
+    }
+
+    private void cascade(int level) {
+        Set<Entry<K>> slot = slots.get(level).get((int) ((currentTick >>> (BITS * level)) & MASK));
+        List<Entry<K>> entries = new ArrayList<>(slot);
+        slot.clear();
+        for (Entry<K> entry : entries) {
+            if (index.get(entry.key()) == entry) {
+                place(entry);
+            }
+        }
+    }
+
+    // 放進與目前時間同屬上一層同一格的最低層；已到期放進 expired，超出範圍放進溢出區
+    private void place(Entry<K> entry) {
+        long deadlineTick = entry.deadlineTick();
+        if (deadlineTick <= currentTick) {
+            expired.add(entry);
+            return;
+        }
+        for (int level = 0; level < levels; level++) {
+            int shift = BITS * (level + 1);
+            if ((deadlineTick >>> shift) == (currentTick >>> shift)) {
+                slots.get(level).get((int) ((deadlineTick >>> (BITS * level)) & MASK)).add(entry);
+                return;
+            }
+        }
+        overflow.add(entry);
+    }
+
+    private static long span(int level) {
+        return 1L << (BITS * level);
+    }
+
+    private record Entry<K>(K key, long deadlineTick) {
+        // 以物件本身識別（同 key 重新排程後舊項目視為失效）
+        @Override
+        public boolean equals(Object other) {
+            return this == other;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this);
+        }
+    }
+}
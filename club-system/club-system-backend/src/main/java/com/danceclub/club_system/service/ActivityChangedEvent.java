@@ -0,0 +1,10 @@
+package com.danceclub.club_system.service;
+
+/**
+ * 活動資料或狀態已變更（建立、修改、刪除、發布、取消、完成）
+ * 由 ActivityService 與 ActivityLifecycleEngine 發布（報名截止 / 活動開始等時間轉換也會發布），
+ * ActivityListingCache 於交易提交後清除活動列表快取，ResourceVersionService 更新列表 ETag。
+ * activityId 為 null 表示一次變更多個活動（排程批次處理）。
+ */
+public record ActivityChangedEvent(Long activityId) {
+}
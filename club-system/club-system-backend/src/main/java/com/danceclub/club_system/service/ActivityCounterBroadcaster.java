@@ -0,0 +1,246 @@
+package com.danceclub.club_system.service;
+
+import com.danceclub.club_system.dto.ActivityLiveCountersDTO;
+import com.danceclub.club_system.dto.ActivitySummary;
+import com.danceclub.club_system.exception.LiveSubscriptionLimitException;
+import com.danceclub.club_system.repository.ActivityRepository;
+import com.danceclub.club_system.repository.RegistrationRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 活動即時人數推播（Server-Sent Events）
+ * 每個活動一個頻道，所有訂閱者共用同一份查詢結果：報名 / 取消 / 簽到的交易提交後標記頻道有變動，
+ * 在 COALESCE_MILLIS 內的多次變動合併為一次查詢與推播（每個活動每秒最多 1000 / COALESCE_MILLIS 次）。
+ * 沒有訂閱者的活動不做任何查詢。
+ * 端點不需登入，因此每個活動與每個來源位址的同時訂閱數都有上限，超過時回應 429。
+ *
+ * 指標：activity.live.subscribers、activity.live.rejected{reason}
+ */
+@Service
+public class ActivityCounterBroadcaster {
+
+    private static final Logger log = LoggerFactory.getLogger(ActivityCounterBroadcaster.class);
+
+    private static final long COALESCE_MILLIS = 250;
+    private static final long SUBSCRIPTION_TIMEOUT_MILLIS = 30 * 60 * 1000L;
+    private static final String EVENT_NAME = "counters";
+    private static final int MAX_SUBSCRIBERS_PER_ACTIVITY = 500;
+    private static final int MAX_SUBSCRIBERS_PER_ADDRESS = 10;
+    private static final int RETRY_AFTER_SECONDS = 30;
+
+    private final ActivityRepository activityRepository;
+    private final RegistrationRepository registrationRepository;
+
+    // activityId -> 頻道
+    private final ConcurrentHashMap<Long, Channel> channels = new ConcurrentHashMap<>();
+    // 來源位址 -> 目前訂閱數（所有活動合計）
+    private final ConcurrentHashMap<String, Integer> subscribersByAddress = new ConcurrentHashMap<>();
+
+    private final Counter rejectedActivityFull;
+    private final Counter rejectedAddressFull;
+
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "activity-counter-broadcaster");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ActivityCounterBroadcaster(ActivityRepository activityRepository,
+                                      RegistrationRepository registrationRepository,
+                                      MeterRegistry meterRegistry) {
+        this.activityRepository = activityRepository;
+        this.registrationRepository = registrationRepository;
+        Gauge.builder("activity.live.subscribers", channels,
+                        map -> map.values().stream().mapToInt(channel -> channel.subscribers.size()).sum())
+                .description("即時人數 SSE 訂閱數").register(meterRegistry);
+        this.rejectedActivityFull = rejectedCounter(meterRegistry, "activity");
+        this.rejectedAddressFull = rejectedCounter(meterRegistry, "address");
+    }
+
+    /**
+     * 訂閱活動即時人數，連線後立即收到目前的人數
+     * @param remoteAddress 來源位址（每個位址的同時訂閱數有上限）
+     * @throws LiveSubscriptionLimitException 活動或來源位址的訂閱數已達上限
+     */
+    public SseEmitter subscribe(Long activityId, String remoteAddress) {
+        if (!activityRepository.existsById(activityId)) {
+            throw new RuntimeException("找不到活動 ID: " + activityId);
+        }
+        String address = remoteAddress != null ? remoteAddress : "unknown";
+        if (!reserveAddress(address)) {
+            rejectedAddressFull.increment();
+            throw new LiveSubscriptionLimitException("同時連線數過多，請稍後再試", RETRY_AFTER_SECONDS);
+        }
+        SseEmitter emitter = new SseEmitter(SUBSCRIPTION_TIMEOUT_MILLIS);
+        AtomicBoolean added = new AtomicBoolean();
+        // 與 unsubscribe 同樣在 compute 內修改，避免加入正被移除的空頻道
+        Channel channel = channels.compute(activityId, (id, existing) -> {
+            Channel target = existing != null ? existing : new Channel();
+            if (target.subscribers.size() < MAX_SUBSCRIBERS_PER_ACTIVITY) {
+                target.subscribers.put(emitter, address);
+                added.set(true);
+            }
+            return target.subscribers.isEmpty() ? null : target;
+        });
+        if (!added.get()) {
+            releaseAddress(address);
+            rejectedActivityFull.increment();
+            throw new LiveSubscriptionLimitException("此活動即時人數連線數已達上限，請稍後再試", RETRY_AFTER_SECONDS);
+        }
+        emitter.onCompletion(() -> unsubscribe(activityId, emitter));
+        emitter.onTimeout(() -> unsubscribe(activityId, emitter));
+        emitter.onError(error -> unsubscribe(activityId, emitter));
+
+        ActivityLiveCountersDTO latest = channel.latest;
+        if (latest == null) {
+            latest = load(activityId);
+            channel.latest = latest;
+        }
+        send(activityId, emitter, latest);
+        return emitter;
+    }
+
+    /**
+     * 人數變動（交易提交後執行；不在交易中則立即執行）
+     * 已排定推播時不再重複排定，同一時間窗內的變動合併為一次
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCountsChanged(RegistrationCountsChangedEvent event) {
+        Channel channel = channels.get(event.activityId());
+        if (channel == null) {
+            return;
+        }
+        channel.latest = null;
+        if (channel.flushScheduled.compareAndSet(false, true)) {
+            flusher.schedule(() -> flush(event.activityId(), channel), COALESCE_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 定期送出心跳，避免代理伺服器切斷閒置連線，也順便清掉已斷線的訂閱
+     */
+    @Scheduled(fixedRate = 20_000)
+    public void heartbeat() {
+        channels.forEach((activityId, channel) -> {
+            for (SseEmitter emitter : channel.subscribers.keySet()) {
+                try {
+                    emitter.send(SseEmitter.event().comment("keep-alive"));
+                } catch (IOException | IllegalStateException e) {
+                    unsubscribe(activityId, emitter);
+                }
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdownNow();
+        channels.values().forEach(channel -> channel.subscribers.keySet().forEach(SseEmitter::complete));
+        channels.clear();
+        subscribersByAddress.clear();
+    }
+
+    private void flush(Long activityId, Channel channel) {
+        channel.flushScheduled.set(false);
+        if (channel.subscribers.isEmpty()) {
+            return;
+        }
+        try {
+            ActivityLiveCountersDTO counters = load(activityId);
+            channel.latest = counters;
+            for (SseEmitter emitter : channel.subscribers.keySet()) {
+                send(activityId, emitter, counters);
+            }
+        } catch (Exception e) {
+            log.warn("即時人數推播失敗 activityId={}：{}", activityId, e.getMessage());
+        }
+    }
+
+    private void send(Long activityId, SseEmitter emitter, ActivityLiveCountersDTO counters) {
+        try {
+            emitter.send(SseEmitter.event().name(EVENT_NAME).data(counters, MediaType.APPLICATION_JSON));
+        } catch (IOException | IllegalStateException e) {
+            unsubscribe(activityId, emitter);
+        }
+    }
+
+    // 完成、逾時、錯誤可能先後觸發，只有實際移除時才歸還來源位址的名額
+    private void unsubscribe(Long activityId, SseEmitter emitter) {
+        AtomicReference<String> removed = new AtomicReference<>();
+        channels.computeIfPresent(activityId, (id, channel) -> {
+            removed.set(channel.subscribers.remove(emitter));
+            return channel.subscribers.isEmpty() ? null : channel;
+        });
+        if (removed.get() != null) {
+            releaseAddress(removed.get());
+        }
+    }
+
+    private boolean reserveAddress(String address) {
+        AtomicBoolean reserved = new AtomicBoolean();
+        subscribersByAddress.compute(address, (key, count) -> {
+            int current = count != null ? count : 0;
+            if (current >= MAX_SUBSCRIBERS_PER_ADDRESS) {
+                return count;
+            }
+            reserved.set(true);
+            return current + 1;
+        });
+        return reserved.get();
+    }
+
+    private void releaseAddress(String address) {
+        subscribersByAddress.computeIfPresent(address, (key, count) -> count > 1 ? count - 1 : null);
+    }
+
+    private static Counter rejectedCounter(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("activity.live.rejected")
+                .description("訂閱數達上限而拒絕的即時人數連線數")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    // 剩餘名額取自列表精簡查詢，報名 / 簽到數取自報名統計彙總
+    private ActivityLiveCountersDTO load(Long activityId) {
+        List<ActivitySummary> summaries = activityRepository.findSummariesByIds(List.of(activityId));
+        List<Object[]> counts = registrationRepository.summarizeByActivityIds(List.of(activityId));
+        ActivitySummary summary = summaries.isEmpty() ? null : summaries.get(0);
+        Object[] row = counts.isEmpty() ? null : counts.get(0);
+        return ActivityLiveCountersDTO.builder()
+                .activityId(activityId)
+                .maxParticipants(summary != null ? summary.maxParticipants() : null)
+                .remainingSeats(summary != null ? summary.remainingSeats() : null)
+                .registeredCount(row != null ? ((Number) row[1]).longValue() : 0L)
+                .checkedInCount(row != null ? ((Number) row[4]).longValue() : 0L)
+                .updatedAt(LocalDateTime.now())
+                .build();
+    }
+
+    /** 單一活動的訂閱者（emitter -> 來源位址）與最近一次推播內容（有變動時清除） */
+    private static class Channel {
+        private final Map<SseEmitter, String> subscribers = new ConcurrentHashMap<>();
+        private final AtomicBoolean flushScheduled = new AtomicBoolean();
+        private volatile ActivityLiveCountersDTO latest;
+    }
+}
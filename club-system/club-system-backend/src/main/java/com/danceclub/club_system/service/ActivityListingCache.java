@@ -0,0 +1,129 @@
+package com.danceclub.club_system.service;
+
+import com.danceclub.club_system.dto.ActivitySummary;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 公開活動列表快取（全部、可報名、近期、依類別），快取內容為列表用精簡資料 ActivitySummary
+ * 記憶體 LRU 快取（有上限、有 TTL）；活動有任何變更時由 ActivityChangedEvent 於交易提交後整批清除。
+ * TTL 只負責處理「隨時間變化」的列表（報名截止、活動開始、進入 7 天範圍）與剩餘名額，不依賴它處理活動資料變更；
+ * 剩餘名額因此最多延遲 TTL，實際能否報名仍以報名時的名額扣除為準。
+ * 同一個 key 同時未命中時只由第一個請求查詢資料庫，其餘等待同一份結果。
+ *
+ * 指標（Micrometer 快取命名慣例）：
+ * cache.gets{cache=activity-listing, result=hit|miss}、cache.evictions、cache.size
+ */
+@Service
+public class ActivityListingCache {
+
+    private static final String CACHE_NAME = "activity-listing";
+    private static final int MAX_ENTRIES = 64;
+    private static final long TTL_MILLIS = 30_000;
+
+    // key -> 快取的列表（依存取順序，超過上限時淘汰最久未用）
+    private final Map<String, CachedList> entries = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CachedList> eldest) {
+                    return size() > MAX_ENTRIES;
+                }
+            });
+
+    // 正在查詢資料庫的 key
+    private final ConcurrentHashMap<String, CompletableFuture<List<ActivitySummary>>> loading = new ConcurrentHashMap<>();
+
+    // 每次清除快取加一，查詢期間若被清除則不寫入快取（避免寫回變更前的資料）
+    private final AtomicLong generation = new AtomicLong();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    public ActivityListingCache(MeterRegistry meterRegistry) {
+        this.hits = Counter.builder("cache.gets").tag("cache", CACHE_NAME).tag("result", "hit")
+                .description("活動列表快取命中次數").register(meterRegistry);
+        this.misses = Counter.builder("cache.gets").tag("cache", CACHE_NAME).tag("result", "miss")
+                .description("活動列表快取未命中次數").register(meterRegistry);
+        this.evictions = Counter.builder("cache.evictions").tag("cache", CACHE_NAME)
+                .description("活動變更造成的快取清除次數").register(meterRegistry);
+        Gauge.builder("cache.size", entries, Map::size).tag("cache", CACHE_NAME)
+                .description("活動列表快取筆數").register(meterRegistry);
+    }
+
+    /**
+     * 取得快取的列表，未命中或過期時以 loader 查詢並寫入快取
+     * @param key    列表種類（例如 "registrable"、"type:REGULAR"）
+     * @param loader 查詢資料庫
+     * @return 唯讀列表
+     */
+    public List<ActivitySummary> get(String key, Supplier<List<ActivitySummary>> loader) {
+        CachedList cached = entries.get(key);
+        if (cached != null && cached.expiresAt() > System.currentTimeMillis()) {
+            hits.increment();
+            return cached.activities();
+        }
+        misses.increment();
+
+        CompletableFuture<List<ActivitySummary>> mine = new CompletableFuture<>();
+        CompletableFuture<List<ActivitySummary>> inFlight = loading.putIfAbsent(key, mine);
+        if (inFlight != null) {
+            return await(inFlight);
+        }
+        try {
+            long gen = generation.get();
+            List<ActivitySummary> activities = List.copyOf(loader.get());
+            entries.put(key, new CachedList(activities, System.currentTimeMillis() + TTL_MILLIS));
+            if (generation.get() != gen) {
+                entries.remove(key);
+            }
+            mine.complete(activities);
+            return activities;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, mine);
+        }
+    }
+
+    /**
+     * 活動變更後清除全部列表（交易提交後執行；不在交易中則立即執行）
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onActivityChanged(ActivityChangedEvent event) {
+        invalidateAll();
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        entries.clear();
+        evictions.increment();
+    }
+
+    private static List<ActivitySummary> await(CompletableFuture<List<ActivitySummary>> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private record CachedList(List<ActivitySummary> activities, long expiresAt) {}
+}
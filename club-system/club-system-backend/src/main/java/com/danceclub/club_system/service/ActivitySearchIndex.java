@@ -0,0 +1,256 @@
+package com.danceclub.club_system.service;
+
+import com.danceclub.club_system.model.Activity;
+import com.danceclub.club_system.model.enums.ActivityStatus;
+import com.danceclub.club_system.model.enums.ActivityType;
+import com.danceclub.club_system.repository.ActivityRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.text.Normalizer;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * 活動全文搜尋索引（記憶體反向索引）
+ * 標題與說明切詞後建立「詞 -> 活動」索引：中日韓文字以單字 + 相鄰兩字（bigram）切詞，
+ * 英數字以整個單字切詞（查詢時可用前綴比對）。依相關度（詞頻 × 稀有度，標題加權）排序。
+ * 啟動時由資料表建立，活動變更時由 ActivityChangedEvent 於交易提交後更新單一活動（批次變更時整批重建）。
+ */
+@Service
+public class ActivitySearchIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(ActivitySearchIndex.class);
+
+    private static final int TITLE_WEIGHT = 3;
+    private static final int DESCRIPTION_WEIGHT = 1;
+
+    private final ActivityRepository activityRepository;
+
+    // 目前的索引內容，整批重建時整個替換
+    private volatile Snapshot snapshot = new Snapshot();
+
+    public ActivitySearchIndex(ActivityRepository activityRepository) {
+        this.activityRepository = activityRepository;
+    }
+
+    /**
+     * 由資料表重建整個索引
+     */
+    @PostConstruct
+    public synchronized void rebuild() {
+        Snapshot rebuilt = new Snapshot();
+        for (Activity activity : activityRepository.findAll()) {
+            rebuilt.add(activity);
+        }
+        snapshot = rebuilt;
+        log.info("活動搜尋索引建立完成：{} 筆活動、{} 個詞", rebuilt.docs.size(), rebuilt.postings.size());
+    }
+
+    /**
+     * 活動變更後更新索引（交易提交後執行；不在交易中則立即執行）
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onActivityChanged(ActivityChangedEvent event) {
+        if (event.activityId() == null) {
+            rebuild();
+            return;
+        }
+        Optional<Activity> activity = activityRepository.findById(event.activityId());
+        synchronized (this) {
+            snapshot.remove(event.activityId());
+            activity.ifPresent(snapshot::add);
+        }
+    }
+
+    /**
+     * 搜尋活動
+     * 每個查詢詞都必須出現在標題或說明中，依相關度排序，相關度相同時依開始時間先後
+     *
+     * @param keyword 關鍵字
+     * @param type    活動類型（選填）
+     * @param status  活動狀態
+     * @param from    開始時間起（含，選填）
+     * @param to      開始時間迄（不含，選填）
+     * @param page    頁碼（從 0 開始）
+     * @param size    每頁筆數
+     * @return 該頁的活動 ID（依相關度排序）與符合條件的總筆數
+     */
+    public Hits search(String keyword, ActivityType type, ActivityStatus status,
+                                          LocalDateTime from, LocalDateTime to, int page, int size) {
+        Snapshot current = snapshot;
+        List<String> queryTerms = tokenize(keyword, true);
+
+        Map<Long, Double> scores = null;
+        for (String queryTerm : queryTerms) {
+            Map<Long, Double> termScores = current.score(queryTerm);
+            if (scores == null) {
+                scores = termScores;
+            } else {
+                scores.keySet().retainAll(termScores.keySet());
+                for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+                    entry.setValue(entry.getValue() + termScores.get(entry.getKey()));
+                }
+            }
+            if (scores.isEmpty()) {
+                break;
+            }
+        }
+
+        List<Scored> matches = new ArrayList<>();
+        if (scores != null) {
+            for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+                IndexedActivity doc = current.docs.get(entry.getKey());
+                if (doc != null && matchesFilters(doc.activity(), type, status, from, to)) {
+                    matches.add(new Scored(doc.activity(), entry.getValue()));
+                }
+            }
+        }
+        matches.sort(Comparator.comparingDouble(Scored::score).reversed()
+                .thenComparing(s -> s.activity().getStartTime(), Comparator.nullsLast(Comparator.naturalOrder())));
+
+        int start = Math.min(page * size, matches.size());
+        int end = Math.min(start + size, matches.size());
+        return new Hits(matches.subList(start, end).stream().map(scored -> scored.activity().getId()).toList(), matches.size());
+    }
+
+    private static boolean matchesFilters(Activity activity, ActivityType type, ActivityStatus status,
+                                          LocalDateTime from, LocalDateTime to) {
+        if (status != null && activity.getStatus() != status) {
+            return false;
+        }
+        if (type != null && activity.getActivityType() != type) {
+            return false;
+        }
+        LocalDateTime startTime = activity.getStartTime();
+        if (from != null && (startTime == null || startTime.isBefore(from))) {
+            return false;
+        }
+        return to == null || (startTime != null && startTime.isBefore(to));
+    }
+
+    /**
+     * 切詞
+     * 中日韓文字：建立索引時取單字與相鄰兩字；查詢時單一字取單字，兩字以上只取相鄰兩字
+     * 英數字：連續的字母數字為一個詞（轉小寫、全形轉半形）
+     */
+    static List<String> tokenize(String text, boolean query) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isBlank()) {
+            return tokens;
+        }
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        int[] codePoints = normalized.codePoints().toArray();
+        int i = 0;
+        while (i < codePoints.length) {
+            int start = i;
+            if (isCjk(codePoints[i])) {
+                while (i < codePoints.length && isCjk(codePoints[i])) {
+                    i++;
+                }
+                addCjkTokens(tokens, codePoints, start, i, query);
+            } else if (Character.isLetterOrDigit(codePoints[i])) {
+                while (i < codePoints.length && !isCjk(codePoints[i]) && Character.isLetterOrDigit(codePoints[i])) {
+                    i++;
+                }
+                tokens.add(new String(codePoints, start, i - start));
+            } else {
+                i++;
+            }
+        }
+        return tokens;
+    }
+
+    private static void addCjkTokens(List<String> tokens, int[] codePoints, int start, int end, boolean query) {
+        int length = end - start;
+        if (!query || length == 1) {
+            for (int i = start; i < end; i++) {
+                tokens.add(new String(codePoints, i, 1));
+            }
+        }
+        for (int i = start; i + 1 < end; i++) {
+            tokens.add(new String(codePoints, i, 2));
+        }
+    }
+
+    private static boolean isCjk(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+
+    private static boolean isCjkTerm(String term) {
+        return isCjk(term.codePointAt(0));
+    }
+
+    /** 一份完整的索引：活動 + 詞 -> 活動 ID */
+    private static class Snapshot {
+        private final Map<Long, IndexedActivity> docs = new ConcurrentHashMap<>();
+        private final ConcurrentSkipListMap<String, Set<Long>> postings = new ConcurrentSkipListMap<>();
+
+        private void add(Activity activity) {
+            Map<String, Integer> weights = new HashMap<>();
+            for (String term : tokenize(activity.getTitle(), false)) {
+                weights.merge(term, TITLE_WEIGHT, Integer::sum);
+            }
+            for (String term : tokenize(activity.getDescription(), false)) {
+                weights.merge(term, DESCRIPTION_WEIGHT, Integer::sum);
+            }
+            docs.put(activity.getId(), new IndexedActivity(activity, weights));
+            for (String term : weights.keySet()) {
+                postings.computeIfAbsent(term, t -> ConcurrentHashMap.newKeySet()).add(activity.getId());
+            }
+        }
+
+        private void remove(Long activityId) {
+            IndexedActivity removed = docs.remove(activityId);
+            if (removed == null) {
+                return;
+            }
+            for (String term : removed.weights().keySet()) {
+                postings.computeIfPresent(term, (t, ids) -> {
+                    ids.remove(activityId);
+                    return ids.isEmpty() ? null : ids;
+                });
+            }
+        }
+
+        /**
+         * 單一查詢詞的相關度：詞頻 × log(1 + 活動總數 / 含此詞的活動數)
+         * 英數字詞以前綴比對（"hip" 可找到 "hiphop"），同一活動取最高分的詞
+         */
+        private Map<Long, Double> score(String queryTerm) {
+            Map<String, Set<Long>> matched = isCjkTerm(queryTerm)
+                    ? Optional.ofNullable(postings.get(queryTerm)).map(ids -> Map.of(queryTerm, ids)).orElse(Map.of())
+                    : postings.subMap(queryTerm, true, queryTerm + Character.MAX_VALUE, false);
+
+            Map<Long, Double> scores = new HashMap<>();
+            int total = Math.max(docs.size(), 1);
+            for (Map.Entry<String, Set<Long>> entry : matched.entrySet()) {
+                double idf = Math.log(1.0 + (double) total / entry.getValue().size());
+                for (Long id : entry.getValue()) {
+                    IndexedActivity doc = docs.get(id);
+                    Integer weight = doc == null ? null : doc.weights().get(entry.getKey());
+                    if (weight != null) {
+                        scores.merge(id, weight * idf, Math::max);
+                    }
+                }
+            }
+            return scores;
+        }
+    }
+
+    /** 搜尋結果的一頁 */
+    public record Hits(List<Long> ids, int total) {}
+
+    private record IndexedActivity(Activity activity, Map<String, Integer> weights) {}
+
+    private record Scored(Activity activity, double score) {}
+}
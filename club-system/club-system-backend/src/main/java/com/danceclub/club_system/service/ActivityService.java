@@ -1,45 +1,63 @@
 package com.danceclub.club_system.service;
 
 import com.danceclub.club_system.dto.ActivityRegistrationSummaryDTO;
+import com.danceclub.club_system.dto.ActivitySearchResultDTO;
+import com.danceclub.club_system.dto.ActivitySummary;
 import com.danceclub.club_system.dto.ActivityWithStatsDTO;
+import com.danceclub.club_system.dto.ActivityWithStatsPageDTO;
 import com.danceclub.club_system.model.Activity;
-import com.danceclub.club_system.model.Registration;
 import com.danceclub.club_system.model.enums.ActivityStatus;
 import com.danceclub.club_system.model.enums.ActivityType;
-import com.danceclub.club_system.model.enums.PaymentStatus;
-import com.danceclub.club_system.model.enums.RegistrationStatus;
 import com.danceclub.club_system.repository.ActivityRepository;
 import com.danceclub.club_system.repository.RegistrationRepository;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.annotation.Lazy;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
 
 public class ActivityService {
 
+    // 一次批次查詢報名統計的活動數上限
+    private static final int MAX_SUMMARY_BATCH = 500;
 
     private final ActivityRepository activityRepository;
     private final RegistrationRepository registrationRepository;
-    private final RegistrationService registrationService;
+    private final SeatReservationService seatReservationService;
+    private final ActivityListingCache listingCache;
+    private final ActivitySearchIndex searchIndex;
+    private final ApplicationEventPublisher eventPublisher;
 
 
     // TODO: 寫建構子，注入 activityRepository
-    public ActivityService(ActivityRepository activityRepository, RegistrationRepository registrationRepository, @Lazy RegistrationService registrationService){
+    public ActivityService(ActivityRepository activityRepository, RegistrationRepository registrationRepository, SeatReservationService seatReservationService, ActivityListingCache listingCache, ActivitySearchIndex searchIndex, ApplicationEventPublisher eventPublisher){
         this.activityRepository = activityRepository;
         this.registrationRepository = registrationRepository;
-        this.registrationService = registrationService;
+        this.seatReservationService = seatReservationService;
+        this.listingCache = listingCache;
+        this.searchIndex = searchIndex;
+        this.eventPublisher = eventPublisher;
     }
 
-    public List<Activity>getAllActivities(){
-        return activityRepository.findAll();
+    //公開活動列表（全部 / 依類別 / 可報名 / 近期）經 ActivityListingCache 快取，活動變更時發布 ActivityChangedEvent 清除
+
+    public List<ActivitySummary>getAllActivities(){
+        return listingCache.get("all", activityRepository::findAllSummaries);
     }
 
     // TODO: 寫方法 - 取得所有已發布的活動
@@ -48,12 +66,18 @@ public class ActivityService {
     }
 
     // TODO: 寫方法 - 根據類別取得已發布的活動
-    public List<Activity>getPublishedActivitiesByType(ActivityType activityType){
-        return activityRepository.findByActivityTypeAndStatusOrderByStartTimeAsc(activityType, ActivityStatus.PUBLISHED);
+    public List<ActivitySummary>getPublishedActivitiesByType(ActivityType activityType){
+        return listingCache.get("type:" + activityType, () ->
+                activityRepository.findSummariesByTypeAndStatus(activityType, ActivityStatus.PUBLISHED));
     }
 
     // TODO: 根據關鍵字搜尋已發布的活動
-    public List<Activity> searchActivities(String keyword) {
+    /**
+     * 搜尋活動（全文索引，依相關度排序）
+     * 只開放查詢公開狀態的活動，未指定狀態時查詢已發布的活動
+     */
+    public ActivitySearchResultDTO searchActivities(String keyword, ActivityType type, ActivityStatus status,
+                                                    LocalDateTime from, LocalDateTime to, int page, int size) {
         if(keyword == null || keyword.trim().isEmpty()){
             throw new IllegalArgumentException("搜尋關鍵字不可為空");
         }
@@ -62,27 +86,45 @@ public class ActivityService {
             throw new IllegalArgumentException("搜尋關鍵字最多只能50個字喔!");
 
         }
-        return activityRepository.searchByKeyword(keyword, ActivityStatus.PUBLISHED);
-            }
+        if (status == ActivityStatus.DRAFT || status == ActivityStatus.SCHEDULE){
+            throw new IllegalArgumentException("無法搜尋未發布的活動");
+        }
+        if (page < 0 || size < 1 || size > 100){
+            throw new IllegalArgumentException("page 不可小於 0，size 必須介於 1 ~ 100");
+        }
+        ActivitySearchIndex.Hits hits = searchIndex.search(keyword, type,
+                status != null ? status : ActivityStatus.PUBLISHED, from, to, page, size);
+
+        // 索引只決定順序，列表資料（含剩餘名額）以一次查詢取得後依索引順序排列
+        Map<Long, ActivitySummary> summaries = hits.ids().isEmpty() ? Map.of()
+                : activityRepository.findSummariesByIds(hits.ids()).stream()
+                        .collect(Collectors.toMap(ActivitySummary::id, Function.identity()));
+        return ActivitySearchResultDTO.builder()
+                .items(hits.ids().stream().map(summaries::get).filter(Objects::nonNull).toList())
+                .total(hits.total())
+                .page(page)
+                .size(size)
+                .build();
+    }
 
     /**
      * 取得可報名的活動
      * (已發布 + 報名未截止 + 活動未開始)
      */
-    public List<Activity> getRegistrableActivities() {
-        // TODO: 呼叫 Repository
-        LocalDateTime now = LocalDateTime.now();
-        return activityRepository.findRegistrableActivities(ActivityStatus.PUBLISHED, now);
+    public List<ActivitySummary> getRegistrableActivities() {
+        return listingCache.get("registrable", () ->
+                activityRepository.findRegistrableSummaries(ActivityStatus.PUBLISHED, LocalDateTime.now()));
     }
 
     /**
      * 取得未來 7 天內的活動
      */
-    public List<Activity> getUpcomingActivities() {
-        // TODO: 呼叫 Repository
-        LocalDateTime now = LocalDateTime.now();
-        LocalDateTime sevenDaysLater = now.plusDays(7);  // 要怎麼加 7 天？
-        return activityRepository.findUpcomingActivities(ActivityStatus.PUBLISHED,now,sevenDaysLater);
+    public List<ActivitySummary> getUpcomingActivities() {
+        return listingCache.get("upcoming", () -> {
+            LocalDateTime now = LocalDateTime.now();
+            LocalDateTime sevenDaysLater = now.plusDays(7);
+            return activityRepository.findUpcomingSummaries(ActivityStatus.PUBLISHED, now, sevenDaysLater);
+        });
     }
 
 
@@ -112,10 +154,14 @@ public class ActivityService {
 
         // TODO 2: 設定預設狀態為 DRAFT
         activity.setStatus(ActivityStatus.DRAFT);
+        //抽籤結果只由 LotteryService 寫入
+        activity.setLotteryDrawnAt(null);
+        activity.setLotterySeed(null);
+        requireLotteryDeadline(activity);
 
 
         // TODO 4: 儲存到資料庫
-        return activityRepository.save(activity);
+        return saveAndNotify(activity);
     }
 
     /**
@@ -127,6 +173,7 @@ public class ActivityService {
     public Activity updateActivity(Long id, Activity updatedActivity) {
         // TODO 1: 先查詢活動是否存在（使用剛才寫的 getActivityById）
         Activity existingActivity = getActivityById(id);
+        Integer previousMaxParticipants = existingActivity.getMaxParticipants();
 
 
         // TODO 3: 更新可修改的欄位
@@ -142,10 +189,25 @@ public class ActivityService {
         existingActivity.setTargetAudience(updatedActivity.getTargetAudience());
         existingActivity.setCoverImageUrl(updatedActivity.getCoverImageUrl());
 
+        //報名方式只能在發布前切換（發布後已有人登記抽籤或先搶先贏報名）
+        if (updatedActivity.isLottery() != existingActivity.isLottery()) {
+            if (existingActivity.isPublished() || existingActivity.getLotteryDrawnAt() != null) {
+                throw new IllegalStateException("活動已發布，無法變更報名方式");
+            }
+            existingActivity.setRegistrationMode(updatedActivity.getRegistrationMode());
+        }
+        requireLotteryDeadline(existingActivity);
+
 
 
         // TODO 4: 儲存
-        return activityRepository.save(existingActivity);
+        Activity saved = saveAndNotify(existingActivity);
+
+        //人數上限有變更時同步名額計數
+        if (!Objects.equals(previousMaxParticipants, saved.getMaxParticipants())) {
+            seatReservationService.syncCapacity(saved);
+        }
+        return saved;
     }
 
     /**
@@ -163,6 +225,7 @@ public class ActivityService {
 
         // TODO 3: 刪除
         activityRepository.deleteById(id);
+        eventPublisher.publishEvent(new ActivityChangedEvent(id));
     }
 
 
@@ -187,11 +250,12 @@ public class ActivityService {
                 activity.getStartTime() == null || activity.getEndTime() == null) {
             throw new IllegalStateException("活動資訊不完整，無法發布");
         }
+        requireLotteryDeadline(activity);
 
         // TODO 4: 更新狀態並儲存
         activity.setStatus(ActivityStatus.PUBLISHED);
         activity.setPublishedAt(LocalDateTime.now());
-        return activityRepository.save(activity);
+        return saveAndNotify(activity);
     }
 
     /**
@@ -213,6 +277,7 @@ public class ActivityService {
         if (pulishedAt.isBefore(LocalDateTime.now())){
             throw new IllegalArgumentException("發布時間必須晚於現在");
         }
+        requireLotteryDeadline(activity);
 
         // TODO 3: 設定預約發布
         // 例如：標題、時間是否已填寫？
@@ -221,7 +286,7 @@ public class ActivityService {
         activity.setUpdatedAt(LocalDateTime.now());
 
 
-        return activityRepository.save(activity);
+        return saveAndNotify(activity);
     }
 
     /**
@@ -242,7 +307,7 @@ public class ActivityService {
         activity.setUpdatedAt(LocalDateTime.now());
         activity.setPublishedAt(null);
 
-        return activityRepository.save(activity);
+        return saveAndNotify(activity);
     }
 
     /**
@@ -262,7 +327,7 @@ public class ActivityService {
         // 3. 更新狀態為 CANCELLED
         activity.setStatus(ActivityStatus.CANCELLED);
         activity.setCancelReason(reason != null ? reason : "管理員取消活動");
-        return activityRepository.save(activity);
+        return saveAndNotify(activity);
     }
 
     /**
@@ -285,7 +350,25 @@ public class ActivityService {
         }
         // 4. 更新狀態為 COMPLETED
         activity.setStatus(ActivityStatus.COMPLETED);
-        return activityRepository.save(activity);
+        return saveAndNotify(activity);
+    }
+
+    /**
+     * 儲存活動並通知列表快取（交易提交後清除）
+     */
+    private Activity saveAndNotify(Activity activity) {
+        Activity saved = activityRepository.save(activity);
+        eventPublisher.publishEvent(new ActivityChangedEvent(saved.getId()));
+        return saved;
+    }
+
+    /**
+     * 抽籤活動在報名截止時抽籤，沒有截止時間就永遠不會抽籤
+     */
+    private void requireLotteryDeadline(Activity activity) {
+        if (activity.isLottery() && activity.getRegistrationDeadline() == null) {
+            throw new IllegalArgumentException("抽籤活動必須設定報名截止時間");
+        }
     }
 
     /**
@@ -293,14 +376,14 @@ public class ActivityService {
      * @param createdBy 建立者
      * @return 活動列表
      */
-    public List<Activity> getActivitiesByCreator(String createdBy) {
+    public List<ActivitySummary> getActivitiesByCreator(String createdBy) {
         // TODO 1: 檢查 createdBy 是否為空
         if (createdBy == null) {
             throw new IllegalArgumentException("建立者不可為空");
         }
 
         // TODO 2: 呼叫 Repository
-        return activityRepository.findByCreatedByOrderByCreatedAtDesc(createdBy);
+        return activityRepository.findSummariesByCreatedBy(createdBy);
     }
 
     /**
@@ -336,6 +419,35 @@ public class ActivityService {
         //取得活動id
         Activity activity = activityRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("找不到活動 ID: " + id));
+        validateRegistrationOpen(activity);
+        //檢查人數限制
+        if (activity.hasParticipantLimit()){
+            Long currentValidRegister = registrationRepository.countValidRegistrations(id);
+            if (currentValidRegister >= activity.getMaxParticipants()){
+                throw new IllegalStateException("報名人數已滿");
+            }
+        }
+    }
+
+    /**
+     * 驗證活動目前是否開放報名（只檢查活動狀態與時間，不查人數）
+     * 人數由 SeatReservationService 在報名交易中原子性檢查
+     * @param activity 已查詢出的活動
+     */
+    public void validateRegistrationOpen(Activity activity){
+        //抽籤活動只能登記抽籤，由 LotteryService 處理
+        if (activity.isLottery()){
+            throw new IllegalStateException("此活動採抽籤制，請參加抽籤");
+        }
+        validateRegistrationWindow(activity);
+    }
+
+    /**
+     * 驗證活動目前是否在報名期間（已發布、未截止、未開始）
+     * 先搶先贏報名與抽籤登記共用
+     * @param activity 已查詢出的活動
+     */
+    public void validateRegistrationWindow(Activity activity){
         //檢查是否發布
         if (!activity.isPublished()){
             throw new IllegalStateException("活動尚未發布");
@@ -352,32 +464,29 @@ public class ActivityService {
         if (activity.hasEnded()){
             throw new IllegalStateException("活動已結束");
         }
-        //檢查人數限制
-        if (activity.hasParticipantLimit()){
-            Long currentValidRegister = registrationRepository.countValidRegistrations(id);
-            if (currentValidRegister >= activity.getMaxParticipants()){
-                throw new IllegalStateException("報名人數已滿");
-            }
-        }
     }
 
     /**
-     * 自動完成已過期活動
+     * 預約發布時間已到的活動改為已發布（由 ActivityLifecycleEngine 於到期時呼叫）
+     * @return 實際發布的活動 ID（狀態或時間已變更的活動不會發布）
      */
     @Transactional
-    public void completeExpiredActivities(){
-        LocalDateTime now = LocalDateTime.now();
-
-        int updatedCount = activityRepository.updateStatus(
-                ActivityStatus.PUBLISHED,
-                ActivityStatus.COMPLETED,
-                now
-        );
-
+    public List<Long> publishDueActivities(Collection<Long> activityIds){
+        List<Long> published = activityRepository.publishDue(activityIds, LocalDateTime.now());
+        published.forEach(id -> eventPublisher.publishEvent(new ActivityChangedEvent(id)));
+        return published;
     }
 
-
-
+    /**
+     * 已結束的活動改為已完成（由 RegistrationService.completeDueActivities 與缺席標記在同一交易呼叫）
+     * @return 實際完成的活動 ID
+     */
+    @Transactional
+    public List<Long> completeDueActivities(Collection<Long> activityIds){
+        List<Long> completed = activityRepository.completeDue(activityIds, LocalDateTime.now());
+        completed.forEach(id -> eventPublisher.publishEvent(new ActivityChangedEvent(id)));
+        return completed;
+    }
 
     /**
      * 查詢草稿活動
@@ -387,31 +496,24 @@ public class ActivityService {
     }
 
     /**
-     * 取得所有活動加上統計資料
+     * 取得活動加上報名統計（分頁）
+     * 報名數、已繳費、待繳費、已報到在同一個 GROUP BY 查詢中算出，不再逐筆查詢報名數
      */
-    public List<ActivityWithStatsDTO> getAllActivitiesWithStats(){
-        List<Activity> activities = activityRepository.findAll();
-
-        //轉換成DTO
-        return activities.stream().map(activity -> {
-            //查詢報名人數
-            Long registrationCount = registrationService.countValidRegistrations(activity.getId());
-
-            //建立DTO
-            return new ActivityWithStatsDTO(
-                    activity.getId(),
-                    activity.getTitle(),
-                    activity.getStartTime(),
-                    activity.getEndTime(),
-                    activity.getLocation(),
-                    activity.getActivityType(),
-                    activity.getMaxParticipants(),
-                    activity.getStatus(),
-                    activity.getFeeAmount(),
-                    activity.getRegistrationDeadline(),
-                    registrationCount
-            );
-        }).collect(Collectors.toList());
+    public ActivityWithStatsPageDTO getActivitiesWithStats(ActivityStatus status, int page, int size){
+        if (page < 0 || size < 1 || size > 200){
+            throw new IllegalArgumentException("page 不可小於 0，size 必須介於 1 ~ 200");
+        }
+        List<ActivityWithStatsDTO> items = activityRepository.findWithStats(status, PageRequest.of(page, size));
+        // 第一頁未滿時不必再查總數
+        long total = (page == 0 && items.size() < size)
+                ? items.size()
+                : activityRepository.countByStatusFilter(status);
+        return ActivityWithStatsPageDTO.builder()
+                .items(items)
+                .total(total)
+                .page(page)
+                .size(size)
+                .build();
     }
 
     /**
@@ -420,26 +522,47 @@ public class ActivityService {
      */
     public ActivityRegistrationSummaryDTO getActivityRegistrationSummary(Long activityId){
         Activity activity = getActivityById(activityId);
-
-        List<Registration> allRegistrations = registrationRepository.findByActivityIdOrderByRegistrationTimeAsc(activityId);
-
-        //統計所有報名總數
-        long totalRegistrations = allRegistrations.stream().filter(registration -> !RegistrationStatus.CANCELLED.equals(registration.getStatus())).count();
-
-        //統計總額
-        long paidCount = allRegistrations.stream().filter(registration -> PaymentStatus.PAID.equals(registration.getPaymentStatus())).count();
-
-        //統計未繳費總數
-        long pendingPaymentCount = allRegistrations.stream().filter(registration -> PaymentStatus.PENDING.equals(registration.getPaymentStatus())).count();
-
-        //統計未簽到總數
-        long checkInCount = allRegistrations.stream().filter((registration -> Boolean.TRUE.equals(registration.getCheckedIn()))).count();
-
-        //統計取消報名數
-        long cancelledCount = allRegistrations.stream().filter((registration -> RegistrationStatus.CANCELLED.equals(registration.getStatus()))).count();
-
-        return ActivityRegistrationSummaryDTO.from(activity, totalRegistrations,paidCount, pendingPaymentCount, checkInCount, cancelledCount);
+        List<Object[]> rows = registrationRepository.summarizeByActivityIds(List.of(activityId));
+        return toSummary(activity, rows.isEmpty() ? null : rows.get(0));
     }
 
+    /**
+     * 一次查詢多個活動的報名統計摘要（依傳入順序，不存在的活動略過）
+     * 活動資料與報名統計各一次查詢，不載入任何報名明細
+     */
+    public List<ActivityRegistrationSummaryDTO> getActivityRegistrationSummaries(List<Long> activityIds){
+        if (activityIds == null || activityIds.isEmpty()){
+            return List.of();
+        }
+        if (activityIds.size() > MAX_SUMMARY_BATCH){
+            throw new IllegalArgumentException("一次最多查詢 " + MAX_SUMMARY_BATCH + " 個活動的統計");
+        }
+        Set<Long> ids = new LinkedHashSet<>(activityIds);
+        Map<Long, Activity> activities = activityRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Activity::getId, Function.identity()));
+        Map<Long, Object[]> counts = registrationRepository.summarizeByActivityIds(ids).stream()
+                .collect(Collectors.toMap(row -> ((Number) row[0]).longValue(), Function.identity()));
+
+        List<ActivityRegistrationSummaryDTO> summaries = new ArrayList<>();
+        for (Long id : ids) {
+            Activity activity = activities.get(id);
+            if (activity != null) {
+                summaries.add(toSummary(activity, counts.get(id)));
+            }
+        }
+        return summaries;
+    }
 
-}
\ No newline at end of file
+    //彙總查詢結果 (activity_id, 有效報名, 已繳費, 待繳費, 已簽到, 已取消) 轉成 DTO；沒有報名時全為 0
+    private static ActivityRegistrationSummaryDTO toSummary(Activity activity, Object[] row){
+        if (row == null){
+            row = new Object[]{activity.getId(), 0L, 0L, 0L, 0L, 0L};
+        }
+        return ActivityRegistrationSummaryDTO.from(activity,
+                ((Number) row[1]).longValue(),
+                ((Number) row[2]).longValue(),
+                ((Number) row[3]).longValue(),
+                ((Number) row[4]).longValue(),
+                ((Number) row[5]).longValue());
+    }
+}
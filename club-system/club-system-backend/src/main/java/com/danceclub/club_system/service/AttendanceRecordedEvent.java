@@ -0,0 +1,8 @@
+package com.danceclub.club_system.service;
+
+/**
+ * 會員完成簽到（報名狀態變為 ATTENDED）
+ * 由 RegistrationService 發布，LoyaltyAwardWorker 於交易提交後非同步處理忠誠獎勵。
+ */
+public record AttendanceRecordedEvent(Long registrationId, String userId) {
+}
@@ -0,0 +1,467 @@
+package com.danceclub.club_system.service;
+
+import com.danceclub.club_system.repository.ActivityRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * 活動封面縮圖代理
+ * 封面原圖放在外部主機（Supabase Storage 等），列表頁改為載入經由本服務產生的固定尺寸縮圖：
+ * 每張原圖只向來源抓一次，以純 Java（Java2D）裁切縮放成 3:2 JPEG，存在本機磁碟快取。
+ *
+ * - 快取檔名為「原圖網址 + 寬度」的 SHA-256，原圖網址變更即為新檔案，既有檔案寫入後不再修改
+ * - 快取總大小超過上限時淘汰最久未使用的檔案（LRU，啟動時依檔案修改時間還原順序）；
+ *   淘汰的檔案可能仍在傳送（sendfile / transferTo），寬限時間過後才由定時清理刪除
+ * - 同一張縮圖同時未命中時只由第一個請求抓取，其餘等待同一份結果；抓取失敗的原圖短時間內不再重抓
+ * - 只代理活動本身的 coverImageUrl，不接受任意網址；不跟隨轉址，且拒絕解析到內部網路（loopback / 私有 / link-local）的主機
+ *
+ * 指標：cache.gets{cache=cover-thumbnail, result=hit|miss}、cache.size{cache=cover-thumbnail}
+ */
+@Slf4j
+@Service
+public class CoverImageService {
+
+    /** 縮圖寬度（高度固定為寬度的 2/3，與列表卡片比例相同） */
+    public static final Set<Integer> WIDTHS = Set.of(320, 640);
+    public static final int LIST_WIDTH = 640;
+
+    private static final String CACHE_NAME = "cover-thumbnail";
+    private static final String SUFFIX = ".jpg";
+    private static final long MAX_SOURCE_BYTES = 10 * 1024 * 1024;
+    private static final long MAX_SOURCE_PIXELS = 40_000_000;
+    private static final float JPEG_QUALITY = 0.82f;
+    private static final long FAILURE_TTL_MILLIS = 60_000;
+
+    private final ActivityRepository activityRepository;
+    private final Path cacheDir;
+    private final long maxCacheBytes;
+    private final long evictionGraceMillis;
+    private final boolean allowPrivateHosts;
+    // 轉址目標不經過主機檢查，因此不跟隨轉址
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .followRedirects(HttpClient.Redirect.NEVER)
+            .build();
+
+    // 快取檔案 key -> 檔案大小（依存取順序，最前面為最久未使用）
+    private final LinkedHashMap<String, Long> files = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+    // 已淘汰、等待刪除的檔案 key -> 淘汰時間
+    private final LinkedHashMap<String, Long> evicted = new LinkedHashMap<>();
+
+    // 正在產生的縮圖
+    private final ConcurrentHashMap<String, CompletableFuture<Path>> loading = new ConcurrentHashMap<>();
+    // 抓取失敗的原圖網址 -> 失敗（到期前直接回傳同樣的錯誤，不再打到來源）
+    private final ConcurrentHashMap<String, FetchFailure> failures = new ConcurrentHashMap<>();
+
+    private final Counter hits;
+    private final Counter misses;
+
+    /**
+     * 縮圖與版本
+     * @param version 原圖網址的雜湊，與列表中縮圖網址的 v 參數相同時可長期快取
+     */
+    public record Thumbnail(Path file, String version) {}
+
+    private record FetchFailure(String message, long expiresAt) {}
+
+    public CoverImageService(ActivityRepository activityRepository,
+                             @Value("${cover-cache.dir:${java.io.tmpdir}/club-cover-cache}") Path cacheDir,
+                             @Value("${cover-cache.max-bytes:268435456}") long maxCacheBytes,
+                             @Value("${cover-cache.eviction-grace-ms:300000}") long evictionGraceMillis,
+                             @Value("${cover-cache.allow-private-hosts:false}") boolean allowPrivateHosts,
+                             MeterRegistry meterRegistry) {
+        this.activityRepository = activityRepository;
+        this.cacheDir = cacheDir;
+        this.maxCacheBytes = maxCacheBytes;
+        this.evictionGraceMillis = evictionGraceMillis;
+        this.allowPrivateHosts = allowPrivateHosts;
+        this.hits = Counter.builder("cache.gets").tag("cache", CACHE_NAME).tag("result", "hit")
+                .description("封面縮圖快取命中次數").register(meterRegistry);
+        this.misses = Counter.builder("cache.gets").tag("cache", CACHE_NAME).tag("result", "miss")
+                .description("封面縮圖快取未命中次數").register(meterRegistry);
+        Gauge.builder("cache.size", this, CoverImageService::cachedFileCount).tag("cache", CACHE_NAME)
+                .description("封面縮圖快取檔案數").register(meterRegistry);
+        loadExistingFiles();
+    }
+
+    /**
+     * 列表用的縮圖網址（相對路徑）；沒有封面時為 null
+     * v 為原圖網址的雜湊，封面更換後網址跟著改變，瀏覽器不會沿用舊的長期快取
+     */
+    public static String thumbnailUrl(Long activityId, String sourceUrl) {
+        if (activityId == null || sourceUrl == null || sourceUrl.isBlank()) {
+            return null;
+        }
+        return "/api/activities/" + activityId + "/cover?w=" + LIST_WIDTH + "&v=" + version(sourceUrl);
+    }
+
+    /**
+     * 取得活動封面縮圖，未快取時向來源抓取並產生
+     * @param width 縮圖寬度（WIDTHS）
+     */
+    public Thumbnail getThumbnail(Long activityId, int width) {
+        if (!WIDTHS.contains(width)) {
+            throw new IllegalArgumentException("縮圖寬度只支援 " + WIDTHS);
+        }
+        String sourceUrl = activityRepository.findCoverImageUrlById(activityId)
+                .filter(url -> !url.isBlank())
+                .orElseThrow(() -> new RuntimeException("活動不存在或沒有封面圖片"));
+
+        String key = sha256(sourceUrl + "#" + width);
+        Path file = cacheDir.resolve(key + SUFFIX);
+        if (touch(key, file)) {
+            hits.increment();
+            return new Thumbnail(file, version(sourceUrl));
+        }
+        misses.increment();
+        FetchFailure failure = failures.get(sourceUrl);
+        if (failure != null && failure.expiresAt() > System.currentTimeMillis()) {
+            throw new RuntimeException(failure.message());
+        }
+
+        CompletableFuture<Path> mine = new CompletableFuture<>();
+        CompletableFuture<Path> inFlight = loading.putIfAbsent(key, mine);
+        if (inFlight != null) {
+            return new Thumbnail(await(inFlight), version(sourceUrl));
+        }
+        try {
+            writeThumbnail(fetch(sourceUrl), width, key, file);
+            failures.remove(sourceUrl);
+            mine.complete(file);
+            return new Thumbnail(file, version(sourceUrl));
+        } catch (RuntimeException e) {
+            // 來源的錯誤（無法連線、非 200、格式錯誤等）短暫快取；本機寫檔失敗不快取
+            if (!(e instanceof UncheckedIOException)) {
+                failures.put(sourceUrl, new FetchFailure(e.getMessage(), System.currentTimeMillis() + FAILURE_TTL_MILLIS));
+            }
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, mine);
+        }
+    }
+
+    /** 快取中的檔案數 */
+    public synchronized int cachedFileCount() {
+        return files.size();
+    }
+
+    /** 快取檔案總大小（bytes） */
+    public synchronized long cachedBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * 刪除淘汰超過寬限時間的檔案，並清掉過期的抓取失敗紀錄
+     * 淘汰後又重新產生的縮圖已回到快取，不會被刪除
+     * @return 刪除的檔案數
+     */
+    @Scheduled(fixedDelay = 60_000)
+    public synchronized int purgeEvicted() {
+        long now = System.currentTimeMillis();
+        failures.values().removeIf(failure -> failure.expiresAt() <= now);
+        List<String> expired = new ArrayList<>();
+        for (Map.Entry<String, Long> entry : evicted.entrySet()) {
+            if (entry.getValue() > now - evictionGraceMillis) {
+                break;
+            }
+            expired.add(entry.getKey());
+        }
+        for (String key : expired) {
+            evicted.remove(key);
+            deleteQuietly(cacheDir.resolve(key + SUFFIX));
+        }
+        return expired.size();
+    }
+
+    // 命中時更新 LRU 順序與檔案時間（重新啟動後沿用）
+    private boolean touch(String key, Path file) {
+        synchronized (this) {
+            if (files.get(key) == null) {
+                return false;
+            }
+        }
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return true;
+        } catch (IOException e) {
+            // 檔案已被刪除（例如手動清除快取目錄），重新產生
+            forget(key);
+            return false;
+        }
+    }
+
+    private byte[] fetch(String sourceUrl) {
+        URI uri;
+        try {
+            uri = URI.create(sourceUrl);
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("封面圖片網址不支援：" + sourceUrl);
+        }
+        if (!"http".equalsIgnoreCase(uri.getScheme()) && !"https".equalsIgnoreCase(uri.getScheme())
+                || uri.getHost() == null) {
+            throw new RuntimeException("封面圖片網址不支援：" + sourceUrl);
+        }
+        if (!allowPrivateHosts) {
+            rejectInternalHost(uri.getHost());
+        }
+        HttpRequest request = HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(10)).GET().build();
+        try {
+            HttpResponse<InputStream> response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            try (InputStream body = response.body()) {
+                if (response.statusCode() != 200) {
+                    throw new RuntimeException("封面圖片無法取得（HTTP " + response.statusCode() + "）");
+                }
+                byte[] bytes = body.readNBytes((int) MAX_SOURCE_BYTES + 1);
+                if (bytes.length > MAX_SOURCE_BYTES) {
+                    throw new RuntimeException("封面圖片超過 " + MAX_SOURCE_BYTES / 1024 / 1024 + " MB");
+                }
+                return bytes;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("封面圖片無法取得：" + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("封面圖片下載中斷", e);
+        }
+    }
+
+    // 主機解析到內部網路位址時拒絕（避免匿名端點被用來存取內部服務或雲端 metadata）
+    private static void rejectInternalHost(String host) {
+        InetAddress[] addresses;
+        try {
+            addresses = InetAddress.getAllByName(host);
+        } catch (UnknownHostException e) {
+            throw new RuntimeException("封面圖片主機無法解析：" + host);
+        }
+        for (InetAddress address : addresses) {
+            if (address.isLoopbackAddress() || address.isAnyLocalAddress() || address.isSiteLocalAddress()
+                    || address.isLinkLocalAddress() || address.isMulticastAddress()
+                    || (address instanceof Inet6Address && (address.getAddress()[0] & 0xfe) == 0xfc)) {
+                throw new RuntimeException("封面圖片主機不允許：" + host);
+            }
+        }
+    }
+
+    private void writeThumbnail(byte[] source, int width, String key, Path file) {
+        try {
+            BufferedImage thumbnail = resize(decode(source), width, width * 2 / 3);
+
+            Files.createDirectories(cacheDir);
+            Path temp = Files.createTempFile(cacheDir, key, ".tmp");
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                writeJpeg(thumbnail, out);
+            }
+            // 與淘汰檔案的刪除互斥，避免剛寫入的同名檔案被延遲刪除刪掉
+            synchronized (this) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                remember(key, Files.size(file));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("封面縮圖寫入失敗", e);
+        }
+    }
+
+    // 先讀尺寸再解碼，避免檔案小但像素極多的圖片佔滿記憶體
+    private static BufferedImage decode(byte[] source) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(source))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                throw new RuntimeException("封面圖片格式無法辨識");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                if ((long) reader.getWidth(0) * reader.getHeight(0) > MAX_SOURCE_PIXELS) {
+                    throw new RuntimeException("封面圖片尺寸過大");
+                }
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * 置中裁切成目標比例後縮放；縮小超過一半時先逐次減半，避免一次縮放造成鋸齒
+     */
+    static BufferedImage resize(BufferedImage source, int width, int height) {
+        int cropWidth = source.getWidth();
+        int cropHeight = source.getHeight();
+        if ((long) cropWidth * height > (long) cropHeight * width) {
+            cropWidth = (int) ((long) cropHeight * width / height);
+        } else {
+            cropHeight = (int) ((long) cropWidth * height / width);
+        }
+        BufferedImage current = draw(source,
+                (source.getWidth() - cropWidth) / 2, (source.getHeight() - cropHeight) / 2,
+                cropWidth, cropHeight, cropWidth, cropHeight);
+
+        while (current.getWidth() / 2 >= width && current.getHeight() / 2 >= height) {
+            current = draw(current, 0, 0, current.getWidth(), current.getHeight(),
+                    current.getWidth() / 2, current.getHeight() / 2);
+        }
+        return draw(current, 0, 0, current.getWidth(), current.getHeight(), width, height);
+    }
+
+    // 來源指定區域畫到新的 RGB 圖（透明背景補白色，JPEG 不支援透明）
+    private static BufferedImage draw(BufferedImage source, int x, int y, int w, int h, int targetWidth, int targetHeight) {
+        BufferedImage target = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = target.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(source, 0, 0, targetWidth, targetHeight, x, y, x + w, y + h, Color.WHITE, null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+
+    private static void writeJpeg(BufferedImage image, OutputStream out) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream stream = ImageIO.createImageOutputStream(out)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
+            writer.setOutput(stream);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    // 加入快取並淘汰最久未使用的檔案，直到總大小不超過上限（至少保留剛加入的檔案）
+    // 淘汰的檔案只記錄淘汰時間，由 purgeEvicted 在寬限時間後刪除
+    private synchronized void remember(String key, long size) {
+        Long previous = files.put(key, size);
+        evicted.remove(key);
+        totalBytes += size - (previous == null ? 0 : previous);
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<String, Long>> eldest = files.entrySet().iterator();
+        while (totalBytes > maxCacheBytes && files.size() > 1) {
+            Map.Entry<String, Long> entry = eldest.next();
+            totalBytes -= entry.getValue();
+            eldest.remove();
+            evicted.put(entry.getKey(), now);
+        }
+    }
+
+    private synchronized void forget(String key) {
+        Long size = files.remove(key);
+        if (size != null) {
+            totalBytes -= size;
+        }
+    }
+
+    // 啟動時載入既有的快取檔案（依修改時間由舊到新，作為 LRU 初始順序），清掉未完成的暫存檔
+    private void loadExistingFiles() {
+        if (!Files.isDirectory(cacheDir)) {
+            return;
+        }
+        try (Stream<Path> stream = Files.list(cacheDir)) {
+            List<Path> existing = stream.toList();
+            existing.stream().filter(path -> path.toString().endsWith(".tmp")).forEach(CoverImageService::deleteQuietly);
+            existing.stream()
+                    .filter(path -> path.toString().endsWith(SUFFIX))
+                    .sorted(Comparator.comparing(CoverImageService::lastModified))
+                    .forEach(path -> {
+                        String name = path.getFileName().toString();
+                        remember(name.substring(0, name.length() - SUFFIX.length()), path.toFile().length());
+                    });
+            log.info("【Cover】已載入 {} 個封面縮圖快取檔案，共 {} KB", cachedFileCount(), cachedBytes() / 1024);
+        } catch (IOException e) {
+            log.warn("【Cover】封面縮圖快取目錄讀取失敗 {}：{}", cacheDir, e.getMessage());
+        }
+    }
+
+    private static FileTime lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("【Cover】快取檔案刪除失敗 {}：{}", path, e.getMessage());
+        }
+    }
+
+    private static String version(String sourceUrl) {
+        return sha256(sourceUrl).substring(0, 12);
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Path await(CompletableFuture<Path> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
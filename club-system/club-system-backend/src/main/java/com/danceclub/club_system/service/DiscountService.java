@@ -8,10 +8,11 @@ import com.danceclub.club_system.model.User;
 import com.danceclub.club_system.repository.UserRepository;
 import com.danceclub.club_system.model.DiscountConfig;
 import com.danceclub.club_system.model.LoyaltyCoupon;
+import com.danceclub.club_system.model.MemberLoyaltyCounter;
 import com.danceclub.club_system.model.enums.DiscountType;
-import com.danceclub.club_system.model.enums.RegistrationStatus;
 import com.danceclub.club_system.repository.DiscountConfigRepository;
 import com.danceclub.club_system.repository.LoyaltyCouponRepository;
+import com.danceclub.club_system.repository.MemberLoyaltyCounterRepository;
 import com.danceclub.club_system.repository.RegistrationRepository;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
@@ -21,6 +22,7 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
@@ -30,17 +32,26 @@ public class DiscountService {
     private final LoyaltyCouponRepository loyaltyCouponRepository;
     private final RegistrationRepository registrationRepository;
     private final UserRepository userRepository;
+    private final UserService userService;
+    private final MemberLoyaltyCounterRepository memberLoyaltyCounterRepository;
+    private final MemberStatsService memberStatsService;
 
     public DiscountService(
             DiscountConfigRepository discountConfigRepository,
             LoyaltyCouponRepository loyaltyCouponRepository,
             RegistrationRepository registrationRepository,
-            UserRepository userRepository
+            UserRepository userRepository,
+            UserService userService,
+            MemberLoyaltyCounterRepository memberLoyaltyCounterRepository,
+            MemberStatsService memberStatsService
     ) {
         this.discountConfigRepository = discountConfigRepository;
         this.loyaltyCouponRepository = loyaltyCouponRepository;
         this.registrationRepository = registrationRepository;
         this.userRepository = userRepository;
+        this.userService = userService;
+        this.memberLoyaltyCounterRepository = memberLoyaltyCounterRepository;
+        this.memberStatsService = memberStatsService;
     }
 
     // =====================================================================
@@ -229,27 +240,42 @@ public class DiscountService {
     // =====================================================================
 
     /**
-     * 檢查會員是否達到忠誠獎勵門檻，若是則自動發放新的優惠券。
-     * 採冪等設計：totalAttended / threshold > totalCouponsEver issued → 補發差額
+     * 記錄一次出席，會員出席數跨過門檻倍數時發放忠誠券。
+     * 由 LoyaltyAwardWorker 在簽到交易提交後非同步呼叫；同一筆報名重複處理不會重複發券。
+     * 出席數讀取 member_stats（簽到交易中已累加），這裡只維護已發放的忠誠券數量；
+     * 會員第一次處理時以既有優惠券數初始化，並把歷史出席全部標記為已處理。
+     *
+     * @param registrationId 已簽到的報名 ID
+     * @param userId         會員 ID
      */
     @Transactional
-    public void checkAndAwardLoyaltyCoupons(String userId) {
-        DiscountConfig config = getConfig();
-        int threshold = config.getLoyaltyThreshold();
-
-        // 計算已出席場次（ATTENDED）
-        long attended = registrationRepository.countByUserIdAndStatus(userId, RegistrationStatus.ATTENDED);
-
-        // 應獲得幾張券
-        long shouldHave = attended / threshold;
-
-        // 已發放幾張（含已使用）
-        long alreadyIssued = loyaltyCouponRepository.countByUserId(userId);
+    public void recordAttendance(Long registrationId, String userId) {
+        memberLoyaltyCounterRepository.insertIfAbsent(userId);
+        MemberLoyaltyCounter counter = memberLoyaltyCounterRepository.lockByUserId(userId)
+                .orElseThrow(() -> new IllegalStateException("找不到忠誠計數：" + userId));
+
+        if (!Boolean.TRUE.equals(counter.getInitialized())) {
+            // 初始化：一次把歷史出席全部標記為已處理（包含這一筆）
+            registrationRepository.markAllLoyaltyCounted(userId);
+            counter.setLoyaltyCouponsIssued((int) loyaltyCouponRepository.countByUserId(userId));
+            counter.setInitialized(true);
+        } else if (registrationRepository.markLoyaltyCounted(registrationId) == 0) {
+            return; // 已處理過（重送的事件）
+        }
 
-        long toIssue = shouldHave - alreadyIssued;
-        for (long i = 0; i < toIssue; i++) {
+        int attended = memberStatsService.getStats(userId).getAttendedCount();
+        int threshold = getConfig().getLoyaltyThreshold();
+        int toIssue = threshold > 0
+                ? attended / threshold - counter.getLoyaltyCouponsIssued()
+                : 0;
+        for (int i = 0; i < toIssue; i++) {
             issueCoupon(userId, "COUPON", null, "累積出席獎勵", "SYSTEM");
         }
+        if (toIssue > 0) {
+            counter.setLoyaltyCouponsIssued(counter.getLoyaltyCouponsIssued() + toIssue);
+        }
+        counter.setUpdatedAt(LocalDateTime.now());
+        memberLoyaltyCounterRepository.save(counter);
     }
 
     // =====================================================================
@@ -322,9 +348,11 @@ public class DiscountService {
      */
     public List<CouponAdminDTO> adminListAllCoupons() {
         List<LoyaltyCoupon> all = loyaltyCouponRepository.findAllByOrderByEarnedAtDesc();
+        Map<String, User> users = userService.getUsersByIds(
+                all.stream().map(LoyaltyCoupon::getUserId).toList());
         return all.stream().map(c -> {
-            String userName = userRepository.findById(c.getUserId())
-                    .map(User::getName).orElse("未知");
+            User user = users.get(c.getUserId());
+            String userName = user != null ? user.getName() : "未知";
             CouponAdminDTO dto = new CouponAdminDTO();
             dto.setId(c.getId());
             dto.setUserId(c.getUserId());
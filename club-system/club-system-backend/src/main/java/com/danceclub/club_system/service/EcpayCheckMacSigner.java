@@ -0,0 +1,186 @@
+package com.danceclub.club_system.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * 綠界 CheckMacValue 簽章
+ * 規則：HashKey=...&（參數依鍵 A-Z 排序，排除 CheckMacValue）&HashIV=...
+ * → URL encode（與 .NET 相符：- _ . ! * ( ) 不編碼、空白為 +）→ 全小寫 → SHA-256 → 全大寫 hex。
+ *
+ * 結帳、付款通知、查詢訂單都會簽章，所以不建立中間字串：
+ * 單次走訪同時完成 UTF-8、URL encode 與轉小寫（查表），寫入每個執行緒重用的緩衝區，
+ * 滿了就分段餵給同一執行緒重用的 MessageDigest，最後以查表輸出 hex。
+ * 轉小寫只處理 ASCII，結果不受 JVM 預設語系影響。
+ * 驗證時以固定時間比對，比對時間與第幾個字元不同無關。
+ */
+public final class EcpayCheckMacSigner {
+
+    public static final String CHECK_MAC_VALUE = "CheckMacValue";
+
+    private static final int BUFFER_SIZE = 512;
+    private static final byte[] HEX_LOWER = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final char[] HEX_UPPER = "0123456789ABCDEF".toCharArray();
+
+    // ASCII 字元直接輸出的位元組（已轉小寫）；0 代表需要 %xx 編碼
+    private static final byte[] DIRECT = new byte[128];
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) {
+            DIRECT[c] = (byte) c;
+        }
+        for (char c = 'A'; c <= 'Z'; c++) {
+            DIRECT[c] = (byte) (c + ('a' - 'A'));
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            DIRECT[c] = (byte) c;
+        }
+        for (char c : "-_.!*()".toCharArray()) {
+            DIRECT[c] = (byte) c;
+        }
+        DIRECT[' '] = '+';
+    }
+
+    private static final ThreadLocal<Encoder> ENCODER = ThreadLocal.withInitial(Encoder::new);
+
+    private final String hashKey;
+    private final String hashIv;
+
+    public EcpayCheckMacSigner(String hashKey, String hashIv) {
+        this.hashKey = hashKey;
+        this.hashIv = hashIv;
+    }
+
+    /**
+     * 計算 CheckMacValue（params 中的 CheckMacValue 不參與計算）
+     */
+    public String sign(Map<String, String> params) {
+        Encoder encoder = ENCODER.get();
+        encoder.append("HashKey=");
+        encoder.append(hashKey);
+        for (String key : sortedKeys(params)) {
+            if (CHECK_MAC_VALUE.equals(key)) {
+                continue;
+            }
+            encoder.append("&");
+            encoder.append(key);
+            encoder.append("=");
+            encoder.append(String.valueOf(params.get(key)));
+        }
+        encoder.append("&HashIV=");
+        encoder.append(hashIv);
+        return toUpperHex(encoder.digest());
+    }
+
+    /**
+     * 驗證 params 中的 CheckMacValue（不分大小寫、固定時間比對）
+     */
+    public boolean verify(Map<String, String> params) {
+        String received = params.get(CHECK_MAC_VALUE);
+        return received != null && constantTimeEqualsIgnoreCase(sign(params), received);
+    }
+
+    // 已依鍵自然排序的 Map（例如 TreeMap）直接走訪，其他先排序鍵
+    private static Iterable<String> sortedKeys(Map<String, String> params) {
+        if (params instanceof SortedMap<String, String> sorted && sorted.comparator() == null) {
+            return sorted.keySet();
+        }
+        String[] keys = params.keySet().toArray(new String[0]);
+        Arrays.sort(keys);
+        return Arrays.asList(keys);
+    }
+
+    private static String toUpperHex(byte[] hash) {
+        char[] hex = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            hex[i * 2] = HEX_UPPER[(hash[i] >> 4) & 0x0F];
+            hex[i * 2 + 1] = HEX_UPPER[hash[i] & 0x0F];
+        }
+        return new String(hex);
+    }
+
+    // expected 為大寫 hex；received 的 a-z 先轉大寫（不分支）再比對，長度不同直接不相符（長度固定為 64，不是秘密）
+    private static boolean constantTimeEqualsIgnoreCase(String expected, String received) {
+        if (expected.length() != received.length()) {
+            return false;
+        }
+        int diff = 0;
+        for (int i = 0; i < expected.length(); i++) {
+            int c = received.charAt(i);
+            int lowerCase = ((('a' - 1 - c) & (c - ('z' + 1))) >> 31) & ('a' - 'A');
+            diff |= expected.charAt(i) ^ (c - lowerCase);
+        }
+        return diff == 0;
+    }
+
+    // 每個執行緒一份：URL encode 後的位元組先寫入緩衝區，滿了再交給 MessageDigest
+    private static final class Encoder {
+
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private final MessageDigest digest;
+        private int length;
+
+        private Encoder() {
+            try {
+                this.digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 algorithm not found", e);
+            }
+        }
+
+        private void append(String value) {
+            int n = value.length();
+            for (int i = 0; i < n; i++) {
+                char c = value.charAt(i);
+                if (c < 0x80) {
+                    byte direct = DIRECT[c];
+                    if (direct != 0) {
+                        put(direct);
+                    } else {
+                        percent(c);
+                    }
+                } else if (c < 0x800) {
+                    percent(0xC0 | (c >> 6));
+                    percent(0x80 | (c & 0x3F));
+                } else if (!Character.isSurrogate(c)) {
+                    percent(0xE0 | (c >> 12));
+                    percent(0x80 | ((c >> 6) & 0x3F));
+                    percent(0x80 | (c & 0x3F));
+                } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                    percent(0xF0 | (codePoint >> 18));
+                    percent(0x80 | ((codePoint >> 12) & 0x3F));
+                    percent(0x80 | ((codePoint >> 6) & 0x3F));
+                    percent(0x80 | (codePoint & 0x3F));
+                } else {
+                    // 不成對的代理字元與 URLEncoder 相同，以 ? 代替
+                    percent('?');
+                }
+            }
+        }
+
+        private byte[] digest() {
+            digest.update(buffer, 0, length);
+            length = 0;
+            return digest.digest();
+        }
+
+        private void percent(int b) {
+            put((byte) '%');
+            put(HEX_LOWER[(b >> 4) & 0x0F]);
+            put(HEX_LOWER[b & 0x0F]);
+        }
+
+        private void put(byte b) {
+            if (length == buffer.length) {
+                digest.update(buffer, 0, length);
+                length = 0;
+            }
+            buffer[length++] = b;
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package com.danceclub.club_system.service;
+
+import com.danceclub.club_system.exception.EcpayUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+/**
+ * 綠界 API 連線
+ * 所有對綠界的伺服器端呼叫共用一個 HttpClient（HTTP/1.1 keep-alive 連線重用），
+ * 連線與整個請求都有逾時，綠界變慢時不會無限期佔住請求執行緒。
+ *
+ * - 查詢類（冪等）呼叫在連線失敗、逾時、5xx / 429 時重試，間隔為指數退避加隨機抖動（full jitter）
+ * - 連續 failure-threshold 次呼叫失敗（重試用盡）後斷路器開啟，open-seconds 內直接拒絕；
+ *   之後放行一個試探呼叫，成功即關閉，失敗（包含中斷等非預期結束）再開啟，不會停在半開
+ * - 請求在取得斷路器許可之前建立，參數錯誤不會佔用試探名額
+ * - 4xx 代表綠界有回應但拒絕請求，不重試、不計入斷路器
+ *
+ * 指標：ecpay.http.requests{operation, outcome}（延遲直方圖，每次嘗試一筆）、
+ * ecpay.http.retries{operation}、ecpay.http.circuit.state
+ */
+@Service
+public class EcpayGateway {
+
+    private static final Logger log = LoggerFactory.getLogger(EcpayGateway.class);
+
+    /** 斷路器狀態（指標值為 ordinal） */
+    public enum CircuitState { CLOSED, OPEN, HALF_OPEN }
+
+    private final HttpClient httpClient;
+    private final Duration requestTimeout;
+    private final int maxAttempts;
+    private final long backoffMillis;
+    private final int failureThreshold;
+    private final long openNanos;
+    private final MeterRegistry meterRegistry;
+
+    private final AtomicReference<CircuitState> state = new AtomicReference<>(CircuitState.CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile long openedAt;
+
+    public EcpayGateway(@Value("${ecpay.http.connect-timeout-ms:3000}") long connectTimeoutMillis,
+                        @Value("${ecpay.http.request-timeout-ms:10000}") long requestTimeoutMillis,
+                        @Value("${ecpay.http.max-attempts:3}") int maxAttempts,
+                        @Value("${ecpay.http.backoff-ms:200}") long backoffMillis,
+                        @Value("${ecpay.http.circuit.failure-threshold:5}") int failureThreshold,
+                        @Value("${ecpay.http.circuit.open-seconds:30}") long openSeconds,
+                        MeterRegistry meterRegistry) {
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMillis))
+                .build();
+        this.requestTimeout = Duration.ofMillis(requestTimeoutMillis);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.backoffMillis = backoffMillis;
+        this.failureThreshold = failureThreshold;
+        this.openNanos = TimeUnit.SECONDS.toNanos(openSeconds);
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("ecpay.http.circuit.state", state, s -> s.get().ordinal())
+                .description("綠界斷路器狀態（0 關閉、1 開啟、2 半開）").register(meterRegistry);
+    }
+
+    /**
+     * 送出冪等的查詢（表單 POST，回應為 key=value&key=value），失敗時重試
+     * @param operation 指標用的操作名稱（例如 QueryTradeInfo）
+     * @return 解析後的回應欄位
+     * @throws EcpayUnavailableException 斷路器開啟中，或重試用盡仍連線失敗 / 逾時 / 5xx
+     * @throws IllegalStateException 綠界回應 4xx
+     */
+    public Map<String, String> query(String operation, String url, Map<String, String> form) {
+        // 先建立請求：網址或參數錯誤（IllegalArgumentException / NullPointerException）與斷路器無關
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(requestTimeout)
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(encodeForm(form), StandardCharsets.UTF_8))
+                .build();
+        boolean trial = acquirePermission();
+
+        boolean settled = false;
+        try {
+            Exception lastError = null;
+            for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+                if (attempt > 1) {
+                    retries(operation).increment();
+                    sleepBeforeRetry(attempt);
+                }
+                long startedAt = System.nanoTime();
+                try {
+                    HttpResponse<String> response = httpClient.send(request,
+                            HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+                    int status = response.statusCode();
+                    if (status >= 200 && status < 300) {
+                        record(operation, "success", startedAt);
+                        settled = true;
+                        onSuccess();
+                        return parseForm(response.body());
+                    }
+                    if (status >= 500 || status == 429) {
+                        record(operation, "http_" + status / 100 + "xx", startedAt);
+                        lastError = new IOException("HTTP " + status);
+                        continue;
+                    }
+                    record(operation, "http_4xx", startedAt);
+                    settled = true;
+                    onSuccess();
+                    throw new IllegalStateException("綠界拒絕請求：HTTP " + status);
+                } catch (HttpTimeoutException e) {
+                    record(operation, "timeout", startedAt);
+                    lastError = e;
+                } catch (IOException e) {
+                    record(operation, "io_error", startedAt);
+                    lastError = e;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("綠界查詢已中斷", e);
+                }
+            }
+
+            settled = true;
+            onFailure(operation);
+            throw new EcpayUnavailableException("綠界服務暫時無法使用：" + describe(lastError), retryAfterSeconds(), lastError);
+        } finally {
+            // 試探呼叫非預期結束（中斷、執行期例外）視為失敗，斷路器重新開啟；一般呼叫中斷不計入失敗
+            if (!settled && trial) {
+                onFailure(operation);
+            }
+        }
+    }
+
+    public CircuitState getCircuitState() {
+        return state.get();
+    }
+
+    // 斷路器開啟中直接拒絕；開啟時間已過時只讓一個呼叫進入試探（回傳 true）
+    private boolean acquirePermission() {
+        CircuitState current = state.get();
+        if (current == CircuitState.CLOSED) {
+            return false;
+        }
+        if (current == CircuitState.OPEN && System.nanoTime() - openedAt >= openNanos
+                && state.compareAndSet(CircuitState.OPEN, CircuitState.HALF_OPEN)) {
+            return true;
+        }
+        throw new EcpayUnavailableException("綠界服務暫時無法使用，請稍後再試", retryAfterSeconds());
+    }
+
+    private void onSuccess() {
+        consecutiveFailures.set(0);
+        if (state.getAndSet(CircuitState.CLOSED) != CircuitState.CLOSED) {
+            log.info("綠界斷路器關閉");
+        }
+    }
+
+    private void onFailure(String operation) {
+        int failures = consecutiveFailures.incrementAndGet();
+        if (state.get() == CircuitState.HALF_OPEN || failures >= failureThreshold) {
+            openedAt = System.nanoTime();
+            if (state.getAndSet(CircuitState.OPEN) != CircuitState.OPEN) {
+                log.warn("綠界 {} 連續失敗 {} 次，斷路器開啟 {} 秒", operation, failures, openNanos / 1_000_000_000);
+            }
+        }
+    }
+
+    private int retryAfterSeconds() {
+        long remaining = openNanos - (System.nanoTime() - openedAt);
+        return (int) Math.max(1, TimeUnit.NANOSECONDS.toSeconds(remaining) + 1);
+    }
+
+    // full jitter：在 [0, backoff * 2^(attempt-2)] 之間隨機等待，避免多個呼叫同時重試
+    private void sleepBeforeRetry(int attempt) {
+        long ceiling = backoffMillis << (attempt - 2);
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("綠界查詢已中斷", e);
+        }
+    }
+
+    private void record(String operation, String outcome, long startedAt) {
+        Timer.builder("ecpay.http.requests")
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .description("綠界 API 請求延遲")
+                .register(meterRegistry)
+                .record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+    }
+
+    private Counter retries(String operation) {
+        return Counter.builder("ecpay.http.retries").tag("operation", operation)
+                .description("綠界 API 重試次數").register(meterRegistry);
+    }
+
+    private static String describe(Exception error) {
+        if (error == null) {
+            return "未知錯誤";
+        }
+        return error.getMessage() != null ? error.getMessage() : error.getClass().getSimpleName();
+    }
+
+    private static String encodeForm(Map<String, String> form) {
+        return form.entrySet().stream()
+                .map(e -> URLEncoder.encode(e.getKey(), StandardCharsets.UTF_8) + "="
+                        + URLEncoder.encode(e.getValue(), StandardCharsets.UTF_8))
+                .collect(Collectors.joining("&"));
+    }
+
+    // 回應格式：key=value&key=value（值已 URL 編碼，可能為空）
+    private static Map<String, String> parseForm(String body) {
+        Map<String, String> result = new LinkedHashMap<>();
+        for (String pair : body.strip().split("&")) {
+            int idx = pair.indexOf('=');
+            if (idx > 0) {
+                result.put(URLDecoder.decode(pair.substring(0, idx), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(idx + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,167 @@
+package com.danceclub.club_system.service;
+
+import com.danceclub.club_system.repository.EcpayInboxRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 綠界付款通知收件匣
+ * 通知只做 CheckMacValue 驗證與一次 INSERT ... ON CONFLICT DO NOTHING 就回應 1|OK，
+ * 不在回應路徑上讀寫繳費 / 報名，資料庫變慢時也不會讓綠界逾時重送；
+ * 重送的通知（相同 MerchantTradeNo + TradeNo）寫入時即被去重，不會重複套用。
+ * 套用由固定數量的背景執行緒執行（EcpayService.applyInboxEntry），
+ * 提交給執行緒前遺失（重啟）或套用失敗的通知由排程定期補處理，失敗達上限後標記 FAILED。
+ *
+ * 指標：ecpay.inbox.received{result}、ecpay.inbox.processed{result}
+ */
+@Service
+public class EcpayNotifyInbox {
+
+    private static final Logger log = LoggerFactory.getLogger(EcpayNotifyInbox.class);
+
+    private static final int MAX_ATTEMPTS = 5;
+    private static final int SWEEP_BATCH = 100;
+    // 收到後超過此秒數仍為 PENDING 才由排程補處理，避免與剛提交的工作重疊
+    private static final long SWEEP_GRACE_SECONDS = 10;
+
+    private final EcpayService ecpayService;
+    private final EcpayInboxRepository inboxRepository;
+    private final ObjectMapper objectMapper;
+    private final ExecutorService workers;
+    // 已提交、尚未執行完的通知，排程補處理時略過
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+
+    private final Counter accepted;
+    private final Counter duplicates;
+    private final Counter applied;
+    private final Counter failed;
+
+    public EcpayNotifyInbox(EcpayService ecpayService,
+                            EcpayInboxRepository inboxRepository,
+                            ObjectMapper objectMapper,
+                            MeterRegistry meterRegistry,
+                            @Value("${ecpay.inbox.workers:2}") int workerCount) {
+        this.ecpayService = ecpayService;
+        this.inboxRepository = inboxRepository;
+        this.objectMapper = objectMapper;
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread thread = new Thread(runnable, "ecpay-inbox-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.accepted = counter(meterRegistry, "ecpay.inbox.received", "accepted", "收到的綠界通知數");
+        this.duplicates = counter(meterRegistry, "ecpay.inbox.received", "duplicate", "收到的綠界通知數");
+        this.applied = counter(meterRegistry, "ecpay.inbox.processed", "applied", "已處理的綠界通知數");
+        this.failed = counter(meterRegistry, "ecpay.inbox.processed", "failed", "已處理的綠界通知數");
+    }
+
+    /**
+     * 收下綠界付款通知：驗證 CheckMacValue → 寫入收件匣 → 交給背景執行緒
+     * @return 回應綠界的內容（1|OK）；重送的通知同樣回應 1|OK
+     * @throws IllegalArgumentException CheckMacValue 驗證失敗或缺少訂單編號
+     */
+    public String receive(Map<String, String> params) {
+        if (!ecpayService.verifyCheckMacValue(params)) {
+            throw new IllegalArgumentException("CheckMacValue verification failed");
+        }
+        String merchantTradeNo = params.get("MerchantTradeNo");
+        if (merchantTradeNo == null || merchantTradeNo.isBlank()) {
+            throw new IllegalArgumentException("MerchantTradeNo is required");
+        }
+        String tradeNo = params.getOrDefault("TradeNo", "");
+
+        List<Long> inserted = inboxRepository.insertIfAbsent(merchantTradeNo, tradeNo,
+                params.get("RtnCode"), toJson(params), LocalDateTime.now());
+        if (inserted.isEmpty()) {
+            duplicates.increment();
+        } else {
+            accepted.increment();
+            submit(inserted.get(0));
+        }
+        return "1|OK";
+    }
+
+    /**
+     * 補處理收到一段時間仍未套用的通知（重啟前未處理、套用失敗待重試）
+     */
+    @Scheduled(fixedDelay = 30_000)
+    public void sweep() {
+        LocalDateTime before = LocalDateTime.now().minusSeconds(SWEEP_GRACE_SECONDS);
+        inboxRepository.findStalePendingIds(before, SWEEP_BATCH).forEach(this::submit);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        workers.shutdown();
+        // 未執行完的通知保持 PENDING，重啟後由排程補處理
+        workers.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    private void submit(Long inboxId) {
+        if (!inFlight.add(inboxId)) {
+            return;
+        }
+        try {
+            workers.execute(() -> process(inboxId));
+        } catch (RuntimeException e) {
+            // 關機中無法提交，保持 PENDING
+            inFlight.remove(inboxId);
+        }
+    }
+
+    private void process(Long inboxId) {
+        try {
+            if (ecpayService.applyInboxEntry(inboxId)) {
+                applied.increment();
+            }
+        } catch (Exception e) {
+            failed.increment();
+            String message = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            log.warn("綠界通知套用失敗 inboxId={}：{}", inboxId, message);
+            recordFailure(inboxId, message.length() > 500 ? message.substring(0, 500) : message);
+        } finally {
+            inFlight.remove(inboxId);
+        }
+    }
+
+    private void recordFailure(Long inboxId, String message) {
+        try {
+            inboxRepository.recordFailure(inboxId, message, MAX_ATTEMPTS);
+        } catch (Exception e) {
+            // 資料庫暫時無法寫入時不計次，由排程再試
+            log.warn("綠界通知失敗次數無法記錄 inboxId={}：{}", inboxId, e.getMessage());
+        }
+    }
+
+    private String toJson(Map<String, String> params) {
+        try {
+            return objectMapper.writeValueAsString(new TreeMap<>(params));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("通知內容無法儲存", e);
+        }
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String name, String result, String description) {
+        return Counter.builder(name).tag("result", result).description(description).register(meterRegistry);
+    }
+}
@@ -0,0 +1,272 @@
+package com.danceclub.club_system.service;
+
+import com.danceclub.club_system.config.EcpayConfig;
+import com.danceclub.club_system.dto.EcpayReconciliationReport;
+import com.danceclub.club_system.model.enums.PaymentStatus;
+import com.danceclub.club_system.repository.PaymentRepository;
+import com.danceclub.club_system.repository.PaymentRepository.EcpayTradeRef;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+
+import java.net.URI;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 綠界對帳
+ * 以 id keyset 分頁讀取有 MerchantTradeNo 的待繳費 / 付款中繳費（只讀 id 與訂單編號），
+ * 每頁在虛擬執行緒上同時呼叫 QueryTradeInfo：同時進行的查詢數以 Semaphore 限制，
+ * 對同一主機的查詢另以固定間隔限速，避免被綠界擋下；
+ * 查詢結果為已付款的繳費每 batch-size 筆一個交易套用（EcpayService.applyQueriedTrades），
+ * 未付款且已過繳費期限、或綠界回應交易失敗的繳費同樣分批改為已取消（EcpayService.expireQueriedTrades），
+ * 放棄結帳的訂單不會每次對帳都重新查詢；
+ * 查詢期間不佔用資料庫連線；逾時與重試由 EcpayGateway 處理，斷路器開啟時提前結束。
+ * 同一時間只執行一次對帳（排程與管理員手動觸發共用）。
+ *
+ * 指標：ecpay.reconcile.trades{result}
+ */
+@Service
+public class EcpayReconciliationService {
+
+    private static final Logger log = LoggerFactory.getLogger(EcpayReconciliationService.class);
+
+    private static final List<PaymentStatus> UNSETTLED = List.of(PaymentStatus.PENDING, PaymentStatus.PROCESSING);
+    // QueryTradeInfo 的 TradeStatus：1 = 已付款，10200095 = 交易失敗（訂單不會再付款）
+    private static final String TRADE_PAID = "1";
+    private static final String TRADE_FAILED = "10200095";
+
+    private final EcpayService ecpayService;
+    private final EcpayGateway ecpayGateway;
+    private final EcpayConfig ecpayConfig;
+    private final PaymentRepository paymentRepository;
+    private final Semaphore permits;
+    private final long requestIntervalNanos;
+    private final int pageSize;
+    private final int batchSize;
+    private final long minAgeMinutes;
+    private final Map<String, HostRateLimiter> rateLimiters = new ConcurrentHashMap<>();
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private final Counter synced;
+    private final Counter expired;
+    private final Counter unchanged;
+    private final Counter failed;
+
+    public EcpayReconciliationService(EcpayService ecpayService,
+                                      EcpayGateway ecpayGateway,
+                                      EcpayConfig ecpayConfig,
+                                      PaymentRepository paymentRepository,
+                                      MeterRegistry meterRegistry,
+                                      @Value("${ecpay.reconcile.max-concurrency:8}") int maxConcurrency,
+                                      @Value("${ecpay.reconcile.requests-per-second:10}") int requestsPerSecond,
+                                      @Value("${ecpay.reconcile.page-size:200}") int pageSize,
+                                      @Value("${ecpay.reconcile.batch-size:50}") int batchSize,
+                                      @Value("${ecpay.reconcile.min-age-minutes:10}") long minAgeMinutes) {
+        this.ecpayService = ecpayService;
+        this.ecpayGateway = ecpayGateway;
+        this.ecpayConfig = ecpayConfig;
+        this.paymentRepository = paymentRepository;
+        this.permits = new Semaphore(maxConcurrency);
+        this.requestIntervalNanos = Duration.ofSeconds(1).toNanos() / requestsPerSecond;
+        this.pageSize = pageSize;
+        this.batchSize = batchSize;
+        this.minAgeMinutes = minAgeMinutes;
+        this.synced = counter(meterRegistry, "synced");
+        this.expired = counter(meterRegistry, "expired");
+        this.unchanged = counter(meterRegistry, "unchanged");
+        this.failed = counter(meterRegistry, "failed");
+    }
+
+    /**
+     * 對帳一次：查詢所有未結清的綠界繳費並同步已付款的結果
+     * @throws IllegalStateException 已有對帳正在執行
+     */
+    public EcpayReconciliationReport reconcile() {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("綠界對帳進行中，請稍後再試");
+        }
+        try {
+            return reconcilePages();
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private EcpayReconciliationReport reconcilePages() {
+        long startedAt = System.currentTimeMillis();
+        // 剛建立 / 剛更新的繳費可能還在結帳中，留給通知處理
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime updatedBefore = now.minusMinutes(minAgeMinutes);
+        Tally tally = new Tally();
+        Long afterId = 0L;
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            while (true) {
+                List<EcpayTradeRef> page = paymentRepository.findEcpayTradesAfter(
+                        UNSETTLED, updatedBefore, afterId, Limit.of(pageSize));
+                if (page.isEmpty()) {
+                    break;
+                }
+                afterId = page.get(page.size() - 1).getId();
+                tally.scanned += page.size();
+
+                List<Future<Map<String, String>>> queries = new ArrayList<>(page.size());
+                for (EcpayTradeRef trade : page) {
+                    queries.add(executor.submit(() -> query(trade.getMerchantTradeNo())));
+                }
+                Map<Long, Map<String, String>> paidTrades = new LinkedHashMap<>();
+                Map<Long, Map<String, String>> expiredTrades = new LinkedHashMap<>();
+                for (int i = 0; i < page.size(); i++) {
+                    collect(page.get(i), queries.get(i), now, paidTrades, expiredTrades, tally);
+                }
+                apply(paidTrades, false, tally);
+                apply(expiredTrades, true, tally);
+
+                if (page.size() < pageSize) {
+                    break;
+                }
+                // 綠界斷路器開啟時其餘查詢都會立即失敗，留到下次對帳
+                if (ecpayGateway.getCircuitState() == EcpayGateway.CircuitState.OPEN) {
+                    log.warn("綠界服務暫時無法使用，對帳提前結束於 paymentId={}", afterId);
+                    break;
+                }
+            }
+        }
+
+        synced.increment(tally.synced);
+        expired.increment(tally.expired);
+        unchanged.increment(tally.unchanged);
+        failed.increment(tally.failed);
+        return EcpayReconciliationReport.builder()
+                .scanned(tally.scanned)
+                .synced(tally.synced)
+                .expired(tally.expired)
+                .unchanged(tally.unchanged)
+                .failed(tally.failed)
+                .elapsedMillis(System.currentTimeMillis() - startedAt)
+                .build();
+    }
+
+    private Map<String, String> query(String merchantTradeNo) throws InterruptedException {
+        permits.acquire();
+        try {
+            rateLimiterFor(ecpayConfig.getQueryUrl()).acquire();
+            return ecpayService.queryTradeInfo(merchantTradeNo);
+        } finally {
+            permits.release();
+        }
+    }
+
+    // 依查詢結果分類：已付款 / 應取消（交易失敗或逾期未付款）/ 不變；查詢失敗的不取消，下次再查
+    private void collect(EcpayTradeRef trade, Future<Map<String, String>> query, LocalDateTime now,
+                         Map<Long, Map<String, String>> paidTrades,
+                         Map<Long, Map<String, String>> expiredTrades, Tally tally) {
+        try {
+            Map<String, String> tradeInfo = query.get();
+            String tradeStatus = tradeInfo.get("TradeStatus");
+            if (tradeStatus == null) {
+                tally.failed++;
+                log.warn("綠界對帳查詢無結果 paymentId={}：{}", trade.getId(), tradeInfo);
+            } else if (TRADE_PAID.equals(tradeStatus)) {
+                paidTrades.put(trade.getId(), tradeInfo);
+            } else if (TRADE_FAILED.equals(tradeStatus)
+                    || (trade.getPaymentDeadline() != null && trade.getPaymentDeadline().isBefore(now))) {
+                expiredTrades.put(trade.getId(), tradeInfo);
+            } else {
+                tally.unchanged++;
+            }
+        } catch (ExecutionException e) {
+            tally.failed++;
+            log.warn("綠界對帳查詢失敗 paymentId={}：{}", trade.getId(), e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("綠界對帳已中斷", e);
+        }
+    }
+
+    private void apply(Map<Long, Map<String, String>> trades, boolean expire, Tally tally) {
+        Map<Long, Map<String, String>> batch = new LinkedHashMap<>();
+        for (Map.Entry<Long, Map<String, String>> trade : trades.entrySet()) {
+            batch.put(trade.getKey(), trade.getValue());
+            if (batch.size() == batchSize) {
+                applyBatch(batch, expire, tally);
+                batch = new LinkedHashMap<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            applyBatch(batch, expire, tally);
+        }
+    }
+
+    private void applyBatch(Map<Long, Map<String, String>> batch, boolean expire, Tally tally) {
+        try {
+            if (expire) {
+                int applied = ecpayService.expireQueriedTrades(batch);
+                tally.expired += applied;
+                tally.unchanged += batch.size() - applied;
+            } else {
+                int applied = ecpayService.applyQueriedTrades(batch);
+                tally.synced += applied;
+                tally.unchanged += batch.size() - applied;
+            }
+        } catch (RuntimeException e) {
+            // 整批回滾，下次對帳再查
+            tally.failed += batch.size();
+            log.warn("綠界對帳套用失敗 paymentIds={}：{}", batch.keySet(), e.getMessage());
+        }
+    }
+
+    private HostRateLimiter rateLimiterFor(String url) {
+        String host = URI.create(url).getHost();
+        return rateLimiters.computeIfAbsent(host == null ? "" : host, h -> new HostRateLimiter(requestIntervalNanos));
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("ecpay.reconcile.trades").tag("result", result)
+                .description("綠界對帳處理的繳費數").register(meterRegistry);
+    }
+
+    // 單次對帳的統計（只由對帳執行緒更新）
+    private static final class Tally {
+        private int scanned;
+        private int synced;
+        private int expired;
+        private int unchanged;
+        private int failed;
+    }
+
+    // 每個主機一個：每次查詢預約下一個時段，時段間隔固定，未到時段的執行緒等待
+    private static final class HostRateLimiter {
+        private final long intervalNanos;
+        private final AtomicLong nextSlot = new AtomicLong(System.nanoTime());
+
+        private HostRateLimiter(long intervalNanos) {
+            this.intervalNanos = intervalNanos;
+        }
+
+        private void acquire() throws InterruptedException {
+            long now = System.nanoTime();
+            long slot = Math.max(nextSlot.getAndUpdate(next -> Math.max(next, now) + intervalNanos), now);
+            if (slot > now) {
+                Thread.sleep(Duration.ofNanos(slot - now));
+            }
+        }
+    }
+}
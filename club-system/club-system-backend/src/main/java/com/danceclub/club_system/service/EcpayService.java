@@ -3,19 +3,24 @@ package com.danceclub.club_system.service;
 import com.danceclub.club_system.config.EcpayConfig;
 import com.danceclub.club_system.dto.EcpayCheckoutRequest;
 import com.danceclub.club_system.dto.EcpayCheckoutResponse;
+import com.danceclub.club_system.model.EcpayInboxEntry;
 import com.danceclub.club_system.model.Payment;
 import com.danceclub.club_system.model.Registration;
+import com.danceclub.club_system.model.enums.EcpayInboxStatus;
 import com.danceclub.club_system.model.enums.PaymentStatus;
+import com.danceclub.club_system.repository.EcpayInboxRepository;
 import com.danceclub.club_system.repository.PaymentRepository;
 import com.danceclub.club_system.repository.RegistrationRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
@@ -29,11 +34,23 @@ public class EcpayService {
     private final EcpayConfig ecpayConfig;
     private final PaymentRepository paymentRepository;
     private final RegistrationRepository registrationRepository;
-
-    public EcpayService(EcpayConfig ecpayConfig, PaymentRepository paymentRepository, RegistrationRepository registrationRepository) {
+    private final MemberStatsService memberStatsService;
+    private final EcpayInboxRepository ecpayInboxRepository;
+    private final ObjectMapper objectMapper;
+    private final EcpayGateway ecpayGateway;
+    private final EcpayCheckMacSigner checkMacSigner;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public EcpayService(EcpayConfig ecpayConfig, PaymentRepository paymentRepository, RegistrationRepository registrationRepository, MemberStatsService memberStatsService, EcpayInboxRepository ecpayInboxRepository, ObjectMapper objectMapper, EcpayGateway ecpayGateway, EcpayCheckMacSigner checkMacSigner, ApplicationEventPublisher eventPublisher) {
         this.ecpayConfig = ecpayConfig;
         this.paymentRepository = paymentRepository;
         this.registrationRepository = registrationRepository;
+        this.memberStatsService = memberStatsService;
+        this.ecpayInboxRepository = ecpayInboxRepository;
+        this.objectMapper = objectMapper;
+        this.ecpayGateway = ecpayGateway;
+        this.checkMacSigner = checkMacSigner;
+        this.eventPublisher = eventPublisher;
     }
 
     /**
@@ -79,20 +96,47 @@ public class EcpayService {
     }
 
     /**
-     * 處理綠界付款通知（Notify）
+     * 驗證綠界回傳參數的 CheckMacValue（不修改傳入的參數）
+     */
+    public boolean verifyCheckMacValue(Map<String, String> params) {
+        return checkMacSigner.verify(params);
+    }
+
+    /**
+     * 套用收件匣中的一筆付款通知（由 EcpayNotifyInbox 的背景執行緒呼叫）
+     * 以 FOR UPDATE SKIP LOCKED 鎖定通知，已套用或正由其他執行緒處理時直接略過；
+     * 套用與標記 APPLIED 在同一交易，失敗時整筆回滾、保持 PENDING 等待重試。
+     * @return true = 本次套用；false = 已處理過或正由其他執行緒處理
      */
     @Transactional
-    public String handlePaymentNotify(Map<String, String> params) {
-        // 驗證 CheckMacValue
-        String receivedCheckMacValue = params.get("CheckMacValue");
-        params.remove("CheckMacValue");
-        
-        String calculatedCheckMacValue = generateCheckMacValue(params);
-        
-        if (!calculatedCheckMacValue.equalsIgnoreCase(receivedCheckMacValue)) {
-            throw new IllegalArgumentException("CheckMacValue verification failed");
+    public boolean applyInboxEntry(Long inboxId) {
+        Optional<EcpayInboxEntry> locked = ecpayInboxRepository.lockPending(inboxId);
+        if (locked.isEmpty()) {
+            return false;
+        }
+        EcpayInboxEntry entry = locked.get();
+        Map<String, String> params;
+        try {
+            params = objectMapper.readValue(entry.getPayload(), new TypeReference<TreeMap<String, String>>() {});
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("通知內容無法解析", e);
         }
+        params.remove("CheckMacValue");
+        applyPaymentNotify(params);
+
+        entry.setStatus(EcpayInboxStatus.APPLIED);
+        entry.setProcessedAt(LocalDateTime.now());
+        ecpayInboxRepository.save(entry);
+        return true;
+    }
 
+    /**
+     * 依付款通知更新繳費與報名狀態（可重複套用）
+     * 鎖定繳費列後依目前狀態決定是否轉換：
+     * - 付款成功：已繳費 / 已退款時不變，其餘轉為 PAID
+     * - 付款失敗：只有待繳費 / 付款中會轉為 CANCELLED，不會蓋掉較早或同時到達的成功通知
+     */
+    private void applyPaymentNotify(Map<String, String> params) {
         // 取得訂單編號和付款狀態
         String merchantTradeNo = params.get("MerchantTradeNo");
         String rtnCode = params.get("RtnCode");
@@ -101,25 +145,34 @@ public class EcpayService {
 
         // 從 MerchantTradeNo 解析 Payment ID
         Long paymentId = extractPaymentIdFromTradeNo(merchantTradeNo);
-        
-        Payment payment = paymentRepository.findById(paymentId)
+
+        Payment payment = paymentRepository.lockById(paymentId)
                 .orElseThrow(() -> new IllegalArgumentException("Payment not found"));
+        PaymentStatus current = payment.getStatus();
+        boolean success = "1".equals(rtnCode);
+        if (success && (current == PaymentStatus.PAID || current == PaymentStatus.REFUNDED
+                || current == PaymentStatus.PARTIAL_REFUNDED)) {
+            return;
+        }
+        if (!success && current != PaymentStatus.PENDING && current != PaymentStatus.PROCESSING) {
+            return;
+        }
 
         Registration registration = payment.getRegistration();
         // 儲存綠界交易編號
         payment.setEcpayTradeNo(tradeNo);
-        
-        // 儲存完整回應（JSON 格式）
+
+        // 儲存完整回應
         payment.setEcpayResponse(params.toString());
 
         // 更新付款狀態
-        if ("1".equals(rtnCode)) {
+        if (success) {
             // 付款成功
             payment.setStatus(PaymentStatus.PAID);
             payment.setPaidAt(LocalDateTime.now());
+            memberStatsService.recordPaymentStatus(registration, PaymentStatus.PAID);
             registration.setPaymentStatus(PaymentStatus.PAID);
 
-            
             // 處理 ATM 或超商付款的額外資訊
             if ("ATM".equals(paymentType)) {
                 payment.setAtmBankCode(params.get("BankCode"));
@@ -128,11 +181,12 @@ public class EcpayService {
                 payment.setCvsPaymentCode(params.get("PaymentNo"));
                 payment.setCvsType(params.get("PaymentType"));
             }
-            
+
             payment.setNote("付款成功 - ECPay TradeNo: " + tradeNo);
         } else {
             // 付款失敗
             payment.setStatus(PaymentStatus.CANCELLED);
+            memberStatsService.recordPaymentStatus(registration, PaymentStatus.CANCELLED);
             registration.setPaymentStatus(PaymentStatus.CANCELLED);
             payment.setFailureReason("RtnCode: " + rtnCode + ", RtnMsg: " + params.get("RtnMsg"));
             payment.setNote("付款失敗 - MerchantTradeNo: " + merchantTradeNo);
@@ -140,13 +194,13 @@ public class EcpayService {
 
         paymentRepository.save(payment);
         registrationRepository.save(registration);
-
-        // 回傳 1|OK 給綠界
-        return "1|OK";
+        // 已繳費 / 待繳費人數變動，更新列表 ETag
+        eventPublisher.publishEvent(new RegistrationCountsChangedEvent(registration.getActivityId()));
     }
 
     /**
      * 查詢綠界訂單狀態（QueryTradeInfo）
+     * @throws com.danceclub.club_system.exception.EcpayUnavailableException 綠界暫時無法連線（斷路器開啟或重試用盡）
      */
     public Map<String, String> queryTradeInfo(String merchantTradeNo) {
         // 準備查詢參數
@@ -159,56 +213,8 @@ public class EcpayService {
         String checkMacValue = generateCheckMacValue(params);
         params.put("CheckMacValue", checkMacValue);
 
-        // 發送 POST 請求到綠界
-        try {
-            StringBuilder postData = new StringBuilder();
-            boolean first = true;
-            for (Map.Entry<String, String> entry : params.entrySet()) {
-                if (!first) postData.append("&");
-                postData.append(URLEncoder.encode(entry.getKey(), StandardCharsets.UTF_8.toString()))
-                        .append("=")
-                        .append(URLEncoder.encode(entry.getValue(), StandardCharsets.UTF_8.toString()));
-                first = false;
-            }
-
-            java.net.URL url = new java.net.URL(ecpayConfig.getQueryUrl());
-            java.net.HttpURLConnection conn = (java.net.HttpURLConnection) url.openConnection();
-            conn.setRequestMethod("POST");
-            conn.setDoOutput(true);
-            conn.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
-
-            try (java.io.OutputStream os = conn.getOutputStream()) {
-                os.write(postData.toString().getBytes(StandardCharsets.UTF_8));
-            }
-
-            // 讀取回應
-            StringBuilder response = new StringBuilder();
-            try (java.io.BufferedReader br = new java.io.BufferedReader(
-                    new java.io.InputStreamReader(conn.getInputStream(), StandardCharsets.UTF_8))) {
-                String line;
-                while ((line = br.readLine()) != null) {
-                    response.append(line);
-                }
-            }
-
-            // 解析回應（格式：key=value&key=value）
-            Map<String, String> result = new LinkedHashMap<>();
-            String[] pairs = response.toString().split("&");
-            for (String pair : pairs) {
-                int idx = pair.indexOf("=");
-                if (idx > 0) {
-                    String key = java.net.URLDecoder.decode(pair.substring(0, idx), StandardCharsets.UTF_8.toString());
-                    String value = idx < pair.length() - 1
-                            ? java.net.URLDecoder.decode(pair.substring(idx + 1), StandardCharsets.UTF_8.toString())
-                            : "";
-                    result.put(key, value);
-                }
-            }
-
-            return result;
-        } catch (Exception e) {
-            throw new RuntimeException("查詢綠界訂單失敗: " + e.getMessage(), e);
-        }
+        // 經由共用連線送出（逾時、重試、斷路器由 EcpayGateway 處理）
+        return ecpayGateway.query("QueryTradeInfo", ecpayConfig.getQueryUrl(), params);
     }
 
     /**
@@ -236,18 +242,7 @@ public class EcpayService {
         boolean synced = false;
         if ("1".equals(tradeStatus) && payment.getStatus() != PaymentStatus.PAID) {
             // 綠界已付款但本地還沒更新
-            payment.setStatus(PaymentStatus.PAID);
-            payment.setPaidAt(LocalDateTime.now());
-            payment.setEcpayTradeNo(tradeNo);
-            payment.setNote("綠界查詢同步 - 付款成功, 付款方式: " + paymentTypeStr + ", 付款時間: " + paymentDateStr);
-
-            Registration registration = payment.getRegistration();
-            if (registration != null) {
-                registration.setPaymentStatus(PaymentStatus.PAID);
-                registrationRepository.save(registration);
-            }
-
-            paymentRepository.save(payment);
+            markPaidFromQuery(payment, tradeInfo);
             synced = true;
         }
 
@@ -268,6 +263,86 @@ public class EcpayService {
         return result;
     }
 
+    /**
+     * 批次套用對帳查詢結果（由 EcpayReconciliationService 呼叫，一批一個交易）
+     * 只有仍為待繳費 / 付款中的繳費會改為已繳費；查詢後已由通知或管理員更新的繳費不變。
+     * @param paidTrades paymentId -> 綠界回傳 TradeStatus=1 的查詢結果
+     * @return 實際改為已繳費的筆數
+     */
+    @Transactional
+    public int applyQueriedTrades(Map<Long, Map<String, String>> paidTrades) {
+        int synced = 0;
+        for (Map.Entry<Long, Map<String, String>> trade : paidTrades.entrySet()) {
+            Optional<Payment> locked = paymentRepository.lockById(trade.getKey());
+            if (locked.isEmpty()) {
+                continue;
+            }
+            PaymentStatus status = locked.get().getStatus();
+            if (status == PaymentStatus.PENDING || status == PaymentStatus.PROCESSING) {
+                markPaidFromQuery(locked.get(), trade.getValue());
+                synced++;
+            }
+        }
+        return synced;
+    }
+
+    /**
+     * 批次取消對帳查詢為交易失敗或逾期未付款的繳費（由 EcpayReconciliationService 呼叫，一批一個交易）
+     * 只有仍為待繳費 / 付款中的繳費會改為已取消；之後若仍收到付款成功通知，通知會改回已繳費。
+     * @param expiredTrades paymentId -> 綠界查詢結果
+     * @return 實際改為已取消的筆數
+     */
+    @Transactional
+    public int expireQueriedTrades(Map<Long, Map<String, String>> expiredTrades) {
+        int expired = 0;
+        for (Map.Entry<Long, Map<String, String>> trade : expiredTrades.entrySet()) {
+            Optional<Payment> locked = paymentRepository.lockById(trade.getKey());
+            if (locked.isEmpty()) {
+                continue;
+            }
+            Payment payment = locked.get();
+            if (payment.getStatus() != PaymentStatus.PENDING && payment.getStatus() != PaymentStatus.PROCESSING) {
+                continue;
+            }
+            String tradeStatus = trade.getValue().get("TradeStatus");
+            payment.setStatus(PaymentStatus.CANCELLED);
+            payment.setFailureReason("綠界對帳 TradeStatus: " + tradeStatus);
+            payment.setNote("綠界對帳 - 交易失敗或逾期未付款 - MerchantTradeNo: " + payment.getMerchantTradeNo());
+
+            Registration registration = payment.getRegistration();
+            if (registration != null) {
+                memberStatsService.recordPaymentStatus(registration, PaymentStatus.CANCELLED);
+                registration.setPaymentStatus(PaymentStatus.CANCELLED);
+                registrationRepository.save(registration);
+                eventPublisher.publishEvent(new RegistrationCountsChangedEvent(registration.getActivityId()));
+            }
+            paymentRepository.save(payment);
+            expired++;
+        }
+        return expired;
+    }
+
+    /**
+     * 依綠界查詢結果將繳費與報名改為已繳費
+     */
+    private void markPaidFromQuery(Payment payment, Map<String, String> tradeInfo) {
+        payment.setStatus(PaymentStatus.PAID);
+        payment.setPaidAt(LocalDateTime.now());
+        payment.setEcpayTradeNo(tradeInfo.get("TradeNo"));
+        payment.setNote("綠界查詢同步 - 付款成功, 付款方式: " + tradeInfo.get("PaymentType")
+                + ", 付款時間: " + tradeInfo.get("PaymentDate"));
+
+        Registration registration = payment.getRegistration();
+        if (registration != null) {
+            memberStatsService.recordPaymentStatus(registration, PaymentStatus.PAID);
+            registration.setPaymentStatus(PaymentStatus.PAID);
+            registrationRepository.save(registration);
+            eventPublisher.publishEvent(new RegistrationCountsChangedEvent(registration.getActivityId()));
+        }
+
+        paymentRepository.save(payment);
+    }
+
     /**
      * 將綠界付款方式對應到系統的 PaymentMethod
      */
@@ -315,52 +390,7 @@ public class EcpayService {
      * 生成 CheckMacValue（按照綠界官方規範）
      */
     private String generateCheckMacValue(Map<String, String> params) {
-        // 1) 移除 CheckMacValue（如果存在）
-        Map<String, String> sortedParams = new TreeMap<>(params);
-        sortedParams.remove("CheckMacValue");
-
-        // 2) 按鍵值 A-Z 排序（TreeMap 已自動排序）
-        
-        // 3) 將陣列轉為 query 字串
-        StringBuilder queryString = new StringBuilder();
-        boolean first = true;
-        for (Map.Entry<String, String> entry : sortedParams.entrySet()) {
-            if (!first) {
-                queryString.append("&");
-            }
-            queryString.append(entry.getKey()).append("=").append(entry.getValue());
-            first = false;
-        }
-
-        // 4) 最前方加入 HashKey，最後方加入 HashIV
-        String paramsString = "HashKey=" + ecpayConfig.getHashKey() + "&" + queryString.toString() + "&HashIV=" + ecpayConfig.getHashIv();
-
-        // 5) 做 URLEncode
-        String encodedString;
-        try {
-            encodedString = URLEncoder.encode(paramsString, StandardCharsets.UTF_8.toString());
-        } catch (UnsupportedEncodingException e) {
-            throw new RuntimeException("URL encoding failed", e);
-        }
-
-        // 6) 轉為全小寫
-        encodedString = encodedString.toLowerCase();
-
-        // 7) 轉換特定字元（與 .NET 相符的字元）
-        encodedString = encodedString
-                .replace("%2d", "-")
-                .replace("%5f", "_")
-                .replace("%2e", ".")
-                .replace("%21", "!")
-                .replace("%2a", "*")
-                .replace("%28", "(")
-                .replace("%29", ")");
-
-        // 8) 進行 SHA256 編碼
-        String hashedString = sha256(encodedString);
-
-        // 9) 轉為全大寫後回傳
-        return hashedString.toUpperCase();
+        return checkMacSigner.sign(params);
     }
 
 
@@ -384,29 +414,6 @@ public class EcpayService {
         }
     }
 
-    /**
-     * SHA256 加密
-     */
-    private String sha256(String value) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(value.getBytes(StandardCharsets.UTF_8));
-            
-            StringBuilder hexString = new StringBuilder();
-            for (byte b : hash) {
-                String hex = Integer.toHexString(0xff & b);
-                if (hex.length() == 1) {
-                    hexString.append('0');
-                }
-                hexString.append(hex);
-            }
-            
-            return hexString.toString();
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException("SHA-256 algorithm not found", e);
-        }
-    }
-
     /**
      * 建立結帳 URL（帶參數）
      */
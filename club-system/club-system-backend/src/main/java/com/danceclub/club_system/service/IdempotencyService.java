@@ -0,0 +1,179 @@
+package com.danceclub.club_system.service;
+
+import com.danceclub.club_system.repository.IdempotencyRecordRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Idempotency-Key 處理
+ * 同一個 key 第一次請求成功（2xx）後保存回應，之後的重送直接回放，不再執行業務邏輯。
+ * 先查記憶體 LRU 快取（有上限、有 TTL），查不到再查 idempotency_record 資料表。
+ * 失敗的回應與例外不保存，客戶端可以用同一個 key 重試。
+ */
+@Service
+public class IdempotencyService {
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyService.class);
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int TTL_HOURS = 24;
+    private static final int MAX_CACHE_ENTRIES = 10_000;
+    private static final int MAX_KEY_LENGTH = 200;
+
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final ObjectMapper objectMapper;
+
+    // recordKey -> 已保存的回應（依存取順序，超過上限時淘汰最久未用）
+    private final Map<String, StoredResponse> cache = Collections.synchronizedMap(
+            new LinkedHashMap<>(256, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, StoredResponse> eldest) {
+                    return size() > MAX_CACHE_ENTRIES;
+                }
+            });
+
+    // 同一個 key 同時重送時，只讓第一個請求執行
+    private final ConcurrentHashMap<String, Object> inFlight = new ConcurrentHashMap<>();
+
+    public IdempotencyService(IdempotencyRecordRepository idempotencyRecordRepository, ObjectMapper objectMapper) {
+        this.idempotencyRecordRepository = idempotencyRecordRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * 以 Idempotency-Key 包裝一次請求
+     * @param scope   作用範圍（例如 "POST /api/registrations"），不同 API 的 key 互不影響
+     * @param key     客戶端傳入的 Idempotency-Key；為空時直接執行
+     * @param request 請求內容（用來比對同一個 key 是否搭配相同內容）
+     * @param action  實際的業務邏輯
+     */
+    public ResponseEntity<?> execute(String scope, String key, Object request, Supplier<ResponseEntity<?>> action) {
+        if (key == null || key.isBlank()) {
+            return action.get();
+        }
+        if (key.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Idempotency-Key 長度不可超過 " + MAX_KEY_LENGTH);
+        }
+
+        String recordKey = scope + "|" + key;
+        String requestHash = hash(request);
+
+        StoredResponse stored = lookup(recordKey);
+        if (stored != null) {
+            return replay(stored, requestHash);
+        }
+
+        Object lock = inFlight.computeIfAbsent(recordKey, k -> new Object());
+        try {
+            synchronized (lock) {
+                // 等待期間第一個請求可能已完成
+                stored = lookup(recordKey);
+                if (stored != null) {
+                    return replay(stored, requestHash);
+                }
+
+                ResponseEntity<?> response = action.get();
+                if (response.getStatusCode().is2xxSuccessful()) {
+                    save(recordKey, requestHash, response);
+                }
+                return response;
+            }
+        } finally {
+            inFlight.remove(recordKey, lock);
+        }
+    }
+
+    /**
+     * 清除過期資料（記憶體 + 資料表）
+     * @return 資料表刪除筆數
+     */
+    public int purgeExpired() {
+        LocalDateTime now = LocalDateTime.now();
+        synchronized (cache) {
+            cache.values().removeIf(entry -> entry.expiresAt().isBefore(now));
+        }
+        return idempotencyRecordRepository.deleteExpired(now);
+    }
+
+    private StoredResponse lookup(String recordKey) {
+        LocalDateTime now = LocalDateTime.now();
+        StoredResponse cached = cache.get(recordKey);
+        if (cached != null) {
+            if (cached.expiresAt().isAfter(now)) {
+                return cached;
+            }
+            cache.remove(recordKey);
+        }
+
+        return idempotencyRecordRepository.findById(recordKey)
+                .filter(record -> record.getExpiresAt().isAfter(now))
+                .map(record -> {
+                    StoredResponse fromDb = new StoredResponse(record.getRequestHash(), record.getStatusCode(),
+                            record.getResponseBody(), record.getExpiresAt());
+                    cache.put(recordKey, fromDb);
+                    return fromDb;
+                })
+                .orElse(null);
+    }
+
+    private ResponseEntity<?> replay(StoredResponse stored, String requestHash) {
+        if (!stored.requestHash().equals(requestHash)) {
+            throw new IllegalStateException("此 Idempotency-Key 已用於不同內容的請求");
+        }
+        return ResponseEntity.status(stored.statusCode())
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(REPLAYED_HEADER, "true")
+                .body(stored.body());
+    }
+
+    private void save(String recordKey, String requestHash, ResponseEntity<?> response) {
+        String body;
+        try {
+            body = objectMapper.writeValueAsString(response.getBody());
+        } catch (JsonProcessingException e) {
+            log.warn("Idempotency 回應無法序列化，不保存：{}", recordKey, e);
+            return;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        StoredResponse stored = new StoredResponse(requestHash, response.getStatusCode().value(), body, now.plusHours(TTL_HOURS));
+
+        int inserted = idempotencyRecordRepository.insertIfAbsent(recordKey, requestHash,
+                stored.statusCode(), body, now, stored.expiresAt());
+        if (inserted == 1) {
+            cache.put(recordKey, stored);
+        } else {
+            // 另一個節點已先寫入同一個 key，之後的重送以先寫入的版本為準
+            log.debug("Idempotency 紀錄已存在：{}", recordKey);
+            cache.remove(recordKey);
+        }
+    }
+
+    private String hash(Object request) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(request);
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(json));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("無法計算請求雜湊", e);
+        }
+    }
+
+    private record StoredResponse(String requestHash, int statusCode, String body, LocalDateTime expiresAt) {}
+}
@@ -0,0 +1,177 @@
+package com.danceclub.club_system.service;
+
+import com.danceclub.club_system.dto.LotteryResultDTO;
+import com.danceclub.club_system.dto.LotteryStatusDTO;
+import com.danceclub.club_system.model.Activity;
+import com.danceclub.club_system.model.enums.DiscountType;
+import com.danceclub.club_system.model.enums.PaymentStatus;
+import com.danceclub.club_system.repository.ActivityRepository;
+import com.danceclub.club_system.repository.LotteryEntryRepository;
+import com.danceclub.club_system.repository.PaymentRepository;
+import com.danceclub.club_system.repository.RegistrationRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.security.SecureRandom;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 抽籤報名
+ * 報名期間只寫入 activity_lottery_entry（不檢查名額、不建立繳費），報名截止後一次抽籤：
+ * 1. 條件式 UPDATE 標記活動已抽籤並寫入種子，多台 / 重複觸發時只有一個交易會執行
+ * 2. 依 md5(種子:會員ID) 排名，前 N 名以一條 INSERT ... SELECT 寫入報名，再一條寫入繳費紀錄
+ * 3. 其餘登記依同一排名寫入候補名單，之後有人取消時沿用一般的候補遞補流程
+ * 由 ActivityLifecycleEngine 在報名截止時觸發，管理員也可手動觸發（截止前不可抽籤）。
+ *
+ * 金額只套用角色折扣（幹部免費 / 抽籤時仍有效的早鳥），登記抽籤時不接受優惠券與優惠碼。
+ */
+@Slf4j
+@Service
+public class LotteryService {
+
+    private static final SecureRandom SEED_SOURCE = new SecureRandom();
+
+    private final LotteryEntryRepository lotteryEntryRepository;
+    private final ActivityRepository activityRepository;
+    private final ActivityService activityService;
+    private final RegistrationRepository registrationRepository;
+    private final PaymentRepository paymentRepository;
+    private final UserService userService;
+    private final DiscountService discountService;
+    private final SeatReservationService seatReservationService;
+    private final WaitlistService waitlistService;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public LotteryService(LotteryEntryRepository lotteryEntryRepository,
+                          ActivityRepository activityRepository,
+                          ActivityService activityService,
+                          RegistrationRepository registrationRepository,
+                          PaymentRepository paymentRepository,
+                          UserService userService,
+                          DiscountService discountService,
+                          SeatReservationService seatReservationService,
+                          WaitlistService waitlistService,
+                          ApplicationEventPublisher eventPublisher) {
+        this.lotteryEntryRepository = lotteryEntryRepository;
+        this.activityRepository = activityRepository;
+        this.activityService = activityService;
+        this.registrationRepository = registrationRepository;
+        this.paymentRepository = paymentRepository;
+        this.userService = userService;
+        this.discountService = discountService;
+        this.seatReservationService = seatReservationService;
+        this.waitlistService = waitlistService;
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * 登記抽籤（報名期間內，不限人數）
+     */
+    @Transactional
+    public LotteryStatusDTO enter(Long activityId, String userId) {
+        Activity activity = activityService.getActivityById(activityId);
+        if (!activity.isLottery()) {
+            throw new IllegalStateException("此活動不是抽籤制，請直接報名");
+        }
+        activityService.validateRegistrationWindow(activity);
+        userService.getUserById(userId);
+
+        if (registrationRepository.findByActivityIdAndUserId(activityId, userId).isPresent()) {
+            throw new IllegalStateException("您已報名過!");
+        }
+        if (lotteryEntryRepository.enter(activityId, userId, LocalDateTime.now()) == 0) {
+            throw new IllegalStateException("您已登記抽籤");
+        }
+        return getStatus(activityId, userId);
+    }
+
+    /**
+     * 查詢抽籤登記狀態
+     */
+    public LotteryStatusDTO getStatus(Long activityId, String userId) {
+        Activity activity = activityService.getActivityById(activityId);
+        return LotteryStatusDTO.builder()
+                .activityId(activityId)
+                .userId(userId)
+                .entered(lotteryEntryRepository.existsByActivityIdAndUserId(activityId, userId))
+                .entryCount(lotteryEntryRepository.countByActivityId(activityId))
+                .drawnAt(activity.getLotteryDrawnAt())
+                .build();
+    }
+
+    /**
+     * 管理員手動抽籤
+     * @throws IllegalStateException 不是抽籤活動、報名尚未截止或已抽過
+     */
+    @Transactional
+    public LotteryResultDTO draw(Long activityId) {
+        return drawIfDue(activityId)
+                .orElseThrow(() -> new IllegalStateException("活動不是抽籤制、報名尚未截止或已完成抽籤"));
+    }
+
+    /**
+     * 報名已截止且尚未抽籤時執行抽籤（由 ActivityLifecycleEngine 於報名截止時呼叫）
+     * @return 抽籤結果；不需抽籤（非抽籤活動、未截止、已抽過）時回傳 empty
+     */
+    @Transactional
+    public Optional<LotteryResultDTO> drawIfDue(Long activityId) {
+        Activity activity = activityService.getActivityById(activityId);
+        if (!activity.isLottery()) {
+            return Optional.empty();
+        }
+        LocalDateTime now = LocalDateTime.now();
+        long seed = SEED_SOURCE.nextLong();
+        if (activityRepository.claimLotteryDraw(activityId, seed, now) == 0) {
+            return Optional.empty();
+        }
+        String seedKey = Long.toString(seed);
+
+        int seats = Integer.MAX_VALUE;
+        if (activity.hasParticipantLimit()) {
+            long taken = registrationRepository.countValidRegistrations(activityId);
+            seats = (int) Math.max(0, activity.getMaxParticipants() - taken);
+        }
+
+        // 金額只與角色有關，先算好兩種角色的結果，由 SQL 依會員角色選用
+        DiscountService.DiscountResult member = discountService.calculate(activity, "member", DiscountType.NONE, null);
+        DiscountService.DiscountResult officer = discountService.calculate(activity, "officer", DiscountType.NONE, null);
+        List<Long> registrationIds = lotteryEntryRepository.admitWinners(activityId, seedKey, seats,
+                member.discountType.name(), member.originalAmount, paymentStatusOf(member), member.finalAmount,
+                officer.discountType.name(), officer.originalAmount, paymentStatusOf(officer), officer.finalAmount,
+                now);
+
+        if (!registrationIds.isEmpty() && activity.requiresPayment()) {
+            paymentRepository.createActivityFeePayments(registrationIds, activity.getStartTime().minusDays(3), now);
+        }
+        seatReservationService.recount(activity);
+
+        int waitlisted = lotteryEntryRepository.waitlistRest(activityId, seedKey, now);
+        waitlistService.reloadQueue(activityId);
+
+        eventPublisher.publishEvent(new ActivityChangedEvent(activityId));
+        eventPublisher.publishEvent(new RegistrationCountsChangedEvent(activityId));
+
+        long entryCount = lotteryEntryRepository.countByActivityId(activityId);
+        log.info("【Lottery】活動 {} 抽籤完成：登記 {} 人，中籤 {} 人，候補 {} 人（seed={}）",
+                activityId, entryCount, registrationIds.size(), waitlisted, seed);
+        return Optional.of(LotteryResultDTO.builder()
+                .activityId(activityId)
+                .entryCount(entryCount)
+                .winnerCount(registrationIds.size())
+                .waitlistCount(waitlisted)
+                .seed(seed)
+                .drawnAt(now)
+                .build());
+    }
+
+    private static String paymentStatusOf(DiscountService.DiscountResult result) {
+        return result.finalAmount.compareTo(BigDecimal.ZERO) == 0
+                ? PaymentStatus.NOT_REQUIRED.name()
+                : PaymentStatus.PENDING.name();
+    }
+}
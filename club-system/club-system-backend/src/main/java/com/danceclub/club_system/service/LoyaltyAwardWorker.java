@@ -0,0 +1,63 @@
+package com.danceclub.club_system.service;
+
+import com.danceclub.club_system.model.Registration;
+import com.danceclub.club_system.repository.RegistrationRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 忠誠獎勵背景處理
+ * 簽到只發布 AttendanceRecordedEvent，計數與發券在這裡非同步執行，不佔用簽到的回應時間。
+ * 事件遺失（例如處理中重啟）時由 LoyaltyCouponSweepScheduler 定期補處理。
+ */
+@Service
+public class LoyaltyAwardWorker {
+
+    private static final Logger log = LoggerFactory.getLogger(LoyaltyAwardWorker.class);
+
+    private final DiscountService discountService;
+    private final RegistrationRepository registrationRepository;
+
+    public LoyaltyAwardWorker(DiscountService discountService, RegistrationRepository registrationRepository) {
+        this.discountService = discountService;
+        this.registrationRepository = registrationRepository;
+    }
+
+    /**
+     * 簽到交易提交後處理（簽到不在交易中時則直接於發布後處理）
+     */
+    @Async
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAttendanceRecorded(AttendanceRecordedEvent event) {
+        try {
+            discountService.recordAttendance(event.registrationId(), event.userId());
+        } catch (Exception e) {
+            // 不影響簽到，稍後由排程補處理
+            log.warn("忠誠獎勵處理失敗 registrationId={}：{}", event.registrationId(), e.getMessage());
+        }
+    }
+
+    /**
+     * 補處理指定期間內尚未計入的出席
+     * @return 處理筆數
+     */
+    public int sweepUncounted(LocalDateTime from, LocalDateTime to) {
+        List<Registration> pending = registrationRepository.findUncountedAttendance(from, to);
+        int processed = 0;
+        for (Registration registration : pending) {
+            try {
+                discountService.recordAttendance(registration.getId(), registration.getUserId());
+                processed++;
+            } catch (Exception e) {
+                log.warn("忠誠獎勵補處理失敗 registrationId={}：{}", registration.getId(), e.getMessage());
+            }
+        }
+        return processed;
+    }
+}
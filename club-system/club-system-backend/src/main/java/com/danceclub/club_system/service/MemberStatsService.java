@@ -0,0 +1,114 @@
+package com.danceclub.club_system.service;
+
+import com.danceclub.club_system.model.MemberStats;
+import com.danceclub.club_system.model.Registration;
+import com.danceclub.club_system.model.enums.PaymentStatus;
+import com.danceclub.club_system.repository.MemberStatsRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * 會員出席統計（member_stats）
+ * 簽到、取消報名、缺席標記與繳費狀態變更時，在呼叫端的交易中累加對應欄位，
+ * 讀取會員統計只需查詢單列，不必再統計 activity_registration。
+ * 累加值與報名紀錄不一致時（例如手動修改資料），可由管理員呼叫 rebuild 重新計算。
+ */
+@Service
+public class MemberStatsService {
+
+    private static final Logger log = LoggerFactory.getLogger(MemberStatsService.class);
+
+    private final MemberStatsRepository memberStatsRepository;
+
+    public MemberStatsService(MemberStatsRepository memberStatsRepository) {
+        this.memberStatsRepository = memberStatsRepository;
+    }
+
+    /**
+     * 查詢會員統計（沒有任何報名紀錄的會員回傳全部為 0）
+     */
+    public MemberStats getStats(String userId) {
+        return memberStatsRepository.findById(userId)
+                .orElseGet(() -> MemberStats.empty(userId));
+    }
+
+    /**
+     * 記錄一次簽到（出席 +1，遲到時遲到 +1）
+     * @param registration 已套用簽到結果的報名紀錄
+     */
+    @Transactional
+    public void recordCheckIn(Registration registration) {
+        int late = Boolean.TRUE.equals(registration.getIsLate()) ? 1 : 0;
+        memberStatsRepository.applyDelta(registration.getUserId(), 1, 0, late, 0, BigDecimal.ZERO);
+    }
+
+    /**
+     * 記錄一次取消報名（已繳金額的扣回由 recordPaymentStatus 處理）
+     */
+    @Transactional
+    public void recordCancellation(Registration registration) {
+        memberStatsRepository.applyDelta(registration.getUserId(), 0, 0, 0, 1, BigDecimal.ZERO);
+    }
+
+    /**
+     * 記錄批次缺席標記
+     * @param absentByUser userId -> 本次被標記缺席的場次數
+     */
+    @Transactional
+    public void recordAbsences(Map<String, Integer> absentByUser) {
+        absentByUser.forEach((userId, count) ->
+                memberStatsRepository.applyDelta(userId, 0, count, 0, 0, BigDecimal.ZERO));
+    }
+
+    /**
+     * 記錄報名的繳費狀態變更，須在設定新狀態「之前」呼叫
+     * 轉為 PAID 時累加報名金額，由 PAID 轉為其他狀態（退款、取消）時扣回；
+     * 狀態未跨越 PAID（例如綠界重複通知）時不變動。
+     *
+     * @param registration 報名紀錄（仍為舊的繳費狀態）
+     * @param next         即將設定的繳費狀態
+     */
+    @Transactional
+    public void recordPaymentStatus(Registration registration, PaymentStatus next) {
+        boolean wasPaid = PaymentStatus.PAID.equals(registration.getPaymentStatus());
+        boolean isPaid = PaymentStatus.PAID.equals(next);
+        if (wasPaid == isPaid || registration.getPaymentAmount() == null) {
+            return;
+        }
+        BigDecimal amount = isPaid ? registration.getPaymentAmount() : registration.getPaymentAmount().negate();
+        memberStatsRepository.applyDelta(registration.getUserId(), 0, 0, 0, 0, amount);
+    }
+
+    /**
+     * 由報名紀錄重建所有會員統計
+     * 重建期間鎖住統計表，同時進行的簽到 / 取消會等待重建完成後再累加，不會遺失或重複計數。
+     *
+     * @return 重建後的會員數
+     */
+    @Transactional
+    public int rebuild() {
+        memberStatsRepository.lockTable();
+        memberStatsRepository.deleteAllRows();
+        int rows = memberStatsRepository.insertFromRegistrations();
+        log.info("會員統計重建完成：{} 位會員", rows);
+        return rows;
+    }
+
+    /**
+     * 啟動時若統計表為空（第一次部署）則由報名紀錄建立
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void initializeIfEmpty() {
+        if (memberStatsRepository.count() == 0) {
+            rebuild();
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.danceclub.club_system.service;
 
+import com.danceclub.club_system.dto.PaymentPageDTO;
+import com.danceclub.club_system.dto.PaymentResponse;
 import com.danceclub.club_system.model.Payment;
 import com.danceclub.club_system.model.Registration;
 import com.danceclub.club_system.model.enums.PaymentMethod;
@@ -7,12 +9,16 @@ import com.danceclub.club_system.model.enums.PaymentStatus;
 import com.danceclub.club_system.model.enums.PaymentType;
 import com.danceclub.club_system.repository.PaymentRepository;
 import com.danceclub.club_system.repository.RegistrationRepository;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Payment Service - 處理繳費相關業務邏輯
@@ -20,13 +26,24 @@ import java.util.List;
 @Service
 public class PaymentService {
 
+    private static final int MAX_PAGE_SIZE = 200;
+    private static final Set<String> SORTABLE = Set.of("createdAt", "paidAt", "amount", "id");
+    private static final LocalDateTime EARLIEST = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final LocalDateTime LATEST = LocalDateTime.of(9999, 12, 31, 0, 0);
+
     private final PaymentRepository paymentRepository;
     private final RegistrationRepository registrationRepository;
+    private final MemberStatsService memberStatsService;
+    private final ApplicationEventPublisher eventPublisher;
 
     public PaymentService(PaymentRepository paymentRepository, 
-                         RegistrationRepository registrationRepository) {
+                         RegistrationRepository registrationRepository,
+                         MemberStatsService memberStatsService,
+                         ApplicationEventPublisher eventPublisher) {
         this.paymentRepository = paymentRepository;
         this.registrationRepository = registrationRepository;
+        this.memberStatsService = memberStatsService;
+        this.eventPublisher = eventPublisher;
     }
 
     /**
@@ -95,8 +112,11 @@ public class PaymentService {
         if (registration == null) {
             throw new IllegalArgumentException("報名記錄不存在");
         }
+        memberStatsService.recordPaymentStatus(registration, PaymentStatus.PAID);
         registration.setPaymentStatus(PaymentStatus.PAID);
         registrationRepository.save(registration);
+        // 已繳費 / 待繳費人數變動，更新列表 ETag
+        eventPublisher.publishEvent(new RegistrationCountsChangedEvent(registration.getActivityId()));
 
         return paymentRepository.save(payment);
     }
@@ -171,8 +191,10 @@ public class PaymentService {
         if (registration == null) {
             throw new IllegalArgumentException("報名記錄不存在");
         }
+        memberStatsService.recordPaymentStatus(registration, PaymentStatus.REFUNDED);
         registration.setPaymentStatus(PaymentStatus.REFUNDED);
         registrationRepository.save(registration);
+        eventPublisher.publishEvent(new RegistrationCountsChangedEvent(registration.getActivityId()));
 
         return paymentRepository.save(payment);
     }
@@ -283,8 +305,11 @@ public class PaymentService {
         if (registration == null) {
             throw new IllegalArgumentException("報名記錄不存在");
         }
+        memberStatsService.recordPaymentStatus(registration, PaymentStatus.PAID);
         registration.setPaymentStatus(PaymentStatus.PAID);
         registrationRepository.save(registration);
+        // 已繳費 / 待繳費人數變動，更新列表 ETag
+        eventPublisher.publishEvent(new RegistrationCountsChangedEvent(registration.getActivityId()));
 
         return paymentRepository.save(payment);
     }
@@ -327,6 +352,58 @@ public class PaymentService {
         return paymentRepository.findAll();
     }
 
+    /**
+     * 取得付款記錄（管理員列表，分頁）
+     * 付款、報名、使用者在同一個查詢中 JOIN 並直接組成 PaymentResponse，不再逐筆載入報名與使用者
+     *
+     * @param status     付款狀態（選填）
+     * @param method     付款方式（選填）
+     * @param from       建立時間起（含，選填）
+     * @param to         建立時間迄（不含，選填）
+     * @param activityId 活動 ID（選填）
+     * @param userId     使用者 ID（選填）
+     * @param keyword    姓名 / 使用者 ID / Email 關鍵字（選填，不分大小寫）
+     * @param sort       排序欄位（createdAt、paidAt、amount、id）
+     * @param direction  asc 或 desc
+     */
+    public PaymentPageDTO getAdminPaymentPage(PaymentStatus status, PaymentMethod method,
+                                              LocalDateTime from, LocalDateTime to,
+                                              Long activityId, String userId, String keyword,
+                                              String sort, String direction, int page, int size) {
+        if (page < 0 || size < 1 || size > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("page 不可小於 0，size 必須介於 1 ~ " + MAX_PAGE_SIZE);
+        }
+        if (!SORTABLE.contains(sort)) {
+            throw new IllegalArgumentException("不支援的排序欄位: " + sort);
+        }
+        Sort.Direction dir = Sort.Direction.fromString(direction);
+        // 同值時以 id 排序，翻頁時順序固定
+        Sort order = Sort.by(new Sort.Order(dir, sort).nullsLast());
+        if (!"id".equals(sort)) {
+            order = order.and(Sort.by(dir, "id"));
+        }
+
+        LocalDateTime createdFrom = from != null ? from : EARLIEST;
+        LocalDateTime createdTo = to != null ? to : LATEST;
+        String pattern = keyword == null || keyword.isBlank()
+                ? null
+                : "%" + keyword.trim().toLowerCase()
+                        .replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+
+        List<PaymentResponse> items = paymentRepository.findAdminPage(status, method, createdFrom, createdTo,
+                activityId, userId, pattern, PageRequest.of(page, size, order));
+        // 第一頁未滿時不必再查總數
+        long total = (page == 0 && items.size() < size)
+                ? items.size()
+                : paymentRepository.countAdminPage(status, method, createdFrom, createdTo, activityId, userId, pattern);
+        return PaymentPageDTO.builder()
+                .items(items)
+                .total(total)
+                .page(page)
+                .size(size)
+                .build();
+    }
+
     /**
      * 依狀態取得付款記錄
      */
@@ -0,0 +1,193 @@
+package com.danceclub.club_system.service;
+
+import com.danceclub.club_system.exception.RegistrationBusyException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 報名流量控管（每個活動一個閘門）
+ * 開放報名瞬間大量請求同時進來時，同一活動最多 MAX_CONCURRENT 個請求進入報名交易，
+ * 其餘依到達順序排隊（公平號誌），超過排隊上限或等待逾時直接回應 503，不佔用資料庫連線。
+ * 已知額滿的活動（剛有人因額滿報名失敗）在 FULL_MARK_TTL 內直接拒絕，不查詢資料庫；
+ * 有名額釋出（取消報名、調整人數上限）時立即解除。
+ * 閘門在沒有請求使用、也沒有額滿標記時移除，不會隨活動數無限累積。
+ *
+ * 指標：
+ * registration.admission.queue.depth 目前排隊人數
+ * registration.admission.wait        排隊等待時間
+ * registration.admission.rejected    拒絕次數（reason = full / queue_full / timeout）
+ */
+@Service
+public class RegistrationAdmissionService {
+
+    private static final String FULL_MESSAGE = "活動已額滿!";
+
+    private static final int MAX_CONCURRENT = 2;
+    private static final int MAX_QUEUE = 200;
+    private static final long MAX_WAIT_MILLIS = 10_000;
+    private static final long FULL_MARK_TTL_NANOS = TimeUnit.SECONDS.toNanos(15);
+    private static final int RETRY_AFTER_SECONDS = 5;
+
+    // activityId -> 該活動的閘門
+    private final Map<Long, Gate> gates = new ConcurrentHashMap<>();
+    private final AtomicInteger queueDepth = new AtomicInteger();
+
+    private final Timer waitTimer;
+    private final Counter rejectedFull;
+    private final Counter rejectedQueueFull;
+    private final Counter rejectedTimeout;
+
+    public RegistrationAdmissionService(MeterRegistry meterRegistry) {
+        Gauge.builder("registration.admission.queue.depth", queueDepth, AtomicInteger::get)
+                .description("等待進入報名交易的請求數")
+                .register(meterRegistry);
+        this.waitTimer = Timer.builder("registration.admission.wait")
+                .description("報名請求排隊等待時間")
+                .register(meterRegistry);
+        this.rejectedFull = rejectedCounter(meterRegistry, "full");
+        this.rejectedQueueFull = rejectedCounter(meterRegistry, "queue_full");
+        this.rejectedTimeout = rejectedCounter(meterRegistry, "timeout");
+    }
+
+    /**
+     * 通過閘門後執行報名
+     * 必須在任何資料庫存取之前呼叫，排隊期間才不會佔用連線。
+     *
+     * @param activityId 活動 ID
+     * @param action     報名邏輯
+     * @throws IllegalStateException      活動已知額滿
+     * @throws RegistrationBusyException  排隊已滿或等待逾時
+     */
+    public <T> T admit(Long activityId, Supplier<T> action) {
+        Gate gate = enter(activityId);
+        try {
+            return admit(gate, action);
+        } finally {
+            leave(activityId);
+        }
+    }
+
+    private <T> T admit(Gate gate, Supplier<T> action) {
+        if (gate.isKnownFull()) {
+            rejectedFull.increment();
+            throw new IllegalStateException(FULL_MESSAGE);
+        }
+
+        if (gate.waiting.incrementAndGet() > MAX_QUEUE) {
+            gate.waiting.decrementAndGet();
+            rejectedQueueFull.increment();
+            throw new RegistrationBusyException("目前報名人數眾多，請稍後再試", RETRY_AFTER_SECONDS);
+        }
+        queueDepth.incrementAndGet();
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = gate.permits.tryAcquire(MAX_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        } finally {
+            gate.waiting.decrementAndGet();
+            queueDepth.decrementAndGet();
+            waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        if (!acquired) {
+            rejectedTimeout.increment();
+            throw new RegistrationBusyException("目前報名人數眾多，請稍後再試", RETRY_AFTER_SECONDS);
+        }
+
+        try {
+            // 排隊期間可能已被前面的人報滿
+            if (gate.isKnownFull()) {
+                rejectedFull.increment();
+                throw new IllegalStateException(FULL_MESSAGE);
+            }
+            return action.get();
+        } finally {
+            gate.permits.release();
+        }
+    }
+
+    /**
+     * 標記活動已額滿（報名時扣名額失敗）
+     */
+    public void markFull(Long activityId) {
+        gates.computeIfAbsent(activityId, id -> new Gate()).fullUntil = System.nanoTime() + FULL_MARK_TTL_NANOS;
+    }
+
+    /**
+     * 解除額滿標記（有名額釋出或人數上限調整）
+     */
+    public void markAvailable(Long activityId) {
+        gates.computeIfPresent(activityId, (id, gate) -> {
+            gate.fullUntil = 0;
+            return gate.isIdle() ? null : gate;
+        });
+    }
+
+    /**
+     * 移除閒置的閘門（沒有請求使用且額滿標記已過期）
+     * 使用中的閘門在最後一個請求離開時移除，這裡只處理額滿標記到期後留下的閘門。
+     * @return 移除數量
+     */
+    @Scheduled(fixedDelay = 60_000)
+    public int evictIdleGates() {
+        int before = gates.size();
+        gates.keySet().forEach(id -> gates.computeIfPresent(id, (key, gate) -> gate.isIdle() ? null : gate));
+        return before - gates.size();
+    }
+
+    // 取得閘門並登記使用中；與 leave、evictIdleGates 都在 ConcurrentHashMap 的同一個 key 上原子執行，
+    // 使用中的閘門不會被移除，同一活動不會同時存在兩個閘門
+    private Gate enter(Long activityId) {
+        return gates.compute(activityId, (id, gate) -> {
+            Gate entered = gate != null ? gate : new Gate();
+            entered.users++;
+            return entered;
+        });
+    }
+
+    private void leave(Long activityId) {
+        gates.computeIfPresent(activityId, (id, gate) -> {
+            gate.users--;
+            return gate.isIdle() ? null : gate;
+        });
+    }
+
+    private static Counter rejectedCounter(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("registration.admission.rejected")
+                .description("報名請求被流量控管拒絕的次數")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    /** 單一活動的閘門：公平號誌 + 排隊人數 + 額滿標記 */
+    private static class Gate {
+        private final Semaphore permits = new Semaphore(MAX_CONCURRENT, true);
+        private final AtomicInteger waiting = new AtomicInteger();
+        // 額滿標記有效期限（System.nanoTime），0 表示未額滿
+        private volatile long fullUntil;
+        // 正在使用此閘門的請求數（只在 gates 的 compute 中修改）
+        private int users;
+
+        private boolean isIdle() {
+            return users == 0 && !isKnownFull();
+        }
+
+        private boolean isKnownFull() {
+            long until = fullUntil;
+            return until != 0 && System.nanoTime() - until < 0;
+        }
+    }
+}
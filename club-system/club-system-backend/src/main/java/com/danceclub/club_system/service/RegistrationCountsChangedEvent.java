@@ -0,0 +1,9 @@
+package com.danceclub.club_system.service;
+
+/**
+ * 活動的報名人數 / 剩餘名額 / 簽到人數 / 繳費人數有變動（報名、取消報名、簽到、繳費狀態變更）
+ * 由 RegistrationService、PaymentService、EcpayService 發布，ActivityCounterBroadcaster 於交易提交後推播給訂閱中的頁面，
+ * ResourceVersionService 更新活動列表 ETag（列表含剩餘名額與報名統計）。
+ */
+public record RegistrationCountsChangedEvent(Long activityId) {
+}
@@ -6,6 +6,8 @@ import com.danceclub.club_system.model.Activity;
 import com.danceclub.club_system.service.PromoCodeService;
 import com.danceclub.club_system.model.Payment;
 import com.danceclub.club_system.model.Registration;
+import com.danceclub.club_system.model.User;
+import com.danceclub.club_system.model.WaitlistEntry;
 import com.danceclub.club_system.model.enums.ActivityStatus;
 import com.danceclub.club_system.model.enums.DiscountType;
 import com.danceclub.club_system.model.enums.PaymentStatus;
@@ -14,13 +16,20 @@ import com.danceclub.club_system.model.enums.RegistrationStatus;
 import com.danceclub.club_system.repository.ActivityRepository;
 import com.danceclub.club_system.repository.PaymentRepository;
 import com.danceclub.club_system.repository.RegistrationRepository;
+import com.danceclub.club_system.repository.UserRepository;
+import jakarta.persistence.EntityManager;
 import jakarta.transaction.Transactional;
 import org.apache.coyote.BadRequestException;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -37,8 +46,22 @@ public class RegistrationService {
     private final EmailService emailService;
     private final DiscountService discountService;
     private final PromoCodeService promoCodeService;
-
-    public RegistrationService(RegistrationRepository registrationRepository, @Lazy ActivityService activityService, PaymentRepository paymentRepository, UserService userService, EmailService emailService, ActivityRepository activityRepository, DiscountService discountService, PromoCodeService promoCodeService){
+    private final SeatReservationService seatReservationService;
+    private final WaitlistService waitlistService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final MemberStatsService memberStatsService;
+    private final EntityManager entityManager;
+    private final UserRepository userRepository;
+
+    //管理員報名清單每頁上限
+    private static final int MAX_PAGE_SIZE = 200;
+    //未指定報名時間區間 / 第一頁游標時使用的極值
+    private static final LocalDateTime EARLIEST = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final LocalDateTime LATEST = LocalDateTime.of(9999, 12, 31, 0, 0);
+    //簽到於活動開始前多久開放（批次上傳的掃碼時間不可早於此時間）
+    private static final int CHECK_IN_OPENS_BEFORE_START_MINUTES = 60;
+
+    public RegistrationService(RegistrationRepository registrationRepository, @Lazy ActivityService activityService, PaymentRepository paymentRepository, UserService userService, EmailService emailService, ActivityRepository activityRepository, DiscountService discountService, PromoCodeService promoCodeService, SeatReservationService seatReservationService, WaitlistService waitlistService, ApplicationEventPublisher eventPublisher, MemberStatsService memberStatsService, EntityManager entityManager, UserRepository userRepository){
         this.registrationRepository = registrationRepository;
         this.activityService = activityService;
         this.paymentRepository = paymentRepository;
@@ -47,6 +70,12 @@ public class RegistrationService {
         this.activityRepository = activityRepository;
         this.discountService = discountService;
         this.promoCodeService = promoCodeService;
+        this.seatReservationService = seatReservationService;
+        this.waitlistService = waitlistService;
+        this.eventPublisher = eventPublisher;
+        this.memberStatsService = memberStatsService;
+        this.entityManager = entityManager;
+        this.userRepository = userRepository;
     }
 
     /**
@@ -88,6 +117,8 @@ public class RegistrationService {
 
     /**
      * 建立新報名（含折扣計算）
+     * 名額由 SeatReservationService 以單一條件式 UPDATE 原子性扣除，
+     * 後續任何步驟失敗時整筆交易（含名額、優惠碼使用次數）一起回滾。
      *
      * @param activityId        活動 id
      * @param userId            會員 id
@@ -95,20 +126,13 @@ public class RegistrationService {
      * @param loyaltyCouponId   當 requestedDiscount = COUPON 時，指定券 ID
      * @return 報名紀錄
      */
+    @Transactional
     public Registration createRegistration(Long activityId, String userId,
                                            DiscountType requestedDiscount, Long loyaltyCouponId,
                                            String promoCode) {
         Activity existingActivity = activityService.getActivityById(activityId);
 
-        //檢查是否已到人數上限
-        if(existingActivity.getMaxParticipants() != null){
-            Long currentCount = registrationRepository.countValidRegistrations(activityId);
-            if (currentCount >= existingActivity.getMaxParticipants()){
-                throw new IllegalStateException("活動已額滿!");
-            }
-        }
-
-        activityService.validateCanRegister(activityId);
+        activityService.validateRegistrationOpen(existingActivity);
 
         Optional<Registration> existing = registrationRepository
                 .findByActivityIdAndUserId(activityId, userId);
@@ -117,6 +141,22 @@ public class RegistrationService {
             throw new IllegalStateException("您已報名過!");
         }
 
+        Registration saved = reserveAndRegister(existingActivity, userId, requestedDiscount, loyaltyCouponId, promoCode);
+
+        // 直接報名成功的會員不需要再候補
+        waitlistService.removeIfWaiting(activityId, userId);
+        eventPublisher.publishEvent(new RegistrationCountsChangedEvent(activityId));
+
+        return saved;
+    }
+
+    /**
+     * 折扣計算 → 保留名額 → 寫入報名與繳費紀錄
+     * 一般報名與候補遞補共用，必須在呼叫端的交易中執行
+     */
+    private Registration reserveAndRegister(Activity existingActivity, String userId,
+                                            DiscountType requestedDiscount, Long loyaltyCouponId,
+                                            String promoCode) {
         // ==== 折扣計算 ====
         UserResponse user = userService.getUserById(userId);
         String userRole = user.getRole();
@@ -129,9 +169,14 @@ public class RegistrationService {
             discountResult = discountService.calculate(existingActivity, userRole, effectiveDiscount, loyaltyCouponId);
         }
 
+        // ==== 保留名額（額滿時直接失敗，不會寫入報名紀錄） ====
+        if (!seatReservationService.tryReserve(existingActivity)) {
+            throw new IllegalStateException("活動已額滿!");
+        }
+
         // ==== 建立報名紀錄 ====
         Registration registration = new Registration();
-        registration.setActivityId(activityId);
+        registration.setActivityId(existingActivity.getId());
         registration.setUserId(userId);
         registration.setDiscountType(discountResult.discountType);
         registration.setOriginalAmount(discountResult.originalAmount);
@@ -247,6 +292,7 @@ public class RegistrationService {
      * @param id 報名 id
      * @return 取消後的報名
      */
+    @Transactional
     public Registration cancelRegistration(Long id) {
         // 1. 查詢報名紀錄
         Registration registration = getRegistrationById(id);
@@ -264,6 +310,7 @@ public class RegistrationService {
         }
 
         // 4. 更新報名狀態
+        memberStatsService.recordCancellation(registration);
         registration.setStatus(RegistrationStatus.CANCELLED);
 
         // 5. 同步更新繳費狀態
@@ -281,6 +328,7 @@ public class RegistrationService {
 
         } else if (PaymentStatus.PAID.equals(currentPaymentStatus)) {
             // 已繳費：標記為待退款（REFUNDED），由管理員後續處理退款
+            memberStatsService.recordPaymentStatus(registration, PaymentStatus.REFUNDED);
             registration.setPaymentStatus(PaymentStatus.REFUNDED);
 
             // 同步更新 Payment entity（若存在）
@@ -291,8 +339,40 @@ public class RegistrationService {
         }
         // NOT_REQUIRED（免費活動）：繳費狀態不動
 
-        // 6. 儲存報名紀錄
-        return registrationRepository.save(registration);
+        // 6. 歸還名額；確實空出名額時於交易提交後由候補遞補（遞補失敗不影響取消）
+        Registration cancelled = registrationRepository.save(registration);
+        if (seatReservationService.release(activity)) {
+            eventPublisher.publishEvent(new SeatReleasedEvent(activity.getId()));
+        }
+        eventPublisher.publishEvent(new RegistrationCountsChangedEvent(activity.getId()));
+
+        return cancelled;
+    }
+
+    /**
+     * 候補遞補：依序取出候補名單第一位並為其建立報名（含繳費紀錄），由 WaitlistPromotionWorker 在取消報名提交後呼叫
+     * 在獨立交易中執行：遞補失敗（例如名額已被直接報名取走）時整筆回滾，候補者保留在原順位
+     * 活動已開始或未發布時不遞補；會員已刪除或已有報名紀錄則略過改取下一位
+     * @return 遞補成功的報名；沒有可遞補的候補時為 empty
+     */
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    public Optional<Registration> promoteFromWaitlist(Long activityId) {
+        Activity activity = activityService.getActivityById(activityId);
+        if (!activity.isPublished() || activity.hasStarted()) {
+            return Optional.empty();
+        }
+        Optional<WaitlistEntry> next;
+        while ((next = waitlistService.pollNext(activityId)).isPresent()) {
+            String userId = next.get().getUserId();
+            if (!userRepository.existsById(userId)
+                    || registrationRepository.findByActivityIdAndUserId(activityId, userId).isPresent()) {
+                continue;
+            }
+            Registration promoted = reserveAndRegister(activity, userId, DiscountType.NONE, null, null);
+            eventPublisher.publishEvent(new RegistrationCountsChangedEvent(activityId));
+            return Optional.of(promoted);
+        }
+        return Optional.empty();
     }
 
     //====繳費相關====//
@@ -308,6 +388,7 @@ public class RegistrationService {
      * @param id 報名id
      * @return 更新後的繳費狀態
      */
+    @Transactional
     public Registration updatePaymentStatus(Long id){
         //查詢報名紀錄
         Registration registration = getRegistrationById(id);
@@ -315,7 +396,9 @@ public class RegistrationService {
         if (!PaymentStatus.PENDING.equals(registration.getPaymentStatus())){
             throw new IllegalStateException("此報名不需要繳費或是已繳費");
         }
+        memberStatsService.recordPaymentStatus(registration, PaymentStatus.PAID);
         registration.setPaymentStatus(PaymentStatus.PAID);
+        eventPublisher.publishEvent(new RegistrationCountsChangedEvent(registration.getActivityId()));
         return registrationRepository.save(registration);
     }
 
@@ -432,11 +515,34 @@ public class RegistrationService {
      * @param id 報名id
      * @return 更新後的報名狀態
      */
+    @Transactional
     public Registration checkIn(Long id){
         //查詢報名紀錄
         Registration registration = getRegistrationById(id);
         //查詢活動id
         Activity activity = activityService.getActivityById(registration.getActivityId());
+        //檢查並設定簽到狀態
+        applyCheckIn(registration, activity, LocalDateTime.now());
+        Registration saved = registrationRepository.save(registration);
+        memberStatsService.recordCheckIn(saved);
+
+        // 忠誠優惠券由 LoyaltyAwardWorker 非同步處理，不影響簽到回應時間
+        eventPublisher.publishEvent(new AttendanceRecordedEvent(saved.getId(), saved.getUserId()));
+        eventPublisher.publishEvent(new RegistrationCountsChangedEvent(saved.getActivityId()));
+
+        return saved;
+    }
+
+    /**
+     * 簽到規則：檢查是否可簽到，並設定簽到時間、遲到、出席狀態（不儲存）
+     * 單筆、掃碼與批次簽到共用：簽到時間早於簽到開放時間（活動開始前 60 分鐘）一律拒絕
+     * @param checkInTime 簽到時間（遲到以活動開始後 30 分鐘為準）
+     */
+    private void applyCheckIn(Registration registration, Activity activity, LocalDateTime checkInTime){
+        //檢查簽到是否已開放
+        if (checkInTime.isBefore(activity.getStartTime().minusMinutes(CHECK_IN_OPENS_BEFORE_START_MINUTES))){
+            throw new IllegalStateException("尚未開放簽到，活動開始前 " + CHECK_IN_OPENS_BEFORE_START_MINUTES + " 分鐘開放");
+        }
         //檢查是否已簽到過
         if (registration.isCheckedIn()){
             throw new IllegalStateException("您已簽到過");
@@ -451,45 +557,124 @@ public class RegistrationService {
             throw new IllegalStateException("未繳完款不得簽到，請先完成繳費，謝謝合作!");
         }
         //設定簽到狀態
-        LocalDateTime now = LocalDateTime.now();
         registration.setCheckedIn(true);
-        registration.setCheckInTime(now);
+        registration.setCheckInTime(checkInTime);
         //判斷遲到
         LocalDateTime lateDateTime = activity.getStartTime().plusMinutes(30);
-        if (now.isAfter(lateDateTime)){
-            registration.setIsLate(true);
-        }
-        else{
-            registration.setIsLate(false);
-        }
+        registration.setIsLate(checkInTime.isAfter(lateDateTime));
         //更新狀態
         registration.setStatus(RegistrationStatus.ATTENDED);
-        Registration saved = registrationRepository.save(registration);
+    }
 
-        // 簽到後檢查忠誠優惠券資格（冪等，不影響主流程）
-        try {
-            discountService.checkAndAwardLoyaltyCoupons(registration.getUserId());
-        } catch (Exception e) {
-            System.err.println("忠誠優惠券發放失敗（不影響簽到）: " + e.getMessage());
+    /**
+     * 批次簽到（門口掃碼機離線暫存後分批上傳）
+     * 一次查出所有報名紀錄、逐筆套用簽到規則（以掃碼時間判斷遲到），成功的簽到在同一個交易中寫入。
+     * 單筆失敗不影響其他筆，結果依請求順序回傳。
+     * 掃碼時間早於簽到開放時間的視為無效（見 applyCheckIn），避免回填時間規避遲到。
+     *
+     * @param activityId 活動 ID
+     * @param scans      掃碼清單（userId + 掃碼時間）
+     * @return 每筆的簽到結果
+     */
+    @Transactional
+    public List<BatchCheckInResultDTO> batchCheckIn(Long activityId, List<BatchCheckInRequest.Scan> scans){
+        if (activityId == null){
+            throw new IllegalArgumentException("activityId 不可為空");
         }
+        Activity activity = activityService.getActivityById(activityId);
 
-        return saved;
+        //一次查出所有報名紀錄
+        Map<String, Registration> registrations = registrationRepository
+                .findByActivityIdAndUserIdIn(activityId,
+                        scans.stream().map(BatchCheckInRequest.Scan::getUserId).collect(Collectors.toSet()))
+                .stream()
+                .collect(Collectors.toMap(Registration::getUserId, r -> r));
+
+        LocalDateTime now = LocalDateTime.now();
+        List<BatchCheckInResultDTO> results = new ArrayList<>();
+        List<Registration> checkedIn = new ArrayList<>();
+        for (BatchCheckInRequest.Scan scan : scans) {
+            BatchCheckInResultDTO.BatchCheckInResultDTOBuilder result = BatchCheckInResultDTO.builder()
+                    .userId(scan.getUserId());
+            Registration registration = registrations.get(scan.getUserId());
+            if (registration == null) {
+                results.add(result.success(false).message("查無報名紀錄，請確認是否已完成報名").build());
+                continue;
+            }
+            result.registrationId(registration.getId());
+            //掃碼時間不可晚於伺服器時間（掃碼機時鐘誤差）
+            LocalDateTime scannedAt = scan.getScannedAt() != null && scan.getScannedAt().isBefore(now)
+                    ? scan.getScannedAt() : now;
+            try {
+                applyCheckIn(registration, activity, scannedAt);
+                checkedIn.add(registration);
+                results.add(result.success(true)
+                        .checkInTime(registration.getCheckInTime())
+                        .isLate(registration.getIsLate())
+                        .build());
+            } catch (IllegalStateException e) {
+                results.add(result.success(false).message(e.getMessage()).build());
+            }
+        }
+
+        //同一交易寫入所有成功的簽到
+        registrationRepository.saveAll(checkedIn);
+        checkedIn.forEach(memberStatsService::recordCheckIn);
+
+        // 忠誠優惠券由 LoyaltyAwardWorker 非同步處理
+        checkedIn.forEach(registration -> eventPublisher.publishEvent(
+                new AttendanceRecordedEvent(registration.getId(), registration.getUserId())));
+        if (!checkedIn.isEmpty()) {
+            eventPublisher.publishEvent(new RegistrationCountsChangedEvent(activityId));
+        }
+
+        return results;
+    }
+
+    /** 活動完成結果：實際完成的活動與標記為缺席的報名筆數 */
+    public record Completion(List<Long> activityIds, int absentCount) {}
+
+    /**
+     * 已結束的活動改為已完成，並在同一交易將未簽到的報名標記為缺席（由 ActivityLifecycleEngine 於到期時呼叫）
+     * 任一步失敗都會整筆回滾，重試時活動仍是 PUBLISHED，會再次完成並標記缺席，不會只完成而漏標缺席
+     */
+    @Transactional
+    public Completion completeDueActivities(Collection<Long> activityIds) {
+        List<Long> completed = activityService.completeDueActivities(activityIds);
+        return new Completion(completed, markAbsentForActivities(completed));
     }
 
+    /**
+     * 補標記：已完成且已結束的活動中尚未簽到的報名標記為缺席（啟動時執行，補上停機期間漏掉的活動）
+     * 每次只處理一批仍有未簽到報名的活動，呼叫端重複呼叫直到回傳 0
+     * @param batchSize 每批活動數
+     * @return 標記筆數
+     */
     @Transactional
-    public int markAbsentForExpiredActivities() {
+    public int markAbsentForExpiredActivities(int batchSize) {
         LocalDateTime now = LocalDateTime.now();
 
         List<Long> expiredActivityIds =
-                activityRepository.findExpiredActivityIds(ActivityStatus.COMPLETED, now);
+                activityRepository.findExpiredActivityIds(ActivityStatus.COMPLETED, now, Limit.of(batchSize));
 
-        if (expiredActivityIds.isEmpty()) return 0;
+        return markAbsentForActivities(expiredActivityIds);
+    }
 
-        return registrationRepository.markAbsentByActivityIds(
-                expiredActivityIds,
-                RegistrationStatus.REGISTERED,
-                RegistrationStatus.ABSENT
-        );
+    /**
+     * 指定活動中尚未簽到的報名標記為缺席，並依會員累加缺席場次（同一交易）
+     * @return 標記筆數
+     */
+    @Transactional
+    public int markAbsentForActivities(List<Long> activityIds) {
+        if (activityIds.isEmpty()) return 0;
+
+        Map<String, Integer> absentByUser = new HashMap<>();
+        for (Object[] row : registrationRepository.markAbsentByActivityIds(activityIds)) {
+            absentByUser.put((String) row[0], ((Number) row[1]).intValue());
+        }
+        memberStatsService.recordAbsences(absentByUser);
+
+        return absentByUser.values().stream().mapToInt(Integer::intValue).sum();
     }
 
     /**
@@ -500,6 +685,7 @@ public class RegistrationService {
      * @param activityId 活動 ID
      * @return 更新後的報名紀錄
      */
+    @Transactional
     public Registration checkInByUser(String userId, Long activityId) {
         // 1. 驗證參數
         if (userId == null || userId.trim().isEmpty()) {
@@ -536,18 +722,18 @@ public class RegistrationService {
         List<Registration> allRegistrations = registrationRepository
                 .findByActivityIdOrderByRegistrationTimeAsc(activityId);
         //有效報名名單
-        return allRegistrations.stream()
+        List<Registration> validRegistrations = allRegistrations.stream()
                 .filter(r -> !RegistrationStatus.CANCELLED.equals(r.getStatus()))
+                .collect(Collectors.toList());
+
+        //會員姓名一次批次查回（找不到的會員姓名為 null）
+        Map<String, User> users = userService.getUsersByIds(
+                validRegistrations.stream().map(Registration::getUserId).toList());
+
+        return validRegistrations.stream()
                 .map(reg -> {
-                    String userName;
-                    try {
-                        UserResponse user = userService.getUserById(reg.getUserId());
-                        userName = user.getName();
-                    } catch (Exception e) {
-                        userName = null;
-                    }
-
-                    return RegistrationWithUserDTO.from(reg, userName);
+                    User user = users.get(reg.getUserId());
+                    return RegistrationWithUserDTO.from(reg, user != null ? user.getName() : null);
                 })
                 .collect(Collectors.toList());
     }
@@ -562,42 +748,90 @@ public class RegistrationService {
             throw new IllegalArgumentException("會員ID不可為空");
         }
 
-        //  查報名紀錄
-        List<Registration> registrations =
-                registrationRepository.findByUserIdOrderByRegistrationTimeDesc(userId);
-
         //  查會員資訊（一次，所有報名共用）
         UserResponse user = userService.getUserById(userId);
 
-        // 整合
-        return registrations.stream()
-                .map(reg -> {
-                    // 查活動
-                    Activity activity = null;
-                    try {
-                        activity = activityService.getActivityById(reg.getActivityId());
-                    } catch (Exception ignored) { }
-
-                    // 查繳費紀錄（可能為 null）
-                    Payment payment = null;
-                    try {
-                        payment = paymentRepository.findByRegistration(reg).orElse(null);
-                    } catch (Exception ignored) { }
-
-                    return RegistrationDetailDTO.from(reg, user, activity, payment);
-                })
+        //  報名、活動、繳費一次查回後整合
+        return loadUserRegistrationRows(userId).stream()
+                .map(row -> RegistrationDetailDTO.from(row.registration(), user, row.activity(), row.payment()))
                 .collect(Collectors.toList());
     }
 
     /**
-     *查詢所有有效報名紀錄
+     * 查詢報名紀錄（管理員清單，keyset 分頁）
+     * 依報名時間由新到舊，以上一頁最後一筆的 (報名時間, id) 作為游標往後查，翻到第幾頁都只讀取 size 筆
+     *
+     * @param activityId 活動 ID（選填）
+     * @param status     報名狀態（選填，不指定時排除已取消）
+     * @param from       報名時間起（含，選填）
+     * @param to         報名時間迄（不含，選填）
+     * @param cursor     上一頁回傳的 nextCursor，第一頁不帶
+     * @param size       每頁筆數（1 ~ MAX_PAGE_SIZE）
+     * @return 一頁報名紀錄與下一頁游標
      */
-    public List<Registration> getAllRegistrations(){
-         return registrationRepository.findByStatusNot(RegistrationStatus.CANCELLED);
-        //有效報名名單
+    public RegistrationPageDTO getRegistrationsPage(Long activityId, RegistrationStatus status,
+                                                    LocalDateTime from, LocalDateTime to,
+                                                    String cursor, int size){
+        if (size < 1 || size > MAX_PAGE_SIZE){
+            throw new IllegalArgumentException("size 必須介於 1 ~ " + MAX_PAGE_SIZE);
+        }
+        PageCursor after = cursor == null || cursor.isBlank() ? null : decodeCursor(cursor);
+
+        //多查一筆判斷是否還有下一頁
+        List<Registration> rows = registrationRepository.findPageAfter(
+                activityId, status,
+                from != null ? from : EARLIEST,
+                to != null ? to : LATEST,
+                after != null ? after.registrationTime() : LATEST,
+                after != null ? after.id() : Long.MAX_VALUE,
+                Limit.of(size + 1));
+        boolean hasMore = rows.size() > size;
+        List<Registration> items = hasMore ? rows.subList(0, size) : rows;
+        Registration last = items.isEmpty() ? null : items.get(items.size() - 1);
+
+        return RegistrationPageDTO.builder()
+                .items(items)
+                .nextCursor(hasMore ? encodeCursor(last) : null)
+                .hasMore(hasMore)
+                .build();
+    }
 
+    /**
+     * 依條件逐筆讀取所有報名紀錄（NDJSON 匯出）
+     * 以資料庫游標分批讀取，每筆交給 consumer 後即從持久化環境移除，記憶體用量不隨資料量成長
+     *
+     * @param consumer 逐筆處理（例如寫出一行 JSON）
+     */
+    @Transactional
+    public void streamRegistrations(Long activityId, RegistrationStatus status,
+                                    LocalDateTime from, LocalDateTime to,
+                                    Consumer<Registration> consumer){
+        try (Stream<Registration> stream = registrationRepository.streamFiltered(
+                activityId, status, from != null ? from : EARLIEST, to != null ? to : LATEST)) {
+            stream.forEach(registration -> {
+                consumer.accept(registration);
+                entityManager.detach(registration);
+            });
+        }
     }
 
+    //游標格式：Base64URL("報名時間|id")
+    private static String encodeCursor(Registration last){
+        String raw = last.getRegistrationTime() + "|" + last.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static PageCursor decodeCursor(String cursor){
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|");
+            return new PageCursor(LocalDateTime.parse(parts[0]), Long.parseLong(parts[1]));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("cursor 格式錯誤");
+        }
+    }
+
+    private record PageCursor(LocalDateTime registrationTime, Long id) {}
+
     //====統計某活動報名人數====//
     //1.檢查活動id是否為空
     //2.使用registrationRepository.countByActivityId
@@ -666,15 +900,27 @@ public class RegistrationService {
             throw new IllegalArgumentException("會員ID不可為空");
         }
 
-        List<Registration> registrations = registrationRepository.findByUserIdOrderByRegistrationTimeDesc(userId);
+        return loadUserRegistrationRows(userId).stream()
+                .map(row -> UserRegistrationDTO.from(row.registration(), row.activity(), row.payment()))
+                .collect(Collectors.toList());
+    }
 
-        return registrations.stream().map(registration -> {
-            Activity activity = activityService.getActivityById(registration.getActivityId());
-            Payment payment = paymentRepository.findByRegistration(registration).orElse(null);
-            return UserRegistrationDTO.from(registration, activity, payment);
-        }).collect(Collectors.toList());
+    /**
+     * 以單一查詢取回會員的報名、活動與繳費紀錄（依報名時間降序）
+     * 同一筆報名有多筆繳費紀錄時只保留最新一筆
+     */
+    private List<UserRegistrationRow> loadUserRegistrationRows(String userId) {
+        Map<Long, UserRegistrationRow> rows = new LinkedHashMap<>();
+        for (Object[] row : registrationRepository.findUserRegistrationsWithActivityAndPayment(userId)) {
+            Registration registration = (Registration) row[0];
+            rows.putIfAbsent(registration.getId(),
+                    new UserRegistrationRow(registration, (Activity) row[1], (Payment) row[2]));
+        }
+        return new ArrayList<>(rows.values());
     }
 
+    private record UserRegistrationRow(Registration registration, Activity activity, Payment payment) {}
+
 
 
 }
@@ -0,0 +1,114 @@
+package com.danceclub.club_system.service;
+
+import com.danceclub.club_system.repository.ActivityRepository;
+import com.danceclub.club_system.repository.RegistrationRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 條件式 GET（If-None-Match → 304）使用的 ETag，由 ConditionalGetInterceptor 在載入資料之前計算
+ *
+ * - 單一活動：活動的 updatedAt（只查一個欄位）
+ * - 報名名單 / 報名統計（單一或多個活動）：報名筆數 + 報名與會員的最後更新時間（一個彙總查詢）；
+ *   報名會由繳費、綠界回調、批次缺席等多條路徑更新，直接以資料表為準，不依賴每條路徑都發布事件
+ * - 活動列表（全部、搜尋、可報名、近期、統計等）：版本計數器，活動變更 / 報名人數或繳費狀態變動後加一；
+ *   另外加上與 ActivityListingCache TTL 相同的時間區段，隨時間變化的列表與快取中的剩餘名額最多延遲一個區段
+ *
+ * ETag 含啟動時間，重新啟動後記憶體中的計數器歸零也不會與舊的 ETag 相同。
+ */
+@Service
+public class ResourceVersionService {
+
+    private static final long LISTING_SLOT_MILLIS = 30_000;
+
+    private final ActivityRepository activityRepository;
+    private final RegistrationRepository registrationRepository;
+    private final String bootId = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong listingVersion = new AtomicLong();
+
+    public ResourceVersionService(ActivityRepository activityRepository,
+                                  RegistrationRepository registrationRepository) {
+        this.activityRepository = activityRepository;
+        this.registrationRepository = registrationRepository;
+    }
+
+    /**
+     * 活動變更後更新列表版本（交易提交後執行；不在交易中則立即執行）
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onActivityChanged(ActivityChangedEvent event) {
+        listingVersion.incrementAndGet();
+    }
+
+    /**
+     * 報名人數變動後更新列表版本（列表含剩餘名額與報名統計）
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRegistrationCountsChanged(RegistrationCountsChangedEvent event) {
+        listingVersion.incrementAndGet();
+    }
+
+    /** 活動列表的 ETag */
+    public String listingTag() {
+        return weak("l-" + bootId + "-" + listingVersion.get() + "-" + System.currentTimeMillis() / LISTING_SLOT_MILLIS);
+    }
+
+    /**
+     * 單一活動的 ETag
+     * @return 活動不存在時為 empty（交給 controller 回傳 404）
+     */
+    public Optional<String> activityTag(Long activityId) {
+        return activityRepository.findUpdatedAtById(activityId)
+                .map(updatedAt -> weak("a-" + activityId + "-" + toMillis(updatedAt)));
+    }
+
+    /** 活動報名名單的 ETag */
+    public String registrationsTag(Long activityId) {
+        return weak("r-" + activityId + "-" + registrationsVersion(activityId));
+    }
+
+    /**
+     * 活動報名統計的 ETag（活動資料 + 報名名單）
+     * @return 活動不存在時為 empty
+     */
+    public Optional<String> registrationSummaryTag(Long activityId) {
+        return activityRepository.findUpdatedAtById(activityId)
+                .map(updatedAt -> weak("s-" + activityId + "-" + toMillis(updatedAt) + "-"
+                        + registrationsVersion(activityId)));
+    }
+
+    /**
+     * 多個活動報名統計的 ETag（活動資料 + 報名名單）
+     * @return 活動都不存在時為 empty
+     */
+    public Optional<String> registrationSummariesTag(Collection<Long> activityIds) {
+        return activityRepository.findMaxUpdatedAtByIds(activityIds)
+                .map(updatedAt -> weak("ss-" + activityIds.hashCode() + "-" + toMillis(updatedAt) + "-"
+                        + version(registrationRepository.findVersionByActivityIds(activityIds))));
+    }
+
+    private String registrationsVersion(Long activityId) {
+        return version(registrationRepository.findVersionByActivityId(activityId));
+    }
+
+    // 報名筆數-報名最後更新-會員最後更新
+    private static String version(List<Object[]> rows) {
+        Object[] row = rows.get(0);
+        return row[0] + "-" + toMillis(row[1]) + "-" + toMillis(row[2]);
+    }
+
+    private static String weak(String value) {
+        return "W/\"" + value + "\"";
+    }
+
+    private static long toMillis(Object time) {
+        return time == null ? 0 : ((LocalDateTime) time).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,8 @@
+package com.danceclub.club_system.service;
+
+/**
+ * 取消報名後活動空出名額（歸還後剩餘名額大於 0）
+ * 由 RegistrationService 發布，WaitlistPromotionWorker 於交易提交後由候補名單遞補。
+ */
+public record SeatReleasedEvent(Long activityId) {
+}
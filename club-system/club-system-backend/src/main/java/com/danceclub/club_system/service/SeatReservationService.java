@@ -0,0 +1,145 @@
+package com.danceclub.club_system.service;
+
+import com.danceclub.club_system.model.Activity;
+import com.danceclub.club_system.model.ActivitySeat;
+import com.danceclub.club_system.repository.ActivitySeatRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+/**
+ * 活動名額預約
+ * 以 activity_seat 的單列條件式 UPDATE 取代「先 COUNT 再 INSERT」，避免同時報名造成超賣。
+ * 必須在呼叫端的交易中執行，報名失敗時名額會隨交易一起回滾。
+ * 額滿 / 釋出名額時同步更新 RegistrationAdmissionService 的額滿標記，讓已額滿的活動不必再查資料庫。
+ * 計數列在設定人數上限時建立；舊活動沒有計數列時，條件式 UPDATE 沒有更新到任何列才補建，
+ * 平常報名 / 取消只送一個 UPDATE，不必每次都計算有效報名數。
+ */
+@Service
+public class SeatReservationService {
+
+    private final ActivitySeatRepository activitySeatRepository;
+    private final RegistrationAdmissionService admissionService;
+
+    public SeatReservationService(ActivitySeatRepository activitySeatRepository,
+                                  RegistrationAdmissionService admissionService) {
+        this.activitySeatRepository = activitySeatRepository;
+        this.admissionService = admissionService;
+    }
+
+    /**
+     * 嘗試為活動保留一個名額（無人數上限的活動直接成功）
+     * @return true = 成功保留；false = 已額滿
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public boolean tryReserve(Activity activity) {
+        if (!activity.hasParticipantLimit()) {
+            return true;
+        }
+        if (activitySeatRepository.tryReserve(activity.getId()) == 1) {
+            return true;
+        }
+        if (seedIfMissing(activity) && activitySeatRepository.tryReserve(activity.getId()) == 1) {
+            return true;
+        }
+        admissionService.markFull(activity.getId());
+        return false;
+    }
+
+    /**
+     * 歸還一個名額（取消報名時呼叫）
+     * @return true = 歸還後有空位（可供候補遞補）；上限已調降到低於報名數、歸還後仍無空位，或無人數上限的活動回傳 false
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public boolean release(Activity activity) {
+        if (!activity.hasParticipantLimit()) {
+            return false;
+        }
+        List<Integer> remaining = activitySeatRepository.release(activity.getId());
+        if (remaining.isEmpty() && seedIfMissing(activity)) {
+            remaining = activitySeatRepository.release(activity.getId());
+        }
+        if (remaining.isEmpty() || remaining.get(0) <= 0) {
+            return false;
+        }
+        afterCommit(() -> admissionService.markAvailable(activity.getId()));
+        return true;
+    }
+
+    /**
+     * 查詢剩餘名額
+     * @return 剩餘名額；無人數上限的活動回傳 null
+     */
+    @Transactional
+    public Integer getRemainingSeats(Activity activity) {
+        if (!activity.hasParticipantLimit()) {
+            return null;
+        }
+        return activitySeatRepository.findById(activity.getId())
+                .or(() -> {
+                    activitySeatRepository.initIfAbsent(activity.getId(), activity.getMaxParticipants());
+                    return activitySeatRepository.findById(activity.getId());
+                })
+                .map(ActivitySeat::getRemaining)
+                .orElse(null);
+    }
+
+    /**
+     * 活動人數上限修改後同步名額計數
+     * 改為無上限時刪除計數列；設定上限時若還沒有計數列，依有效報名數建立
+     */
+    @Transactional
+    public void syncCapacity(Activity activity) {
+        afterCommit(() -> admissionService.markAvailable(activity.getId()));
+        if (!activity.hasParticipantLimit()) {
+            activitySeatRepository.deleteById(activity.getId());
+            return;
+        }
+        if (activitySeatRepository.updateCapacity(activity.getId(), activity.getMaxParticipants()) == 0) {
+            activitySeatRepository.initIfAbsent(activity.getId(), activity.getMaxParticipants());
+        }
+    }
+
+    /**
+     * 批次新增報名（抽籤中籤）後依有效報名數重算剩餘名額，必須在同一交易中呼叫
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recount(Activity activity) {
+        if (!activity.hasParticipantLimit()) {
+            return;
+        }
+        if (activitySeatRepository.initIfAbsent(activity.getId(), activity.getMaxParticipants()) == 0) {
+            activitySeatRepository.recount(activity.getId());
+        }
+    }
+
+    /**
+     * 沒有計數列時依有效報名數建立（只有條件式 UPDATE 沒更新到任何列時才呼叫）
+     * 同時有別的交易在建立時 ON CONFLICT 會等它提交，之後重試的 UPDATE 就看得到該列
+     * @return true = 原本沒有計數列（現在已建立），呼叫端應重試 UPDATE；false = 計數列已存在
+     */
+    private boolean seedIfMissing(Activity activity) {
+        if (activitySeatRepository.existsById(activity.getId())) {
+            return false;
+        }
+        activitySeatRepository.initIfAbsent(activity.getId(), activity.getMaxParticipants());
+        return true;
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -10,7 +10,13 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 /**
  * Service for user management operations
@@ -34,6 +40,23 @@ public class UserService {
         this.passwordEncoder = passwordEncoder;
     }
     
+    /**
+     * Get users for a batch of IDs with a single IN query, for rosters and lists
+     * that need to show per-row member data
+     * @param userIds the user IDs (duplicates and nulls are ignored)
+     * @return userId -> User; IDs that are not found are absent from the map
+     */
+    public Map<String, User> getUsersByIds(Collection<String> userIds) {
+        Set<String> ids = userIds.stream()
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+        return userRepository.findByIdIn(ids).stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+    }
+
     /**
      * Get user data by ID
      * 需求：1.11, 14.2, 14.3
@@ -0,0 +1,38 @@
+package com.danceclub.club_system.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * 候補遞補
+ * 取消報名只發布 SeatReleasedEvent，遞補在取消交易提交後以獨立交易執行：
+ * 遞補者的折扣、名額、繳費紀錄等任何失敗都不會讓會員的取消報名回滾。
+ * 遞補失敗時候補者保留在原順位，下一次空出名額時再試。
+ */
+@Service
+public class WaitlistPromotionWorker {
+
+    private static final Logger log = LoggerFactory.getLogger(WaitlistPromotionWorker.class);
+
+    private final RegistrationService registrationService;
+
+    public WaitlistPromotionWorker(RegistrationService registrationService) {
+        this.registrationService = registrationService;
+    }
+
+    /**
+     * 取消報名交易提交後遞補（不在交易中時則直接於發布後處理）
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSeatReleased(SeatReleasedEvent event) {
+        try {
+            registrationService.promoteFromWaitlist(event.activityId())
+                    .ifPresent(promoted -> log.info("候補遞補 activityId={} userId={}",
+                            event.activityId(), promoted.getUserId()));
+        } catch (Exception e) {
+            log.warn("候補遞補失敗 activityId={}：{}", event.activityId(), e.getMessage());
+        }
+    }
+}
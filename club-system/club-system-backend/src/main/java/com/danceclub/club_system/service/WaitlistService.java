@@ -0,0 +1,255 @@
+package com.danceclub.club_system.service;
+
+import com.danceclub.club_system.dto.WaitlistPositionDTO;
+import com.danceclub.club_system.model.Activity;
+import com.danceclub.club_system.model.WaitlistEntry;
+import com.danceclub.club_system.repository.RegistrationRepository;
+import com.danceclub.club_system.repository.WaitlistRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 活動候補名單
+ * 資料存於 activity_waitlist（FIFO，依 id 排序），另在記憶體維護每個活動的排隊索引，
+ * 讓「我排第幾位」的查詢不必查資料庫。索引只在交易提交後更新，啟動時由資料表重建。
+ */
+@Service
+public class WaitlistService {
+
+    private final WaitlistRepository waitlistRepository;
+    private final RegistrationRepository registrationRepository;
+    private final ActivityService activityService;
+    private final SeatReservationService seatReservationService;
+
+    // activityId -> 該活動的排隊索引
+    private final Map<Long, ActivityQueue> queues = new ConcurrentHashMap<>();
+
+    public WaitlistService(WaitlistRepository waitlistRepository, RegistrationRepository registrationRepository,
+                           @Lazy ActivityService activityService, SeatReservationService seatReservationService) {
+        this.waitlistRepository = waitlistRepository;
+        this.registrationRepository = registrationRepository;
+        this.activityService = activityService;
+        this.seatReservationService = seatReservationService;
+    }
+
+    /**
+     * 啟動時由資料表重建記憶體索引
+     */
+    @PostConstruct
+    public void rebuildIndex() {
+        queues.clear();
+        for (WaitlistEntry entry : waitlistRepository.findAllByOrderByActivityIdAscIdAsc()) {
+            queueOf(entry.getActivityId()).add(entry.getId(), entry.getUserId());
+        }
+    }
+
+    /**
+     * 加入候補名單（活動額滿時才可候補）
+     */
+    @Transactional
+    public WaitlistEntry join(Long activityId, String userId) {
+        Activity activity = activityService.getActivityById(activityId);
+        activityService.validateRegistrationOpen(activity);
+
+        if (registrationRepository.findByActivityIdAndUserId(activityId, userId).isPresent()) {
+            throw new IllegalStateException("您已報名過!");
+        }
+        if (waitlistRepository.existsByActivityIdAndUserId(activityId, userId)) {
+            throw new IllegalStateException("您已在候補名單中");
+        }
+        Integer remaining = seatReservationService.getRemainingSeats(activity);
+        if (remaining == null || remaining > 0) {
+            throw new IllegalStateException("活動尚有名額，請直接報名");
+        }
+
+        WaitlistEntry entry = new WaitlistEntry();
+        entry.setActivityId(activityId);
+        entry.setUserId(userId);
+        WaitlistEntry saved = waitlistRepository.save(entry);
+
+        afterCommit(() -> queueOf(activityId).add(saved.getId(), userId));
+        return saved;
+    }
+
+    /**
+     * 離開候補名單
+     */
+    @Transactional
+    public void leave(Long activityId, String userId) {
+        if (waitlistRepository.deleteByActivityIdAndUserId(activityId, userId) == 0) {
+            throw new RuntimeException("不在候補名單中");
+        }
+        afterCommit(() -> queueOf(activityId).remove(userId));
+    }
+
+    /**
+     * 會員已直接報名成功時，順便移出候補名單（不在名單中則不查資料庫）
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void removeIfWaiting(Long activityId, String userId) {
+        if (getIndexedPosition(activityId, userId) == null) {
+            return;
+        }
+        waitlistRepository.deleteByActivityIdAndUserId(activityId, userId);
+        afterCommit(() -> queueOf(activityId).remove(userId));
+    }
+
+    /**
+     * 取出候補第一位（從名單中刪除），必須在取消報名的交易中呼叫
+     * @return 候補第一位；名單為空時回傳 empty
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Optional<WaitlistEntry> pollNext(Long activityId) {
+        while (true) {
+            Optional<WaitlistEntry> head = waitlistRepository.findFirstByActivityIdOrderByIdAsc(activityId);
+            if (head.isEmpty()) {
+                return Optional.empty();
+            }
+            // 同時有人離開候補時刪除會失敗，改取下一位
+            if (waitlistRepository.deleteEntry(head.get().getId()) == 1) {
+                String userId = head.get().getUserId();
+                afterCommit(() -> queueOf(activityId).remove(userId));
+                return head;
+            }
+        }
+    }
+
+    /**
+     * 候補名單由批次 SQL 寫入後（抽籤未中籤者），交易提交時由資料表重建該活動的索引
+     */
+    public void reloadQueue(Long activityId) {
+        afterCommit(() -> {
+            ActivityQueue queue = new ActivityQueue();
+            for (WaitlistEntry entry : waitlistRepository.findByActivityIdOrderByIdAsc(activityId)) {
+                queue.add(entry.getId(), entry.getUserId());
+            }
+            queues.put(activityId, queue);
+        });
+    }
+
+    /**
+     * 查詢候補順位（記憶體索引，O(1)）
+     */
+    public WaitlistPositionDTO getPosition(Long activityId, String userId) {
+        ActivityQueue queue = queues.get(activityId);
+        return WaitlistPositionDTO.builder()
+                .activityId(activityId)
+                .userId(userId)
+                .position(queue != null ? queue.position(userId) : null)
+                .waitlistSize(queue != null ? queue.size() : 0)
+                .build();
+    }
+
+    /**
+     * 查詢活動候補名單（管理員）
+     */
+    public List<WaitlistEntry> getWaitlist(Long activityId) {
+        return waitlistRepository.findByActivityIdOrderByIdAsc(activityId);
+    }
+
+    private Integer getIndexedPosition(Long activityId, String userId) {
+        ActivityQueue queue = queues.get(activityId);
+        return queue != null ? queue.position(userId) : null;
+    }
+
+    private ActivityQueue queueOf(Long activityId) {
+        return queues.computeIfAbsent(activityId, id -> new ActivityQueue());
+    }
+
+    /**
+     * 交易提交後才更新記憶體索引，避免回滾後索引與資料表不一致
+     */
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * 單一活動的排隊索引
+     * slots 依候補 id 排序，head 之前為已離開的位置；順位 = slot - head + 1。
+     * 取出第一位只需移動 head，中途離開才需要重排後面的索引。
+     */
+    private static final class ActivityQueue {
+
+        private record Slot(long entryId, String userId) {}
+
+        private final List<Slot> slots = new ArrayList<>();
+        private final Map<String, Integer> slotOf = new HashMap<>();
+        private int head = 0;
+
+        synchronized void add(long entryId, String userId) {
+            if (slotOf.containsKey(userId)) {
+                return;
+            }
+            if (slots.size() == head || slots.get(slots.size() - 1).entryId() < entryId) {
+                slotOf.put(userId, slots.size());
+                slots.add(new Slot(entryId, userId));
+                return;
+            }
+            // 交易提交順序與 id 順序不同時，插入到正確位置
+            compact();
+            int index = 0;
+            while (index < slots.size() && slots.get(index).entryId() < entryId) {
+                index++;
+            }
+            slots.add(index, new Slot(entryId, userId));
+            reindex(index);
+        }
+
+        synchronized void remove(String userId) {
+            Integer slot = slotOf.remove(userId);
+            if (slot == null) {
+                return;
+            }
+            if (slot == head) {
+                head++;
+                if (head == slots.size() || head > 64 && head * 2 > slots.size()) {
+                    compact();
+                }
+                return;
+            }
+            slots.remove((int) slot);
+            reindex(slot);
+        }
+
+        synchronized Integer position(String userId) {
+            Integer slot = slotOf.get(userId);
+            return slot != null ? slot - head + 1 : null;
+        }
+
+        synchronized int size() {
+            return slots.size() - head;
+        }
+
+        private void compact() {
+            if (head == 0) {
+                return;
+            }
+            slots.subList(0, head).clear();
+            head = 0;
+            reindex(0);
+        }
+
+        private void reindex(int from) {
+            for (int i = from; i < slots.size(); i++) {
+                slotOf.put(slots.get(i).userId(), i);
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.danceclub.club_system;
+
+import com.danceclub.club_system.model.Registration;
+import com.danceclub.club_system.model.enums.ActivityStatus;
+import com.danceclub.club_system.service.LoyaltyAwardWorker;
+import com.danceclub.club_system.service.MemberStatsService;
+import com.danceclub.club_system.service.RegistrationService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.doThrow;
+
+/**
+ * 活動完成與缺席標記測試
+ * 完成活動與標記缺席在同一交易，標記失敗時活動不會被單獨完成，重試可補上缺席；
+ * 啟動補標記分批處理仍有未簽到報名的已完成活動。
+ */
+@SpringBootTest
+class ActivityCompletionTest {
+
+    @MockitoBean
+    private LoyaltyAwardWorker loyaltyAwardWorker;
+
+    @MockitoSpyBean
+    private MemberStatsService memberStatsService;
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private RegistrationService registrationService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private String userId;
+
+    @BeforeEach
+    void setUp() {
+        userId = fixtures.user("C");
+    }
+
+    @AfterEach
+    void tearDown() {
+        fixtures.cleanup();
+    }
+
+    @Test
+    void failedAbsenceMarkingRollsBackCompletion() {
+        Registration registration = registerThenEnd(ActivityStatus.PUBLISHED);
+        Long activityId = registration.getActivityId();
+
+        doThrow(new IllegalStateException("模擬統計寫入失敗")).when(memberStatsService).recordAbsences(anyMap());
+        assertThrows(IllegalStateException.class, () -> registrationService.completeDueActivities(List.of(activityId)));
+        assertEquals("PUBLISHED", activityStatus(activityId));
+        assertEquals("REGISTERED", registrationStatus(registration.getId()));
+
+        // 重試：活動仍是 PUBLISHED，完成與缺席一起補上
+        doCallRealMethod().when(memberStatsService).recordAbsences(anyMap());
+        RegistrationService.Completion completion = registrationService.completeDueActivities(List.of(activityId));
+        assertEquals(List.of(activityId), completion.activityIds());
+        assertEquals(1, completion.absentCount());
+        assertEquals("COMPLETED", activityStatus(activityId));
+        assertEquals("ABSENT", registrationStatus(registration.getId()));
+        assertEquals(1, memberStatsService.getStats(userId).getAbsentCount());
+    }
+
+    @Test
+    void expiredSweepMarksCompletedActivitiesInBatches() {
+        List<Registration> registrations = List.of(
+                registerThenEnd(ActivityStatus.COMPLETED),
+                registerThenEnd(ActivityStatus.COMPLETED),
+                registerThenEnd(ActivityStatus.COMPLETED));
+
+        // 每批 1 個活動，已標記的活動不再符合條件，重複呼叫直到沒有待處理的活動
+        int batches = 0;
+        while (registrationService.markAbsentForExpiredActivities(1) > 0) {
+            batches++;
+        }
+        assertTrue(batches >= registrations.size());
+        for (Registration registration : registrations) {
+            assertEquals("ABSENT", registrationStatus(registration.getId()));
+        }
+        assertEquals(registrations.size(), memberStatsService.getStats(userId).getAbsentCount());
+        assertEquals(0, registrationService.markAbsentForExpiredActivities(1));
+    }
+
+    // 報名後把活動改為已結束（直接改資料表，不觸發生命週期排程）
+    private Registration registerThenEnd(ActivityStatus status) {
+        Registration registration = registrationService.createRegistration(createActivity(), userId, null, null, null);
+        jdbcTemplate.update("UPDATE activity SET status = ?, start_time = ?, end_time = ? WHERE id = ?",
+                status.name(), LocalDateTime.now().minusHours(3), LocalDateTime.now().minusHours(1),
+                registration.getActivityId());
+        return registration;
+    }
+
+    private String activityStatus(Long activityId) {
+        return jdbcTemplate.queryForObject("SELECT status FROM activity WHERE id = ?", String.class, activityId);
+    }
+
+    private String registrationStatus(Long registrationId) {
+        return jdbcTemplate.queryForObject("SELECT status FROM activity_registration WHERE id = ?",
+                String.class, registrationId);
+    }
+
+    private Long createActivity() {
+        return fixtures.activity(activity -> activity.setTitle("活動完成測試活動")).getId();
+    }
+}
@@ -0,0 +1,112 @@
+package com.danceclub.club_system;
+
+import com.danceclub.club_system.exception.LiveSubscriptionLimitException;
+import com.danceclub.club_system.repository.ActivityRepository;
+import com.danceclub.club_system.repository.RegistrationRepository;
+import com.danceclub.club_system.service.ActivityCounterBroadcaster;
+import com.danceclub.club_system.service.RegistrationCountsChangedEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+/**
+ * 活動即時人數推播測試
+ * 短時間內的多次變動合併為一次查詢；沒有訂閱者時不查詢；
+ * 每個活動、每個來源位址的同時訂閱數有上限，斷線後歸還
+ */
+class ActivityCounterBroadcasterTest {
+
+    private final ActivityRepository activityRepository = mock(ActivityRepository.class);
+    private final RegistrationRepository registrationRepository = mock(RegistrationRepository.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ActivityCounterBroadcaster broadcaster =
+            new ActivityCounterBroadcaster(activityRepository, registrationRepository, meterRegistry);
+
+    @BeforeEach
+    void setUp() {
+        when(activityRepository.existsById(anyLong())).thenReturn(true);
+        when(activityRepository.findSummariesByIds(any())).thenReturn(List.of());
+        when(registrationRepository.summarizeByActivityIds(any())).thenReturn(List.of());
+    }
+
+    @AfterEach
+    void tearDown() {
+        broadcaster.shutdown();
+    }
+
+    @Test
+    void coalescesBurstOfChangesIntoSingleReload() throws InterruptedException {
+        broadcaster.subscribe(1L, "10.0.0.1");
+        broadcaster.subscribe(1L, "10.0.0.1");
+        // 訂閱時載入一次，第二位訂閱者直接使用同一份結果
+        verify(registrationRepository, times(1)).summarizeByActivityIds(any());
+
+        for (int i = 0; i < 50; i++) {
+            broadcaster.onCountsChanged(new RegistrationCountsChangedEvent(1L));
+        }
+        Thread.sleep(600);
+
+        verify(registrationRepository, times(2)).summarizeByActivityIds(any());
+        assertEquals(2, meterRegistry.get("activity.live.subscribers").gauge().value());
+    }
+
+    @Test
+    void skipsActivitiesWithoutSubscribers() throws InterruptedException {
+        broadcaster.onCountsChanged(new RegistrationCountsChangedEvent(2L));
+        Thread.sleep(400);
+
+        verifyNoInteractions(registrationRepository);
+    }
+
+    @Test
+    void limitsSubscribersPerAddress() {
+        List<SseEmitter> emitters = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            emitters.add(broadcaster.subscribe(i % 2 == 0 ? 1L : 2L, "10.0.0.1"));
+        }
+        LiveSubscriptionLimitException e = assertThrows(LiveSubscriptionLimitException.class,
+                () -> broadcaster.subscribe(3L, "10.0.0.1"));
+        assertTrue(e.getRetryAfterSeconds() > 0);
+        assertEquals(1, meterRegistry.get("activity.live.rejected").tag("reason", "address").counter().count());
+
+        // 其他位址不受影響；斷線的訂閱由心跳清除後歸還一個名額（重複清除不會多歸還）
+        broadcaster.subscribe(3L, "10.0.0.2");
+        emitters.get(0).complete();
+        broadcaster.heartbeat();
+        broadcaster.heartbeat();
+        broadcaster.subscribe(3L, "10.0.0.1");
+        assertThrows(LiveSubscriptionLimitException.class, () -> broadcaster.subscribe(3L, "10.0.0.1"));
+    }
+
+    @Test
+    void limitsSubscribersPerActivity() {
+        for (int i = 0; i < 500; i++) {
+            broadcaster.subscribe(1L, "10.1." + (i / 10) + "." + i);
+        }
+        assertThrows(LiveSubscriptionLimitException.class, () -> broadcaster.subscribe(1L, "10.2.0.1"));
+        assertEquals(1, meterRegistry.get("activity.live.rejected").tag("reason", "activity").counter().count());
+        assertEquals(500, meterRegistry.get("activity.live.subscribers").gauge().value());
+
+        // 被拒絕的連線不佔用來源位址名額
+        for (int i = 0; i < 10; i++) {
+            broadcaster.subscribe(2L, "10.2.0.1");
+        }
+    }
+
+    @Test
+    void rejectsUnknownActivity() {
+        when(activityRepository.existsById(99L)).thenReturn(false);
+
+        assertThrows(RuntimeException.class, () -> broadcaster.subscribe(99L, "10.0.0.1"));
+    }
+}
@@ -0,0 +1,90 @@
+package com.danceclub.club_system;
+
+import com.danceclub.club_system.dto.ActivitySummary;
+import com.danceclub.club_system.model.Activity;
+import com.danceclub.club_system.service.ActivityChangedEvent;
+import com.danceclub.club_system.service.ActivityListingCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 公開活動列表快取測試
+ * 命中時不查詢資料庫；活動變更事件後重新查詢；同時未命中只查詢一次
+ */
+class ActivityListingCacheTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ActivityListingCache cache = new ActivityListingCache(meterRegistry);
+
+    @Test
+    void servesFromCacheUntilActivityChanges() {
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get("registrable", () -> load(loads));
+        cache.get("registrable", () -> load(loads));
+        assertEquals(1, loads.get());
+
+        cache.onActivityChanged(new ActivityChangedEvent(1L));
+        cache.get("registrable", () -> load(loads));
+        assertEquals(2, loads.get());
+
+        assertEquals(1, gets("hit"));
+        assertEquals(2, gets("miss"));
+    }
+
+    @Test
+    void concurrentMissesLoadOnce() throws InterruptedException {
+        int requests = 20;
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(requests);
+        ExecutorService pool = Executors.newFixedThreadPool(requests);
+
+        for (int i = 0; i < requests; i++) {
+            pool.submit(() -> {
+                try {
+                    start.await();
+                    assertEquals(1, cache.get("upcoming", () -> {
+                        sleep(200);
+                        return load(loads);
+                    }).size());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        start.countDown();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        pool.shutdown();
+
+        assertEquals(1, loads.get());
+    }
+
+    private List<ActivitySummary> load(AtomicInteger loads) {
+        loads.incrementAndGet();
+        return List.of(ActivitySummary.from(new Activity(), null));
+    }
+
+    private double gets(String result) {
+        return meterRegistry.get("cache.gets").tag("result", result).counter().count();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.danceclub.club_system;
+
+import com.danceclub.club_system.model.Activity;
+import com.danceclub.club_system.model.enums.ActivityStatus;
+import com.danceclub.club_system.model.enums.ActivityType;
+import com.danceclub.club_system.repository.ActivityRepository;
+import com.danceclub.club_system.service.ActivityChangedEvent;
+import com.danceclub.club_system.service.ActivitySearchIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 活動搜尋索引測試
+ * 中文以兩字切詞比對、英文前綴比對、依相關度排序、篩選與分頁、活動變更後更新索引
+ */
+class ActivitySearchIndexTest {
+
+    private static final int FILLER_ACTIVITIES = 20_000;
+
+    private final ActivityRepository activityRepository = mock(ActivityRepository.class);
+    private final ActivitySearchIndex searchIndex = new ActivitySearchIndex(activityRepository);
+    private final LocalDateTime base = LocalDateTime.of(2030, 1, 1, 19, 0);
+
+    @BeforeEach
+    void setUp() {
+        List<Activity> activities = new ArrayList<>();
+        activities.add(activity(1L, "聖誕舞會", "年底聖誕節特別活動", ActivityType.SPECIAL, ActivityStatus.PUBLISHED, 10));
+        activities.add(activity(2L, "HipHop 社課", "本週練習聖誕舞會表演曲目", ActivityType.REGULAR, ActivityStatus.PUBLISHED, 3));
+        activities.add(activity(3L, "聖誕舞會彩排", "草稿", ActivityType.TRAINING, ActivityStatus.DRAFT, 5));
+        activities.add(activity(4L, "期末成果發表", "Jazz 與 Hiphop 聯合演出", ActivityType.PERFORMANCE, ActivityStatus.PUBLISHED, 20));
+        for (long id = 100; id < 100 + FILLER_ACTIVITIES; id++) {
+            activities.add(activity(id, "例行社課 第" + id + "堂", "基礎律動練習 week" + id,
+                    ActivityType.REGULAR, ActivityStatus.PUBLISHED, (int) (id % 300)));
+        }
+        when(activityRepository.findAll()).thenReturn(activities);
+        searchIndex.rebuild();
+    }
+
+    @Test
+    void ranksTitleMatchesFirstAndRequiresAllTerms() {
+        ActivitySearchIndex.Hits result = search("聖誕舞會", null, null, null);
+
+        // 草稿不在已發布結果中；標題符合的排在說明符合的前面
+        assertEquals(List.of(1L, 2L), ids(result));
+        assertEquals(0, search("聖誕 不存在的詞", null, null, null).total());
+    }
+
+    @Test
+    void matchesSingleCjkCharacterAndLatinPrefix() {
+        assertTrue(ids(search("誕", null, null, null)).containsAll(List.of(1L, 2L)));
+        assertEquals(List.of(2L, 4L), ids(search("hip", null, null, null)));
+        assertEquals(List.of(4L), ids(search("ＪＡＺＺ", null, null, null)));
+    }
+
+    @Test
+    void filtersAndPaginates() {
+        assertEquals(List.of(2L), ids(search("聖誕", ActivityType.REGULAR, null, null)));
+        assertEquals(List.of(1L), ids(search("聖誕", null, base.plusDays(5), base.plusDays(15))));
+
+        ActivitySearchIndex.Hits page = searchIndex.search("例行社課", null, ActivityStatus.PUBLISHED, null, null, 2, 50);
+        assertEquals(FILLER_ACTIVITIES, page.total());
+        assertEquals(50, page.ids().size());
+    }
+
+    @Test
+    void updatesIndexOnActivityChange() {
+        Activity renamed = activity(1L, "新年舞會", "跨年活動", ActivityType.SPECIAL, ActivityStatus.PUBLISHED, 10);
+        when(activityRepository.findById(1L)).thenReturn(Optional.of(renamed));
+        searchIndex.onActivityChanged(new ActivityChangedEvent(1L));
+
+        assertEquals(List.of(2L), ids(search("聖誕舞會", null, null, null)));
+        assertEquals(List.of(1L), ids(search("新年", null, null, null)));
+
+        when(activityRepository.findById(1L)).thenReturn(Optional.empty());
+        searchIndex.onActivityChanged(new ActivityChangedEvent(1L));
+        assertEquals(0, search("新年", null, null, null).total());
+    }
+
+    @Test
+    void matchesPrefixAcrossLargeIndex() {
+        // 社課編號從 100 起：week150~159、week1500~1599、week15000~15999
+        ActivitySearchIndex.Hits result = search("week15", null, null, null);
+        assertEquals(10 + 100 + 1000, result.total());
+        assertEquals(20, result.ids().size());
+        assertEquals(1, search("week15999", null, null, null).total());
+    }
+
+    private ActivitySearchIndex.Hits search(String keyword, ActivityType type, LocalDateTime from, LocalDateTime to) {
+        return searchIndex.search(keyword, type, ActivityStatus.PUBLISHED, from, to, 0, 20);
+    }
+
+    private static List<Long> ids(ActivitySearchIndex.Hits result) {
+        return result.ids();
+    }
+
+    private Activity activity(Long id, String title, String description, ActivityType type,
+                              ActivityStatus status, int startInDays) {
+        Activity activity = new Activity();
+        activity.setId(id);
+        activity.setTitle(title);
+        activity.setDescription(description);
+        activity.setActivityType(type);
+        activity.setStatus(status);
+        activity.setStartTime(base.plusDays(startInDays));
+        return activity;
+    }
+}
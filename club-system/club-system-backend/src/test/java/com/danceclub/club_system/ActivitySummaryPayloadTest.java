@@ -0,0 +1,116 @@
+package com.danceclub.club_system;
+
+import com.danceclub.club_system.dto.ActivitySummary;
+import com.danceclub.club_system.model.Registration;
+import com.danceclub.club_system.model.enums.RegistrationStatus;
+import com.danceclub.club_system.repository.ActivityRepository;
+import com.danceclub.club_system.repository.RegistrationRepository;
+import com.danceclub.club_system.service.CoverImageService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 活動列表精簡資料測試
+ * 比較完整 Activity 與 ActivitySummary 列表的查詢 + JSON 序列化時間與資料量，並驗證剩餘名額
+ */
+@SpringBootTest
+class ActivitySummaryPayloadTest {
+
+    private static final int ACTIVITIES = 200;
+    private static final int ROUNDS = 20;
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private ActivityRepository activityRepository;
+
+    @Autowired
+    private RegistrationRepository registrationRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final List<Long> activityIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        // 說明欄位長度接近實際活動介紹（數百字）
+        String description = "本次活動包含暖身、基本律動教學、分組編舞與成果呈現，請穿著方便活動的服裝並自備飲水。".repeat(12);
+        fixtures.activities(ACTIVITIES, (activity, i) -> {
+            activity.setTitle("列表資料量測試活動" + i);
+            activity.setDescription(description);
+            activity.setCoverImageUrl("https://example.com/covers/" + i + ".jpg");
+            activity.setLocation("社辦練舞室");
+            activity.setStartTime(LocalDateTime.now().plusDays(7 + i));
+            activity.setEndTime(LocalDateTime.now().plusDays(7 + i).plusHours(2));
+            activity.setRegistrationDeadline(LocalDateTime.now().plusDays(6 + i));
+            activity.setMaxParticipants(i == 0 ? 10 : null);
+            activity.setFeeAmount(new BigDecimal("200"));
+        }).forEach(activity -> activityIds.add(activity.getId()));
+
+        Registration registration = new Registration();
+        registration.setActivityId(activityIds.get(0));
+        registration.setUserId(fixtures.user("P"));
+        registration.setRegistrationTime(LocalDateTime.now());
+        registration.setStatus(RegistrationStatus.REGISTERED);
+        registrationRepository.save(registration);
+    }
+
+    @AfterEach
+    void tearDown() {
+        fixtures.cleanup();
+    }
+
+    @Test
+    void summaryPayloadIsSmallerAndFaster() throws Exception {
+        Measurement entity = measure(() -> objectMapper.writeValueAsBytes(activityRepository.findAllById(activityIds)));
+        Measurement summary = measure(() -> objectMapper.writeValueAsBytes(activityRepository.findSummariesByIds(activityIds)));
+
+        System.out.printf("✅ %d 筆活動列表：完整 Activity %,d bytes / %.2f ms，ActivitySummary %,d bytes / %.2f ms%n",
+                ACTIVITIES, entity.bytes(), entity.millis(), summary.bytes(), summary.millis());
+
+        assertTrue(summary.bytes() * 3 < entity.bytes(), "精簡資料應小於完整資料的 1/3");
+    }
+
+    @Test
+    void summaryIncludesRemainingSeats() {
+        List<ActivitySummary> summaries = activityRepository.findSummariesByIds(activityIds.subList(0, 2));
+
+        ActivitySummary limited = summaries.stream().filter(s -> s.id().equals(activityIds.get(0))).findFirst().orElseThrow();
+        ActivitySummary unlimited = summaries.stream().filter(s -> s.id().equals(activityIds.get(1))).findFirst().orElseThrow();
+        assertEquals(9, limited.remainingSeats());
+        assertNull(unlimited.remainingSeats());
+        // 列表封面改指向縮圖代理
+        assertEquals(CoverImageService.thumbnailUrl(activityIds.get(0), "https://example.com/covers/0.jpg"),
+                limited.coverImageUrl());
+        assertTrue(limited.coverImageUrl().startsWith("/api/activities/" + activityIds.get(0) + "/cover?w="));
+    }
+
+    // 暖機後取多輪平均（查詢 + 序列化）
+    private Measurement measure(Callable<byte[]> action) throws Exception {
+        int bytes = action.call().length;
+        for (int i = 0; i < ROUNDS; i++) {
+            action.call();
+        }
+        long begin = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            action.call();
+        }
+        return new Measurement(bytes, (System.nanoTime() - begin) / 1_000_000.0 / ROUNDS);
+    }
+
+    private record Measurement(int bytes, double millis) {}
+}
@@ -0,0 +1,137 @@
+package com.danceclub.club_system;
+
+import com.danceclub.club_system.dto.ActivityRegistrationSummaryDTO;
+import com.danceclub.club_system.dto.ActivityWithStatsDTO;
+import com.danceclub.club_system.dto.ActivityWithStatsPageDTO;
+import com.danceclub.club_system.model.Registration;
+import com.danceclub.club_system.model.enums.ActivityStatus;
+import com.danceclub.club_system.model.enums.PaymentStatus;
+import com.danceclub.club_system.model.enums.RegistrationStatus;
+import com.danceclub.club_system.repository.RegistrationRepository;
+import com.danceclub.club_system.service.ActivityService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 活動 + 報名統計查詢測試
+ * 各項計數正確，且 SQL 次數不隨活動數 / 報名數成長（列表統計、報名統計摘要）
+ */
+@SpringBootTest(properties = ThreadStatementCounter.PROPERTY)
+class ActivityWithStatsQueryTest {
+
+    private static final int ACTIVITIES = 3;
+    private static final int REGISTRATIONS_PER_ACTIVITY = 8;
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private ActivityService activityService;
+
+    @Autowired
+    private RegistrationRepository registrationRepository;
+
+    private final List<Long> activityIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        // 開始時間設在遠未來，讓測試活動排在最前面（依開始時間降序）
+        LocalDateTime farFuture = LocalDateTime.of(2999, 1, 1, 19, 0);
+        fixtures.activities(ACTIVITIES, (activity, a) -> {
+            activity.setTitle("統計查詢測試活動" + a);
+            activity.setStartTime(farFuture.minusDays(a));
+            activity.setEndTime(farFuture.minusDays(a).plusHours(2));
+            activity.setRegistrationDeadline(farFuture.minusDays(a + 1));
+            activity.setFeeAmount(new BigDecimal("300"));
+            activity.setStatus(a == 0 ? ActivityStatus.COMPLETED : ActivityStatus.PUBLISHED);
+        }).forEach(activity -> activityIds.add(activity.getId()));
+
+        List<String> userIds = fixtures.users("W", REGISTRATIONS_PER_ACTIVITY);
+        List<Registration> registrations = new ArrayList<>();
+        for (int i = 0; i < REGISTRATIONS_PER_ACTIVITY; i++) {
+            // 每個活動：1 取消(已繳費)、3 已繳費（其中 2 已報到）、2 待繳費、1 審核中、1 無須繳費
+            for (Long activityId : activityIds) {
+                Registration registration = new Registration();
+                registration.setActivityId(activityId);
+                registration.setUserId(userIds.get(i));
+                registration.setRegistrationTime(LocalDateTime.now());
+                registration.setStatus(i == 0 ? RegistrationStatus.CANCELLED : RegistrationStatus.REGISTERED);
+                registration.setPaymentStatus(switch (i) {
+                    case 0, 1, 2, 3 -> PaymentStatus.PAID;
+                    case 4, 5 -> PaymentStatus.PENDING;
+                    case 6 -> PaymentStatus.PENDING_REVIEW;
+                    default -> PaymentStatus.NOT_REQUIRED;
+                });
+                registration.setCheckedIn(i == 0 || i == 1 || i == 2);
+                registrations.add(registration);
+            }
+        }
+        registrationRepository.saveAll(registrations);
+    }
+
+    @AfterEach
+    void tearDown() {
+        fixtures.cleanup();
+    }
+
+    @Test
+    void countsAllStatsInSingleStatement() {
+        ThreadStatementCounter.reset();
+
+        ActivityWithStatsPageDTO page = activityService.getActivitiesWithStats(null, 0, ACTIVITIES);
+
+        assertEquals(activityIds, page.getItems().stream().map(ActivityWithStatsDTO::getId).toList());
+        for (ActivityWithStatsDTO dto : page.getItems()) {
+            assertEquals(7L, dto.getRegistrationCount());
+            assertEquals(3L, dto.getPaidCount());
+            assertEquals(3L, dto.getPendingPaymentCount());
+            assertEquals(2L, dto.getCheckedInCount());
+        }
+        // 統計 1 次 + 總數 1 次
+        assertEquals(2, ThreadStatementCounter.count());
+    }
+
+    @Test
+    void filtersByStatusAndPaginates() {
+        ActivityWithStatsPageDTO first = activityService.getActivitiesWithStats(ActivityStatus.PUBLISHED, 0, 1);
+        ActivityWithStatsPageDTO second = activityService.getActivitiesWithStats(ActivityStatus.PUBLISHED, 1, 1);
+
+        assertEquals(activityIds.get(1), first.getItems().get(0).getId());
+        assertEquals(activityIds.get(2), second.getItems().get(0).getId());
+        assertTrue(first.getTotal() >= 2);
+        assertTrue(first.getItems().stream().allMatch(dto -> dto.getActivityStatus() == ActivityStatus.PUBLISHED));
+
+        assertThrows(IllegalArgumentException.class, () -> activityService.getActivitiesWithStats(null, -1, 10));
+    }
+
+    @Test
+    void batchSummariesUseConstantStatements() {
+        List<Long> requested = new ArrayList<>(activityIds);
+        requested.add(-1L);
+        ThreadStatementCounter.reset();
+
+        List<ActivityRegistrationSummaryDTO> summaries = activityService.getActivityRegistrationSummaries(requested);
+
+        // 活動 1 次 + 報名統計 1 次；不存在的活動略過
+        assertEquals(2, ThreadStatementCounter.count());
+        assertEquals(activityIds, summaries.stream().map(ActivityRegistrationSummaryDTO::getActivityId).toList());
+        for (ActivityRegistrationSummaryDTO summary : summaries) {
+            assertEquals(7L, summary.getTotalRegistrations());
+            assertEquals(4L, summary.getPaidCount());
+            assertEquals(2L, summary.getPendingPaymentCount());
+            assertEquals(3L, summary.getCheckedInCount());
+            assertEquals(1L, summary.getCancelledCount());
+            assertEquals(summary, activityService.getActivityRegistrationSummary(summary.getActivityId()));
+        }
+    }
+}
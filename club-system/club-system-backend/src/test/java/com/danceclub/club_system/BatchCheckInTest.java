@@ -0,0 +1,179 @@
+package com.danceclub.club_system;
+
+import com.danceclub.club_system.dto.BatchCheckInRequest;
+import com.danceclub.club_system.repository.RegistrationRepository;
+import com.danceclub.club_system.service.RegistrationService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * 批次簽到 API 測試
+ * 單筆失敗不影響其他筆、同一批次重複掃碼只簽到一次、
+ * 掃碼時間早於簽到開放時間被拒絕（單筆與掃碼簽到同樣適用）、單次超過 500 筆回 400。
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@WithMockUser
+class BatchCheckInTest {
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private RegistrationService registrationService;
+
+    @Autowired
+    private RegistrationRepository registrationRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Long activityId;
+    private LocalDateTime startTime;
+    private List<String> userIds;
+
+    @BeforeEach
+    void setUp() {
+        activityId = fixtures.activity(activity -> activity.setTitle("批次簽到測試")).getId();
+        userIds = fixtures.users("B", 4);
+        // 最後一位不報名
+        userIds.subList(0, 3).forEach(userId ->
+                registrationService.createRegistration(activityId, userId, null, null, null));
+
+        // 活動 20 分鐘前開始（報名後直接改資料表，避免觸發報名時間驗證）
+        startTime = LocalDateTime.now().minusMinutes(20).truncatedTo(ChronoUnit.SECONDS);
+        jdbcTemplate.update("UPDATE activity SET start_time = ?, end_time = ? WHERE id = ?",
+                startTime, startTime.plusHours(2), activityId);
+    }
+
+    @AfterEach
+    void tearDown() {
+        fixtures.cleanup();
+    }
+
+    @Test
+    void partialFailuresAndDuplicateScansInOneBatch() throws Exception {
+        List<BatchCheckInRequest.Scan> scans = List.of(
+                new BatchCheckInRequest.Scan(userIds.get(0), startTime.plusMinutes(5)),
+                new BatchCheckInRequest.Scan(userIds.get(3), startTime.plusMinutes(5)),
+                new BatchCheckInRequest.Scan(userIds.get(0), startTime.plusMinutes(6)),
+                new BatchCheckInRequest.Scan(userIds.get(1), startTime.minusHours(3)),
+                new BatchCheckInRequest.Scan(userIds.get(2), null));
+
+        JsonNode results = upload(new BatchCheckInRequest(activityId, scans));
+
+        assertEquals(scans.size(), results.size());
+        // 依請求順序回傳
+        for (int i = 0; i < scans.size(); i++) {
+            assertEquals(scans.get(i).getUserId(), results.get(i).get("userId").asText());
+        }
+        assertTrue(results.get(0).get("success").asBoolean());
+        assertFalse(results.get(0).get("isLate").asBoolean());
+        // 未報名
+        assertFalse(results.get(1).get("success").asBoolean());
+        // 同一批次重複掃碼
+        assertFalse(results.get(2).get("success").asBoolean());
+        assertEquals("您已簽到過", results.get(2).get("message").asText());
+        // 掃碼時間早於簽到開放時間
+        assertFalse(results.get(3).get("success").asBoolean());
+        assertEquals("尚未開放簽到，活動開始前 60 分鐘開放", results.get(3).get("message").asText());
+        // 未傳掃碼時間以伺服器時間為準
+        assertTrue(results.get(4).get("success").asBoolean());
+
+        assertEquals(startTime.plusMinutes(5), jdbcTemplate.queryForObject(
+                "SELECT check_in_time FROM activity_registration WHERE activity_id = ? AND user_id = ?",
+                LocalDateTime.class, activityId, userIds.get(0)));
+        assertEquals(2, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM activity_registration WHERE activity_id = ? AND status = 'ATTENDED'",
+                Integer.class, activityId));
+        assertEquals(Boolean.FALSE, jdbcTemplate.queryForObject(
+                "SELECT checked_in FROM activity_registration WHERE activity_id = ? AND user_id = ?",
+                Boolean.class, activityId, userIds.get(1)));
+    }
+
+    @Test
+    void lateScanIsFlaggedAndFutureScanUsesServerTime() throws Exception {
+        // 活動改為 45 分鐘前開始，開始後 31 分鐘的掃碼算遲到
+        startTime = startTime.minusMinutes(25);
+        jdbcTemplate.update("UPDATE activity SET start_time = ? WHERE id = ?", startTime, activityId);
+
+        JsonNode results = upload(new BatchCheckInRequest(activityId, List.of(
+                new BatchCheckInRequest.Scan(userIds.get(0), startTime.plusMinutes(31)),
+                new BatchCheckInRequest.Scan(userIds.get(1), LocalDateTime.now().plusDays(1)))));
+
+        assertTrue(results.get(0).get("success").asBoolean());
+        assertTrue(results.get(0).get("isLate").asBoolean());
+        assertTrue(results.get(1).get("success").asBoolean());
+        assertTrue(LocalDateTime.parse(results.get(1).get("checkInTime").asText()).isBefore(LocalDateTime.now().plusSeconds(1)));
+    }
+
+    @Test
+    void singleAndQrCheckInRespectOpeningWindow() {
+        // 活動改為 2 小時後開始：尚未開放簽到
+        jdbcTemplate.update("UPDATE activity SET start_time = ?, end_time = ? WHERE id = ?",
+                LocalDateTime.now().plusHours(2), LocalDateTime.now().plusHours(4), activityId);
+        Long registrationId = registrationRepository
+                .findByActivityIdAndUserId(activityId, userIds.get(0)).orElseThrow().getId();
+
+        assertThrows(IllegalStateException.class, () -> registrationService.checkIn(registrationId));
+        assertThrows(IllegalStateException.class, () -> registrationService.checkInByUser(userIds.get(1), activityId));
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM activity_registration WHERE activity_id = ? AND checked_in = true",
+                Integer.class, activityId));
+
+        // 活動 30 分鐘後開始：已開放簽到，不算遲到
+        jdbcTemplate.update("UPDATE activity SET start_time = ? WHERE id = ?",
+                LocalDateTime.now().plusMinutes(30), activityId);
+        assertFalse(registrationService.checkIn(registrationId).getIsLate());
+        assertTrue(registrationService.checkInByUser(userIds.get(1), activityId).getCheckedIn());
+    }
+
+    @Test
+    void batchOverFiveHundredScansIsRejected() throws Exception {
+        List<BatchCheckInRequest.Scan> scans = IntStream.range(0, 501)
+                .mapToObj(i -> new BatchCheckInRequest.Scan(userIds.get(0), null))
+                .toList();
+
+        mockMvc.perform(post("/api/registrations/checkin-batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new BatchCheckInRequest(activityId, scans))))
+                .andExpect(status().isBadRequest());
+        assertEquals(Boolean.FALSE, jdbcTemplate.queryForObject(
+                "SELECT checked_in FROM activity_registration WHERE activity_id = ? AND user_id = ?",
+                Boolean.class, activityId, userIds.get(0)));
+    }
+
+    private JsonNode upload(BatchCheckInRequest request) throws Exception {
+        String body = mockMvc.perform(post("/api/registrations/checkin-batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body);
+    }
+}
@@ -0,0 +1,177 @@
+package com.danceclub.club_system;
+
+import com.danceclub.club_system.model.Activity;
+import com.danceclub.club_system.model.Registration;
+import com.danceclub.club_system.model.enums.PaymentMethod;
+import com.danceclub.club_system.model.enums.PaymentStatus;
+import com.danceclub.club_system.repository.ActivityRepository;
+import com.danceclub.club_system.repository.PaymentRepository;
+import com.danceclub.club_system.repository.RegistrationRepository;
+import com.danceclub.club_system.service.PaymentService;
+import com.danceclub.club_system.service.RegistrationService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * 條件式 GET 測試
+ * ETag 相同時回 304 且只執行版本查詢；活動 / 報名變更後（包含不經 RegistrationService 的更新）ETag 改變
+ */
+@SpringBootTest(properties = ThreadStatementCounter.PROPERTY)
+@AutoConfigureMockMvc
+class ConditionalGetTest {
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private RegistrationService registrationService;
+
+    @Autowired
+    private ActivityRepository activityRepository;
+
+    @Autowired
+    private RegistrationRepository registrationRepository;
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    private Long activityId;
+    private List<String> userIds;
+
+    @BeforeEach
+    void setUp() {
+        activityId = fixtures.activity(activity -> {
+            activity.setTitle("條件式查詢測試");
+            activity.setMaxParticipants(10);
+            activity.setFeeAmount(new BigDecimal("300"));
+        }).getId();
+        userIds = fixtures.users("E", 2);
+        registrationService.createRegistration(activityId, userIds.get(0), null, null, null);
+    }
+
+    @AfterEach
+    void tearDown() {
+        fixtures.cleanup();
+    }
+
+    @Test
+    void activityAnswers304WithVersionQueryOnly() throws Exception {
+        String url = "/api/activities/" + activityId;
+        String etag = assertNotModified(url);
+
+        ThreadStatementCounter.reset();
+        assertEquals(304, status(url, etag));
+        assertEquals(1, ThreadStatementCounter.count());
+
+        Activity activity = activityRepository.findById(activityId).orElseThrow();
+        activity.setTitle("條件式查詢測試（改）");
+        activityRepository.save(activity);
+        assertEquals(200, status(url, etag));
+        assertNotEquals(etag, assertNotModified(url));
+
+        assertNull(fetch("/api/activities/999999999", null).getResponse().getHeader(HttpHeaders.ETAG));
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void rosterTagFollowsRegistrationRows() throws Exception {
+        String url = "/api/registrations/activity/" + activityId;
+        String etag = assertNotModified(url);
+
+        // 直接改報名（繳費流程、綠界回調等不經 RegistrationService 的路徑）也會反映在 ETag
+        Registration registration = registrationRepository.findByActivityIdOrderByRegistrationTimeAsc(activityId).get(0);
+        registration.setPaymentStatus(PaymentStatus.PAID);
+        registrationRepository.save(registration);
+
+        assertEquals(200, status(url, etag));
+        assertNotEquals(etag, assertNotModified(url));
+    }
+
+    @Test
+    void listingTagChangesAfterRegistration() throws Exception {
+        String url = "/api/activities/with-stats";
+        String etag = assertNotModified(url);
+
+        registrationService.createRegistration(activityId, userIds.get(1), null, null, null);
+
+        assertEquals(200, status(url, etag));
+        assertNotEquals(etag, assertNotModified(url));
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void summariesTagFollowsRegistrationRows() throws Exception {
+        String url = "/api/activities/registration-summaries?ids=" + activityId + ",999999999";
+        String etag = assertNotModified(url);
+
+        // 多活動報名統計以資料表為準，不經事件的繳費狀態更新也會反映在 ETag
+        Registration registration = registrationRepository.findByActivityIdOrderByRegistrationTimeAsc(activityId).get(0);
+        registration.setPaymentStatus(PaymentStatus.PAID);
+        registrationRepository.save(registration);
+
+        assertEquals(200, status(url, etag));
+        assertNotEquals(etag, assertNotModified(url));
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void listingTagChangesAfterPaymentReview() throws Exception {
+        String url = "/api/activities/with-stats";
+        String etag = assertNotModified(url);
+
+        // 管理員審核繳費：列表中的已繳費 / 待繳費人數改變
+        Registration registration = registrationRepository.findByActivityIdOrderByRegistrationTimeAsc(activityId).get(0);
+        Long paymentId = paymentRepository.findByRegistration(registration).orElseThrow().getId();
+        paymentService.markAsPaid(paymentId, PaymentMethod.CASH, "admin", null);
+
+        assertEquals(200, status(url, etag));
+        assertNotEquals(etag, assertNotModified(url));
+    }
+
+    // 取得 ETag 並確認以它重新查詢會回 304；列表 ETag 含時間區段，剛好跨區段時重試一次
+    private String assertNotModified(String url) throws Exception {
+        for (int attempt = 0; attempt < 2; attempt++) {
+            MvcResult result = fetch(url, null);
+            assertEquals(200, result.getResponse().getStatus());
+            String etag = result.getResponse().getHeader(HttpHeaders.ETAG);
+            assertNotNull(etag, url + " 應回傳 ETag");
+            if (status(url, etag) == 304) {
+                return etag;
+            }
+        }
+        fail(url + " 以相同 ETag 查詢應回 304");
+        return null;
+    }
+
+    private int status(String url, String etag) throws Exception {
+        return fetch(url, etag).getResponse().getStatus();
+    }
+
+    private MvcResult fetch(String url, String etag) throws Exception {
+        var request = get(url);
+        if (etag != null) {
+            request.header(HttpHeaders.IF_NONE_MATCH, etag);
+        }
+        return mockMvc.perform(request).andReturn();
+    }
+}
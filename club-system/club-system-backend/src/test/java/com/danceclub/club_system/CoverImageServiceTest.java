@@ -0,0 +1,204 @@
+package com.danceclub.club_system;
+
+import com.danceclub.club_system.repository.ActivityRepository;
+import com.danceclub.club_system.service.CoverImageService;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 封面縮圖代理測試（以本機 HTTP server 模擬外部圖片來源）
+ * 每張原圖只抓一次、縮圖為固定尺寸、重新啟動後沿用磁碟快取、超過上限時淘汰最久未使用的檔案（寬限時間後才刪除）、
+ * 失敗短暫快取、不跟隨轉址、拒絕內部網路主機
+ */
+class CoverImageServiceTest {
+
+    @TempDir
+    Path cacheDir;
+
+    private final ActivityRepository activityRepository = mock(ActivityRepository.class);
+    private final Map<String, AtomicInteger> originHits = new ConcurrentHashMap<>();
+    private HttpServer origin;
+    private String baseUrl;
+
+    @BeforeEach
+    void startOrigin() throws IOException {
+        byte[] png = samplePng(1200, 600);
+        origin = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        origin.createContext("/covers/", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            originHits.computeIfAbsent(path, p -> new AtomicInteger()).incrementAndGet();
+            if (path.endsWith("redirect.png")) {
+                exchange.getResponseHeaders().set("Location", baseUrl + "1.png");
+                exchange.sendResponseHeaders(302, -1);
+                exchange.close();
+                return;
+            }
+            if (path.endsWith("missing.png")) {
+                exchange.sendResponseHeaders(404, -1);
+                exchange.close();
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", "image/png");
+            exchange.sendResponseHeaders(200, png.length);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(png);
+            }
+        });
+        origin.start();
+        baseUrl = "http://127.0.0.1:" + origin.getAddress().getPort() + "/covers/";
+        when(activityRepository.findCoverImageUrlById(anyLong()))
+                .thenAnswer(invocation -> Optional.of(baseUrl + invocation.getArgument(0) + ".png"));
+    }
+
+    @AfterEach
+    void stopOrigin() {
+        origin.stop(0);
+    }
+
+    @Test
+    void fetchesOriginOnceAndResizesToFixedSize() throws IOException {
+        CoverImageService service = service(Long.MAX_VALUE);
+
+        CoverImageService.Thumbnail first = service.getThumbnail(1L, 640);
+        CoverImageService.Thumbnail second = service.getThumbnail(1L, 640);
+
+        assertEquals(first.file(), second.file());
+        assertEquals(1, originHits.get("/covers/1.png").get());
+        BufferedImage thumbnail = ImageIO.read(first.file().toFile());
+        assertEquals(640, thumbnail.getWidth());
+        assertEquals(426, thumbnail.getHeight());
+
+        // 列表網址的 v 與縮圖版本一致
+        assertTrue(CoverImageService.thumbnailUrl(1L, baseUrl + "1.png").endsWith("&v=" + first.version()));
+
+        // 不同寬度為不同檔案
+        assertNotEquals(first.file(), service.getThumbnail(1L, 320).file());
+    }
+
+    @Test
+    void reusesDiskCacheAfterRestart() {
+        Path file = service(Long.MAX_VALUE).getThumbnail(2L, 320).file();
+
+        CoverImageService restarted = service(Long.MAX_VALUE);
+        assertEquals(1, restarted.cachedFileCount());
+        assertEquals(file, restarted.getThumbnail(2L, 320).file());
+        assertEquals(1, originHits.get("/covers/2.png").get());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedWhenOverLimit() throws IOException {
+        long oneFile = Files.size(service(Long.MAX_VALUE).getThumbnail(10L, 320).file());
+        CoverImageService service = service(oneFile * 5 / 2);
+
+        Path kept = service.getThumbnail(10L, 320).file();
+        Path evicted = service.getThumbnail(11L, 320).file();
+        service.getThumbnail(10L, 320);
+        service.getThumbnail(12L, 320);
+
+        assertEquals(2, service.cachedFileCount());
+        assertTrue(service.cachedBytes() <= oneFile * 5 / 2);
+        assertTrue(Files.exists(kept));
+        // 淘汰的檔案可能仍在傳送，清理時才刪除
+        assertTrue(Files.exists(evicted));
+        assertEquals(1, service.purgeEvicted());
+        assertFalse(Files.exists(evicted));
+    }
+
+    @Test
+    void keepsEvictedFileWithinGraceAndWhenRegenerated() {
+        long oneFile = service(Long.MAX_VALUE).getThumbnail(20L, 320).file().toFile().length();
+        CoverImageService service = new CoverImageService(activityRepository, cacheDir, oneFile * 3 / 2,
+                60_000, true, new SimpleMeterRegistry());
+
+        Path first = service.getThumbnail(20L, 320).file();
+        service.getThumbnail(21L, 320);
+        assertEquals(0, service.purgeEvicted());
+        assertTrue(Files.exists(first));
+
+        // 寬限時間內又被請求：重新產生後回到快取，之後的清理不會刪掉
+        CoverImageService shortGrace = service(oneFile * 3 / 2);
+        shortGrace.getThumbnail(20L, 320);
+        shortGrace.getThumbnail(21L, 320);
+        assertEquals(first, shortGrace.getThumbnail(20L, 320).file());
+        assertEquals(1, shortGrace.purgeEvicted());
+        assertTrue(Files.exists(first));
+    }
+
+    @Test
+    void rejectsUnsupportedWidthAndFailedOrigin() {
+        CoverImageService service = service(Long.MAX_VALUE);
+        assertThrows(IllegalArgumentException.class, () -> service.getThumbnail(1L, 123));
+
+        when(activityRepository.findCoverImageUrlById(99L)).thenReturn(Optional.of(baseUrl + "missing.png"));
+        assertThrows(RuntimeException.class, () -> service.getThumbnail(99L, 320));
+        assertEquals(0, service.cachedFileCount());
+
+        // 失敗短暫快取：再次請求不會打到來源
+        assertThrows(RuntimeException.class, () -> service.getThumbnail(99L, 640));
+        assertEquals(1, originHits.get("/covers/missing.png").get());
+    }
+
+    @Test
+    void doesNotFollowRedirects() {
+        CoverImageService service = service(Long.MAX_VALUE);
+        when(activityRepository.findCoverImageUrlById(98L)).thenReturn(Optional.of(baseUrl + "redirect.png"));
+
+        assertThrows(RuntimeException.class, () -> service.getThumbnail(98L, 320));
+        assertNull(originHits.get("/covers/1.png"));
+        assertEquals(0, service.cachedFileCount());
+    }
+
+    @Test
+    void rejectsInternalHosts() {
+        CoverImageService service = new CoverImageService(activityRepository, cacheDir, Long.MAX_VALUE,
+                0, false, new SimpleMeterRegistry());
+
+        RuntimeException error = assertThrows(RuntimeException.class, () -> service.getThumbnail(1L, 320));
+        assertTrue(error.getMessage().contains("不允許"));
+        when(activityRepository.findCoverImageUrlById(97L)).thenReturn(Optional.of("http://169.254.169.254/latest/meta-data"));
+        assertThrows(RuntimeException.class, () -> service.getThumbnail(97L, 320));
+        assertTrue(originHits.isEmpty());
+    }
+
+    // 測試的圖片來源在 127.0.0.1，允許內部主機；寬限時間 0，清理時立即刪除淘汰的檔案
+    private CoverImageService service(long maxBytes) {
+        return new CoverImageService(activityRepository, cacheDir, maxBytes, 0, true, new SimpleMeterRegistry());
+    }
+
+    private static byte[] samplePng(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        for (int x = 0; x < width; x += 20) {
+            g.setColor(new Color((x * 7) % 256, (x * 3) % 256, 200));
+            g.fillRect(x, 0, 20, height);
+        }
+        g.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,139 @@
+package com.danceclub.club_system;
+
+import com.danceclub.club_system.service.EcpayCheckMacSigner;
+import org.junit.jupiter.api.Test;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * CheckMacValue 簽章測試
+ * 與原本的實作（TreeMap + URLEncoder + 轉小寫 + 逐一 replace + Integer.toHexString，保留於 legacySign）
+ * 在綠界官方範例與隨機參數（中文、emoji、不成對代理字元、保留字元、超過緩衝區的長值）下逐位元組相同，
+ * 並驗證不分大小寫、竄改即不符。
+ */
+class EcpayCheckMacSignerTest {
+
+    private static final String HASH_KEY = "pwFHCqoQZGmho4w6";
+    private static final String HASH_IV = "EkRm7iFT261dpevs";
+    private static final String ALPHABET = "abcXYZ019 -_.!*()~'&=+%/?:;,@#$^[]{}|\\\"<>`\t\n舞蹈社報名費é";
+
+    private final EcpayCheckMacSigner signer = new EcpayCheckMacSigner(HASH_KEY, HASH_IV);
+
+    @Test
+    void matchesEcpaySampleAndLegacyImplementation() {
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put("TradeDesc", "促銷方案");
+        params.put("PaymentType", "aio");
+        params.put("MerchantTradeDate", "2023/03/12 15:30:23");
+        params.put("MerchantTradeNo", "ecpay20230312153023");
+        params.put("MerchantID", "3002607");
+        params.put("ReturnURL", "https://www.ecpay.com.tw/receive.php");
+        params.put("ItemName", "Apple iphone 15");
+        params.put("TotalAmount", "30000");
+        params.put("ChoosePayment", "ALL");
+        params.put("EncryptType", "1");
+
+        // 綠界技術文件中的範例結果
+        String expected = "6C51C9E6888DE861FD62FB1DD17029FC742634498FD813DC43D4243B5685B840";
+        assertEquals(expected, legacySign(params));
+        assertEquals(expected, signer.sign(params));
+        assertEquals(expected, signer.sign(new TreeMap<>(params)));
+    }
+
+    @Test
+    void matchesLegacyImplementationForRandomParams() {
+        Random random = new Random(20241018);
+        for (int round = 0; round < 2_000; round++) {
+            Map<String, String> params = new HashMap<>();
+            int count = 1 + random.nextInt(12);
+            for (int i = 0; i < count; i++) {
+                params.put(randomString(random, 1 + random.nextInt(12)), randomString(random, random.nextInt(round % 50 == 0 ? 400 : 30)));
+            }
+            params.put("CheckMacValue", "ignored");
+            assertEquals(legacySign(params), signer.sign(params), () -> "params: " + params);
+        }
+    }
+
+    @Test
+    void verifiesIgnoringCaseAndRejectsTampering() {
+        Map<String, String> params = new TreeMap<>(Map.of("MerchantTradeNo", "P1", "RtnCode", "1", "TradeAmt", "300"));
+        String mac = signer.sign(params);
+
+        params.put("CheckMacValue", mac.toLowerCase());
+        assertTrue(signer.verify(params));
+        params.put("CheckMacValue", mac);
+        assertTrue(signer.verify(params));
+
+        params.put("TradeAmt", "1");
+        assertFalse(signer.verify(params));
+        params.put("TradeAmt", "300");
+        params.put("CheckMacValue", mac.substring(0, 63));
+        assertFalse(signer.verify(params));
+        params.put("CheckMacValue", (mac.charAt(0) == 'A' ? "B" : "A") + mac.substring(1));
+        assertFalse(signer.verify(params));
+        params.remove("CheckMacValue");
+        assertFalse(signer.verify(params));
+    }
+
+    private static String randomString(Random random, int length) {
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            int pick = random.nextInt(20);
+            if (pick == 0) {
+                value.appendCodePoint(0x1F483);                             // 💃（代理字元對）
+            } else if (pick == 1) {
+                value.append((char) (0xD800 + random.nextInt(0x800)));      // 不成對的代理字元
+            } else {
+                value.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+            }
+        }
+        return value.toString();
+    }
+
+    // 原本 EcpayService.generateCheckMacValue 的實作
+    private static String legacySign(Map<String, String> params) {
+        Map<String, String> sortedParams = new TreeMap<>(params);
+        sortedParams.remove("CheckMacValue");
+        StringBuilder queryString = new StringBuilder();
+        boolean first = true;
+        for (Map.Entry<String, String> entry : sortedParams.entrySet()) {
+            if (!first) {
+                queryString.append("&");
+            }
+            queryString.append(entry.getKey()).append("=").append(entry.getValue());
+            first = false;
+        }
+        String paramsString = "HashKey=" + HASH_KEY + "&" + queryString + "&HashIV=" + HASH_IV;
+        String encodedString = URLEncoder.encode(paramsString, StandardCharsets.UTF_8).toLowerCase()
+                .replace("%2d", "-")
+                .replace("%5f", "_")
+                .replace("%2e", ".")
+                .replace("%21", "!")
+                .replace("%2a", "*")
+                .replace("%28", "(")
+                .replace("%29", ")");
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(encodedString.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hexString = new StringBuilder();
+            for (byte b : hash) {
+                String hex = Integer.toHexString(0xff & b);
+                if (hex.length() == 1) {
+                    hexString.append('0');
+                }
+                hexString.append(hex);
+            }
+            return hexString.toString().toUpperCase();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
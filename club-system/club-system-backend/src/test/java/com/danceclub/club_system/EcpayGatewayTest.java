@@ -0,0 +1,220 @@
+package com.danceclub.club_system;
+
+import com.danceclub.club_system.exception.EcpayUnavailableException;
+import com.danceclub.club_system.service.EcpayGateway;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 綠界 API 連線測試（本機 HTTP server 模擬綠界）
+ * 表單編碼 / 解析、5xx 與逾時重試、4xx 不重試、連續失敗後斷路器開啟並在試探成功後關閉、連線重用、
+ * 參數錯誤不佔用試探、試探被中斷時斷路器重新開啟而不會停在半開
+ */
+class EcpayGatewayTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger hits = new AtomicInteger();
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+    // 依序回應的 HTTP 狀態；用完後回應 200。-1 代表不回應直到逾時
+    private final Deque<Integer> script = new ArrayDeque<>();
+    private HttpServer ecpay;
+    private String url;
+
+    @BeforeEach
+    void startEcpay() throws IOException {
+        ecpay = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        ecpay.setExecutor(Executors.newCachedThreadPool());
+        ecpay.createContext("/Cashier/QueryTradeInfo/V5", exchange -> {
+            hits.incrementAndGet();
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            Map<String, String> form = new TreeMap<>();
+            for (String pair : new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8).split("&")) {
+                int idx = pair.indexOf('=');
+                form.put(pair.substring(0, idx), URLDecoder.decode(pair.substring(idx + 1), StandardCharsets.UTF_8));
+            }
+            Integer status;
+            synchronized (script) {
+                status = script.isEmpty() ? 200 : script.poll();
+            }
+            if (status == -1) {
+                try {
+                    Thread.sleep(1_000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                exchange.close();
+                return;
+            }
+            if (status != 200) {
+                exchange.sendResponseHeaders(status, -1);
+                exchange.close();
+                return;
+            }
+            // 值含 & = 與中文，確認雙向編碼
+            byte[] body = ("MerchantTradeNo=" + URLEncoder.encode(form.get("MerchantTradeNo"), StandardCharsets.UTF_8)
+                    + "&TradeStatus=1&TradeAmt=300&CustomField1=a%26b%3Dc&ItemName=%E8%88%9E%E8%A1%A3&Empty=\r\n")
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        ecpay.start();
+        url = "http://127.0.0.1:" + ecpay.getAddress().getPort() + "/Cashier/QueryTradeInfo/V5";
+    }
+
+    @AfterEach
+    void stopEcpay() {
+        ecpay.stop(0);
+    }
+
+    @Test
+    void encodesFormParsesResponseAndReusesConnection() {
+        EcpayGateway gateway = gateway(3, 5);
+        Map<String, String> result = gateway.query("QueryTradeInfo", url, Map.of("MerchantTradeNo", "P1 & 2=3"));
+
+        assertEquals("P1 & 2=3", result.get("MerchantTradeNo"));
+        assertEquals("1", result.get("TradeStatus"));
+        assertEquals("a&b=c", result.get("CustomField1"));
+        assertEquals("舞衣", result.get("ItemName"));
+        assertEquals("", result.get("Empty"));
+
+        for (int i = 0; i < 4; i++) {
+            gateway.query("QueryTradeInfo", url, Map.of("MerchantTradeNo", "P" + i));
+        }
+        assertEquals(5, hits.get());
+        assertEquals(1, clientPorts.size(), "keep-alive 應重用同一條連線");
+        assertEquals(5, meterRegistry.get("ecpay.http.requests").tag("outcome", "success").timer().count());
+    }
+
+    @Test
+    void retriesServerErrorsAndTimeoutsButNot4xx() {
+        EcpayGateway gateway = gateway(3, 5);
+        script.addAll(List.of(503, -1));
+        assertEquals("1", gateway.query("QueryTradeInfo", url, Map.of("MerchantTradeNo", "P1")).get("TradeStatus"));
+        assertEquals(3, hits.get());
+        assertEquals(2, meterRegistry.get("ecpay.http.retries").counter().count());
+        assertEquals(1, meterRegistry.get("ecpay.http.requests").tag("outcome", "timeout").timer().count());
+
+        script.add(400);
+        assertThrows(IllegalStateException.class,
+                () -> gateway.query("QueryTradeInfo", url, Map.of("MerchantTradeNo", "P2")));
+        assertEquals(4, hits.get());
+    }
+
+    @Test
+    void opensCircuitAfterConsecutiveFailuresAndClosesAfterTrial() throws InterruptedException {
+        EcpayGateway gateway = gateway(2, 2);
+        script.addAll(List.of(500, 500, 500, 500));
+        assertThrows(EcpayUnavailableException.class,
+                () -> gateway.query("QueryTradeInfo", url, Map.of("MerchantTradeNo", "P1")));
+        assertEquals(EcpayGateway.CircuitState.CLOSED, gateway.getCircuitState());
+        assertThrows(EcpayUnavailableException.class,
+                () -> gateway.query("QueryTradeInfo", url, Map.of("MerchantTradeNo", "P1")));
+        assertEquals(EcpayGateway.CircuitState.OPEN, gateway.getCircuitState());
+        assertEquals(4, hits.get());
+
+        // 開啟期間不送出請求
+        EcpayUnavailableException rejected = assertThrows(EcpayUnavailableException.class,
+                () -> gateway.query("QueryTradeInfo", url, Map.of("MerchantTradeNo", "P1")));
+        assertTrue(rejected.getRetryAfterSeconds() >= 1);
+        assertEquals(4, hits.get());
+
+        // 開啟時間過後放行試探，成功即關閉
+        Thread.sleep(1_100);
+        assertEquals("1", gateway.query("QueryTradeInfo", url, Map.of("MerchantTradeNo", "P1")).get("TradeStatus"));
+        assertEquals(EcpayGateway.CircuitState.CLOSED, gateway.getCircuitState());
+        assertEquals(5, hits.get());
+    }
+
+    @Test
+    void invalidRequestDoesNotConsumeTrial() throws InterruptedException {
+        EcpayGateway gateway = openCircuit();
+        Thread.sleep(1_100);
+
+        Map<String, String> nullValue = new HashMap<>();
+        nullValue.put("MerchantTradeNo", null);
+        assertThrows(NullPointerException.class, () -> gateway.query("QueryTradeInfo", url, nullValue));
+        assertThrows(IllegalArgumentException.class,
+                () -> gateway.query("QueryTradeInfo", "http://bad host/", Map.of("MerchantTradeNo", "P1")));
+        assertEquals(EcpayGateway.CircuitState.OPEN, gateway.getCircuitState());
+
+        // 試探名額仍在，下一個正常呼叫成功即關閉
+        assertEquals("1", gateway.query("QueryTradeInfo", url, Map.of("MerchantTradeNo", "P1")).get("TradeStatus"));
+        assertEquals(EcpayGateway.CircuitState.CLOSED, gateway.getCircuitState());
+    }
+
+    @Test
+    void interruptedTrialReopensCircuit() throws InterruptedException {
+        EcpayGateway gateway = openCircuit();
+        Thread.sleep(1_100);
+
+        // 試探呼叫等待回應時被中斷
+        script.add(-1);
+        AtomicReference<RuntimeException> error = new AtomicReference<>();
+        Thread trial = new Thread(() -> {
+            try {
+                gateway.query("QueryTradeInfo", url, Map.of("MerchantTradeNo", "P1"));
+            } catch (RuntimeException e) {
+                error.set(e);
+            }
+        });
+        trial.start();
+        while (hits.get() < 5) {
+            Thread.sleep(10);
+        }
+        trial.interrupt();
+        trial.join(5_000);
+
+        assertInstanceOf(IllegalStateException.class, error.get());
+        assertEquals(EcpayGateway.CircuitState.OPEN, gateway.getCircuitState());
+        assertThrows(EcpayUnavailableException.class,
+                () -> gateway.query("QueryTradeInfo", url, Map.of("MerchantTradeNo", "P1")));
+
+        // 重新開啟的時間過後可再次試探
+        Thread.sleep(1_100);
+        assertEquals("1", gateway.query("QueryTradeInfo", url, Map.of("MerchantTradeNo", "P1")).get("TradeStatus"));
+        assertEquals(EcpayGateway.CircuitState.CLOSED, gateway.getCircuitState());
+    }
+
+    // 連續兩次呼叫失敗（各兩次嘗試）後斷路器開啟，共 4 次請求
+    private EcpayGateway openCircuit() {
+        EcpayGateway gateway = gateway(2, 2);
+        script.addAll(List.of(500, 500, 500, 500));
+        for (int i = 0; i < 2; i++) {
+            assertThrows(EcpayUnavailableException.class,
+                    () -> gateway.query("QueryTradeInfo", url, Map.of("MerchantTradeNo", "P1")));
+        }
+        assertEquals(EcpayGateway.CircuitState.OPEN, gateway.getCircuitState());
+        assertEquals(4, hits.get());
+        return gateway;
+    }
+
+    // 逾時 300ms、退避 10ms、斷路器開啟 1 秒
+    private EcpayGateway gateway(int maxAttempts, int failureThreshold) {
+        return new EcpayGateway(1_000, 300, maxAttempts, 10, failureThreshold, 1, meterRegistry);
+    }
+}
@@ -0,0 +1,252 @@
+package com.danceclub.club_system;
+
+import com.danceclub.club_system.model.Payment;
+import com.danceclub.club_system.model.Registration;
+import com.danceclub.club_system.model.enums.PaymentStatus;
+import com.danceclub.club_system.repository.PaymentRepository;
+import com.danceclub.club_system.repository.RegistrationRepository;
+import com.danceclub.club_system.service.EcpayService;
+import com.danceclub.club_system.service.RegistrationService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 綠界通知收件匣測試（本機模擬綠界，同時重送大量相同通知）
+ * 每則通知都立即回應 1|OK，收件匣每個 MerchantTradeNo + TradeNo 只留一筆，
+ * 繳費狀態與會員累計繳費金額只變更一次；付款成功後到達的失敗通知不會蓋掉成功狀態。
+ * 付款返回（/ecpay/return）同樣驗證 CheckMacValue 並走收件匣，不會蓋掉已退款的狀態。
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class EcpayNotifyInboxTest {
+
+    private static final int BURST = 20;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private EcpayService ecpayService;
+
+    @Autowired
+    private RegistrationService registrationService;
+
+    @Autowired
+    private RegistrationRepository registrationRepository;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+    private Long activityId;
+    private String userId;
+    private Long paymentId;
+    private String merchantTradeNo;
+
+    @BeforeEach
+    void setUp() {
+        activityId = fixtures.activity(activity -> {
+            activity.setTitle("綠界通知測試");
+            activity.setFeeAmount(new BigDecimal("300"));
+        }).getId();
+        userId = fixtures.user("N");
+
+        Registration registration = registrationService.createRegistration(activityId, userId, null, null, null);
+        Payment payment = paymentRepository.findByRegistration(registration).orElseThrow();
+        paymentId = payment.getId();
+        merchantTradeNo = "P" + paymentId + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss"));
+        payment.setMerchantTradeNo(merchantTradeNo);
+        payment.setStatus(PaymentStatus.PROCESSING);
+        paymentRepository.save(payment);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM ecpay_inbox WHERE merchant_trade_no = ?", merchantTradeNo);
+        fixtures.cleanup();
+    }
+
+    @Test
+    void duplicateBurstIsAcknowledgedAndAppliedOnce() throws Exception {
+        BigDecimal paidBefore = totalPaid();
+        String success = signedNotify("1", "2401010000001");
+        String lateFailure = signedNotify("10100058", "2401010000002");
+
+        // 綠界逾時重送：同一則成功通知同時送達多次
+        List<CompletableFuture<HttpResponse<String>>> burst = new ArrayList<>();
+        for (int i = 0; i < BURST; i++) {
+            burst.add(post(success));
+        }
+        for (CompletableFuture<HttpResponse<String>> response : burst) {
+            assertEquals(200, response.get().statusCode());
+            assertEquals("1|OK", response.get().body());
+        }
+
+        awaitApplied(1);
+        // 成功之後才到的失敗通知（不同 TradeNo）與再次重送
+        assertEquals("1|OK", post(lateFailure).get().body());
+        assertEquals("1|OK", post(lateFailure).get().body());
+        awaitApplied(2);
+
+        assertEquals(2, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM ecpay_inbox WHERE merchant_trade_no = ?", Integer.class, merchantTradeNo));
+        Payment payment = paymentRepository.findById(paymentId).orElseThrow();
+        assertEquals(PaymentStatus.PAID, payment.getStatus());
+        assertEquals("2401010000001", payment.getEcpayTradeNo());
+        Registration registration = registrationRepository.findByActivityIdAndUserId(activityId, userId).orElseThrow();
+        assertEquals(PaymentStatus.PAID, registration.getPaymentStatus());
+        assertEquals(0, paidBefore.add(registration.getPaymentAmount()).compareTo(totalPaid()));
+    }
+
+    @Test
+    void rejectsInvalidCheckMacValueWithoutWriting() throws Exception {
+        String tampered = signedNotify("1", "2401010000003").replace("TradeAmt=300", "TradeAmt=1");
+        HttpResponse<String> response = post(tampered).get();
+
+        assertEquals(400, response.statusCode());
+        assertTrue(response.body().startsWith("0|"));
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM ecpay_inbox WHERE merchant_trade_no = ?", Integer.class, merchantTradeNo));
+    }
+
+    @Test
+    void returnRacingNotifyIsAppliedOnce() throws Exception {
+        BigDecimal paidBefore = totalPaid();
+        String success = signedNotify("1", "2401010000006");
+
+        // 使用者被導回（return）與綠界背景通知（notify）同時到達，各自重送
+        List<CompletableFuture<HttpResponse<String>>> returns = new ArrayList<>();
+        List<CompletableFuture<HttpResponse<String>>> notifies = new ArrayList<>();
+        for (int i = 0; i < BURST / 2; i++) {
+            returns.add(post("/api/payments/ecpay/return", success));
+            notifies.add(post(success));
+        }
+        for (CompletableFuture<HttpResponse<String>> response : returns) {
+            assertEquals(200, response.get().statusCode());
+        }
+        for (CompletableFuture<HttpResponse<String>> response : notifies) {
+            assertEquals("1|OK", response.get().body());
+        }
+        awaitApplied(1);
+
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM ecpay_inbox WHERE merchant_trade_no = ?", Integer.class, merchantTradeNo));
+        assertEquals(PaymentStatus.PAID, paymentRepository.findById(paymentId).orElseThrow().getStatus());
+        Registration registration = registrationRepository.findByActivityIdAndUserId(activityId, userId).orElseThrow();
+        assertEquals(PaymentStatus.PAID, registration.getPaymentStatus());
+        assertEquals(0, paidBefore.add(registration.getPaymentAmount()).compareTo(totalPaid()));
+    }
+
+    @Test
+    void returnWithInvalidCheckMacValueDoesNotWrite() throws Exception {
+        String tampered = signedNotify("1", "2401010000004").replace("TradeAmt=300", "TradeAmt=1");
+        HttpResponse<String> response = post("/api/payments/ecpay/return", tampered).get();
+
+        assertEquals(400, response.statusCode());
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM ecpay_inbox WHERE merchant_trade_no = ?", Integer.class, merchantTradeNo));
+        assertEquals(PaymentStatus.PROCESSING, paymentRepository.findById(paymentId).orElseThrow().getStatus());
+        assertEquals(PaymentStatus.PENDING,
+                registrationRepository.findByActivityIdAndUserId(activityId, userId).orElseThrow().getPaymentStatus());
+    }
+
+    @Test
+    void returnDoesNotOverwriteRefund() throws Exception {
+        jdbcTemplate.update("UPDATE payment SET status = 'REFUNDED' WHERE id = ?", paymentId);
+        jdbcTemplate.update("UPDATE activity_registration SET payment_status = 'REFUNDED' " +
+                "WHERE activity_id = ? AND user_id = ?", activityId, userId);
+        BigDecimal paidBefore = totalPaid();
+
+        HttpResponse<String> response = post("/api/payments/ecpay/return", signedNotify("1", "2401010000005")).get();
+        assertEquals(200, response.statusCode());
+        awaitApplied(1);
+
+        assertEquals(PaymentStatus.REFUNDED, paymentRepository.findById(paymentId).orElseThrow().getStatus());
+        assertEquals(PaymentStatus.REFUNDED,
+                registrationRepository.findByActivityIdAndUserId(activityId, userId).orElseThrow().getPaymentStatus());
+        assertEquals(0, paidBefore.compareTo(totalPaid()));
+    }
+
+    // 依綠界規則簽章的通知表單內容
+    private String signedNotify(String rtnCode, String tradeNo) {
+        Map<String, String> params = new TreeMap<>();
+        params.put("MerchantID", "3002607");
+        params.put("MerchantTradeNo", merchantTradeNo);
+        params.put("RtnCode", rtnCode);
+        params.put("RtnMsg", "1".equals(rtnCode) ? "Succeeded" : "Failed");
+        params.put("TradeNo", tradeNo);
+        params.put("TradeAmt", "300");
+        params.put("PaymentDate", "2024/01/01 12:00:00");
+        params.put("PaymentType", "Credit_CreditCard");
+        params.put("SimulatePaid", "0");
+        EcpayService target = AopTestUtils.getTargetObject(ecpayService);
+        params.put("CheckMacValue", ReflectionTestUtils.invokeMethod(target, "generateCheckMacValue", params));
+        return params.entrySet().stream()
+                .map(e -> URLEncoder.encode(e.getKey(), StandardCharsets.UTF_8) + "="
+                        + URLEncoder.encode(e.getValue(), StandardCharsets.UTF_8))
+                .collect(Collectors.joining("&"));
+    }
+
+    private CompletableFuture<HttpResponse<String>> post(String form) {
+        return post("/api/payments/ecpay/notify", form);
+    }
+
+    private CompletableFuture<HttpResponse<String>> post(String path, String form) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(form))
+                .build();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    // 背景執行緒套用完成前輪詢收件匣
+    private void awaitApplied(int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 15_000;
+        while (System.currentTimeMillis() < deadline) {
+            Integer applied = jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM ecpay_inbox WHERE merchant_trade_no = ? AND status = 'APPLIED'",
+                    Integer.class, merchantTradeNo);
+            if (applied != null && applied >= expected) {
+                return;
+            }
+            Thread.sleep(50);
+        }
+        fail("收件匣未在時間內套用 " + expected + " 則通知");
+    }
+
+    private BigDecimal totalPaid() {
+        List<BigDecimal> rows = jdbcTemplate.queryForList(
+                "SELECT total_paid FROM member_stats WHERE user_id = ?", BigDecimal.class, userId);
+        return rows.isEmpty() ? BigDecimal.ZERO : rows.get(0);
+    }
+}
@@ -0,0 +1,205 @@
+package com.danceclub.club_system;
+
+import com.danceclub.club_system.dto.EcpayReconciliationReport;
+import com.danceclub.club_system.model.Payment;
+import com.danceclub.club_system.model.Registration;
+import com.danceclub.club_system.model.enums.PaymentStatus;
+import com.danceclub.club_system.repository.PaymentRepository;
+import com.danceclub.club_system.repository.RegistrationRepository;
+import com.danceclub.club_system.service.EcpayReconciliationService;
+import com.danceclub.club_system.service.RegistrationService;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 綠界對帳測試（本機 HTTP server 模擬綠界 QueryTradeInfo）
+ * 綠界已付款的繳費改為已繳費、未付款的不變、查詢失敗的計入失敗且不變；
+ * 綠界交易失敗或逾期未付款的繳費改為已取消，之後不再查詢；
+ * 同時進行的查詢數不超過設定上限。
+ */
+@SpringBootTest
+class EcpayReconciliationTest {
+
+    private static final int MAX_CONCURRENCY = 3;
+
+    private static final HttpServer ECPAY = startEcpay();
+    // MerchantTradeNo -> 模擬綠界回應的 TradeStatus（"500" 代表回應 HTTP 500）
+    private static final Map<String, String> TRADE_STATUS = new ConcurrentHashMap<>();
+    private static final AtomicInteger IN_FLIGHT = new AtomicInteger();
+    private static final AtomicInteger PEAK = new AtomicInteger();
+
+    @DynamicPropertySource
+    static void ecpayProperties(DynamicPropertyRegistry registry) {
+        registry.add("ecpay.query-url",
+                () -> "http://127.0.0.1:" + ECPAY.getAddress().getPort() + "/Cashier/QueryTradeInfo/V5");
+        registry.add("ecpay.reconcile.max-concurrency", () -> MAX_CONCURRENCY);
+        registry.add("ecpay.reconcile.requests-per-second", () -> 1000);
+        // 小分頁與小批次，測到多頁與多個交易
+        registry.add("ecpay.reconcile.page-size", () -> 2);
+        registry.add("ecpay.reconcile.batch-size", () -> 1);
+        registry.add("ecpay.reconcile.min-age-minutes", () -> 0);
+    }
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private EcpayReconciliationService reconciliationService;
+
+    @Autowired
+    private RegistrationService registrationService;
+
+    @Autowired
+    private RegistrationRepository registrationRepository;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    private Long activityId;
+    private List<String> userIds;
+    private final List<Long> paymentIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        activityId = fixtures.activity(activity -> {
+            activity.setTitle("綠界對帳測試");
+            activity.setFeeAmount(new BigDecimal("300"));
+        }).getId();
+
+        List<String> outcomes = List.of("1", "1", "0", "500", "1", "10200095", "0");
+        userIds = fixtures.users("R", outcomes.size());
+        for (int i = 0; i < outcomes.size(); i++) {
+            Registration registration = registrationService.createRegistration(activityId, userIds.get(i), null, null, null);
+            Payment payment = paymentRepository.findByRegistration(registration).orElseThrow();
+            String merchantTradeNo = "R" + payment.getId() + "T" + System.nanoTime() % 1_000_000;
+            payment.setMerchantTradeNo(merchantTradeNo);
+            // 第 5 筆保持待繳費（曾建立綠界訂單但未完成），其餘為付款中；最後一筆已過繳費期限
+            payment.setStatus(i == 4 ? PaymentStatus.PENDING : PaymentStatus.PROCESSING);
+            if (i == outcomes.size() - 1) {
+                payment.setPaymentDeadline(LocalDateTime.now().minusDays(1));
+            }
+            paymentIds.add(paymentRepository.save(payment).getId());
+            TRADE_STATUS.put(merchantTradeNo, outcomes.get(i));
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        TRADE_STATUS.clear();
+        fixtures.cleanup();
+    }
+
+    @AfterAll
+    static void stopEcpay() {
+        ECPAY.stop(0);
+    }
+
+    @Test
+    void syncsPaidTradesAndCountsOutcomes() {
+        EcpayReconciliationReport report = reconciliationService.reconcile();
+
+        assertEquals(PaymentStatus.PAID, status(0));
+        assertEquals(PaymentStatus.PAID, status(1));
+        assertEquals(PaymentStatus.PROCESSING, status(2));
+        assertEquals(PaymentStatus.PROCESSING, status(3));
+        assertEquals(PaymentStatus.PAID, status(4));
+        assertEquals(PaymentStatus.CANCELLED, status(5));
+        assertEquals(PaymentStatus.CANCELLED, status(6));
+        assertEquals(PaymentStatus.CANCELLED, registrationRepository.findByActivityIdAndUserId(activityId, userIds.get(5))
+                .orElseThrow().getPaymentStatus());
+        Payment paid = paymentRepository.findById(paymentIds.get(0)).orElseThrow();
+        assertEquals("T" + paid.getMerchantTradeNo(), paid.getEcpayTradeNo());
+        assertEquals(PaymentStatus.PAID, registrationRepository.findByActivityIdAndUserId(activityId, userIds.get(0))
+                .orElseThrow().getPaymentStatus());
+
+        // 其他測試留下的未結清繳費也會被查到（模擬綠界回應未付款）
+        assertEquals(3, report.getSynced());
+        assertEquals(1, report.getFailed());
+        assertTrue(report.getExpired() >= 2);
+        assertTrue(report.getUnchanged() >= 1);
+        assertEquals(report.getScanned(),
+                report.getSynced() + report.getExpired() + report.getUnchanged() + report.getFailed());
+        assertTrue(PEAK.get() <= MAX_CONCURRENCY, "同時查詢數 " + PEAK.get());
+
+        // 再次對帳：已付款與已取消的不再查詢，未付款與失敗的維持原狀
+        EcpayReconciliationReport again = reconciliationService.reconcile();
+        assertEquals(0, again.getSynced());
+        assertEquals(0, again.getExpired());
+        assertEquals(report.getScanned() - 3 - report.getExpired(), again.getScanned());
+    }
+
+    private PaymentStatus status(int index) {
+        return paymentRepository.findById(paymentIds.get(index)).orElseThrow().getStatus();
+    }
+
+    private static HttpServer startEcpay() {
+        try {
+            HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.setExecutor(Executors.newCachedThreadPool());
+            server.createContext("/Cashier/QueryTradeInfo/V5", exchange -> {
+                PEAK.accumulateAndGet(IN_FLIGHT.incrementAndGet(), Math::max);
+                try {
+                    String form = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+                    String merchantTradeNo = formValue(form, "MerchantTradeNo");
+                    // 模擬網路延遲，讓查詢重疊
+                    Thread.sleep(50);
+                    String tradeStatus = TRADE_STATUS.getOrDefault(merchantTradeNo, "0");
+                    if ("500".equals(tradeStatus)) {
+                        exchange.sendResponseHeaders(500, -1);
+                        return;
+                    }
+                    byte[] body = ("MerchantID=3002607&MerchantTradeNo=" + merchantTradeNo
+                            + "&TradeNo=T" + merchantTradeNo + "&TradeAmt=300&TradeStatus=" + tradeStatus
+                            + "&PaymentType=Credit_CreditCard&PaymentDate=2024%2F01%2F01+12%3A00%3A00")
+                            .getBytes(StandardCharsets.UTF_8);
+                    exchange.sendResponseHeaders(200, body.length);
+                    try (OutputStream out = exchange.getResponseBody()) {
+                        out.write(body);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    IN_FLIGHT.decrementAndGet();
+                    exchange.close();
+                }
+            });
+            server.start();
+            return server;
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String formValue(String form, String key) {
+        for (String pair : form.split("&")) {
+            int idx = pair.indexOf('=');
+            if (idx > 0 && pair.substring(0, idx).equals(key)) {
+                return URLDecoder.decode(pair.substring(idx + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return "";
+    }
+}
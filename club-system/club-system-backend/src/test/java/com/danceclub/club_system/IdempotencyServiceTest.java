@@ -0,0 +1,179 @@
+package com.danceclub.club_system;
+
+import com.danceclub.club_system.repository.IdempotencyRecordRepository;
+import com.danceclub.club_system.service.IdempotencyService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Idempotency-Key 測試
+ * 重送回放原始回應、同一個 key 搭配不同內容被拒絕；
+ * 同一個 key 同時送達時只執行一次，跨節點同時寫入時保留先寫入的版本。
+ */
+@SpringBootTest
+class IdempotencyServiceTest {
+
+    private final String scope = "TEST " + System.nanoTime();
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM idempotency_record WHERE record_key LIKE ?", scope + "|%");
+    }
+
+    @Test
+    void retryReplaysStoredResponse() {
+        AtomicInteger calls = new AtomicInteger();
+        Map<String, Object> request = Map.of("activityId", 1);
+
+        ResponseEntity<?> first = idempotencyService.execute(scope, "k1", request,
+                () -> ResponseEntity.status(HttpStatus.CREATED).body(Map.of("id", calls.incrementAndGet())));
+        ResponseEntity<?> retry = idempotencyService.execute(scope, "k1", request,
+                () -> ResponseEntity.status(HttpStatus.CREATED).body(Map.of("id", calls.incrementAndGet())));
+
+        assertEquals(1, calls.get());
+        assertEquals(201, first.getStatusCode().value());
+        assertEquals(201, retry.getStatusCode().value());
+        assertEquals("true", retry.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+        assertEquals("{\"id\":1}", retry.getBody());
+        assertTrue(idempotencyRecordRepository.existsById(scope + "|k1"));
+    }
+
+    @Test
+    void failedResponseIsNotStored() {
+        AtomicInteger calls = new AtomicInteger();
+
+        idempotencyService.execute(scope, "k2", Map.of(), () -> {
+            calls.incrementAndGet();
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", "x"));
+        });
+        ResponseEntity<?> retry = idempotencyService.execute(scope, "k2", Map.of(), () -> {
+            calls.incrementAndGet();
+            return ResponseEntity.ok(Map.of());
+        });
+
+        assertEquals(2, calls.get());
+        assertNull(retry.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+    }
+
+    @Test
+    void sameKeyWithDifferentBodyIsRejected() {
+        idempotencyService.execute(scope, "k3", Map.of("activityId", 1),
+                () -> ResponseEntity.ok(Map.of("id", 1)));
+
+        AtomicInteger calls = new AtomicInteger();
+        assertThrows(IllegalStateException.class, () -> idempotencyService.execute(scope, "k3",
+                Map.of("activityId", 2), () -> ResponseEntity.ok(Map.of("id", calls.incrementAndGet()))));
+        assertEquals(0, calls.get());
+    }
+
+    @Test
+    void concurrentRequestsWithSameKeyExecuteOnce() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<ResponseEntity<?>>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    return idempotencyService.execute(scope, "k4", Map.of("activityId", 1), () -> {
+                        sleep(100);
+                        return ResponseEntity.status(HttpStatus.CREATED).body(Map.of("id", calls.incrementAndGet()));
+                    });
+                }));
+            }
+            start.countDown();
+            for (Future<ResponseEntity<?>> future : futures) {
+                assertEquals(201, future.get(10, TimeUnit.SECONDS).getStatusCode().value());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void concurrentWritersOnTwoNodesKeepFirstRecord() throws Exception {
+        // 兩個各自有記憶體快取的節點，同時執行同一個 key 並寫入資料表
+        IdempotencyService nodeA = new IdempotencyService(idempotencyRecordRepository, objectMapper);
+        IdempotencyService nodeB = new IdempotencyService(idempotencyRecordRepository, objectMapper);
+        CountDownLatch bothRunning = new CountDownLatch(2);
+        CountDownLatch aSaved = new CountDownLatch(1);
+        Map<String, Object> request = Map.of("activityId", 1);
+
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<ResponseEntity<?>> a = pool.submit(() -> nodeA.execute(scope, "k5", request, () -> {
+                bothRunning.countDown();
+                await(bothRunning);
+                return ResponseEntity.status(HttpStatus.CREATED).body(Map.of("node", "A"));
+            }));
+            Future<ResponseEntity<?>> b = pool.submit(() -> nodeB.execute(scope, "k5", request, () -> {
+                bothRunning.countDown();
+                await(bothRunning);
+                // 讓 A 先寫入
+                await(aSaved);
+                return ResponseEntity.status(HttpStatus.CREATED).body(Map.of("node", "B"));
+            }));
+            a.get(10, TimeUnit.SECONDS);
+            aSaved.countDown();
+            b.get(10, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals("{\"node\":\"A\"}", idempotencyRecordRepository.findById(scope + "|k5").orElseThrow().getResponseBody());
+        // 兩個節點之後的重送都回放先寫入的版本
+        for (IdempotencyService node : List.of(nodeA, nodeB)) {
+            ResponseEntity<?> replay = node.execute(scope, "k5", request,
+                    () -> ResponseEntity.ok(Map.of("node", "again")));
+            assertEquals("{\"node\":\"A\"}", replay.getBody());
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
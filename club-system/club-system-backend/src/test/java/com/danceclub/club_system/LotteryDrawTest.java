@@ -0,0 +1,208 @@
+package com.danceclub.club_system;
+
+import com.danceclub.club_system.dto.LotteryResultDTO;
+import com.danceclub.club_system.model.Activity;
+import com.danceclub.club_system.model.Registration;
+import com.danceclub.club_system.model.WaitlistEntry;
+import com.danceclub.club_system.model.enums.PaymentStatus;
+import com.danceclub.club_system.model.enums.RegistrationMode;
+import com.danceclub.club_system.repository.ActivityRepository;
+import com.danceclub.club_system.repository.RegistrationRepository;
+import com.danceclub.club_system.service.ActivityService;
+import com.danceclub.club_system.service.LotteryService;
+import com.danceclub.club_system.service.RegistrationService;
+import com.danceclub.club_system.service.WaitlistService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * 抽籤報名測試
+ * 登記人數超過名額時，抽籤只寫入名額數的報名與繳費紀錄，其餘依抽籤順序進入候補；
+ * 結果可由種子重現，重複抽籤不會再寫入；抽籤活動必須有報名截止時間，手動抽籤僅限管理員。
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class LotteryDrawTest {
+
+    private static final int CAPACITY = 3;
+    private static final int ENTRIES = 7;
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private LotteryService lotteryService;
+
+    @Autowired
+    private ActivityService activityService;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private RegistrationService registrationService;
+
+    @Autowired
+    private WaitlistService waitlistService;
+
+    @Autowired
+    private ActivityRepository activityRepository;
+
+    @Autowired
+    private RegistrationRepository registrationRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Long activityId;
+    private List<String> userIds;
+
+    @BeforeEach
+    void setUp() {
+        activityId = fixtures.activity(activity -> {
+            activity.setTitle("抽籤測試");
+            activity.setMaxParticipants(CAPACITY);
+            activity.setFeeAmount(new BigDecimal("300"));
+            activity.setRegistrationMode(RegistrationMode.LOTTERY);
+        }).getId();
+        userIds = fixtures.users("L", ENTRIES, (user, i) -> user.setRole(i == 0 ? "officer" : "member"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        fixtures.cleanup();
+    }
+
+    @Test
+    void drawAdmitsCapacityAndWaitlistsTheRestInSeedOrder() throws Exception {
+        userIds.forEach(userId -> lotteryService.enter(activityId, userId));
+        assertThrows(IllegalStateException.class, () -> lotteryService.enter(activityId, userIds.get(1)));
+        assertThrows(IllegalStateException.class,
+                () -> registrationService.createRegistration(activityId, userIds.get(1), null, null, null));
+
+        // 截止前不抽籤
+        assertTrue(lotteryService.drawIfDue(activityId).isEmpty());
+        assertTrue(registrationRepository.findByActivityIdOrderByRegistrationTimeAsc(activityId).isEmpty());
+
+        closeRegistration();
+        LotteryResultDTO result = lotteryService.draw(activityId);
+        assertEquals(ENTRIES, result.getEntryCount());
+        assertEquals(CAPACITY, result.getWinnerCount());
+        assertEquals(ENTRIES - CAPACITY, result.getWaitlistCount());
+
+        // 以回傳的種子重現排名
+        List<String> ranked = userIds.stream()
+                .sorted(Comparator.comparing(userId -> md5(result.getSeed() + ":" + userId)))
+                .toList();
+        List<Registration> registrations = registrationRepository.findByActivityIdOrderByRegistrationTimeAsc(activityId);
+        assertEquals(Set.copyOf(ranked.subList(0, CAPACITY)),
+                registrations.stream().map(Registration::getUserId).collect(Collectors.toSet()));
+        assertEquals(ranked.subList(CAPACITY, ENTRIES),
+                waitlistService.getWaitlist(activityId).stream().map(WaitlistEntry::getUserId).toList());
+        assertEquals(1, waitlistService.getPosition(activityId, ranked.get(CAPACITY)).getPosition());
+
+        // 幹部免費、不建立繳費；一般會員待繳費並有一筆繳費紀錄
+        for (Registration registration : registrations) {
+            boolean officer = registration.getUserId().equals(userIds.get(0));
+            assertEquals(officer ? PaymentStatus.NOT_REQUIRED : PaymentStatus.PENDING, registration.getPaymentStatus());
+            Integer payments = jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM payment WHERE registration_id = ? AND amount = ?",
+                    Integer.class, registration.getId(), registration.getPaymentAmount());
+            assertEquals(officer ? 0 : 1, payments);
+        }
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT remaining FROM activity_seat WHERE activity_id = ?", Integer.class, activityId));
+
+        // 重複抽籤不會再寫入
+        assertThrows(IllegalStateException.class, () -> lotteryService.draw(activityId));
+        assertTrue(lotteryService.drawIfDue(activityId).isEmpty());
+        assertEquals(CAPACITY, registrationRepository.findByActivityIdOrderByRegistrationTimeAsc(activityId).size());
+        assertEquals(result.getSeed(), activityRepository.findById(activityId).orElseThrow().getLotterySeed());
+    }
+
+    @Test
+    void cancellationPromotesNextLotteryLoser() {
+        userIds.forEach(userId -> lotteryService.enter(activityId, userId));
+        closeRegistration();
+        lotteryService.draw(activityId);
+
+        String firstLoser = waitlistService.getWaitlist(activityId).get(0).getUserId();
+        Registration winner = registrationRepository.findByActivityIdOrderByRegistrationTimeAsc(activityId).get(0);
+        registrationService.cancelRegistration(winner.getId());
+
+        assertTrue(registrationRepository.findByActivityIdAndUserId(activityId, firstLoser).isPresent());
+        assertEquals(ENTRIES - CAPACITY - 1, waitlistService.getWaitlist(activityId).size());
+    }
+
+    @Test
+    void lotteryActivityRequiresRegistrationDeadline() {
+        Activity draft = new Activity();
+        draft.setTitle("抽籤無截止");
+        draft.setStartTime(LocalDateTime.now().plusDays(7));
+        draft.setEndTime(LocalDateTime.now().plusDays(7).plusHours(2));
+        draft.setRegistrationMode(RegistrationMode.LOTTERY);
+        assertThrows(IllegalArgumentException.class, () -> activityService.createActivity(draft));
+
+        Activity update = activityRepository.findById(activityId).orElseThrow();
+        update.setRegistrationDeadline(null);
+        assertThrows(IllegalArgumentException.class, () -> activityService.updateActivity(activityId, update));
+    }
+
+    @Test
+    @WithMockUser(roles = "MEMBER")
+    void drawEndpointRejectsNonAdmin() throws Exception {
+        userIds.forEach(userId -> lotteryService.enter(activityId, userId));
+        closeRegistration();
+
+        mockMvc.perform(post("/api/activities/{id}/lottery/draw", activityId))
+                .andExpect(status().isForbidden());
+        assertNull(activityRepository.findById(activityId).orElseThrow().getLotteryDrawnAt());
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void drawEndpointAllowsAdmin() throws Exception {
+        userIds.forEach(userId -> lotteryService.enter(activityId, userId));
+        closeRegistration();
+
+        mockMvc.perform(post("/api/activities/{id}/lottery/draw", activityId))
+                .andExpect(status().isOk());
+        assertEquals(CAPACITY, registrationRepository.findByActivityIdOrderByRegistrationTimeAsc(activityId).size());
+    }
+
+    // 報名截止（活動本身未開始），直接改資料表避免觸發時間驗證
+    private void closeRegistration() {
+        jdbcTemplate.update("UPDATE activity SET registration_deadline = ? WHERE id = ?",
+                LocalDateTime.now().minusMinutes(1), activityId);
+    }
+
+    private static String md5(String value) {
+        try {
+            return HexFormat.of().formatHex(
+                    MessageDigest.getInstance("MD5").digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.danceclub.club_system;
+
+import com.danceclub.club_system.model.MemberLoyaltyCounter;
+import com.danceclub.club_system.model.Registration;
+import com.danceclub.club_system.repository.LoyaltyCouponRepository;
+import com.danceclub.club_system.repository.MemberLoyaltyCounterRepository;
+import com.danceclub.club_system.service.DiscountService;
+import com.danceclub.club_system.service.LoyaltyAwardWorker;
+import com.danceclub.club_system.service.RegistrationService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 忠誠獎勵計數測試（DiscountService.recordAttendance）
+ * 第一次處理時由既有出席紀錄初始化、重送的事件不重複計數、每跨過一次門檻只發一張券。
+ * 簽到事件的背景處理以 mock 取代，由測試直接呼叫 recordAttendance。
+ */
+@SpringBootTest
+class LoyaltyAttendanceTest {
+
+    private static final int THRESHOLD = 3;
+
+    @MockitoBean
+    private LoyaltyAwardWorker loyaltyAwardWorker;
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private DiscountService discountService;
+
+    @Autowired
+    private RegistrationService registrationService;
+
+    @Autowired
+    private LoyaltyCouponRepository loyaltyCouponRepository;
+
+    @Autowired
+    private MemberLoyaltyCounterRepository memberLoyaltyCounterRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private String userId;
+    private Integer originalThreshold;
+
+    @BeforeEach
+    void setUp() {
+        originalThreshold = discountService.getConfig().getLoyaltyThreshold();
+        jdbcTemplate.update("UPDATE discount_config SET loyalty_threshold = ? WHERE id = 1", THRESHOLD);
+        userId = fixtures.user("Y");
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("UPDATE discount_config SET loyalty_threshold = ? WHERE id = 1", originalThreshold);
+        jdbcTemplate.update("DELETE FROM loyalty_coupon WHERE user_id = ?", userId);
+        jdbcTemplate.update("DELETE FROM member_loyalty_counter WHERE user_id = ?", userId);
+        fixtures.cleanup();
+    }
+
+    @Test
+    void firstUseInitialisesFromAttendanceHistory() {
+        // 計數啟用前已有 7 場出席（事件未處理）
+        List<Registration> attended = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            attended.add(attend());
+        }
+
+        discountService.recordAttendance(attended.get(6).getId(), userId);
+
+        assertEquals(7 / THRESHOLD, loyaltyCouponRepository.countByUserId(userId));
+        MemberLoyaltyCounter counter = memberLoyaltyCounterRepository.findById(userId).orElseThrow();
+        assertTrue(counter.getInitialized());
+        assertEquals(7 / THRESHOLD, counter.getLoyaltyCouponsIssued());
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM activity_registration WHERE user_id = ? AND loyalty_counted IS NOT TRUE",
+                Integer.class, userId));
+
+        // 歷史中其他場次的事件之後才送達，不再計數
+        discountService.recordAttendance(attended.get(0).getId(), userId);
+        assertEquals(7 / THRESHOLD, loyaltyCouponRepository.countByUserId(userId));
+    }
+
+    @Test
+    void redeliveredEventDoesNotDoubleCount() {
+        Registration first = attend();
+        discountService.recordAttendance(first.getId(), userId);
+        Registration second = attend();
+        discountService.recordAttendance(second.getId(), userId);
+
+        // 第二場的事件重送：若重複計數會達到門檻並發券
+        discountService.recordAttendance(second.getId(), userId);
+        discountService.recordAttendance(first.getId(), userId);
+        assertEquals(0, loyaltyCouponRepository.countByUserId(userId));
+
+        Registration third = attend();
+        discountService.recordAttendance(third.getId(), userId);
+        discountService.recordAttendance(third.getId(), userId);
+        assertEquals(1, loyaltyCouponRepository.countByUserId(userId));
+    }
+
+    @Test
+    void issuesExactlyOneCouponPerThresholdCrossing() {
+        List<Long> couponsAfterEach = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            Registration registration = attend();
+            discountService.recordAttendance(registration.getId(), userId);
+            couponsAfterEach.add(loyaltyCouponRepository.countByUserId(userId));
+        }
+
+        assertEquals(List.of(0L, 0L, 1L, 1L, 1L, 2L, 2L), couponsAfterEach);
+        assertTrue(loyaltyCouponRepository.findAll().stream()
+                .filter(coupon -> userId.equals(coupon.getUserId()))
+                .allMatch(coupon -> "COUPON".equals(coupon.getCouponType()) && "SYSTEM".equals(coupon.getIssuedBy())));
+    }
+
+    // 報名一場免費活動並簽到
+    private Registration attend() {
+        Long activityId = fixtures.activity(activity -> activity.setTitle("忠誠計數測試活動")).getId();
+        Registration registration = registrationService.createRegistration(activityId, userId, null, null, null);
+        // 報名後把活動改為 30 分鐘後開始（簽到開放時間內），直接改資料表避免觸發報名時間驗證
+        jdbcTemplate.update("UPDATE activity SET start_time = ? WHERE id = ?",
+                LocalDateTime.now().plusMinutes(30), activityId);
+        return registrationService.checkIn(registration.getId());
+    }
+}
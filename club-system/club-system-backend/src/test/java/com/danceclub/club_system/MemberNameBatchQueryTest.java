@@ -0,0 +1,94 @@
+package com.danceclub.club_system;
+
+import com.danceclub.club_system.dto.CouponAdminDTO;
+import com.danceclub.club_system.dto.RegistrationWithUserDTO;
+import com.danceclub.club_system.model.LoyaltyCoupon;
+import com.danceclub.club_system.repository.LoyaltyCouponRepository;
+import com.danceclub.club_system.service.DiscountService;
+import com.danceclub.club_system.service.RegistrationService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 活動名單、優惠券列表的會員姓名查詢次數測試
+ * 會員姓名以單一 IN 查詢批次帶出，SQL 執行次數不隨筆數成長（N+1）
+ */
+@SpringBootTest(properties = ThreadStatementCounter.PROPERTY)
+class MemberNameBatchQueryTest {
+
+    private static final int MEMBERS = 15;
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private RegistrationService registrationService;
+
+    @Autowired
+    private DiscountService discountService;
+
+    @Autowired
+    private LoyaltyCouponRepository loyaltyCouponRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Long activityId;
+    private List<String> userIds;
+
+    @BeforeEach
+    void setUp() {
+        activityId = fixtures.activity(activity -> activity.setTitle("名單查詢次數測試活動")).getId();
+
+        userIds = fixtures.users("N", MEMBERS, (user, i) -> user.setName("名單會員" + i));
+        for (String userId : userIds) {
+            registrationService.createRegistration(activityId, userId, null, null, null);
+
+            LoyaltyCoupon coupon = new LoyaltyCoupon();
+            coupon.setUserId(userId);
+            coupon.setEarnedAt(LocalDateTime.now());
+            coupon.setDescription("名單查詢次數測試");
+            loyaltyCouponRepository.save(coupon);
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        userIds.forEach(userId -> jdbcTemplate.update("DELETE FROM loyalty_coupon WHERE user_id = ?", userId));
+        fixtures.cleanup();
+    }
+
+    @Test
+    void activityRosterResolvesNamesInOneQuery() {
+        ThreadStatementCounter.reset();
+
+        List<RegistrationWithUserDTO> roster = registrationService.getActivityRegistrations(activityId);
+
+        assertEquals(MEMBERS, roster.size());
+        assertTrue(roster.stream().allMatch(dto -> dto.getUserName() != null && dto.getUserName().startsWith("名單會員")));
+        // 報名 1 次 + 會員 1 次
+        assertEquals(2, ThreadStatementCounter.count());
+    }
+
+    @Test
+    void couponListResolvesNamesInOneQuery() {
+        ThreadStatementCounter.reset();
+
+        List<CouponAdminDTO> coupons = discountService.adminListAllCoupons();
+
+        List<CouponAdminDTO> ours = coupons.stream().filter(c -> userIds.contains(c.getUserId())).toList();
+        assertEquals(MEMBERS, ours.size());
+        assertTrue(ours.stream().allMatch(c -> c.getUserName().startsWith("名單會員")));
+        // 優惠券 1 次 + 會員 1 次
+        assertEquals(2, ThreadStatementCounter.count());
+    }
+}
@@ -0,0 +1,130 @@
+package com.danceclub.club_system;
+
+import com.danceclub.club_system.model.MemberStats;
+import com.danceclub.club_system.model.Registration;
+import com.danceclub.club_system.service.LoyaltyAwardWorker;
+import com.danceclub.club_system.service.MemberStatsService;
+import com.danceclub.club_system.service.RegistrationService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 會員出席統計測試
+ * 簽到、取消、缺席、繳費狀態變更在同一交易中累加 member_stats，
+ * 重建後的結果與累加結果一致，並可修正被手動改壞的統計列。
+ */
+@SpringBootTest
+class MemberStatsTest {
+
+    @MockitoBean
+    private LoyaltyAwardWorker loyaltyAwardWorker;
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private MemberStatsService memberStatsService;
+
+    @Autowired
+    private RegistrationService registrationService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private String userId;
+
+    @BeforeEach
+    void setUp() {
+        userId = fixtures.user("S");
+    }
+
+    @AfterEach
+    void tearDown() {
+        fixtures.cleanup();
+    }
+
+    @Test
+    void checkInCancelAbsenceAndPaymentApplyDeltas() {
+        assertStats(0, 0, 0, 0, BigDecimal.ZERO);
+
+        // 繳費：PENDING -> PAID 累加報名金額
+        Registration paid = registrationService.createRegistration(createActivity("300"), userId, null, null, null);
+        registrationService.updatePaymentStatus(paid.getId());
+        BigDecimal amount = paid.getPaymentAmount();
+        assertStats(0, 0, 0, 0, amount);
+
+        // 遲到簽到：出席 +1、遲到 +1（活動改為 1 小時前開始）
+        jdbcTemplate.update("UPDATE activity SET start_time = ? WHERE id = ?",
+                LocalDateTime.now().minusHours(1), paid.getActivityId());
+        registrationService.checkIn(paid.getId());
+        assertStats(1, 0, 1, 0, amount);
+
+        // 已繳費後取消：取消 +1，已繳金額扣回
+        Registration refunded = registrationService.createRegistration(createActivity("200"), userId, null, null, null);
+        registrationService.updatePaymentStatus(refunded.getId());
+        registrationService.cancelRegistration(refunded.getId());
+        assertStats(1, 0, 1, 1, amount);
+
+        // 缺席標記：缺席 +1，重複標記不再累加
+        Registration absent = registrationService.createRegistration(createActivity("0"), userId, null, null, null);
+        assertEquals(1, registrationService.markAbsentForActivities(List.of(absent.getActivityId())));
+        assertEquals(0, registrationService.markAbsentForActivities(List.of(absent.getActivityId())));
+        assertStats(1, 1, 1, 1, amount);
+    }
+
+    @Test
+    void rebuildMatchesDeltasAndRepairsDrift() {
+        Registration attended = registrationService.createRegistration(createActivity("300"), userId, null, null, null);
+        registrationService.updatePaymentStatus(attended.getId());
+        // 活動改為 30 分鐘後開始（簽到開放時間內）
+        jdbcTemplate.update("UPDATE activity SET start_time = ? WHERE id = ?",
+                LocalDateTime.now().plusMinutes(30), attended.getActivityId());
+        registrationService.checkIn(attended.getId());
+        Registration cancelled = registrationService.createRegistration(createActivity("0"), userId, null, null, null);
+        registrationService.cancelRegistration(cancelled.getId());
+        MemberStats before = memberStatsService.getStats(userId);
+
+        // 手動改壞統計列
+        jdbcTemplate.update("UPDATE member_stats SET attended_count = 9, cancelled_count = 0, total_paid = 0 " +
+                "WHERE user_id = ?", userId);
+
+        assertTrue(memberStatsService.rebuild() >= 1);
+
+        MemberStats after = memberStatsService.getStats(userId);
+        assertEquals(before.getAttendedCount(), after.getAttendedCount());
+        assertEquals(before.getAbsentCount(), after.getAbsentCount());
+        assertEquals(before.getLateCount(), after.getLateCount());
+        assertEquals(before.getCancelledCount(), after.getCancelledCount());
+        assertEquals(0, before.getTotalPaid().compareTo(after.getTotalPaid()));
+        assertEquals(1, after.getAttendedCount());
+        assertEquals(1, after.getCancelledCount());
+        assertEquals(0, attended.getPaymentAmount().compareTo(after.getTotalPaid()));
+    }
+
+    private void assertStats(int attended, int absent, int late, int cancelled, BigDecimal totalPaid) {
+        MemberStats stats = memberStatsService.getStats(userId);
+        assertEquals(attended, stats.getAttendedCount());
+        assertEquals(absent, stats.getAbsentCount());
+        assertEquals(late, stats.getLateCount());
+        assertEquals(cancelled, stats.getCancelledCount());
+        assertEquals(0, totalPaid.compareTo(stats.getTotalPaid()));
+    }
+
+    private Long createActivity(String fee) {
+        return fixtures.activity(activity -> {
+            activity.setTitle("會員統計測試活動");
+            activity.setFeeAmount(new BigDecimal(fee));
+        }).getId();
+    }
+}
@@ -0,0 +1,128 @@
+package com.danceclub.club_system;
+
+import com.danceclub.club_system.dto.PaymentPageDTO;
+import com.danceclub.club_system.dto.PaymentResponse;
+import com.danceclub.club_system.model.Registration;
+import com.danceclub.club_system.model.enums.PaymentMethod;
+import com.danceclub.club_system.model.enums.PaymentStatus;
+import com.danceclub.club_system.service.PaymentService;
+import com.danceclub.club_system.service.RegistrationService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 管理員付款列表測試
+ * 單一查詢帶出繳費人資訊、依活動 / 狀態 / 付款方式 / 時間 / 關鍵字篩選、排序與分頁總數
+ */
+@SpringBootTest
+class PaymentAdminPageTest {
+
+    private static final int PAYERS = 4;
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private RegistrationService registrationService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Long activityId;
+    private String prefix;
+    private List<String> userIds;
+    private final List<Long> registrationIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        activityId = fixtures.activity(activity -> {
+            activity.setTitle("付款列表測試");
+            activity.setFeeAmount(new BigDecimal("300"));
+        }).getId();
+
+        // 付款人名稱帶本次測試的唯一前綴，關鍵字搜尋只會找到這幾位
+        prefix = TestFixtures.uniqueId("A");
+        userIds = fixtures.users("A", PAYERS, (user, i) -> {
+            user.setName("Payer_" + prefix + "_" + i);
+            user.setEmail(user.getId() + "@payment-page-test.example.com");
+        });
+        for (int i = 0; i < PAYERS; i++) {
+            Registration registration = registrationService.createRegistration(activityId, userIds.get(i), null, null, null);
+            registrationIds.add(registration.getId());
+            // 金額依序 100、200、300、400
+            jdbcTemplate.update("UPDATE payment SET amount = ? WHERE registration_id = ?",
+                    new BigDecimal(100 * (i + 1)), registration.getId());
+        }
+        // 第 2 位以現金繳費完成
+        jdbcTemplate.update("UPDATE payment SET status = 'PAID', method = 'CASH', paid_at = ? WHERE registration_id = ?",
+                LocalDateTime.now(), registrationIds.get(1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        fixtures.cleanup();
+    }
+
+    @Test
+    void pagesAndSortsWithPayerInfo() {
+        PaymentPageDTO first = page(null, null, null, null, "amount", "asc", 0, 3);
+        assertEquals(PAYERS, first.getTotal());
+        assertEquals(List.of(100, 200, 300), first.getItems().stream().map(p -> p.getAmount().intValue()).toList());
+
+        PaymentResponse payment = first.getItems().get(0);
+        assertEquals(registrationIds.get(0), payment.getRegistrationId());
+        assertEquals(userIds.get(0), payment.getUserId());
+        assertEquals("Payer_" + prefix + "_0", payment.getUserName());
+        assertEquals(userIds.get(0) + "@payment-page-test.example.com", payment.getUserEmail());
+        assertEquals(PaymentStatus.PENDING, payment.getStatus());
+
+        PaymentPageDTO second = page(null, null, null, null, "amount", "asc", 1, 3);
+        assertEquals(PAYERS, second.getTotal());
+        assertEquals(List.of(400), second.getItems().stream().map(p -> p.getAmount().intValue()).toList());
+
+        // 未付款的 paidAt 為 null，排在最後
+        PaymentPageDTO byPaidAt = page(null, null, null, null, "paidAt", "desc", 0, 10);
+        assertEquals(registrationIds.get(1), byPaidAt.getItems().get(0).getRegistrationId());
+    }
+
+    @Test
+    void filtersByStatusMethodUserTimeAndKeyword() {
+        PaymentPageDTO paidCash = page(PaymentStatus.PAID, PaymentMethod.CASH, null, null, "createdAt", "desc", 0, 10);
+        assertEquals(1, paidCash.getTotal());
+        assertEquals(userIds.get(1), paidCash.getItems().get(0).getUserId());
+
+        assertEquals(1, page(null, null, userIds.get(2), null, "createdAt", "desc", 0, 10).getTotal());
+        assertEquals(PAYERS, page(null, null, null, "PAYER_", "createdAt", "desc", 0, 10).getTotal());
+        assertEquals(1, page(null, null, null, userIds.get(3).toUpperCase(), "createdAt", "desc", 0, 10).getTotal());
+        // LIKE 萬用字元視為一般字元
+        assertEquals(0, page(null, null, null, "%", "createdAt", "desc", 0, 10).getTotal());
+
+        PaymentPageDTO future = paymentService.getAdminPaymentPage(null, null, LocalDateTime.now().plusDays(1), null,
+                activityId, null, null, "createdAt", "desc", 0, 10);
+        assertEquals(0, future.getTotal());
+
+        assertThrows(IllegalArgumentException.class, () -> page(null, null, null, null, "note", "desc", 0, 10));
+        assertThrows(IllegalArgumentException.class, () -> page(null, null, null, null, "amount", "sideways", 0, 10));
+        assertThrows(IllegalArgumentException.class, () -> page(null, null, null, null, "amount", "asc", 0, 201));
+    }
+
+    private PaymentPageDTO page(PaymentStatus status, PaymentMethod method, String userId, String keyword,
+                                String sort, String direction, int page, int size) {
+        return paymentService.getAdminPaymentPage(status, method, null, null, activityId, userId, keyword,
+                sort, direction, page, size);
+    }
+}
@@ -0,0 +1,119 @@
+package com.danceclub.club_system;
+
+import com.danceclub.club_system.service.RegistrationAdmissionService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 報名流量控管測試
+ * 同一活動同時進入報名的請求數不超過上限；已知額滿的活動不執行報名邏輯直接拒絕；
+ * 閒置的閘門會被移除
+ */
+class RegistrationAdmissionTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final RegistrationAdmissionService admissionService = new RegistrationAdmissionService(meterRegistry);
+
+    @Test
+    void limitsConcurrentRegistrationsPerActivity() throws InterruptedException {
+        int requests = 40;
+        ExecutorService pool = Executors.newFixedThreadPool(requests);
+        CountDownLatch done = new CountDownLatch(requests);
+        AtomicInteger inside = new AtomicInteger();
+        AtomicInteger maxInside = new AtomicInteger();
+
+        for (int i = 0; i < requests; i++) {
+            pool.submit(() -> {
+                try {
+                    admissionService.admit(1L, () -> {
+                        maxInside.accumulateAndGet(inside.incrementAndGet(), Math::max);
+                        sleep(20);
+                        inside.decrementAndGet();
+                        return null;
+                    });
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        pool.shutdown();
+
+        assertTrue(maxInside.get() <= 2, "同時進入報名的請求數不應超過上限");
+        assertEquals(requests, meterRegistry.get("registration.admission.wait").timer().count());
+        assertEquals(0, meterRegistry.get("registration.admission.queue.depth").gauge().value());
+    }
+
+    @Test
+    void rejectsKnownFullActivityWithoutRunningAction() {
+        AtomicInteger calls = new AtomicInteger();
+        admissionService.markFull(2L);
+
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> admissionService.admit(2L, calls::incrementAndGet));
+        assertEquals("活動已額滿!", e.getMessage());
+        assertEquals(0, calls.get());
+        assertEquals(1, meterRegistry.get("registration.admission.rejected").tag("reason", "full").counter().count());
+
+        // 有名額釋出後恢復受理
+        admissionService.markAvailable(2L);
+        assertEquals(1, admissionService.admit(2L, calls::incrementAndGet));
+    }
+
+    @Test
+    void removesGatesOnceIdle() throws InterruptedException {
+        // 使用完的閘門立即移除
+        assertEquals(1, admissionService.admit(3L, () -> 1));
+        assertEquals(0, gateCount());
+
+        // 使用中的閘門不會被移除
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = new Thread(() -> admissionService.admit(4L, () -> {
+            entered.countDown();
+            try {
+                return release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }));
+        holder.start();
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        assertEquals(0, admissionService.evictIdleGates());
+        assertEquals(1, gateCount());
+        release.countDown();
+        holder.join(5_000);
+        assertEquals(0, gateCount());
+
+        // 額滿標記有效期間保留，解除後移除
+        admissionService.markFull(5L);
+        assertEquals(0, admissionService.evictIdleGates());
+        assertEquals(1, gateCount());
+        admissionService.markAvailable(5L);
+        assertEquals(0, gateCount());
+    }
+
+    private int gateCount() {
+        return ((Map<?, ?>) ReflectionTestUtils.getField(admissionService, "gates")).size();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.danceclub.club_system;
+
+import com.danceclub.club_system.dto.RegistrationPageDTO;
+import com.danceclub.club_system.model.Registration;
+import com.danceclub.club_system.model.enums.RegistrationStatus;
+import com.danceclub.club_system.repository.RegistrationRepository;
+import com.danceclub.club_system.service.RegistrationService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 管理員報名清單 keyset 分頁測試
+ * 逐頁翻完應剛好取得全部符合條件的報名，不重複、不遺漏，順序與串流匯出一致
+ */
+@SpringBootTest
+class RegistrationKeysetPaginationTest {
+
+    private static final int REGISTRATIONS = 23;
+    private static final int PAGE_SIZE = 5;
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private RegistrationService registrationService;
+
+    @Autowired
+    private RegistrationRepository registrationRepository;
+
+    private Long activityId;
+
+    @BeforeEach
+    void setUp() {
+        activityId = fixtures.activity(activity -> activity.setTitle("分頁測試活動")).getId();
+
+        List<String> userIds = fixtures.users("K", REGISTRATIONS);
+        LocalDateTime sameTime = LocalDateTime.now().withNano(0);
+        List<Registration> registrations = new ArrayList<>();
+        for (int i = 0; i < REGISTRATIONS; i++) {
+            Registration registration = new Registration();
+            registration.setActivityId(activityId);
+            registration.setUserId(userIds.get(i));
+            // 部分報名時間相同，驗證以 id 作為第二排序鍵
+            registration.setRegistrationTime(i % 3 == 0 ? sameTime : sameTime.minusMinutes(i));
+            registration.setStatus(i % 4 == 0 ? RegistrationStatus.CANCELLED : RegistrationStatus.REGISTERED);
+            registrations.add(registration);
+        }
+        registrationRepository.saveAll(registrations);
+    }
+
+    @AfterEach
+    void tearDown() {
+        fixtures.cleanup();
+    }
+
+    @Test
+    void pagesCoverAllRegistrationsExactlyOnce() {
+        List<Long> paged = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            RegistrationPageDTO page = registrationService.getRegistrationsPage(
+                    activityId, null, null, null, cursor, PAGE_SIZE);
+            assertTrue(page.getItems().size() <= PAGE_SIZE);
+            page.getItems().forEach(r -> {
+                assertNotEquals(RegistrationStatus.CANCELLED, r.getStatus());
+                paged.add(r.getId());
+            });
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        List<Long> streamed = new ArrayList<>();
+        registrationService.streamRegistrations(activityId, null, null, null, r -> streamed.add(r.getId()));
+
+        long expected = REGISTRATIONS - (REGISTRATIONS + 3) / 4;
+        assertEquals(expected, paged.size());
+        assertEquals(expected, paged.stream().distinct().count());
+        assertEquals((expected + PAGE_SIZE - 1) / PAGE_SIZE, pages);
+        assertEquals(streamed, paged);
+    }
+
+    @Test
+    void filtersByStatus() {
+        RegistrationPageDTO page = registrationService.getRegistrationsPage(
+                activityId, RegistrationStatus.CANCELLED, null, null, null, 50);
+
+        assertEquals((REGISTRATIONS + 3) / 4, page.getItems().size());
+        assertFalse(page.getHasMore());
+        assertNull(page.getNextCursor());
+    }
+}
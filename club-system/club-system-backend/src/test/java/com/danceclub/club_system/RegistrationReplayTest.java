@@ -0,0 +1,98 @@
+package com.danceclub.club_system;
+
+import com.danceclub.club_system.dto.CreateRegistrationRequest;
+import com.danceclub.club_system.service.IdempotencyService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * 報名重送測試
+ * 拿到最後一個名額後活動被標記額滿，同一個 Idempotency-Key 的重送仍回放原本的 201，
+ * 不會被流量控管以 409 / 503 拒絕。
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@WithMockUser
+class RegistrationReplayTest {
+
+    private static final String KEY = "replay-" + System.nanoTime();
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Long activityId;
+    private List<String> userIds;
+
+    @BeforeEach
+    void setUp() {
+        activityId = fixtures.activity(activity -> {
+            activity.setTitle("報名重送測試");
+            activity.setMaxParticipants(1);
+        }).getId();
+        userIds = fixtures.users("R", 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM idempotency_record WHERE record_key LIKE ?", "%|" + KEY);
+        fixtures.cleanup();
+    }
+
+    @Test
+    void retryAfterTakingLastSeatReplaysCreated() throws Exception {
+        String first = register(userIds.get(0), KEY)
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+
+        // 其他會員因額滿失敗，活動被標記為已知額滿
+        register(userIds.get(1), null).andExpect(status().isConflict());
+        register(userIds.get(1), null).andExpect(status().isConflict());
+
+        String replay = register(userIds.get(0), KEY)
+                .andExpect(status().isCreated())
+                .andExpect(header().string(IdempotencyService.REPLAYED_HEADER, "true"))
+                .andReturn().getResponse().getContentAsString();
+        assertEquals(objectMapper.readTree(first), objectMapper.readTree(replay));
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM activity_registration WHERE activity_id = ?", Integer.class, activityId));
+    }
+
+    private ResultActions register(String userId, String idempotencyKey) throws Exception {
+        CreateRegistrationRequest request = new CreateRegistrationRequest();
+        request.setActivityId(activityId);
+        request.setUserId(userId);
+        var builder = post("/api/registrations")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request));
+        if (idempotencyKey != null) {
+            builder.header(IdempotencyService.HEADER, idempotencyKey);
+        }
+        return mockMvc.perform(builder);
+    }
+}
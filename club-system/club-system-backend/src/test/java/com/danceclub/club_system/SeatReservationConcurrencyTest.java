@@ -0,0 +1,167 @@
+package com.danceclub.club_system;
+
+import com.danceclub.club_system.model.Activity;
+import com.danceclub.club_system.repository.ActivityRepository;
+import com.danceclub.club_system.repository.ActivitySeatRepository;
+import com.danceclub.club_system.repository.RegistrationRepository;
+import com.danceclub.club_system.service.DiscountService;
+import com.danceclub.club_system.service.RegistrationService;
+import com.danceclub.club_system.service.SeatReservationService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 報名名額併發測試
+ * 500 人同時搶 50 個名額，驗證不會超賣且名額剛好被搶完；
+ * 並比較每次預約都先補建計數列（舊做法）與只送條件式 UPDATE 的 SQL 數與吞吐量
+ */
+@SpringBootTest(properties = ThreadStatementCounter.PROPERTY)
+class SeatReservationConcurrencyTest {
+
+    private static final int SIGNUPS = 500;
+    private static final int CAPACITY = 50;
+    private static final int ROUNDS = 500;
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private RegistrationService registrationService;
+
+    @Autowired
+    private DiscountService discountService;
+
+    @Autowired
+    private ActivityRepository activityRepository;
+
+    @Autowired
+    private RegistrationRepository registrationRepository;
+
+    @Autowired
+    private SeatReservationService seatReservationService;
+
+    @Autowired
+    private ActivitySeatRepository activitySeatRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private Long activityId;
+    private List<String> userIds;
+
+    @BeforeEach
+    void setUp() {
+        // 先建立全域折扣設定，避免空資料庫時多個執行緒同時建立設定列
+        discountService.getConfig();
+
+        activityId = fixtures.activity(activity -> {
+            activity.setTitle("併發報名測試");
+            activity.setMaxParticipants(CAPACITY);
+        }).getId();
+        userIds = fixtures.users("S", SIGNUPS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        fixtures.cleanup();
+    }
+
+    @Test
+    void concurrentSignupsNeverOversell() throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(32);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(SIGNUPS);
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger full = new AtomicInteger();
+        AtomicInteger other = new AtomicInteger();
+
+        for (String userId : userIds) {
+            pool.submit(() -> {
+                try {
+                    start.await();
+                    registrationService.createRegistration(activityId, userId, null, null, null);
+                    succeeded.incrementAndGet();
+                } catch (IllegalStateException e) {
+                    if ("活動已額滿!".equals(e.getMessage())) {
+                        full.incrementAndGet();
+                    } else {
+                        other.incrementAndGet();
+                    }
+                } catch (Exception e) {
+                    other.incrementAndGet();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        assertTrue(done.await(120, TimeUnit.SECONDS), "報名未在時限內完成");
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+        pool.shutdown();
+
+        System.out.printf("✅ %d 筆併發報名完成：成功 %d、額滿 %d、其他 %d，耗時 %d ms%n",
+                SIGNUPS, succeeded.get(), full.get(), other.get(), elapsedMs);
+
+        assertEquals(0, other.get(), "不應出現額滿以外的錯誤");
+        assertEquals(CAPACITY, succeeded.get(), "名額應剛好被搶完");
+        assertEquals(SIGNUPS - CAPACITY, full.get());
+        assertEquals(CAPACITY, registrationRepository.countValidRegistrations(activityId));
+    }
+
+    @Test
+    void reserveAndReleaseSkipSeedingOnceSeatRowExists() {
+        // 先有一半名額的有效報名，舊做法每次都要 COUNT 這些報名
+        for (String userId : userIds.subList(0, CAPACITY / 2)) {
+            registrationService.createRegistration(activityId, userId, null, null, null);
+        }
+        Activity activity = activityRepository.findById(activityId).orElseThrow();
+
+        // 舊做法：每次預約 / 歸還前都執行 INSERT ... SELECT COUNT(*) ... ON CONFLICT DO NOTHING
+        ThreadStatementCounter.reset();
+        long oldBegin = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            transactionTemplate.executeWithoutResult(status -> {
+                activitySeatRepository.initIfAbsent(activityId, CAPACITY);
+                assertEquals(1, activitySeatRepository.tryReserve(activityId));
+            });
+            transactionTemplate.executeWithoutResult(status -> {
+                activitySeatRepository.initIfAbsent(activityId, CAPACITY);
+                assertFalse(activitySeatRepository.release(activityId).isEmpty());
+            });
+        }
+        long oldNanos = System.nanoTime() - oldBegin;
+        int oldStatements = ThreadStatementCounter.count();
+
+        // 目前做法：計數列已存在，只送條件式 UPDATE
+        ThreadStatementCounter.reset();
+        long newBegin = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            transactionTemplate.executeWithoutResult(status -> assertTrue(seatReservationService.tryReserve(activity)));
+            transactionTemplate.executeWithoutResult(status -> assertTrue(seatReservationService.release(activity)));
+        }
+        long newNanos = System.nanoTime() - newBegin;
+        int newStatements = ThreadStatementCounter.count();
+
+        System.out.printf("✅ %d 次預約 + 歸還：舊做法 %d 筆 SQL、%.0f 次/秒；目前做法 %d 筆 SQL、%.0f 次/秒%n",
+                ROUNDS, oldStatements, ROUNDS * 2 / (oldNanos / 1e9), newStatements, ROUNDS * 2 / (newNanos / 1e9));
+
+        assertEquals(ROUNDS * 4, oldStatements);
+        assertEquals(ROUNDS * 2, newStatements);
+        assertEquals(CAPACITY - CAPACITY / 2, seatReservationService.getRemainingSeats(activity));
+    }
+}
@@ -0,0 +1,147 @@
+package com.danceclub.club_system;
+
+import com.danceclub.club_system.model.Activity;
+import com.danceclub.club_system.model.User;
+import com.danceclub.club_system.model.enums.ActivityStatus;
+import com.danceclub.club_system.repository.ActivityRepository;
+import com.danceclub.club_system.repository.UserRepository;
+import com.danceclub.club_system.service.WaitlistService;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * 整合測試共用資料
+ * 產生不重複的 ID、建立預設可報名的活動與會員，並記下建立過的活動 / 會員，
+ * 測試結束時 cleanup() 依活動 ID 與會員 ID 刪除報名、繳費、候補、名額與統計等相關資料。
+ * 各測試類別特有的資料表（收件匣、優惠券等）仍由測試自行清除，且須在 cleanup() 之前。
+ */
+@Component
+public class TestFixtures {
+
+    // user.id 長度上限 10：前綴 1 字元 + 本次執行 3 字元 + 流水號（base36，最多 6 字元）
+    private static final String RUN = Integer.toString(
+            ThreadLocalRandom.current().nextInt(36 * 36 * 36) + 36 * 36 * 36, 36).substring(1);
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    private final ActivityRepository activityRepository;
+    private final UserRepository userRepository;
+    private final WaitlistService waitlistService;
+    private final NamedParameterJdbcTemplate jdbc;
+
+    private final List<Long> activityIds = new ArrayList<>();
+    private final List<String> userIds = new ArrayList<>();
+
+    public TestFixtures(ActivityRepository activityRepository,
+                        UserRepository userRepository,
+                        WaitlistService waitlistService,
+                        JdbcTemplate jdbcTemplate) {
+        this.activityRepository = activityRepository;
+        this.userRepository = userRepository;
+        this.waitlistService = waitlistService;
+        this.jdbc = new NamedParameterJdbcTemplate(jdbcTemplate);
+    }
+
+    /**
+     * 產生不重複的 ID（同一次執行內遞增，不同次執行以隨機批次區分）
+     * @param prefix 1 字元前綴，方便辨認是哪個測試建立的資料
+     */
+    public static String uniqueId(String prefix) {
+        return prefix + RUN + Long.toString(SEQUENCE.incrementAndGet(), 36);
+    }
+
+    /** 建立一個已發布、一週後開始、免費、不限人數的活動 */
+    public Activity activity() {
+        return activity(activity -> {});
+    }
+
+    /**
+     * 建立活動：先套用預設值（已發布、一週後開始、報名截止為前一天、免費、不限人數），再套用 overrides
+     */
+    public Activity activity(Consumer<Activity> overrides) {
+        return activities(1, (activity, i) -> overrides.accept(activity)).get(0);
+    }
+
+    /** 一次建立多個活動（saveAll），overrides 會收到第幾個（從 0 開始） */
+    public List<Activity> activities(int count, ObjIntConsumer<Activity> overrides) {
+        List<Activity> activities = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Activity activity = new Activity();
+            activity.setTitle("測試活動");
+            activity.setStartTime(LocalDateTime.now().plusDays(7));
+            activity.setEndTime(LocalDateTime.now().plusDays(7).plusHours(2));
+            activity.setRegistrationDeadline(LocalDateTime.now().plusDays(6));
+            activity.setFeeAmount(BigDecimal.ZERO);
+            activity.setStatus(ActivityStatus.PUBLISHED);
+            activity.setPublishedAt(LocalDateTime.now());
+            activity.setCreatedBy("test");
+            overrides.accept(activity, i);
+            activities.add(activity);
+        }
+        List<Activity> saved = activityRepository.saveAll(activities);
+        saved.forEach(activity -> activityIds.add(activity.getId()));
+        return saved;
+    }
+
+    /** 建立一位會員，回傳會員 ID */
+    public String user(String prefix) {
+        return users(prefix, 1).get(0);
+    }
+
+    /** 一次建立多位會員，回傳會員 ID（依建立順序） */
+    public List<String> users(String prefix, int count) {
+        return users(prefix, count, (user, i) -> {});
+    }
+
+    /** 一次建立多位會員（saveAll），overrides 會收到第幾位（從 0 開始） */
+    public List<String> users(String prefix, int count, ObjIntConsumer<User> overrides) {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            User user = new User();
+            user.setId(uniqueId(prefix));
+            user.setName("測試會員" + i);
+            user.setPasswordHash("x");
+            user.setEmail(user.getId() + "@fixtures.example.com");
+            overrides.accept(user, i);
+            users.add(user);
+        }
+        List<String> ids = userRepository.saveAll(users).stream().map(User::getId).toList();
+        userIds.addAll(ids);
+        return ids;
+    }
+
+    /**
+     * 刪除本測試建立的活動與會員，以及相關的報名、繳費、候補、抽籤登記、名額與會員統計
+     */
+    public void cleanup() {
+        MapSqlParameterSource ids = new MapSqlParameterSource()
+                .addValue("activityIds", activityIds.isEmpty() ? List.of(-1L) : activityIds)
+                .addValue("userIds", userIds.isEmpty() ? List.of("") : userIds);
+        String registrations = "SELECT id FROM activity_registration " +
+                "WHERE activity_id IN (:activityIds) OR user_id IN (:userIds)";
+        jdbc.update("DELETE FROM payment WHERE registration_id IN (" + registrations + ")", ids);
+        jdbc.update("DELETE FROM activity_registration WHERE activity_id IN (:activityIds) OR user_id IN (:userIds)", ids);
+        int waitlisted = jdbc.update("DELETE FROM activity_waitlist WHERE activity_id IN (:activityIds)", ids);
+        jdbc.update("DELETE FROM activity_lottery_entry WHERE activity_id IN (:activityIds)", ids);
+        jdbc.update("DELETE FROM activity_seat WHERE activity_id IN (:activityIds)", ids);
+        jdbc.update("DELETE FROM member_stats WHERE user_id IN (:userIds)", ids);
+        jdbc.update("DELETE FROM activity WHERE id IN (:activityIds)", ids);
+        jdbc.update("DELETE FROM \"user\" WHERE id IN (:userIds)", ids);
+        activityIds.clear();
+        userIds.clear();
+        // 候補名單有索引快取，刪除候補列後重建
+        if (waitlisted > 0) {
+            waitlistService.rebuildIndex();
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.danceclub.club_system;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * 只計算測試執行緒自己送出的 SQL
+ * 排程（生命週期 tick、收件匣補處理、對帳）在同一個 context 內也會查詢資料庫，
+ * 全域的 Hibernate Statistics 會把它們算進去；以 StatementInspector 依執行緒計數則不受影響。
+ * 使用方式：@SpringBootTest(properties = ThreadStatementCounter.PROPERTY)
+ */
+public class ThreadStatementCounter implements StatementInspector {
+
+    public static final String PROPERTY =
+            "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                    + "com.danceclub.club_system.ThreadStatementCounter";
+
+    private static final ThreadLocal<int[]> COUNT = ThreadLocal.withInitial(() -> new int[1]);
+
+    @Override
+    public String inspect(String sql) {
+        COUNT.get()[0]++;
+        return sql;
+    }
+
+    /** 歸零目前執行緒的計數 */
+    public static void reset() {
+        COUNT.get()[0] = 0;
+    }
+
+    /** 目前執行緒自上次 reset 以來送出的 SQL 數 */
+    public static int count() {
+        return COUNT.get()[0];
+    }
+}
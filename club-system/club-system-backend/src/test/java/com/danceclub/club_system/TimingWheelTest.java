@@ -0,0 +1,85 @@
+package com.danceclub.club_system;
+
+import com.danceclub.club_system.scheduler.TimingWheel;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 階層式時間輪測試
+ * 到期項目依時間先後取出、跨層 / 溢出區的項目準時到期、取消與重新排程生效
+ */
+class TimingWheelTest {
+
+    private static final long START = 1_000_000_000L;
+
+    // 1 ms tick、2 層：可排程範圍 64 × 64 = 4096 ms
+    private final TimingWheel<String> wheel = new TimingWheel<>(1, 2, START);
+
+    @Test
+    void returnsDueKeysInDeadlineOrder() {
+        wheel.schedule("c", START + 30);
+        wheel.schedule("a", START + 10);
+        wheel.schedule("b", START + 20);
+
+        assertEquals(List.of(), wheel.advanceTo(START + 9));
+        assertEquals(List.of("a", "b"), wheel.advanceTo(START + 25));
+        assertEquals(List.of("c"), wheel.advanceTo(START + 30));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void cascadesFromUpperLevelAndOverflow() {
+        wheel.schedule("upper", START + 1_000);
+        wheel.schedule("overflow", START + 10_000);
+        assertEquals(2, wheel.size());
+
+        assertEquals(List.of(), wheel.advanceTo(START + 999));
+        assertEquals(List.of("upper"), wheel.advanceTo(START + 1_000));
+        assertEquals(List.of(), wheel.advanceTo(START + 9_999));
+        assertEquals(List.of("overflow"), wheel.advanceTo(START + 10_000));
+    }
+
+    @Test
+    void firesEveryKeyExactlyOnceAtItsTick() {
+        List<Long> deadlines = new ArrayList<>();
+        for (long offset = 1; offset < 20_000; offset += 37) {
+            wheel.schedule("k" + offset, START + offset);
+            deadlines.add(START + offset);
+        }
+
+        List<Long> firedAt = new ArrayList<>();
+        for (long now = START + 1; now < START + 20_000; now++) {
+            for (String key : wheel.advanceTo(now)) {
+                assertEquals(START + Long.parseLong(key.substring(1)), now, key + " 應於到期時取出");
+                firedAt.add(now);
+            }
+        }
+        assertEquals(deadlines, firedAt);
+    }
+
+    @Test
+    void cancelAndRescheduleReplaceEarlierEntry() {
+        wheel.schedule("cancelled", START + 50);
+        wheel.schedule("moved", START + 50);
+        assertTrue(wheel.cancel("cancelled"));
+        assertFalse(wheel.cancel("missing"));
+        wheel.schedule("moved", START + 2_000);
+
+        assertEquals(List.of(), wheel.advanceTo(START + 1_999));
+        assertEquals(List.of("moved"), wheel.advanceTo(START + 2_000));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void pastDeadlineIsReturnedOnNextAdvance() {
+        wheel.advanceTo(START + 100);
+        wheel.schedule("late", START - 5_000);
+
+        assertEquals(List.of("late"), wheel.advanceTo(START + 100));
+        assertEquals(List.of(), wheel.advanceTo(START + 101));
+    }
+}
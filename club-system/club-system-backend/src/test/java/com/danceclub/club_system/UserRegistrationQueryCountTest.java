@@ -0,0 +1,104 @@
+package com.danceclub.club_system;
+
+import com.danceclub.club_system.dto.RegistrationDetailDTO;
+import com.danceclub.club_system.dto.UserRegistrationDTO;
+import com.danceclub.club_system.service.RegistrationService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 「我的報名」查詢次數測試
+ * 報名筆數增加時，SQL 執行次數應維持固定，不隨筆數成長（N+1）；
+ * 活動已被刪除的報名仍會列出，只是沒有活動資訊
+ */
+@SpringBootTest(properties = ThreadStatementCounter.PROPERTY)
+class UserRegistrationQueryCountTest {
+
+    private static final int REGISTRATIONS = 20;
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private RegistrationService registrationService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private String userId;
+    private final List<Long> activityIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        userId = fixtures.user("Q");
+        fixtures.activities(REGISTRATIONS, (activity, i) -> {
+            activity.setTitle("查詢次數測試活動" + i);
+            // 一半收費活動（會建立繳費紀錄），一半免費活動（無繳費紀錄）
+            activity.setFeeAmount(i % 2 == 0 ? new BigDecimal("300") : BigDecimal.ZERO);
+        }).forEach(activity -> {
+            activityIds.add(activity.getId());
+            registrationService.createRegistration(activity.getId(), userId, null, null, null);
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        fixtures.cleanup();
+    }
+
+    @Test
+    void registrationDetailUsesConstantStatements() {
+        ThreadStatementCounter.reset();
+
+        List<RegistrationDetailDTO> result = registrationService.getUserRegistrationsDetail(userId);
+
+        assertEquals(REGISTRATIONS, result.size());
+        assertTrue(result.stream().allMatch(dto -> dto.getActivityTitle() != null));
+        assertEquals(REGISTRATIONS / 2, result.stream().filter(dto -> dto.getPaymentStatus() != null).count());
+        // 會員資訊 1 次 + 報名/活動/繳費 1 次
+        assertEquals(2, ThreadStatementCounter.count());
+    }
+
+    @Test
+    void userRegistrationsWithDetailsUsesSingleStatement() {
+        ThreadStatementCounter.reset();
+
+        List<UserRegistrationDTO> result = registrationService.getUserRegistrationsWithDetails(userId);
+
+        assertEquals(REGISTRATIONS, result.size());
+        assertTrue(result.stream().allMatch(dto -> dto.getActivityTitle() != null));
+        assertEquals(REGISTRATIONS / 2, result.stream().filter(dto -> dto.getPaymentDeadline() != null).count());
+        assertEquals(1, ThreadStatementCounter.count());
+    }
+
+    @Test
+    void registrationsOfDeletedActivitiesAreStillListed() {
+        // 直接刪除活動列，保留報名（免費活動，沒有繳費紀錄）
+        Long deletedActivityId = activityIds.get(1);
+        jdbcTemplate.update("DELETE FROM activity_seat WHERE activity_id = ?", deletedActivityId);
+        jdbcTemplate.update("DELETE FROM activity WHERE id = ?", deletedActivityId);
+
+        List<UserRegistrationDTO> summaries = registrationService.getUserRegistrationsWithDetails(userId);
+        assertEquals(REGISTRATIONS, summaries.size());
+        UserRegistrationDTO orphan = summaries.stream()
+                .filter(dto -> deletedActivityId.equals(dto.getActivityId())).findFirst().orElseThrow();
+        assertNull(orphan.getActivityTitle());
+        assertFalse(orphan.getCanCancel());
+
+        List<RegistrationDetailDTO> details = registrationService.getUserRegistrationsDetail(userId);
+        assertEquals(REGISTRATIONS, details.size());
+        assertNull(details.stream()
+                .filter(dto -> deletedActivityId.equals(dto.getActivityId())).findFirst().orElseThrow()
+                .getActivityTitle());
+    }
+}
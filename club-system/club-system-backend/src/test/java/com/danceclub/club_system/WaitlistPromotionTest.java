@@ -0,0 +1,160 @@
+package com.danceclub.club_system;
+
+import com.danceclub.club_system.model.Activity;
+import com.danceclub.club_system.model.Registration;
+import com.danceclub.club_system.model.WaitlistEntry;
+import com.danceclub.club_system.model.enums.PaymentStatus;
+import com.danceclub.club_system.model.enums.RegistrationStatus;
+import com.danceclub.club_system.repository.ActivityRepository;
+import com.danceclub.club_system.repository.RegistrationRepository;
+import com.danceclub.club_system.service.RegistrationService;
+import com.danceclub.club_system.service.SeatReservationService;
+import com.danceclub.club_system.service.UserService;
+import com.danceclub.club_system.service.WaitlistService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.doThrow;
+
+/**
+ * 候補遞補測試
+ * 先到先得活動額滿後取消報名，名額由候補第一位遞補（含繳費紀錄）；
+ * 已刪除的會員略過，改由下一位遞補；
+ * 上限調降後歸還仍無空位、或遞補失敗時，取消報名照常完成，候補者保留在原順位。
+ */
+@SpringBootTest
+class WaitlistPromotionTest {
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private RegistrationService registrationService;
+
+    @Autowired
+    private WaitlistService waitlistService;
+
+    @Autowired
+    private SeatReservationService seatReservationService;
+
+    @MockitoSpyBean
+    private UserService userService;
+
+    @Autowired
+    private ActivityRepository activityRepository;
+
+    @Autowired
+    private RegistrationRepository registrationRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Long activityId;
+    private List<String> userIds;
+
+    @BeforeEach
+    void setUp() {
+        activityId = fixtures.activity(activity -> {
+            activity.setTitle("候補遞補測試");
+            activity.setMaxParticipants(1);
+            activity.setFeeAmount(new BigDecimal("300"));
+        }).getId();
+        userIds = fixtures.users("W", 4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        fixtures.cleanup();
+    }
+
+    @Test
+    void cancellationPromotesFirstWaitlistedMember() {
+        Registration first = registrationService.createRegistration(activityId, userIds.get(0), null, null, null);
+        assertThrows(IllegalStateException.class,
+                () -> registrationService.createRegistration(activityId, userIds.get(1), null, null, null));
+        waitlistService.join(activityId, userIds.get(1));
+        waitlistService.join(activityId, userIds.get(2));
+
+        registrationService.cancelRegistration(first.getId());
+
+        Registration promoted = registrationRepository.findByActivityIdAndUserId(activityId, userIds.get(1)).orElseThrow();
+        assertEquals(RegistrationStatus.REGISTERED, promoted.getStatus());
+        assertEquals(PaymentStatus.PENDING, promoted.getPaymentStatus());
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM payment WHERE registration_id = ?", Integer.class, promoted.getId()));
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT remaining FROM activity_seat WHERE activity_id = ?", Integer.class, activityId));
+
+        // 遞補者離開候補名單，下一位成為第一順位
+        assertEquals(List.of(userIds.get(2)),
+                waitlistService.getWaitlist(activityId).stream().map(WaitlistEntry::getUserId).toList());
+        assertEquals(1, waitlistService.getPosition(activityId, userIds.get(2)).getPosition());
+    }
+
+    @Test
+    void deletedMemberIsSkippedDuringPromotion() {
+        Registration first = registrationService.createRegistration(activityId, userIds.get(0), null, null, null);
+        waitlistService.join(activityId, userIds.get(1));
+        waitlistService.join(activityId, userIds.get(2));
+        waitlistService.join(activityId, userIds.get(3));
+        jdbcTemplate.update("DELETE FROM \"user\" WHERE id = ?", userIds.get(1));
+
+        registrationService.cancelRegistration(first.getId());
+
+        assertTrue(registrationRepository.findByActivityIdAndUserId(activityId, userIds.get(1)).isEmpty());
+        assertTrue(registrationRepository.findByActivityIdAndUserId(activityId, userIds.get(2)).isPresent());
+        assertEquals(List.of(userIds.get(3)),
+                waitlistService.getWaitlist(activityId).stream().map(WaitlistEntry::getUserId).toList());
+    }
+
+    @Test
+    void cancellationCommitsWhenCapacityWasLoweredBelowRegistrations() {
+        jdbcTemplate.update("UPDATE activity SET max_participants = 2 WHERE id = ?", activityId);
+        Registration first = registrationService.createRegistration(activityId, userIds.get(0), null, null, null);
+        registrationService.createRegistration(activityId, userIds.get(1), null, null, null);
+        waitlistService.join(activityId, userIds.get(2));
+
+        // 管理員把上限調降到 1：剩餘名額變成 -1
+        Activity activity = activityRepository.findById(activityId).orElseThrow();
+        activity.setMaxParticipants(1);
+        activityRepository.save(activity);
+        seatReservationService.syncCapacity(activity);
+
+        Registration cancelled = registrationService.cancelRegistration(first.getId());
+
+        assertEquals(RegistrationStatus.CANCELLED, cancelled.getStatus());
+        assertEquals(RegistrationStatus.CANCELLED, registrationRepository.findById(first.getId()).orElseThrow().getStatus());
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT remaining FROM activity_seat WHERE activity_id = ?", Integer.class, activityId));
+        assertTrue(registrationRepository.findByActivityIdAndUserId(activityId, userIds.get(2)).isEmpty());
+        assertEquals(1, waitlistService.getPosition(activityId, userIds.get(2)).getPosition());
+    }
+
+    @Test
+    void failedPromotionKeepsCancellationAndWaitlistOrder() {
+        Registration first = registrationService.createRegistration(activityId, userIds.get(0), null, null, null);
+        waitlistService.join(activityId, userIds.get(1));
+        waitlistService.join(activityId, userIds.get(2));
+        doThrow(new RuntimeException("模擬會員查詢失敗")).when(userService).getUserById(userIds.get(1));
+
+        registrationService.cancelRegistration(first.getId());
+
+        assertEquals(RegistrationStatus.CANCELLED, registrationRepository.findById(first.getId()).orElseThrow().getStatus());
+        assertEquals(PaymentStatus.CANCELLED, registrationRepository.findById(first.getId()).orElseThrow().getPaymentStatus());
+        assertTrue(registrationRepository.findByActivityIdAndUserId(activityId, userIds.get(1)).isEmpty());
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT remaining FROM activity_seat WHERE activity_id = ?", Integer.class, activityId));
+        // 遞補交易回滾：候補者仍在原順位
+        assertEquals(List.of(userIds.get(1), userIds.get(2)),
+                waitlistService.getWaitlist(activityId).stream().map(WaitlistEntry::getUserId).toList());
+    }
+}
@@ -51,8 +51,22 @@ export const activityApi = {
     getDraftActivities: () => {
         return apiClient.get(`/activities/drafts`);
     },
-    //取得活動加上報名資料
-    getActivitiesWithStats: () => {
-        return apiClient.get(`/activities/with-registration-stats`);
+    //取得活動加上報名資料（分頁，params: { status, page, size }）
+    getActivitiesWithStats: (params) => {
+        return apiClient.get(`/activities/with-stats`, { params });
+    },
+    //訂閱活動即時人數（SSE），回傳 EventSource，離開頁面時請呼叫 close()
+    subscribeLiveCounters: (activityId, onUpdate) => {
+        const source = new EventSource(`${apiClient.defaults.baseURL}/activities/${activityId}/live`);
+        source.addEventListener('counters', (event) => onUpdate(JSON.parse(event.data)));
+        return source;
+    },
+    //列表中的封面縮圖為後端相對路徑（/api/activities/{id}/cover），轉成完整網址供 <img> 使用
+    coverUrl: (path) => {
+        return path ? new URL(path, apiClient.defaults.baseURL).href : path;
+    },
+    //一次取得多個活動的報名統計摘要
+    getRegistrationSummaries: (activityIds) => {
+        return apiClient.get(`/activities/registration-summaries`, { params: { ids: activityIds.join(',') } });
     }
 };
\ No newline at end of file
@@ -125,7 +125,9 @@ export const getPendingReviewPayments = async () => {
 }
 
 /**
- * 取得所有付款記錄（管理員）
+ * 取得付款記錄（管理員，分頁）
+ * params：status、method、from、to、activityId、userId、keyword、sort、direction、page、size
+ * 回傳 { items, total, page, size }
  */
 export const getAllPayments = async (params = {}) => {
   const response = await apiClient.get('/payments/admin/all', { params })
@@ -6,9 +6,9 @@ export const registrationApi = {
         return apiClient.get(`/registrations/my`,{ 
             params: { userId } });
     },
-    //取得所有報名紀錄
-    getAllRegistrations: () =>{
-        return apiClient.get(`/registrations/all`)
+    //取得所有報名紀錄（分頁，下一頁帶入回傳的 nextCursor）
+    getAllRegistrations: (params) =>{
+        return apiClient.get(`/registrations/all`, { params })
     },
     //取得單一活動的報名紀錄
     getActivityRegistrations: (activityId) =>{
@@ -33,6 +33,13 @@ export const registrationApi = {
         return apiClient.post(`/registrations`, registrationData);
         
         
+    },
+    //登記抽籤（抽籤制活動）
+    enterLottery(lotteryData){
+        return apiClient.post(`/registrations/lottery`, lotteryData);
+    },
+    getLotteryStatus: (activityId, userId) => {
+        return apiClient.get(`/registrations/lottery/status`, { params: { activityId, userId } });
     },
     getActivityRegistrationCount: (activityId) => {
         return apiClient.get(`/registrations/activity/${activityId}/count`);